@@ -0,0 +1,114 @@
+package tms;
+
+import tms.intersection.Intersection;
+import tms.network.Network;
+import tms.route.Route;
+import tms.sensors.DemoPressurePad;
+import tms.sensors.DemoSpeedCamera;
+import tms.util.DuplicateSensorException;
+import tms.util.IntersectionNotFoundException;
+import tms.util.InvalidOrderException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Builds synthetic networks for benchmarks.
+ */
+public class BenchmarkNetworks {
+
+    private BenchmarkNetworks() {}
+
+    /**
+     * Creates a width x width grid of intersections named "I0" to
+     * "I(width * width - 1)" in row order. Neighbouring intersections are
+     * connected in both directions, except that roughly one in five
+     * connections is one way. Speeds are between 40 and 99 km/h.
+     *
+     * @param width number of intersections along each side
+     * @param seed seed for the random speeds and one way routes
+     * @return the new network
+     */
+    public static Network grid(int width, long seed) {
+        Network network = new Network();
+        Random random = new Random(seed);
+        try {
+            for (int i = 0; i < width * width; i++) {
+                network.createIntersection("I" + i);
+            }
+            for (int y = 0; y < width; y++) {
+                for (int x = 0; x < width; x++) {
+                    int i = y * width + x;
+                    if (x + 1 < width) {
+                        connect(network, random, i, i + 1);
+                    }
+                    if (y + 1 < width) {
+                        connect(network, random, i, i + width);
+                    }
+                }
+            }
+        } catch (IntersectionNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+        return network;
+    }
+
+    /**
+     * Adds traffic lights to every intersection with incoming routes, a
+     * pressure pad to every route and a speed camera to every second route,
+     * each with 20 random readings.
+     * <p>
+     * The lights and sensors register themselves with the
+     * {@link tms.util.TimedItemManager}, so this should be used once per
+     * forked benchmark.
+     *
+     * @param network network to add to, such as one made by
+     * {@link #grid(int, long)}
+     * @param seed seed for the random readings
+     * @return the given network
+     */
+    public static Network equip(Network network, long seed) {
+        Random random = new Random(seed);
+        try {
+            int count = 0;
+            for (Intersection intersection : network.getIntersections()) {
+                List<String> order = new ArrayList<>();
+                for (Route route : intersection.getConnectionsView()) {
+                    order.add(route.getFrom().getId());
+                    route.addSensor(new DemoPressurePad(
+                            readings(random, 10), 5));
+                    if (count++ % 2 == 0) {
+                        route.addSensor(new DemoSpeedCamera(
+                                readings(random, 80), route.getSpeed()));
+                    }
+                }
+                if (!order.isEmpty()) {
+                    network.addLights(intersection.getId(), 10, order);
+                }
+            }
+        } catch (IntersectionNotFoundException | InvalidOrderException
+                | DuplicateSensorException e) {
+            throw new IllegalStateException(e);
+        }
+        return network;
+    }
+
+    private static int[] readings(Random random, int bound) {
+        int[] data = new int[20];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = random.nextInt(bound);
+        }
+        return data;
+    }
+
+    private static void connect(Network network, Random random, int a, int b)
+            throws IntersectionNotFoundException {
+        network.connectIntersections("I" + a, "I" + b,
+                40 + random.nextInt(60));
+        if (random.nextInt(5) > 0) {
+            network.connectIntersections("I" + b, "I" + a,
+                    40 + random.nextInt(60));
+        }
+    }
+}
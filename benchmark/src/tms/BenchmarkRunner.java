@@ -0,0 +1,45 @@
+package tms;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks and writes the results as JSON, so that the results
+ * of two releases can be compared, for example with a JMH visualiser or a
+ * plain diff.
+ * <p>
+ * Arguments: [RESULTS_FILENAME] [BENCHMARK_REGEX]
+ * <p>
+ * The results are written to "benchmark-results.json" by default, and every
+ * benchmark is run unless a regular expression matching benchmark names
+ * is given, e.g. "NetworkBenchmark" or "Route.*equals".
+ */
+public class BenchmarkRunner {
+    /** File the results are written to if none is given */
+    public static final String DEFAULT_RESULTS = "benchmark-results.json";
+
+    private BenchmarkRunner() {}
+
+    /**
+     * Runs the benchmarks.
+     *
+     * @param args from the command line
+     * @throws RunnerException if a benchmark fails
+     */
+    public static void main(String... args) throws RunnerException {
+        if (args.length > 2) {
+            System.out.println("Usage: [RESULTS_FILENAME] [BENCHMARK_REGEX]");
+            System.exit(1);
+        }
+
+        Options options = new OptionsBuilder()
+                .include(args.length > 1 ? args[1] : "tms\\..*")
+                .resultFormat(ResultFormatType.JSON)
+                .result(args.length > 0 ? args[0] : DEFAULT_RESULTS)
+                .build();
+        new Runner(options).run();
+    }
+}
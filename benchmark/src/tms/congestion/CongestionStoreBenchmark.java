@@ -0,0 +1,95 @@
+package tms.congestion;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures a {@link CongestionStore} of one million routes:
+ * <ul>
+ *     <li>append - appending a second of congestion for every route,
+ *     including encoding and writing each minute's block on the writer
+ *     thread</li>
+ *     <li>range - reading an hour of one route's congestion, second by
+ *     second</li>
+ *     <li>downsampleMinutes - summarising an hour of one route's congestion
+ *     by minute</li>
+ * </ul>
+ * Each route's congestion drifts by a few percent now and then, so blocks
+ * compress about as well as they would for a simulated network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class CongestionStoreBenchmark {
+    /** Number of routes recorded */
+    public static final int ROUTES = 1_000_000;
+    /** Seconds recorded before queries are measured */
+    public static final int SECONDS = 3600;
+
+    private Path directory;
+    private CongestionStore store;
+    private byte[] row;
+    private Random random;
+    private long second;
+    private final int[] values = new int[SECONDS];
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("congestion");
+        store = CongestionStore.open(directory);
+        for (int i = 0; i < ROUTES; i++) {
+            store.series("I" + i + ":J" + i);
+        }
+        random = new Random(42);
+        row = new byte[ROUTES];
+        for (int i = 0; i < ROUTES; i++) {
+            row[i] = (byte) random.nextInt(101);
+        }
+        while (second < SECONDS) {
+            append();
+        }
+        store.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        store.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(
+                    Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+
+    @Benchmark
+    public void append() throws IOException {
+        // One route in 64 changes each second
+        for (int i = random.nextInt(64); i < ROUTES; i += 64) {
+            row[i] = (byte) Math.max(0, Math.min(100,
+                    row[i] + random.nextInt(5) - 2));
+        }
+        store.append(second++, row, ROUTES);
+    }
+
+    @Benchmark
+    public int range() {
+        return store.range(random.nextInt(ROUTES), 0, SECONDS, values);
+    }
+
+    @Benchmark
+    public int downsampleMinutes() {
+        return store.downsample(random.nextInt(ROUTES), 0, SECONDS,
+                CongestionStore.Resolution.MINUTE).size();
+    }
+}
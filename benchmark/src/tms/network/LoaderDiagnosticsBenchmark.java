@@ -0,0 +1,121 @@
+package tms.network;
+
+import org.openjdk.jmh.annotations.*;
+import tms.sensors.Sensor;
+import tms.util.InvalidNetworkException;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a generated grid file of about one million lines with
+ * each kind of loader diagnostics:
+ * <ul>
+ *     <li>silent - the default, nothing is reported</li>
+ *     <li>statistics - counts summarised once loading finishes</li>
+ *     <li>async - a key=value line per item, written on another thread</li>
+ *     <li>console - a line per item printed on the loading thread, as the
+ *     loader used to do on standard output</li>
+ * </ul>
+ * Output is discarded rather than written to a terminal or file, so the
+ * console and async times are lower bounds.
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class LoaderDiagnosticsBenchmark {
+    /**
+     * Intersections in the generated grid; with the generator's default
+     * fractions, each adds about 8.2 lines
+     */
+    public static final int INTERSECTIONS = 122_000;
+
+    @Param({"silent", "statistics", "async", "console"})
+    public String diagnostics;
+
+    private Path file;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        file = Files.createTempFile("network", ".txt");
+        new NetworkGenerator(NetworkGenerator.Topology.GRID, INTERSECTIONS,
+                42).write(file.toString());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Network loadNetwork() throws IOException, InvalidNetworkException {
+        return NetworkInitialiser.loadNetwork(file.toString(), create());
+    }
+
+    private LoaderDiagnostics create() {
+        switch (diagnostics) {
+            case "silent":
+                return LoaderDiagnostics.SILENT;
+            case "statistics":
+                return new LoaderStatistics();
+            case "async":
+                return new AsyncLoaderLog(new OutputStreamWriter(
+                        OutputStream.nullOutputStream()));
+            case "console":
+                return new ConsoleDiagnostics(new PrintStream(
+                        OutputStream.nullOutputStream(), true));
+            default:
+                throw new IllegalArgumentException(diagnostics);
+        }
+    }
+
+    /**
+     * Prints a line per item as it is loaded, like the loader's output
+     * before diagnostics could be turned off.
+     */
+    private static class ConsoleDiagnostics implements LoaderDiagnostics {
+        private final PrintStream out;
+
+        ConsoleDiagnostics(PrintStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void intersectionAdded(String id) {
+            out.println("+ intersection " + id);
+        }
+
+        @Override
+        public void routeAdded(String from, String to, int defaultSpeed) {
+            out.println("+ Route from " + from + " to " + to);
+        }
+
+        @Override
+        public void sensorAdded(String from, String to, Sensor sensor) {
+            out.println("+ sensor            [" + from + "] -> [" + to
+                    + "] " + sensor);
+        }
+
+        @Override
+        public void lightsAdded(String id, int duration,
+                                List<String> order) {
+            out.println("+ TrafficLight [" + id + ", " + duration + ", "
+                    + order + "].");
+        }
+
+        @Override
+        public void sensorsChecked(String from, String to, int sensors) {
+            out.println("Number of sensors for (" + from + ":" + to
+                    + ") is (" + sensors + ")");
+        }
+    }
+}
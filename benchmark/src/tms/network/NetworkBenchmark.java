@@ -0,0 +1,59 @@
+package tms.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tms.BenchmarkNetworks;
+import tms.util.IntersectionNotFoundException;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures looking up intersections by ID and converting a whole network to
+ * its save file representation, on grids of 100, 10,000 and 90,000
+ * intersections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkBenchmark {
+    /** Number of lookups per invocation of findIntersection() */
+    static final int LOOKUPS = 1000;
+
+    /** Number of intersections along each side of the grid */
+    @Param({"10", "100", "300"})
+    public int width;
+
+    private Network network;
+    private String[] ids;
+
+    @Setup
+    public void setup() {
+        network = BenchmarkNetworks.equip(BenchmarkNetworks.grid(width, 42),
+                42);
+        Random random = new Random(7);
+        ids = new String[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++) {
+            // New strings, so that lookups cannot rely on identity
+            ids[i] = new String("I" + random.nextInt(width * width));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LOOKUPS)
+    public void findIntersection(Blackhole blackhole)
+            throws IntersectionNotFoundException {
+        for (String id : ids) {
+            blackhole.consume(network.findIntersection(id));
+        }
+    }
+
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public String networkToString() {
+        return network.toString();
+    }
+}
@@ -0,0 +1,45 @@
+package tms.network;
+
+import org.openjdk.jmh.annotations.*;
+import tms.BenchmarkNetworks;
+import tms.util.InvalidNetworkException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures loading a network file with lights and sensors on every
+ * intersection, on grids of 100, 2,500 and 10,000 intersections.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkInitialiserBenchmark {
+    /** Number of intersections along each side of the grid */
+    @Param({"10", "50", "100"})
+    public int width;
+
+    private Path file;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("network", ".txt");
+        Files.writeString(file, BenchmarkNetworks.equip(
+                BenchmarkNetworks.grid(width, 42), 42).toString());
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public Network loadNetwork() throws IOException, InvalidNetworkException {
+        return NetworkInitialiser.loadNetwork(file.toString());
+    }
+}
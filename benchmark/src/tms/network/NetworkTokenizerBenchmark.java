@@ -0,0 +1,126 @@
+package tms.network;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.CharBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the number of network file lines per second that can be
+ * validated and parsed by {@link NetworkTokenizer} against the original
+ * validation + String.split() + Integer.parseInt() sequence used by
+ * {@link NetworkInitialiser}.
+ * <p>
+ * Each invocation processes {@link NetworkTokenizerBenchmark#LINES} lines,
+ * so the reported throughput is in lines per second.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class NetworkTokenizerBenchmark {
+    /** Number of lines in the generated file */
+    static final int LINES = 10_000;
+
+    private List<String> lines;
+    private CharBuffer contents;
+
+    @Setup
+    public void setup() {
+        lines = new ArrayList<>(LINES);
+        StringBuilder file = new StringBuilder();
+
+        // Alternate between route lines and sensor lines, which make up
+        // almost all of a large network file.
+        for (int i = 0; i < LINES; i++) {
+            String line;
+            if (i % 2 == 0) {
+                line = "I" + i + ":I" + (i + 1) + ":60:1:" + (40 + i % 60);
+            } else {
+                line = "PP:" + (5 + i % 10)
+                        + ":5,2,4,4,1,5,2,7,3,5,6,5,8,5,4,2,3,3,2,5";
+            }
+            lines.add(line);
+            file.append(line).append('\n');
+        }
+        contents = CharBuffer.wrap(file.toString());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void tokenizer(Blackhole blackhole) {
+        NetworkTokenizer tokenizer = new NetworkTokenizer(contents.duplicate());
+        int[] data = new int[64];
+
+        while (tokenizer.nextLine()) {
+            if (tokenizer.fieldEquals(0, "PP")) {
+                blackhole.consume(tokenizer.fieldInt(1));
+                tokenizer.splitList(2);
+                blackhole.consume(tokenizer.readNonNegativeList(data));
+                blackhole.consume(data);
+            } else {
+                blackhole.consume(tokenizer.fieldHasContent(0));
+                blackhole.consume(tokenizer.fieldHasContent(1));
+                blackhole.consume(tokenizer.fieldInt(2));
+                blackhole.consume(tokenizer.fieldInt(3));
+                blackhole.consume(tokenizer.fieldInt(4));
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LINES)
+    public void splitAndParse(Blackhole blackhole) {
+        for (String line : lines) {
+            String[] components = line.split(":");
+            if (components[0].equals("PP")) {
+                // validSensorDefinition(), then parseSensorData()
+                blackhole.consume(isPositive(components[1]));
+                for (String datum : components[2].split(",")) {
+                    blackhole.consume(isNonNeg(datum));
+                }
+                blackhole.consume(Integer.parseInt(components[1]));
+                String[] unformatted = components[2].split(",");
+                int[] data = new int[unformatted.length];
+                for (int i = 0; i < unformatted.length; i++) {
+                    if (isInteger(unformatted[i])) {
+                        data[i] = Integer.parseInt(unformatted[i]);
+                    }
+                }
+                blackhole.consume(data);
+            } else {
+                // validRouteDefinition(), then the parse in addRoutes()
+                blackhole.consume(components[0].trim().length() != 0);
+                blackhole.consume(components[1].trim().length() != 0);
+                blackhole.consume(isNonNeg(components[2]));
+                blackhole.consume(isNonNeg(components[3]));
+                blackhole.consume(isNonNeg(components[4]));
+                blackhole.consume(Integer.parseInt(components[2]));
+                blackhole.consume(Integer.parseInt(components[3]));
+                blackhole.consume(Integer.parseInt(components[4]));
+            }
+        }
+    }
+
+    private static boolean isPositive(String toCompare) {
+        return isNonNeg(toCompare) && Integer.parseInt(toCompare) != 0;
+    }
+
+    private static boolean isNonNeg(String toCompare) {
+        return isInteger(toCompare) && Integer.parseInt(toCompare) >= 0;
+    }
+
+    private static boolean isInteger(String toCompare) {
+        try {
+            Integer.parseInt(toCompare);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        return true;
+    }
+}
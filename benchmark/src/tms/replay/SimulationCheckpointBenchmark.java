@@ -0,0 +1,119 @@
+package tms.replay;
+
+import org.openjdk.jmh.annotations.*;
+import tms.BenchmarkNetworks;
+import tms.network.Network;
+import tms.util.InvalidNetworkException;
+import tms.util.TimedItemManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Measures checkpointing grids of 10,000 and 90,000 intersections with
+ * lights and sensors on every intersection:
+ * <ul>
+ *     <li>checkpoint - taking a checkpoint of the state on the simulation
+ *     thread, the structure being unchanged</li>
+ *     <li>checkpointWritten - the same, and waiting for it to be written
+ *     </li>
+ *     <li>checkpointAfterEdit - taking a checkpoint on the simulation
+ *     thread after the network has been changed, which copies the
+ *     structure as well</li>
+ *     <li>checkpointAfterEditWritten - the same, and waiting for it and
+ *     the structure to be written</li>
+ *     <li>restore - loading the checkpoint's network and restoring its
+ *     state, as on restarting</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx3g")
+@State(Scope.Benchmark)
+public class SimulationCheckpointBenchmark {
+    /** Number of intersections along each side of the grid */
+    @Param({"100", "300"})
+    public int width;
+
+    private Network network;
+    private int edits;
+    private Path directory;
+    private SimulationCheckpointer checkpointer;
+    private Network restored;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        network = BenchmarkNetworks.equip(
+                BenchmarkNetworks.grid(width, 42), 42);
+        directory = Files.createTempDirectory("checkpoints");
+        checkpointer = new SimulationCheckpointer(network, directory, 1, 0);
+        checkpointer.checkpoint();
+        checkpointer.flush();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        checkpointer.close();
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+    /**
+     * Waits for the last checkpoint, so that none is skipped.
+     */
+    @Setup(Level.Invocation)
+    public void awaitWritten() throws IOException {
+        checkpointer.flush();
+    }
+
+    /**
+     * Stops ticking the network restored by the last invocation.
+     */
+    @TearDown(Level.Invocation)
+    public void forgetRestored() {
+        if (restored != null) {
+            TimedItemManager.getTimedItemManager().deregisterTimedItems(
+                    SimulationState.timedItems(restored));
+            restored = null;
+        }
+    }
+
+    @Benchmark
+    public void checkpoint() throws IOException {
+        checkpointer.checkpoint();
+    }
+
+    @Benchmark
+    public void checkpointWritten() throws IOException {
+        checkpointer.checkpoint();
+        checkpointer.flush();
+    }
+
+    @Benchmark
+    public void checkpointAfterEdit() throws IOException {
+        network.setYellowTime(1 + edits++ % 2);
+        checkpointer.checkpoint();
+    }
+
+    @Benchmark
+    public void checkpointAfterEditWritten() throws IOException {
+        network.setYellowTime(1 + edits++ % 2);
+        checkpointer.checkpoint();
+        checkpointer.flush();
+    }
+
+    @Benchmark
+    public Network restore() throws IOException, InvalidNetworkException {
+        restored = SimulationCheckpointer.restore(directory).getNetwork();
+        return restored;
+    }
+}
@@ -0,0 +1,90 @@
+package tms.replay;
+
+import org.openjdk.jmh.annotations.*;
+import tms.BenchmarkNetworks;
+import tms.network.Network;
+import tms.sensors.LiveSensor;
+import tms.sensors.SensorFeed;
+import tms.util.TimedItemManager;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures recording and replaying a 90,000 intersection grid whose sensors
+ * are all live, with one sensor in a hundred given a new reading each tick:
+ * <ul>
+ *     <li>recordTick - ticking the network and recording the tick</li>
+ *     <li>replayTick - replaying the recorded ticks from the start,
+ *     including restoring the first checkpoint and checking the rest</li>
+ *     <li>seek - moving to a random tick of the recording, by restoring
+ *     the checkpoint before it and replaying on from there</li>
+ * </ul>
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SimulationReplayBenchmark {
+    /** Ticks recorded before replays are measured */
+    public static final int TICKS = 600;
+    /** Ticks between checkpoints */
+    public static final int CHECKPOINT_INTERVAL = 100;
+
+    private Path log;
+    private SimulationRecorder recorder;
+    private SimulationReplayer replayer;
+    private LiveSensor[] live;
+    private Random random;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Network network = BenchmarkNetworks.equip(
+                BenchmarkNetworks.grid(300, 42), 42);
+        new SensorFeed().attach(network);
+        live = SimulationState.liveSensors(network);
+        random = new Random(42);
+
+        log = Files.createTempFile("replay", ".log");
+        recorder = new SimulationRecorder(network, log, CHECKPOINT_INTERVAL);
+        for (int i = 0; i < TICKS; i++) {
+            recordTick();
+        }
+        recorder.flush();
+        replayer = SimulationReplayer.open(log);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        recorder.close();
+        Files.delete(log);
+    }
+
+    @Benchmark
+    public void recordTick() throws IOException {
+        for (int i = 0; i < live.length / 100; i++) {
+            live[random.nextInt(live.length)].publish(random.nextInt(100));
+        }
+        TimedItemManager.getTimedItemManager().oneSecond();
+        recorder.tick();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(TICKS)
+    public long replayTick() {
+        replayer.seek(0);
+        replayer.run();
+        return replayer.getTick();
+    }
+
+    @Benchmark
+    public long seek() {
+        replayer.seek(random.nextInt(TICKS + 1));
+        return replayer.getTick();
+    }
+}
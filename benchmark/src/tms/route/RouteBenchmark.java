@@ -0,0 +1,64 @@
+package tms.route;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import tms.BenchmarkNetworks;
+import tms.intersection.Intersection;
+import tms.network.Network;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the congestion and equality of every route of a network, on
+ * grids of 100, 10,000 and 90,000 intersections with sensors on every
+ * route. Times are for all routes of the network; a grid of width w has
+ * about 3.6 w (w - 1) routes.
+ * <p>
+ * Equality compares each route with its counterpart in a second, identical
+ * network, so every comparison has to look at the whole route.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class RouteBenchmark {
+    /** Number of intersections along each side of the grid */
+    @Param({"10", "100", "300"})
+    public int width;
+
+    private Route[] routes, copies;
+
+    @Setup
+    public void setup() {
+        routes = routes(BenchmarkNetworks.equip(
+                BenchmarkNetworks.grid(width, 42), 42));
+        copies = routes(BenchmarkNetworks.equip(
+                BenchmarkNetworks.grid(width, 42), 42));
+    }
+
+    @Benchmark
+    public void getCongestion(Blackhole blackhole) {
+        for (Route route : routes) {
+            blackhole.consume(route.getCongestion());
+        }
+    }
+
+    @Benchmark
+    public void routeEquals(Blackhole blackhole) {
+        for (int i = 0; i < routes.length; i++) {
+            blackhole.consume(routes[i].equals(copies[i]));
+        }
+    }
+
+    private static Route[] routes(Network network) {
+        List<Route> routes = new ArrayList<>();
+        for (Intersection intersection : network.getIntersections()) {
+            routes.addAll(intersection.getConnectionsView());
+        }
+        return routes.toArray(new Route[0]);
+    }
+}
@@ -0,0 +1,86 @@
+package tms.routing;
+
+import org.openjdk.jmh.annotations.*;
+import tms.BenchmarkNetworks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the {@link ContractionHierarchy} on grid networks: the time taken
+ * to contract and to re-customise it, and the number of travel time queries
+ * per second compared against a plain Dijkstra search.
+ * <p>
+ * The estimated memory used by the hierarchy is printed during setup, since
+ * JMH only reports timings.
+ */
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ContractionHierarchyBenchmark {
+    /** Number of random origin/destination pairs queried in turn */
+    private static final int PAIRS = 1024;
+
+    /** Intersections along each side of the grid */
+    @Param({"32", "100"})
+    public int width;
+
+    private RoutingGraph graph;
+    private ContractionHierarchy hierarchy;
+    private DijkstraSearch dijkstra;
+    private int[] sources, targets;
+    private int next = 0;
+
+    @Setup
+    public void setup() {
+        graph = new RoutingGraph(BenchmarkNetworks.grid(width, 42));
+        hierarchy = new ContractionHierarchy(graph);
+        dijkstra = new DijkstraSearch(graph);
+
+        Random random = new Random(7);
+        sources = new int[PAIRS];
+        targets = new int[PAIRS];
+        for (int i = 0; i < PAIRS; i++) {
+            sources[i] = random.nextInt(graph.size());
+            targets[i] = random.nextInt(graph.size());
+        }
+        System.out.printf("%n%d intersections, %d routes, %d arcs, "
+                        + "index memory %d KB%n", graph.size(),
+                graph.edgeCount(), hierarchy.arcCount(),
+                hierarchy.memoryFootprint() / 1024);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Measurement(iterations = 10)
+    public ContractionHierarchy preprocess() {
+        return new ContractionHierarchy(graph);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public ContractionHierarchy customise() {
+        hierarchy.customise();
+        return hierarchy;
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public float query() {
+        int i = next++ & (PAIRS - 1);
+        return hierarchy.travelTime(sources[i], targets[i]);
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    public float dijkstraQuery() {
+        int i = next++ & (PAIRS - 1);
+        dijkstra.run(sources[i], targets[i]);
+        return dijkstra.distance(targets[i]);
+    }
+}
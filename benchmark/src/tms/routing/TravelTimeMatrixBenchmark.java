@@ -0,0 +1,55 @@
+package tms.routing;
+
+import org.openjdk.jmh.annotations.*;
+import tms.BenchmarkNetworks;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the time taken to compute a 1,000 x 1,000 travel time matrix on
+ * a 10,000 intersection grid, with fork-join pools of different sizes.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TravelTimeMatrixBenchmark {
+    private static final int SIZE = 1000;
+
+    /** Number of worker threads */
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ForkJoinPool pool;
+    private TravelTimeMatrix matrix;
+    private int[] origins, destinations;
+
+    @Setup
+    public void setup() {
+        RoutingGraph graph = new RoutingGraph(BenchmarkNetworks.grid(100, 42));
+        pool = new ForkJoinPool(threads);
+        matrix = new TravelTimeMatrix(graph, pool);
+
+        Random random = new Random(7);
+        origins = new int[SIZE];
+        destinations = new int[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            origins[i] = random.nextInt(graph.size());
+            destinations[i] = random.nextInt(graph.size());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public float[] matrix() {
+        return matrix.compute(origins, destinations);
+    }
+}
@@ -0,0 +1,78 @@
+package tms.sensors;
+
+import org.openjdk.jmh.annotations.*;
+import tms.BenchmarkNetworks;
+import tms.network.Network;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the readings per second a {@link SensorFeed} can parse and
+ * publish from one stream, in each format, with the sensors of a
+ * 90,000 intersection grid attached. Each invocation ingests one million
+ * readings for random sensors from memory, so that only parsing and
+ * publishing are measured.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx2g")
+@State(Scope.Benchmark)
+public class SensorFeedBenchmark {
+    /** Readings ingested by each invocation */
+    public static final int READINGS = 1_000_000;
+
+    @Param({"CSV", "BINARY"})
+    public SensorFeed.Format format;
+
+    private SensorFeed feed;
+    private byte[] readings;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        Network network = BenchmarkNetworks.equip(
+                BenchmarkNetworks.grid(300, 42), 42);
+        feed = new SensorFeed();
+        feed.attach(network);
+
+        // Recover each channel's key from a second pass over the network
+        String[] keys = new String[feed.getSensorCount()];
+        network.getIntersections().forEach(to ->
+                to.getConnectionsView().forEach(route ->
+                        route.getSensorsView().forEach(sensor -> {
+                            String key = route.getFrom().getId() + ":"
+                                    + to.getId() + ":"
+                                    + sensor.toString().substring(0, 2);
+                            keys[feed.getChannel(key)] = key;
+                        })));
+
+        Random random = new Random(42);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (int i = 0; i < READINGS; i++) {
+            int channel = random.nextInt(keys.length);
+            int value = random.nextInt(100);
+            if (format == SensorFeed.Format.CSV) {
+                out.write((keys[channel] + "," + value + "\n")
+                        .getBytes(StandardCharsets.UTF_8));
+            } else {
+                out.writeInt(channel);
+                out.writeInt(value);
+            }
+        }
+        readings = bytes.toByteArray();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(READINGS)
+    public long ingest() throws IOException {
+        return feed.ingest(new ByteArrayInputStream(readings), format);
+    }
+}
@@ -0,0 +1,39 @@
+package tms.util;
+
+import org.openjdk.jmh.annotations.*;
+import tms.BenchmarkNetworks;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures one second of simulation, which advances every set of traffic
+ * lights and every sensor, on grids of 100, 10,000 and 90,000
+ * intersections.
+ * <p>
+ * Every benchmark runs in its own fork, so the singleton manager only holds
+ * the timed items of one network.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class TimedItemManagerBenchmark {
+    /** Number of intersections along each side of the grid */
+    @Param({"10", "100", "300"})
+    public int width;
+
+    private TimedItemManager manager;
+
+    @Setup
+    public void setup() {
+        BenchmarkNetworks.equip(BenchmarkNetworks.grid(width, 42), 42);
+        manager = TimedItemManager.getTimedItemManager();
+    }
+
+    @Benchmark
+    public void oneSecond() {
+        manager.oneSecond();
+    }
+}
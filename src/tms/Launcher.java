@@ -3,13 +3,18 @@ package tms;
 import javafx.application.Application;
 import javafx.application.Platform;
 import javafx.stage.Stage;
+import tms.congestion.CongestionStore;
 import tms.display.MainViewModel;
 import tms.display.MainView;
+import tms.network.FootprintReport;
+import tms.network.LoaderStatistics;
 import tms.network.Network;
 import tms.network.NetworkInitialiser;
+import tms.replay.SimulationRecorder;
 import tms.util.InvalidNetworkException;
 
 import java.io.IOException;
+import java.nio.file.Paths;
 
 /**
  * Main entry point for the CSSE2002/7023 Traffic Management Simulation.
@@ -17,18 +22,36 @@ import java.io.IOException;
  * @ass2_given View code for A2.
  */
 public class Launcher extends Application {
+    /** Flag to print the estimated memory footprint instead of running */
+    public static final String FOOTPRINT_FLAG = "--footprint";
 
     /**
      * CSSE2002/7023 Traffic Management Simulation Control Portal
      * <p>
-     * Arguments: [FILENAME]
+     * Arguments: [--footprint] [FILENAME]
+     * <p>
+     * With --footprint, the network is loaded and the estimated memory it
+     * uses is printed by type of entity, see {@link FootprintReport}, then
+     * the program exits without showing the GUI.
+     * <p>
+     * If the system property "tms.history.dir" is set, the congestion of
+     * every route is recorded each second to a {@link CongestionStore} in
+     * that directory.
+     * <p>
+     * If the system property "tms.replay.log" is set, the run is recorded
+     * to a log file of that name, to be replayed by
+     * {@link tms.replay.SimulationReplayer}.
      *
      * @param args from the command line.
      * @ass2_given View code for A2.
      */
     public static void main(final String... args) {
+        if (args.length == 2 && args[0].equals(FOOTPRINT_FLAG)) {
+            printFootprint(args[1]);
+            return;
+        }
         if (args.length != 1) {
-            System.out.println("Usage: [NETWORK_LOAD_FILENAME]");
+            System.out.println("Usage: [--footprint] [NETWORK_LOAD_FILENAME]");
             System.out.println("To add a command line argument to your " +
                     "program in IntelliJ, go to \"Run > Edit Configurations " +
                     "> Program Arguments\" and add your file name to the " +
@@ -38,6 +61,24 @@ public class Launcher extends Application {
         Application.launch(Launcher.class, args);
     }
 
+    /**
+     * Loads the network in the given file and prints its estimated memory
+     * footprint.
+     *
+     * @param filename file to load the network from
+     */
+    private static void printFootprint(String filename) {
+        try {
+            Network network = NetworkInitialiser.loadNetwork(filename,
+                    new LoaderStatistics(System.out::println));
+            System.out.print(FootprintReport.measure(network));
+        } catch (IOException | InvalidNetworkException e) {
+            System.err.println("Error loading from file \"" + filename
+                    + "\": " + e.toString());
+            System.exit(1);
+        }
+    }
+
     /**
      * Runs the main GUI with the parameters passed via the command line.
      *
@@ -51,7 +92,8 @@ public class Launcher extends Application {
 
         Network network = null;  // Safe due to System.exit in catch block below.
         try {
-            network = NetworkInitialiser.loadNetwork(params.get(0));
+            network = NetworkInitialiser.loadNetwork(params.get(0),
+                    new LoaderStatistics(System.out::println));
         } catch (IOException | InvalidNetworkException e) {
             System.err.println("Error loading from file \"" + params.get(0)
                     + "\": " + e.toString());
@@ -59,7 +101,32 @@ public class Launcher extends Application {
             System.exit(1);
         }
 
-        var view = new MainView(theStage, new MainViewModel(network));
+        // Keep the map layout next to the network it was computed for
+        if (System.getProperty("tms.layout") == null) {
+            System.setProperty("tms.layout", params.get(0) + ".layout");
+        }
+        var model = new MainViewModel(network);
+        String historyDir = System.getProperty("tms.history.dir");
+        if (historyDir != null) {
+            try {
+                model.recordCongestion(CongestionStore.open(
+                        Paths.get(historyDir)));
+            } catch (IOException e) {
+                System.err.println("Error opening congestion history \""
+                        + historyDir + "\": " + e.toString());
+            }
+        }
+        String replayLog = System.getProperty("tms.replay.log");
+        if (replayLog != null) {
+            try {
+                model.recordSimulation(new SimulationRecorder(network,
+                        Paths.get(replayLog)));
+            } catch (IOException e) {
+                System.err.println("Error opening simulation log \""
+                        + replayLog + "\": " + e.toString());
+            }
+        }
+        var view = new MainView(theStage, model);
         view.run();
     }
 }
@@ -0,0 +1,122 @@
+package tms.congestion;
+
+import tms.intersection.Intersection;
+import tms.network.Network;
+import tms.route.Route;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Records the congestion of every route in a network each second to a
+ * {@link CongestionStore}, with each route's series keyed by "FROM:TO".
+ * <p>
+ * The routes are found in the same order each second, so each route's
+ * series is remembered by its position, and only routes that are new or
+ * have moved since the last second are looked up by key. Routes that have
+ * been removed are recorded as {@link CongestionStore#MISSING}.
+ * <p>
+ * Ticks are recorded as seconds counted on from the last second already in
+ * the store when the recorder is created, so that a store can be kept from
+ * one run to the next. For a new store, each tick is recorded as the second
+ * of the same number.
+ * <p>
+ * Must be called between ticks, on the simulation thread, as the network
+ * must not change while it is recorded.
+ */
+public class CongestionRecorder {
+    private final Network network;
+    private final CongestionStore store;
+    /** Second recorded for tick 0 */
+    private final long offset;
+
+    /** Route at each position when last recorded */
+    private Route[] routes = new Route[0];
+    /** Series of the route at each position */
+    private int[] series = new int[0];
+    /** Congestion of each series, by index */
+    private byte[] row = new byte[0];
+
+    /**
+     * Creates a recorder for the given network.
+     *
+     * @param network network whose routes are recorded
+     * @param store store to record to
+     */
+    public CongestionRecorder(Network network, CongestionStore store) {
+        this.network = network;
+        this.store = store;
+        this.offset = Math.max(store.getLastSecond(), 0);
+    }
+
+    /**
+     * @return the store recorded to
+     */
+    public CongestionStore getStore() {
+        return store;
+    }
+
+    /**
+     * Returns the key the series of the given route is recorded under.
+     *
+     * @param route a route in the network
+     * @param to the intersection the route goes to
+     * @return "FROM:TO", where FROM and TO are the IDs of the route's ends
+     */
+    public static String keyOf(Route route, Intersection to) {
+        return route.getFrom().getId() + ":" + to.getId();
+    }
+
+    /**
+     * Returns the second a tick is recorded as.
+     *
+     * @param tick number of the tick, counted from 1
+     * @return the second in the store
+     */
+    public long secondOf(long tick) {
+        return offset + tick;
+    }
+
+    /**
+     * Appends the current congestion of every route for the given tick.
+     *
+     * @param tick number of the tick just finished, counted from 1 and
+     *             after the last tick recorded
+     * @throws IOException if the congestion cannot be written
+     */
+    public void record(long tick) throws IOException {
+        Arrays.fill(row, 0, Math.min(row.length, store.getSeriesCount()),
+                (byte) CongestionStore.MISSING);
+        int position = 0;
+        for (Intersection to : network.getIntersections()) {
+            for (Route route : to.getConnectionsView()) {
+                if (position == routes.length) {
+                    int capacity = Math.max(16, 2 * position);
+                    routes = Arrays.copyOf(routes, capacity);
+                    series = Arrays.copyOf(series, capacity);
+                }
+                if (routes[position] != route) {
+                    routes[position] = route;
+                    series[position] = store.series(keyOf(route, to));
+                }
+                int index = series[position++];
+                ensureRow(index + 1);
+                row[index] = (byte) route.getCongestion();
+            }
+        }
+        // Forget routes past the end, so that they can be collected
+        Arrays.fill(routes, position, routes.length, null);
+        // Includes series of routes no longer in the network
+        int count = store.getSeriesCount();
+        ensureRow(count);
+        store.append(secondOf(tick), row, count);
+    }
+
+    private void ensureRow(int length) {
+        if (length > row.length) {
+            int old = row.length;
+            row = Arrays.copyOf(row, Math.max(length, 2 * old));
+            Arrays.fill(row, old, row.length, (byte) CongestionStore.MISSING);
+        }
+    }
+}
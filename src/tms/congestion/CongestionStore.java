@@ -0,0 +1,824 @@
+package tms.congestion;
+
+import tms.util.SymbolTable;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * An append-only store of the congestion of many series, normally one per
+ * route, for each simulated second, kept in files in one directory.
+ * <p>
+ * Each series has a key, such as "FROM:TO" for a route, and an index: the
+ * first series added is 0, the next is 1, and so on. The keys are kept in
+ * the file {@value #SERIES_FILE}, one per line.
+ * <p>
+ * Congestion is appended a second at a time, as a row of one value per
+ * series, 0 to 100 or {@link #MISSING}. Rows are gathered into blocks of up
+ * to a minute, which never span the start of a minute. A full block is
+ * encoded on a background thread, so appending only copies the row. Blocks
+ * are columnar: each series' values for the block are stored together, as
+ * the change from the previous value, with runs of unchanged values stored
+ * as their length. Before the values, each block has an index giving, for
+ * each series, where its values start and their minimum, maximum, total and
+ * count.
+ * <p>
+ * Blocks are appended to memory-mapped segment files, one for each hour,
+ * named by the first second of the hour. Each segment is mapped whole,
+ * and its blocks are read through slices of that mapping, so a store open
+ * for a long time needs about one mapping per hour, not one per block.
+ * While a segment is being written, its mapping reaches past the blocks
+ * written, and is replaced by one twice the size when it fills. The file
+ * is cut back to its blocks once the next segment starts or the store is
+ * closed. Queries find the blocks they need
+ * by binary search of the blocks' start times, then read just the series
+ * asked for from each block, so the time taken depends on the range asked
+ * for, not the size of the store. Summaries by minute or hour are taken
+ * from the blocks' indexes, without reading any values, except at the ends
+ * of the range.
+ * <p>
+ * Rows must be appended by one thread at a time. Queries may be made from
+ * any thread, at the same time, and see every block written so far; the
+ * block being filled is not seen until it is full or
+ * {@link #flush() flushed}. Written blocks are left to the operating system
+ * to write to disk, so they survive the process ending but not the machine
+ * stopping.
+ */
+public class CongestionStore implements Closeable {
+    /** Value of a second with no congestion recorded for a series */
+    public static final int MISSING = -1;
+    /** Longest period covered by a block; blocks start within a minute */
+    public static final int BLOCK_SECONDS = 60;
+    /** Period covered by each segment file */
+    public static final int SEGMENT_SECONDS = 3600;
+    /** Name of the file listing the key of each series, in order */
+    public static final String SERIES_FILE = "series.txt";
+
+    /** Periods congestion can be summarised over. */
+    public enum Resolution {
+        /** A summary per minute */
+        MINUTE(60),
+        /** A summary per hour */
+        HOUR(3600);
+
+        private final int seconds;
+
+        Resolution(int seconds) {
+            this.seconds = seconds;
+        }
+
+        /**
+         * @return length of each period in seconds
+         */
+        public int getSeconds() {
+            return seconds;
+        }
+    }
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    /** "TMSB" */
+    private static final int MAGIC = 0x544D5342;
+    /** Magic, start second, seconds, series count, data length */
+    private static final int HEADER_BYTES = 4 + 8 + 4 + 4 + 4;
+    /** Offset, total, minimum, maximum and count of a series */
+    private static final int INDEX_BYTES = 4 + 2 + 1 + 1 + 1;
+    /** Stored in place of a missing value */
+    private static final int MISSING_CODE = 0xFF;
+
+    private final Path directory;
+    /** Keys of the series; guarded by this */
+    private final SymbolTable keys = new SymbolTable();
+    private final Writer keysOut;
+    /** Written blocks in order of time; guarded by this */
+    private final List<Block> blocks = new ArrayList<>();
+
+    /** Last second appended */
+    private volatile long lastSecond = Long.MIN_VALUE;
+    /** Block being appended to, or null */
+    private Rows filling;
+    /** Block being written, or null */
+    private Rows writing;
+    private Future<?> written;
+    /** A block ready for reuse, or null */
+    private Rows spare;
+    private final ExecutorService writer =
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "congestion-store");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    // Only used by the writer thread
+    private FileChannel segment;
+    private long segmentStart;
+    /** Mapping of the segment being written, reaching past its end */
+    private MappedByteBuffer segmentBuffer;
+    /** Bytes of the segment being written that hold blocks */
+    private int segmentEnd;
+    /** Index of the first block written to the segment by this store */
+    private int segmentFirstBlock;
+    private byte[] index = new byte[0];
+    private byte[] data = new byte[0];
+
+    private CongestionStore(Path directory) throws IOException {
+        this.directory = directory;
+        Path seriesFile = directory.resolve(SERIES_FILE);
+        if (Files.exists(seriesFile)) {
+            for (String key : Files.readAllLines(seriesFile,
+                    StandardCharsets.UTF_8)) {
+                keys.intern(key);
+            }
+        }
+        keysOut = Files.newBufferedWriter(seriesFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Opens the store in the given directory, creating the directory if
+     * needed. Blocks left incomplete by a process that stopped while
+     * writing are removed.
+     *
+     * @param directory directory holding the store
+     * @return the store, ready for rows after the last second written
+     * @throws IOException if the store cannot be read or created
+     */
+    public static CongestionStore open(Path directory) throws IOException {
+        Files.createDirectories(directory);
+        CongestionStore store = new CongestionStore(directory);
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory,
+                "*" + SEGMENT_SUFFIX)) {
+            files.forEach(segments::add);
+        }
+        // Names are zero padded, so sort by time
+        segments.sort(null);
+        for (Path segment : segments) {
+            store.readBlocks(segment);
+        }
+        if (!store.blocks.isEmpty()) {
+            Block last = store.blocks.get(store.blocks.size() - 1);
+            store.lastSecond = last.start + last.seconds - 1;
+        }
+        return store;
+    }
+
+    /**
+     * Returns the index of the series with the given key, adding the series
+     * if it is new.
+     *
+     * @param key key of the series, such as "FROM:TO"; must not contain a
+     *            line break
+     * @return index of the series
+     * @throws IOException if a new key cannot be written
+     */
+    public synchronized int series(String key) throws IOException {
+        int series = keys.find(key);
+        if (series == -1) {
+            series = keys.intern(key);
+            keysOut.write(key);
+            keysOut.write('\n');
+        }
+        return series;
+    }
+
+    /**
+     * Returns the index of the series with the given key.
+     *
+     * @param key key of the series
+     * @return index of the series, or -1 if there is none with the key
+     */
+    public synchronized int findSeries(String key) {
+        return keys.find(key);
+    }
+
+    /**
+     * @return number of series, which is one more than the largest index
+     */
+    public synchronized int getSeriesCount() {
+        return keys.size();
+    }
+
+    /**
+     * @return last second appended, or {@link Long#MIN_VALUE} if the store
+     * is empty
+     */
+    public long getLastSecond() {
+        return lastSecond;
+    }
+
+    /**
+     * Appends a row of congestion for one second. Series after the end of
+     * the row, and values other than 0 to 100, are stored as
+     * {@link #MISSING}.
+     *
+     * @param second the simulated second, not negative and after every
+     *               second already appended
+     * @param values congestion of each series, by index; copied, so it may
+     *               be reused
+     * @param count number of values in the row
+     * @throws IllegalArgumentException if the second is negative or not
+     * after the last second appended
+     * @throws IOException if a block cannot be written
+     */
+    public void append(long second, byte[] values, int count)
+            throws IOException {
+        if (second < 0 || second <= lastSecond) {
+            throw new IllegalArgumentException("Second " + second
+                    + " is not after the last second appended, "
+                    + lastSecond);
+        }
+        if (filling != null && second >= minuteStart(filling.start)
+                + BLOCK_SECONDS) {
+            writeFilling();
+        }
+        if (filling == null) {
+            filling = spare != null ? spare : new Rows();
+            spare = null;
+            filling.reset(second);
+        }
+        filling.add((int) (second - filling.start), values, count);
+        lastSecond = second;
+    }
+
+    /**
+     * Writes the block being appended to, even if it is not full, and waits
+     * until every block appended has been written, so that queries see
+     * every second appended. Rows appended afterwards in the same minute go
+     * into a new block.
+     *
+     * @throws IOException if a block cannot be written
+     */
+    public void flush() throws IOException {
+        if (filling != null) {
+            writeFilling();
+        }
+        awaitWritten();
+    }
+
+    /**
+     * Writes any rows not yet written and closes the store's files. Blocks
+     * already written can still be queried.
+     *
+     * @throws IOException if a block or file cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            writer.shutdown();
+            synchronized (this) {
+                keysOut.close();
+            }
+            closeSegment();
+        }
+    }
+
+    /**
+     * Copies the congestion of a series for a range of seconds into the
+     * given array, with {@link #MISSING} for seconds with none recorded.
+     *
+     * @param series index of the series
+     * @param from first second of the range
+     * @param to second after the end of the range
+     * @param dest array to copy into, at least {@code to - from} long
+     * @return number of seconds with congestion recorded
+     * @throws IllegalArgumentException if the range is empty or too long
+     * for dest
+     */
+    public int range(int series, long from, long to, int[] dest) {
+        if (to <= from || to - from > dest.length) {
+            throw new IllegalArgumentException("Range " + from + " to " + to
+                    + " does not fit an array of " + dest.length);
+        }
+        Arrays.fill(dest, 0, (int) (to - from), MISSING);
+        int[] values = new int[BLOCK_SECONDS];
+        int found = 0;
+        for (Block block : blocks(from, to)) {
+            if (series >= block.seriesCount) {
+                continue;
+            }
+            block.decode(series, values);
+            long first = Math.max(from, block.start);
+            long end = Math.min(to, block.start + block.seconds);
+            for (long second = first; second < end; second++) {
+                int value = values[(int) (second - block.start)];
+                dest[(int) (second - from)] = value;
+                if (value != MISSING) {
+                    found++;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Summarises the congestion of a series over each minute or hour that
+     * starts in a range of seconds.
+     *
+     * @param series index of the series
+     * @param from first second of the range, rounded down to the start of
+     *             its minute or hour
+     * @param to second after the end of the range
+     * @param resolution period of each summary
+     * @return a summary of each period with congestion recorded, in order
+     */
+    public List<CongestionSummary> downsample(int series, long from, long to,
+            Resolution resolution) {
+        int period = resolution.getSeconds();
+        List<CongestionSummary> summaries = new ArrayList<>();
+        Totals totals = new Totals();
+        long current = Math.floorDiv(from, period) * period;
+        int[] values = new int[BLOCK_SECONDS];
+        // Blocks never span the start of a minute, so each is in one period
+        for (Block block : blocks(current, to)) {
+            long blockPeriod = Math.floorDiv(block.start, period) * period;
+            if (blockPeriod != current) {
+                if (totals.count > 0) {
+                    summaries.add(totals.toSummary(current, period));
+                }
+                totals.clear();
+                current = blockPeriod;
+            }
+            add(block, series, current, to, totals, values);
+        }
+        if (totals.count > 0) {
+            summaries.add(totals.toSummary(current, period));
+        }
+        return summaries;
+    }
+
+    /**
+     * Summarises the congestion of a series over a range of seconds.
+     *
+     * @param series index of the series
+     * @param from first second of the range
+     * @param to second after the end of the range
+     * @return the summary, or null if no congestion is recorded in the range
+     */
+    public CongestionSummary summarise(int series, long from, long to) {
+        Totals totals = new Totals();
+        int[] values = new int[BLOCK_SECONDS];
+        for (Block block : blocks(from, to)) {
+            add(block, series, from, to, totals, values);
+        }
+        return totals.count == 0 ? null
+                : totals.toSummary(from, (int) (to - from));
+    }
+
+    /**
+     * Adds the congestion of a series in one block, over the part of the
+     * block within a range of seconds, to the given totals. The block's
+     * index is used if the block is wholly within the range.
+     *
+     * @param values array to decode the block into if needed
+     */
+    private static void add(Block block, int series, long from, long to,
+            Totals totals, int[] values) {
+        if (series >= block.seriesCount) {
+            return;
+        }
+        if (from <= block.start && block.start + block.seconds <= to) {
+            block.addTotals(series, totals);
+            return;
+        }
+        block.decode(series, values);
+        long end = Math.min(to, block.start + block.seconds);
+        for (long second = Math.max(from, block.start); second < end;
+                second++) {
+            totals.add(values[(int) (second - block.start)]);
+        }
+    }
+
+    /**
+     * Returns the written blocks overlapping the given range, in order.
+     */
+    private synchronized List<Block> blocks(long from, long to) {
+        int first = firstBlockIndexEndingAfter(from);
+        int last = first;
+        while (last < blocks.size() && blocks.get(last).start < to) {
+            last++;
+        }
+        return new ArrayList<>(blocks.subList(first, last));
+    }
+
+    /**
+     * Returns the index of the first block that ends after the given
+     * second, by binary search, or the number of blocks if there is none.
+     */
+    private int firstBlockIndexEndingAfter(long second) {
+        int low = 0;
+        int high = blocks.size();
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            Block block = blocks.get(middle);
+            if (block.start + block.seconds <= second) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Hands the block being appended to to the writer thread, once the
+     * previous block has been written.
+     */
+    private void writeFilling() throws IOException {
+        awaitWritten();
+        synchronized (this) {
+            // Every series in the block must be listed before it is written
+            keysOut.flush();
+        }
+        Rows rows = filling;
+        filling = null;
+        writing = rows;
+        written = writer.submit(() -> {
+            write(rows);
+            return null;
+        });
+    }
+
+    /**
+     * Waits for the block being written, if any, and keeps its rows for
+     * reuse.
+     */
+    private void awaitWritten() throws IOException {
+        if (written == null) {
+            return;
+        }
+        try {
+            written.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted writing congestion", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error writing congestion", e.getCause());
+        } finally {
+            written = null;
+            spare = writing;
+            writing = null;
+        }
+    }
+
+    /**
+     * Encodes a block and appends it to its segment file. Run on the writer
+     * thread.
+     */
+    private void write(Rows rows) throws IOException {
+        int seriesCount = rows.seriesCount;
+        int seconds = rows.seconds;
+        if (index.length < seriesCount * INDEX_BYTES) {
+            index = new byte[seriesCount * INDEX_BYTES];
+        }
+        int length = 0;
+        for (int series = 0; series < seriesCount; series++) {
+            // Each value takes at most two bytes
+            if (data.length < length + 2 * seconds) {
+                data = Arrays.copyOf(data,
+                        Math.max(2 * data.length, length + 2 * seconds));
+            }
+            length = encode(rows, series, length, series * INDEX_BYTES);
+        }
+
+        long start = Math.floorDiv(rows.start, SEGMENT_SECONDS)
+                * SEGMENT_SECONDS;
+        if (segment == null || segmentStart != start) {
+            closeSegment();
+            segment = FileChannel.open(segmentPath(start),
+                    StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            segmentStart = start;
+            segmentEnd = (int) segment.size();
+            segmentBuffer = null;
+            synchronized (this) {
+                segmentFirstBlock = blocks.size();
+            }
+        }
+        int indexLength = seriesCount * INDEX_BYTES;
+        int blockLength = HEADER_BYTES + indexLength + length;
+        if (segmentBuffer == null
+                || segmentBuffer.capacity() - segmentEnd < blockLength) {
+            // Room for the rest of the hour's blocks if they are the same
+            // size, so that the segment is seldom mapped again
+            mapSegment(Math.max((long) blockLength
+                    * (SEGMENT_SECONDS / BLOCK_SECONDS + 1), segmentBuffer
+                    == null ? 0 : 2L * segmentBuffer.capacity()),
+                    blockLength);
+        }
+        segmentBuffer.position(segmentEnd);
+        segmentBuffer.putInt(MAGIC).putLong(rows.start).putInt(seconds)
+                .putInt(seriesCount).putInt(length)
+                .put(index, 0, indexLength).put(data, 0, length);
+        Block block = new Block(segmentBuffer, segmentEnd, blockLength);
+        segmentEnd += blockLength;
+        synchronized (this) {
+            blocks.add(block);
+        }
+    }
+
+    /**
+     * Maps the segment being written again, with room for at least the
+     * given capacity and for a block of the given length after its end,
+     * and reads the blocks already written by this store through the new
+     * mapping, so that the old one can be released.
+     */
+    private void mapSegment(long capacity, int blockLength)
+            throws IOException {
+        long needed = (long) segmentEnd + blockLength;
+        if (needed > Integer.MAX_VALUE) {
+            throw new IOException("Segment " + segmentPath(segmentStart)
+                    + " is too large to map");
+        }
+        capacity = Math.min(Math.max(capacity, needed), Integer.MAX_VALUE);
+        segmentBuffer = segment.map(FileChannel.MapMode.READ_WRITE, 0,
+                capacity);
+        synchronized (this) {
+            for (int i = segmentFirstBlock; i < blocks.size(); i++) {
+                Block old = blocks.get(i);
+                blocks.set(i, new Block(segmentBuffer, old.offset,
+                        old.buffer.capacity()));
+            }
+        }
+    }
+
+    /**
+     * Cuts the segment being written back to the blocks written, leaving
+     * out the rest of its mapping, and closes it. Its blocks can still be
+     * read through the mapping.
+     */
+    private void closeSegment() throws IOException {
+        if (segment == null) {
+            return;
+        }
+        try {
+            if (segment.size() > segmentEnd) {
+                segment.truncate(segmentEnd);
+            }
+        } finally {
+            segment.close();
+            segment = null;
+        }
+    }
+
+    /**
+     * Encodes the values of one series in a block into the data array at
+     * the given position, and its offset and totals into the index array.
+     *
+     * @return position after the encoded values
+     */
+    private int encode(Rows rows, int series, int position, int indexAt) {
+        int offset = position;
+        int min = 100;
+        int max = 0;
+        int total = 0;
+        int count = 0;
+        int previous = 0;
+        int run = 0;
+        for (int second = 0; second < rows.seconds; second++) {
+            int value = series < rows.lengths[second]
+                    ? rows.values[second][series] & 0xFF : MISSING_CODE;
+            if (value > 100) {
+                value = MISSING_CODE;
+            } else {
+                min = Math.min(min, value);
+                max = Math.max(max, value);
+                total += value;
+                count++;
+            }
+            if (value == previous) {
+                run++;
+                continue;
+            }
+            if (run > 0) {
+                position = writeVarInt(data, position, (run - 1) << 1 | 1);
+                run = 0;
+            }
+            int delta = value - previous;
+            // Zigzag, so that small changes either way take one byte
+            position = writeVarInt(data, position,
+                    ((delta << 1) ^ (delta >> 31)) << 1);
+            previous = value;
+        }
+        if (run > 0) {
+            position = writeVarInt(data, position, (run - 1) << 1 | 1);
+        }
+        ByteBuffer.wrap(index, indexAt, INDEX_BYTES).putInt(offset)
+                .putShort((short) total).put((byte) min).put((byte) max)
+                .put((byte) count);
+        return position;
+    }
+
+    private static int writeVarInt(byte[] bytes, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            bytes[position++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+     * Adds the blocks of an existing segment file, found by stepping from
+     * header to header through one mapping of the whole file. A block that
+     * is incomplete or unreadable, and everything after it, is removed from
+     * the file.
+     */
+    private void readBlocks(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Segment " + path
+                        + " is too large to map");
+            }
+            MappedByteBuffer mapping = channel.map(
+                    FileChannel.MapMode.READ_ONLY, 0, size);
+            int position = 0;
+            while (position + HEADER_BYTES <= size) {
+                if (mapping.getInt(position) != MAGIC) {
+                    break;
+                }
+                long length = HEADER_BYTES
+                        + (long) mapping.getInt(position + 4 + 8 + 4)
+                        * INDEX_BYTES
+                        + mapping.getInt(position + 4 + 8 + 4 + 4);
+                if (position + length > size) {
+                    break;
+                }
+                blocks.add(new Block(mapping, position, (int) length));
+                position += length;
+            }
+            if (position < size) {
+                channel.truncate(position);
+            }
+        }
+    }
+
+    private Path segmentPath(long start) {
+        // Padded so that names sort in order of time
+        return directory.resolve(String.format("%019d", start)
+                + SEGMENT_SUFFIX);
+    }
+
+    private static long minuteStart(long second) {
+        return Math.floorDiv(second, BLOCK_SECONDS) * BLOCK_SECONDS;
+    }
+
+    /**
+     * Rows appended to a block that is not yet written.
+     */
+    private static class Rows {
+        private long start;
+        private int seconds;
+        private int seriesCount;
+        private final byte[][] values = new byte[BLOCK_SECONDS][];
+        private final int[] lengths = new int[BLOCK_SECONDS];
+
+        private void reset(long start) {
+            this.start = start;
+            seconds = 0;
+            seriesCount = 0;
+            Arrays.fill(lengths, 0);
+        }
+
+        private void add(int second, byte[] row, int count) {
+            if (values[second] == null || values[second].length < count) {
+                values[second] = new byte[count];
+            }
+            System.arraycopy(row, 0, values[second], 0, count);
+            lengths[second] = count;
+            seconds = second + 1;
+            seriesCount = Math.max(seriesCount, count);
+        }
+    }
+
+    /**
+     * A written block, read through a slice of the mapping of its segment
+     * file.
+     */
+    private static class Block {
+        private final ByteBuffer buffer;
+        /** Position of the block in its segment file */
+        private final int offset;
+        private final long start;
+        private final int seconds;
+        private final int seriesCount;
+
+        private Block(ByteBuffer segment, int offset, int length) {
+            buffer = segment.slice(offset, length).asReadOnlyBuffer();
+            this.offset = offset;
+            start = buffer.getLong(4);
+            seconds = buffer.getInt(4 + 8);
+            seriesCount = buffer.getInt(4 + 8 + 4);
+        }
+
+        private int indexAt(int series) {
+            return HEADER_BYTES + series * INDEX_BYTES;
+        }
+
+        private void addTotals(int series, Totals totals) {
+            int at = indexAt(series);
+            int count = buffer.get(at + 8) & 0xFF;
+            if (count > 0) {
+                totals.add(buffer.getShort(at + 4) & 0xFFFF,
+                        buffer.get(at + 6) & 0xFF, buffer.get(at + 7) & 0xFF,
+                        count);
+            }
+        }
+
+        /**
+         * Decodes the values of a series into the first {@code seconds}
+         * elements of the given array.
+         */
+        private void decode(int series, int[] values) {
+            int position = HEADER_BYTES + seriesCount * INDEX_BYTES
+                    + buffer.getInt(indexAt(series));
+            int previous = 0;
+            int second = 0;
+            while (second < seconds) {
+                int token = 0;
+                int shift = 0;
+                byte b;
+                do {
+                    b = buffer.get(position++);
+                    token |= (b & 0x7F) << shift;
+                    shift += 7;
+                } while (b < 0);
+                if ((token & 1) == 1) {
+                    int run = (token >>> 1) + 1;
+                    for (int i = 0; i < run; i++) {
+                        values[second++] = toValue(previous);
+                    }
+                } else {
+                    int zigzag = token >>> 1;
+                    previous += (zigzag >>> 1) ^ -(zigzag & 1);
+                    values[second++] = toValue(previous);
+                }
+            }
+        }
+
+        private static int toValue(int code) {
+            return code == MISSING_CODE ? MISSING : code;
+        }
+    }
+
+    /**
+     * Running minimum, maximum, total and count of congestion values.
+     */
+    private static class Totals {
+        private int min;
+        private int max;
+        private long total;
+        private int count;
+
+        private void clear() {
+            min = Integer.MAX_VALUE;
+            max = Integer.MIN_VALUE;
+            total = 0;
+            count = 0;
+        }
+
+        private Totals() {
+            clear();
+        }
+
+        private void add(int value) {
+            if (value != MISSING) {
+                add(value, value, value, 1);
+            }
+        }
+
+        private void add(long total, int min, int max, int count) {
+            this.min = Math.min(this.min, min);
+            this.max = Math.max(this.max, max);
+            this.total += total;
+            this.count += count;
+        }
+
+        private CongestionSummary toSummary(long start, int seconds) {
+            return new CongestionSummary(start, seconds, min, max, total,
+                    count);
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package tms.congestion;
+
+import java.util.Locale;
+
+/**
+ * The minimum, maximum and mean congestion of a route over a period, as
+ * answered by {@link CongestionStore}.
+ */
+public class CongestionSummary {
+    private final long start;
+    private final int seconds;
+    private final int min;
+    private final int max;
+    private final long total;
+    private final int count;
+
+    /**
+     * Creates a summary.
+     *
+     * @param start first simulated second of the period
+     * @param seconds length of the period
+     * @param min least congestion recorded in the period
+     * @param max greatest congestion recorded in the period
+     * @param total sum of the congestion recorded in the period
+     * @param count number of seconds in the period with congestion recorded
+     */
+    CongestionSummary(long start, int seconds, int min, int max, long total,
+            int count) {
+        this.start = start;
+        this.seconds = seconds;
+        this.min = min;
+        this.max = max;
+        this.total = total;
+        this.count = count;
+    }
+
+    /**
+     * @return first simulated second of the period
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return length of the period in seconds
+     */
+    public int getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * @return least congestion recorded in the period
+     */
+    public int getMin() {
+        return min;
+    }
+
+    /**
+     * @return greatest congestion recorded in the period
+     */
+    public int getMax() {
+        return max;
+    }
+
+    /**
+     * @return mean congestion over the seconds recorded in the period
+     */
+    public double getMean() {
+        return (double) total / count;
+    }
+
+    /**
+     * @return number of seconds in the period with congestion recorded
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the string representation of this summary.
+     *
+     * @return "start+seconds: min/mean/max (count)", with the mean to one
+     * decimal place
+     */
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "%d+%d: %d/%.1f/%d (%d)", start,
+                seconds, min, getMean(), max, count);
+    }
+}
@@ -0,0 +1,611 @@
+package tms.display;
+
+import javafx.animation.AnimationTimer;
+import javafx.application.Platform;
+import javafx.geometry.VPos;
+import javafx.scene.canvas.Canvas;
+import javafx.scene.canvas.GraphicsContext;
+import javafx.scene.input.MouseButton;
+import javafx.scene.layout.Pane;
+import javafx.scene.paint.Color;
+import javafx.scene.shape.Rectangle;
+import javafx.scene.text.TextAlignment;
+import tms.intersection.Intersection;
+import tms.route.Route;
+import tms.routing.RoutingGraph;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Draws the traffic network as a map on a single {@link Canvas}, with each
+ * route coloured by its congestion, so that networks with many thousands of
+ * routes can be watched as the simulation runs.
+ * <p>
+ * Intersections are placed by a {@link ForceDirectedLayout}, computed once and
+ * cached in a layout file. The layout is loaded or computed on a background
+ * thread whenever the structure changes, and the previous layout is drawn until
+ * the new one is ready. The map is divided into a grid of cells, and each cell
+ * lists the routes and intersections that fall in it, so that:
+ * <ul>
+ * <li>only the cells inside the visible area are drawn;</li>
+ * <li>when the simulation ticks, only the cells containing a route whose
+ * congestion has changed are cleared and redrawn;</li>
+ * <li>when zoomed out far enough that routes would be shorter than a few
+ * pixels, each cell is filled with the average colour of its routes instead
+ * of drawing every route, and intersections and their IDs are only drawn
+ * once zoomed in.</li>
+ * </ul>
+ * Dragging the map pans it, scrolling zooms it around the mouse, and
+ * clicking selects the nearest intersection or route. Drawing happens at
+ * most once per frame, however many changes are made in between.
+ */
+public class CanvasNetworkView implements NetworkView {
+    private static final double DISPLAY_HEIGHT = 275;
+    /** Average number of routes in each cell of the grid */
+    private static final int ROUTES_PER_CELL = 16;
+    /** Below this many pixels per layout unit, cells are drawn as blocks */
+    private static final double DETAIL_SCALE = 3;
+    /** At or above this many pixels per layout unit, intersections show */
+    private static final double NODE_SCALE = 8;
+    /** At or above this many pixels per layout unit, IDs show */
+    private static final double LABEL_SCALE = 40;
+    /** Distance in pixels within which a click selects something */
+    private static final double CLICK_DISTANCE = 6;
+    /** Offset of a route from the centre line, so two-way routes show */
+    private static final double ROUTE_OFFSET = 0.06;
+
+    private final MainViewModel viewModel;
+    private final Path layoutFile;
+    private final Pane pane;
+    private final Canvas canvas;
+    private final GraphicsContext gc;
+    /** Colour for each congestion level from 0 to 100 */
+    private final Color[] palette = new Color[101];
+
+    /** Loads or computes layouts, off the FX thread */
+    private final ExecutorService layoutWorker =
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "layout");
+                thread.setDaemon(true);
+                return thread;
+            });
+    /** Graph of the latest structure, which may not be laid out yet */
+    private volatile RoutingGraph latestGraph;
+
+    /** Graph and layout being drawn, null until the first layout is ready */
+    private RoutingGraph graph;
+    private ForceDirectedLayout layout;
+    /** Congestion of each route when it was last drawn */
+    private int[] edgeCongestion;
+
+    // Grid of cells over the layout, with routes and intersections in each
+    private float minX, minY, cellSize;
+    private int columns, rows;
+    private int[] firstCellEdge, cellEdges;
+    private int[] firstCellNode, cellNodes;
+    /** Average congestion of the routes in each cell */
+    private float[] cellCongestion;
+    /** One bit per cell, set if the cell needs redrawing */
+    private long[] dirty;
+    /** Stamp per route, so a full redraw draws each route only once */
+    private int[] drawnStamp;
+    private int stamp;
+    /** Reused by cellBox, so that drawing does not allocate */
+    private final int[] scratchBox = new int[4];
+    private boolean fullRedraw = true;
+
+    // Screen position = layout position * scale + offset
+    private double scale = 1, offsetX, offsetY;
+    private double dragX, dragY;
+    private boolean dragged;
+
+    /**
+     * Creates the view, showing the network of the given model.
+     * <p>
+     * The layout is loaded from the file named by the "tms.layout" system
+     * property if it matches the network, otherwise it is computed and
+     * saved there.
+     *
+     * @param viewModel the model used to populate the view
+     */
+    public CanvasNetworkView(MainViewModel viewModel) {
+        this.viewModel = viewModel;
+        this.layoutFile = Paths.get(System.getProperty("tms.layout",
+                "network.layout"));
+
+        canvas = new Canvas(MainView.WINDOW_WIDTH, DISPLAY_HEIGHT);
+        gc = canvas.getGraphicsContext2D();
+        gc.setTextAlign(TextAlignment.CENTER);
+        gc.setTextBaseline(VPos.BOTTOM);
+        pane = new Pane(canvas);
+        pane.setClip(new Rectangle(MainView.WINDOW_WIDTH, DISPLAY_HEIGHT));
+
+        canvas.setOnMousePressed(e -> {
+            dragX = e.getX();
+            dragY = e.getY();
+            dragged = false;
+        });
+        canvas.setOnMouseDragged(e -> {
+            offsetX += e.getX() - dragX;
+            offsetY += e.getY() - dragY;
+            dragX = e.getX();
+            dragY = e.getY();
+            dragged = true;
+            fullRedraw = true;
+        });
+        canvas.setOnMouseClicked(e -> {
+            if (!dragged && e.getButton() == MouseButton.PRIMARY) {
+                select(e.getX(), e.getY());
+            }
+        });
+        canvas.setOnScroll(e -> {
+            double factor = Math.pow(1.002, e.getDeltaY());
+            offsetX = e.getX() - (e.getX() - offsetX) * factor;
+            offsetY = e.getY() - (e.getY() - offsetY) * factor;
+            scale *= factor;
+            fullRedraw = true;
+        });
+
+        rebuild();
+        new AnimationTimer() {
+            @Override
+            public void handle(long now) {
+                draw();
+            }
+        }.start();
+    }
+
+    /**
+     * Updates the view after the structure of the network has changed.
+     * <p>
+     * If intersections or routes have been added, the layout and grid are
+     * rebuilt in the background. The whole visible map is redrawn at the
+     * next frame.
+     */
+    @Override
+    public void update() {
+        List<Intersection> intersections = viewModel.getIntersections();
+        int routes = 0;
+        for (Intersection intersection : intersections) {
+            routes += intersection.getConnectionCount();
+        }
+        if (intersections.size() != latestGraph.size()
+                || routes != latestGraph.edgeCount()) {
+            rebuild();
+        }
+        refresh();
+        fullRedraw = true;
+    }
+
+    /**
+     * Checks the congestion of every route, and marks the cells containing
+     * the routes whose congestion has changed to be redrawn at the next
+     * frame.
+     */
+    @Override
+    public void refresh() {
+        if (graph == null) {
+            return;
+        }
+        for (int edge = 0; edge < edgeCongestion.length; edge++) {
+            int congestion = graph.getRoute(edge).getCongestion();
+            if (congestion != edgeCongestion[edge]) {
+                edgeCongestion[edge] = congestion;
+                markDirty(edge);
+            }
+        }
+        for (int i = 0; i < dirty.length; i++) {
+            for (long word = dirty[i]; word != 0; word &= word - 1) {
+                averageCongestion((i << 6) + Long.numberOfTrailingZeros(word));
+            }
+        }
+    }
+
+    /**
+     * Gets the pane displayed
+     *
+     * @return the map panel to display
+     */
+    @Override
+    public Pane getPane() {
+        return pane;
+    }
+
+    /**
+     * Rebuilds the routing graph for the current network, then loads or
+     * computes its layout in the background, see {@link #install}.
+     */
+    private void rebuild() {
+        RoutingGraph next = new RoutingGraph(viewModel.getNetwork());
+        latestGraph = next;
+        layoutWorker.execute(() -> {
+            if (next != latestGraph) {
+                return;
+            }
+            // A layout missing new intersections is recomputed from
+            // scratch, so that the new intersections are placed near their
+            // neighbours.
+            ForceDirectedLayout nextLayout =
+                    ForceDirectedLayout.loadOrCompute(next, layoutFile);
+            Platform.runLater(() -> install(next, nextLayout));
+        });
+    }
+
+    /**
+     * Starts drawing the given graph with its layout, and rebuilds the grid
+     * for them, unless the structure has changed again since. The first
+     * layout is fitted to the view.
+     */
+    private void install(RoutingGraph next, ForceDirectedLayout nextLayout) {
+        if (next != latestGraph) {
+            return;
+        }
+        boolean first = graph == null;
+        graph = next;
+        layout = nextLayout;
+        edgeCongestion = new int[graph.edgeCount()];
+        drawnStamp = new int[graph.edgeCount()];
+        buildGrid();
+        for (int edge = 0; edge < edgeCongestion.length; edge++) {
+            edgeCongestion[edge] = graph.getRoute(edge).getCongestion();
+        }
+        for (int cell = 0; cell < columns * rows; cell++) {
+            averageCongestion(cell);
+        }
+        if (first) {
+            fitToView();
+        }
+        fullRedraw = true;
+    }
+
+    /**
+     * Divides the layout into cells and lists the intersections in each
+     * cell, and the routes whose bounding box overlaps each cell.
+     */
+    private void buildGrid() {
+        int n = graph.size();
+        minX = Float.MAX_VALUE;
+        minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int i = 0; i < n; i++) {
+            minX = Math.min(minX, layout.x(i));
+            minY = Math.min(minY, layout.y(i));
+            maxX = Math.max(maxX, layout.x(i));
+            maxY = Math.max(maxY, layout.y(i));
+        }
+        if (n == 0) {
+            minX = minY = maxX = maxY = 0;
+        }
+        float area = Math.max((maxX - minX) * (maxY - minY), 1);
+        cellSize = (float) Math.max(1, Math.sqrt(area * ROUTES_PER_CELL
+                / Math.max(graph.edgeCount(), 1)));
+        columns = (int) ((maxX - minX) / cellSize) + 1;
+        rows = (int) ((maxY - minY) / cellSize) + 1;
+        int cells = columns * rows;
+
+        firstCellNode = new int[cells + 1];
+        cellNodes = new int[n];
+        for (int i = 0; i < n; i++) {
+            firstCellNode[cellOf(layout.x(i), layout.y(i)) + 1]++;
+        }
+        for (int c = 0; c < cells; c++) {
+            firstCellNode[c + 1] += firstCellNode[c];
+        }
+        int[] next = Arrays.copyOf(firstCellNode, cells);
+        for (int i = 0; i < n; i++) {
+            cellNodes[next[cellOf(layout.x(i), layout.y(i))]++] = i;
+        }
+
+        // Count, then fill, the cells overlapped by each route
+        firstCellEdge = new int[cells + 1];
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int[] box = cellBox(edge);
+            for (int r = box[1]; r <= box[3]; r++) {
+                for (int c = box[0]; c <= box[2]; c++) {
+                    firstCellEdge[r * columns + c + 1]++;
+                }
+            }
+        }
+        for (int c = 0; c < cells; c++) {
+            firstCellEdge[c + 1] += firstCellEdge[c];
+        }
+        cellEdges = new int[firstCellEdge[cells]];
+        next = Arrays.copyOf(firstCellEdge, cells);
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int[] box = cellBox(edge);
+            for (int r = box[1]; r <= box[3]; r++) {
+                for (int c = box[0]; c <= box[2]; c++) {
+                    cellEdges[next[r * columns + c]++] = edge;
+                }
+            }
+        }
+        cellCongestion = new float[cells];
+        dirty = new long[(cells + 63) >>> 6];
+    }
+
+    /**
+     * Scales and centres the map so that the whole network is visible.
+     */
+    private void fitToView() {
+        double width = Math.max(columns * cellSize, 1);
+        double height = Math.max(rows * cellSize, 1);
+        scale = Math.min(canvas.getWidth() / width,
+                canvas.getHeight() / height);
+        offsetX = (canvas.getWidth() - width * scale) / 2 - minX * scale;
+        offsetY = (canvas.getHeight() - height * scale) / 2 - minY * scale;
+        fullRedraw = true;
+    }
+
+    /**
+     * Draws whatever has changed since the last frame: the whole visible
+     * map after panning, zooming or a change of structure, otherwise only
+     * the dirty cells.
+     */
+    private void draw() {
+        if (graph == null) {
+            return;
+        }
+        int firstColumn = Math.max((int) Math.floor(
+                (-offsetX / scale - minX) / cellSize), 0);
+        int firstRow = Math.max((int) Math.floor(
+                (-offsetY / scale - minY) / cellSize), 0);
+        int lastColumn = Math.min((int) Math.floor(
+                ((canvas.getWidth() - offsetX) / scale - minX) / cellSize),
+                columns - 1);
+        int lastRow = Math.min((int) Math.floor(
+                ((canvas.getHeight() - offsetY) / scale - minY) / cellSize),
+                rows - 1);
+
+        if (fullRedraw) {
+            fullRedraw = false;
+            Arrays.fill(dirty, 0);
+            gc.clearRect(0, 0, canvas.getWidth(), canvas.getHeight());
+            stamp++;
+            for (int r = firstRow; r <= lastRow; r++) {
+                for (int c = firstColumn; c <= lastColumn; c++) {
+                    drawCell(r * columns + c);
+                }
+            }
+            return;
+        }
+
+        for (int i = 0; i < dirty.length; i++) {
+            for (long word = dirty[i]; word != 0; word &= word - 1) {
+                int cell = (i << 6) + Long.numberOfTrailingZeros(word);
+                int r = cell / columns, c = cell % columns;
+                if (r < firstRow || r > lastRow || c < firstColumn
+                        || c > lastColumn) {
+                    continue;
+                }
+                // Clear just this cell, then redraw everything over it
+                double x = (minX + c * cellSize) * scale + offsetX;
+                double y = (minY + r * cellSize) * scale + offsetY;
+                double size = cellSize * scale;
+                gc.save();
+                gc.beginPath();
+                gc.rect(x, y, size, size);
+                gc.clip();
+                gc.clearRect(x, y, size, size);
+                stamp++;
+                drawCell(cell);
+                gc.restore();
+            }
+            dirty[i] = 0;
+        }
+    }
+
+    /**
+     * Draws the contents of a cell at the current level of detail. Routes
+     * already drawn with the current stamp are skipped.
+     */
+    private void drawCell(int cell) {
+        if (scale < DETAIL_SCALE) {
+            if (firstCellEdge[cell] == firstCellEdge[cell + 1]) {
+                return;
+            }
+            int r = cell / columns, c = cell % columns;
+            gc.setFill(colorOf(Math.round(cellCongestion[cell])));
+            gc.fillRect((minX + c * cellSize) * scale + offsetX,
+                    (minY + r * cellSize) * scale + offsetY,
+                    cellSize * scale, cellSize * scale);
+            return;
+        }
+
+        Route selectedRoute = viewModel.getSelectedRoute();
+        for (int i = firstCellEdge[cell]; i < firstCellEdge[cell + 1]; i++) {
+            int edge = cellEdges[i];
+            if (drawnStamp[edge] == stamp) {
+                continue;
+            }
+            drawnStamp[edge] = stamp;
+            drawRoute(edge, graph.getRoute(edge) == selectedRoute);
+        }
+        if (scale < NODE_SCALE) {
+            return;
+        }
+
+        // Intersections near the edge of a neighbouring cell can overlap
+        // this one, so draw those too; the clip keeps them inside the cell.
+        Intersection selected = viewModel.getSelectedRoute() == null
+                ? viewModel.getSelectedIntersection() : null;
+        int row = cell / columns, column = cell % columns;
+        for (int r = Math.max(row - 1, 0);
+             r <= Math.min(row + 1, rows - 1); r++) {
+            for (int c = Math.max(column - 1, 0);
+                 c <= Math.min(column + 1, columns - 1); c++) {
+                int near = r * columns + c;
+                for (int i = firstCellNode[near];
+                     i < firstCellNode[near + 1]; i++) {
+                    int node = cellNodes[i];
+                    drawIntersection(node,
+                            graph.getIntersection(node) == selected);
+                }
+            }
+        }
+    }
+
+    private void drawRoute(int edge, boolean selected) {
+        int from = graph.source(edge), to = graph.target(edge);
+        double x1 = layout.x(from), y1 = layout.y(from);
+        double x2 = layout.x(to), y2 = layout.y(to);
+        // Shift to the right of the direction of travel
+        double length = Math.hypot(x2 - x1, y2 - y1);
+        if (length > 0) {
+            double shiftX = -(y2 - y1) / length * ROUTE_OFFSET;
+            double shiftY = (x2 - x1) / length * ROUTE_OFFSET;
+            x1 += shiftX;
+            x2 += shiftX;
+            y1 += shiftY;
+            y2 += shiftY;
+        }
+        gc.setStroke(selected ? Color.BLACK : colorOf(edgeCongestion[edge]));
+        gc.setLineWidth(selected ? 4 : 2);
+        gc.strokeLine(x1 * scale + offsetX, y1 * scale + offsetY,
+                x2 * scale + offsetX, y2 * scale + offsetY);
+    }
+
+    private void drawIntersection(int node, boolean selected) {
+        double x = layout.x(node) * scale + offsetX;
+        double y = layout.y(node) * scale + offsetY;
+        double radius = selected ? 5 : 3;
+        gc.setFill(selected ? Color.BLACK : Color.DIMGRAY);
+        gc.fillOval(x - radius, y - radius, radius * 2, radius * 2);
+        if (scale >= LABEL_SCALE) {
+            gc.fillText(graph.getIntersection(node).getId(), x, y - radius);
+        }
+    }
+
+    /**
+     * Selects the intersection nearest to the given point on the canvas,
+     * or failing that the nearest route, if either is close enough.
+     */
+    private void select(double screenX, double screenY) {
+        if (graph == null) {
+            return;
+        }
+        double x = (screenX - offsetX) / scale;
+        double y = (screenY - offsetY) / scale;
+        double limit = CLICK_DISTANCE / scale;
+        int column = (int) Math.floor((x - minX) / cellSize);
+        int row = (int) Math.floor((y - minY) / cellSize);
+
+        int bestNode = -1, bestEdge = -1;
+        double nodeDistance = limit, edgeDistance = limit;
+        for (int r = Math.max(row - 1, 0);
+             r <= Math.min(row + 1, rows - 1); r++) {
+            for (int c = Math.max(column - 1, 0);
+                 c <= Math.min(column + 1, columns - 1); c++) {
+                int cell = r * columns + c;
+                for (int i = firstCellNode[cell];
+                     i < firstCellNode[cell + 1]; i++) {
+                    int node = cellNodes[i];
+                    double d = Math.hypot(layout.x(node) - x,
+                            layout.y(node) - y);
+                    if (d <= nodeDistance) {
+                        nodeDistance = d;
+                        bestNode = node;
+                    }
+                }
+                for (int i = firstCellEdge[cell];
+                     i < firstCellEdge[cell + 1]; i++) {
+                    int edge = cellEdges[i];
+                    double d = distanceToRoute(edge, x, y);
+                    if (d <= edgeDistance) {
+                        edgeDistance = d;
+                        bestEdge = edge;
+                    }
+                }
+            }
+        }
+
+        if (bestNode >= 0) {
+            viewModel.setSelected(graph.getIntersection(bestNode));
+        } else if (bestEdge >= 0) {
+            viewModel.setSelected(graph.getRoute(bestEdge),
+                    graph.getIntersection(graph.target(bestEdge)));
+        } else {
+            return;
+        }
+        fullRedraw = true;
+    }
+
+    /**
+     * Distance from a point to the line drawn for a route, ignoring the
+     * small offset between two-way routes except to pick the nearer side.
+     */
+    private double distanceToRoute(int edge, double x, double y) {
+        int from = graph.source(edge), to = graph.target(edge);
+        double x1 = layout.x(from), y1 = layout.y(from);
+        double dx = layout.x(to) - x1, dy = layout.y(to) - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double t = lengthSquared == 0 ? 0 : Math.max(0, Math.min(1,
+                ((x - x1) * dx + (y - y1) * dy) / lengthSquared));
+        double distance = Math.hypot(x1 + t * dx - x, y1 + t * dy - y);
+        // Prefer the route whose side of the line was clicked
+        double side = dx * (y - y1) - dy * (x - x1);
+        return side >= 0 ? distance : distance + ROUTE_OFFSET;
+    }
+
+    private void markDirty(int edge) {
+        int[] box = cellBox(edge);
+        for (int r = box[1]; r <= box[3]; r++) {
+            for (int c = box[0]; c <= box[2]; c++) {
+                int cell = r * columns + c;
+                dirty[cell >>> 6] |= 1L << cell;
+            }
+        }
+    }
+
+    private void averageCongestion(int cell) {
+        int first = firstCellEdge[cell], last = firstCellEdge[cell + 1];
+        long total = 0;
+        for (int i = first; i < last; i++) {
+            total += edgeCongestion[cellEdges[i]];
+        }
+        cellCongestion[cell] = last > first ? (float) total / (last - first)
+                : 0;
+    }
+
+    /**
+     * Returns the columns and rows of the cells overlapped by a route's
+     * bounding box, as {first column, first row, last column, last row}.
+     * The same array is returned each time, so it is only valid until the
+     * next call.
+     */
+    private int[] cellBox(int edge) {
+        int from = graph.source(edge), to = graph.target(edge);
+        int c1 = columnOf(layout.x(from)), c2 = columnOf(layout.x(to));
+        int r1 = rowOf(layout.y(from)), r2 = rowOf(layout.y(to));
+        scratchBox[0] = Math.min(c1, c2);
+        scratchBox[1] = Math.min(r1, r2);
+        scratchBox[2] = Math.max(c1, c2);
+        scratchBox[3] = Math.max(r1, r2);
+        return scratchBox;
+    }
+
+    private int cellOf(float x, float y) {
+        return rowOf(y) * columns + columnOf(x);
+    }
+
+    private int columnOf(float x) {
+        return Math.max(0, Math.min((int) ((x - minX) / cellSize),
+                columns - 1));
+    }
+
+    private int rowOf(float y) {
+        return Math.max(0, Math.min((int) ((y - minY) / cellSize), rows - 1));
+    }
+
+    private Color colorOf(int congestion) {
+        int level = Math.max(0, Math.min(congestion, 100));
+        if (palette[level] == null) {
+            palette[level] = Color.web(MainViewModel.getColor(level));
+        }
+        return palette[level];
+    }
+}
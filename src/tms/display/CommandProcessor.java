@@ -0,0 +1,351 @@
+package tms.display;
+
+import tms.intersection.Intersection;
+import tms.network.Network;
+import tms.replay.SimulationRecorder;
+import tms.sensors.DemoPressurePad;
+import tms.sensors.DemoSpeedCamera;
+import tms.sensors.DemoVehicleCount;
+import tms.sensors.Sensor;
+import tms.util.DuplicateSensorException;
+import tms.util.IntersectionNotFoundException;
+import tms.util.InvalidOrderException;
+import tms.util.RouteNotFoundException;
+import tms.util.SimulationClock;
+
+import java.io.BufferedWriter;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+/**
+ * Applies the commands offered by the GUI's buttons, see
+ * {@link MainViewModel#takeInstruction}, to a network by naming the routes
+ * and intersections involved. The GUI, scripted edits and
+ * {@link tms.server.HeadlessServer} all apply their commands here, so a
+ * recorded command replays exactly as it was first applied.
+ * <p>
+ * Where the GUI acts on the selected route or intersection, commands name
+ * them with parameters instead:
+ * <table>
+ *   <tr><td>ADD_INTERSECTION</td><td>id</td></tr>
+ *   <tr><td>ADD_SENSOR</td><td>from, to, type, data</td></tr>
+ *   <tr><td>ADD_SIGN</td><td>from, to, speed</td></tr>
+ *   <tr><td>SET_SPEED</td><td>from, to, speed</td></tr>
+ *   <tr><td>ADD_CONN</td><td>from, to, speed</td></tr>
+ *   <tr><td>ADD_TWO_WAY_CONN</td><td>from, to, speed</td></tr>
+ *   <tr><td>ADD_LIGHT</td><td>id, duration, order (optional)</td></tr>
+ *   <tr><td>CHANGE_LIGHT_DURATION</td><td>id, duration</td></tr>
+ *   <tr><td>REDUCE_SPEED</td><td>id</td></tr>
+ *   <tr><td>SAVE</td><td>file</td></tr>
+ *   <tr><td>PAUSE</td><td>(none)</td></tr>
+ * </table>
+ * Errors are reported with the messages the GUI shows.
+ */
+public class CommandProcessor {
+    /** Parameters that must be given for each command */
+    private static final Map<ButtonOptions, List<String>> REQUIRED =
+            new EnumMap<>(ButtonOptions.class);
+
+    static {
+        REQUIRED.put(ButtonOptions.ADD_INTERSECTION, List.of("id"));
+        REQUIRED.put(ButtonOptions.ADD_SENSOR,
+                List.of("from", "to", "type", "data"));
+        REQUIRED.put(ButtonOptions.ADD_SIGN, List.of("from", "to", "speed"));
+        REQUIRED.put(ButtonOptions.SET_SPEED, List.of("from", "to", "speed"));
+        REQUIRED.put(ButtonOptions.ADD_CONN, List.of("from", "to", "speed"));
+        REQUIRED.put(ButtonOptions.ADD_TWO_WAY_CONN,
+                List.of("from", "to", "speed"));
+        REQUIRED.put(ButtonOptions.ADD_LIGHT, List.of("id", "duration"));
+        REQUIRED.put(ButtonOptions.CHANGE_LIGHT_DURATION,
+                List.of("id", "duration"));
+        REQUIRED.put(ButtonOptions.REDUCE_SPEED, List.of("id"));
+        REQUIRED.put(ButtonOptions.SAVE, List.of("file"));
+        REQUIRED.put(ButtonOptions.PAUSE, List.of());
+    }
+
+    private final Network network;
+    private final SimulationClock clock;
+    /** Records each command before it is applied, or null */
+    private volatile SimulationRecorder recorder;
+
+    /**
+     * Creates a processor for commands on the given network.
+     *
+     * @param network the network to change
+     * @param clock the clock to pause and unpause
+     */
+    public CommandProcessor(Network network, SimulationClock clock) {
+        this.network = network;
+        this.clock = clock;
+    }
+
+    /**
+     * Records each command applied from now on with the given recorder,
+     * before it is applied, so that it can be replayed.
+     *
+     * @param recorder recorder to tell of each command, or null to stop
+     */
+    public void recordTo(SimulationRecorder recorder) {
+        this.recorder = recorder;
+    }
+
+    /**
+     * Checks that a command has all of its parameters, without looking at
+     * the network.
+     *
+     * @param option the command to check
+     * @param params the command's parameters, see the class description
+     * @throws IllegalArgumentException if a parameter is missing
+     */
+    public static void validate(ButtonOptions option,
+                                Map<String, String> params) {
+        for (String name : REQUIRED.get(option)) {
+            require(params, name);
+        }
+    }
+
+    /**
+     * Applies a command. Must not run at the same time as a tick, see
+     * {@link SimulationClock#runExclusive(Runnable)}.
+     *
+     * @param option the command to apply
+     * @param params the command's parameters, see the class description
+     * @throws IllegalArgumentException if a parameter is missing or the
+     * command fails, with the message the GUI shows
+     */
+    public void apply(ButtonOptions option, Map<String, String> params) {
+        SimulationRecorder current = recorder;
+        if (current != null) {
+            current.command(option, params);
+        }
+        switch (option) {
+            case ADD_INTERSECTION:
+                String id = require(params, "id");
+                try {
+                    network.createIntersection(id);
+                } catch (IllegalArgumentException e) {
+                    throw error("Error adding new intersection: ", e);
+                }
+                break;
+            case ADD_SENSOR:
+                addSensor(require(params, "from"), require(params, "to"),
+                        require(params, "type"), require(params, "data"));
+                break;
+            case ADD_SIGN:
+                addSign(require(params, "from"), require(params, "to"),
+                        require(params, "speed"));
+                break;
+            case SET_SPEED:
+                setSpeed(require(params, "from"), require(params, "to"),
+                        require(params, "speed"));
+                break;
+            case ADD_CONN:
+                connect(require(params, "from"), require(params, "to"),
+                        require(params, "speed"));
+                break;
+            case ADD_TWO_WAY_CONN:
+                connectBothWays(require(params, "from"),
+                        require(params, "to"), require(params, "speed"));
+                break;
+            case ADD_LIGHT:
+                addLight(require(params, "id"), require(params, "duration"),
+                        params.getOrDefault("order", ""));
+                break;
+            case CHANGE_LIGHT_DURATION:
+                changeDuration(require(params, "id"),
+                        require(params, "duration"));
+                break;
+            case REDUCE_SPEED:
+                reduceSpeed(require(params, "id"));
+                break;
+            case SAVE:
+                save(require(params, "file"));
+                break;
+            case PAUSE:
+                clock.setPaused(!clock.isPaused());
+                break;
+        }
+    }
+
+    private void addSensor(String from, String to, String sensorType,
+                           String dataString) {
+        Sensor sensor;
+        try {
+            int thresh = Integer.parseInt(dataString.split(":")[0]);
+            if (thresh <= 0) {
+                throw new IllegalArgumentException(
+                        "Error adding sensor: Threshold must be > 0");
+            }
+            String[] splitData = dataString.split(":")[1].split(",");
+            int[] data = new int[splitData.length];
+            for (int i = 0; i < splitData.length; i++) {
+                data[i] = Integer.parseInt(splitData[i].strip());
+                if (data[i] < 0) {
+                    throw new IllegalArgumentException(
+                            "Error adding sensor: Data values must be >= 0");
+                }
+            }
+
+            switch (sensorType) {
+                case "PP":
+                    sensor = new DemoPressurePad(data, thresh);
+                    break;
+                case "SC":
+                    sensor = new DemoSpeedCamera(data, thresh);
+                    break;
+                case "VC":
+                    sensor = new DemoVehicleCount(data, thresh);
+                    break;
+                default:
+                    throw new IllegalArgumentException(String.format(
+                            "Error adding sensor: Invalid sensor type: \"%s\"",
+                            sensorType));
+            }
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            throw new IllegalArgumentException(
+                    "Error adding sensor: Invalid data input");
+        }
+
+        try {
+            network.addSensor(from, to, sensor);
+        } catch (DuplicateSensorException | IntersectionNotFoundException
+                | RouteNotFoundException e) {
+            throw error("Error adding sensor: ", e);
+        }
+    }
+
+    private void addSign(String from, String to, String speed) {
+        try {
+            network.addSpeedSign(from, to, Integer.parseInt(speed));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Error adding speed sign: Speed must be a number");
+        } catch (IntersectionNotFoundException | RouteNotFoundException
+                | IllegalArgumentException e) {
+            throw error("Error adding speed sign: ", e);
+        }
+    }
+
+    private void setSpeed(String from, String to, String speed) {
+        try {
+            network.setSpeedLimit(from, to, Integer.parseInt(speed));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Error changing speed sign limit: Speed must be a number");
+        } catch (IntersectionNotFoundException | RouteNotFoundException
+                | IllegalStateException | IllegalArgumentException e) {
+            throw error("Error changing speed sign limit: ", e);
+        }
+    }
+
+    private void connect(String from, String to, String speed) {
+        try {
+            network.connectIntersections(from.strip(), to.strip(),
+                    Integer.parseInt(speed.strip()));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Error adding connection: Speed must be a number");
+        } catch (IntersectionNotFoundException | IllegalStateException
+                | IllegalArgumentException e) {
+            throw error("Error adding connection: ", e);
+        }
+    }
+
+    /**
+     * Connects the intersections in both directions. Each direction is made
+     * even if the other fails, and the first failure is reported.
+     */
+    private void connectBothWays(String from, String to, String speed) {
+        try {
+            connect(from, to, speed);
+        } catch (IllegalArgumentException e) {
+            try {
+                connect(to, from, speed);
+            } catch (IllegalArgumentException ignored) {
+                // The first failure is the one reported
+            }
+            throw e;
+        }
+        connect(to, from, speed);
+    }
+
+    private void addLight(String id, String duration, String order) {
+        List<String> intersectionOrder;
+        if (order.isBlank()) {
+            intersectionOrder = find(id).getConnectedIntersections().stream()
+                    .map(Intersection::getId).collect(Collectors.toList());
+        } else {
+            intersectionOrder = List.of(order.split(","));
+        }
+
+        try {
+            network.addLights(id, Integer.parseInt(duration.strip()),
+                    intersectionOrder);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Error adding traffic lights: Duration must be a number");
+        } catch (InvalidOrderException | IntersectionNotFoundException
+                | IllegalArgumentException e) {
+            throw error("Error adding traffic lights: ", e);
+        }
+    }
+
+    private void changeDuration(String id, String duration) {
+        try {
+            network.changeLightDuration(id, Integer.parseInt(duration));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(
+                    "Error changing traffic light duration: "
+                    + "Duration must be a number");
+        } catch (IntersectionNotFoundException | IllegalStateException
+                | IllegalArgumentException e) {
+            throw error("Error changing traffic light duration: ", e);
+        }
+    }
+
+    private void reduceSpeed(String id) {
+        try {
+            network.reduceIncomingSpeedSigns(id);
+        } catch (IntersectionNotFoundException e) {
+            throw new IllegalArgumentException(
+                    "No intersection with ID: " + id);
+        }
+    }
+
+    private void save(String filename) {
+        try (BufferedWriter out = new BufferedWriter(
+                new FileWriter(filename))) {
+            out.write(network.toString());
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Error accessing file.");
+        }
+    }
+
+    private Intersection find(String id) {
+        try {
+            return network.findIntersection(id);
+        } catch (IntersectionNotFoundException e) {
+            throw new IllegalArgumentException(
+                    "No intersection with ID: " + id);
+        }
+    }
+
+    private static String require(Map<String, String> params, String name) {
+        String value = params.get(name);
+        if (value == null) {
+            throw new IllegalArgumentException(
+                    "Missing parameter: " + name);
+        }
+        return value;
+    }
+
+    private static IllegalArgumentException error(String prefix,
+                                                  Exception cause) {
+        return new IllegalArgumentException(prefix + cause.getMessage(),
+                cause);
+    }
+}
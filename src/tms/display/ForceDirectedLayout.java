@@ -0,0 +1,475 @@
+package tms.display;
+
+import tms.routing.RoutingGraph;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Positions for the intersections of a network, computed once with a
+ * force-directed layout so that connected intersections are drawn close
+ * together.
+ * <p>
+ * Intersections are first placed by Pivot MDS (Brandes and Pich): the
+ * number of routes between each intersection and a few pivots spread across
+ * the network is projected onto the plane, which gives the overall shape of
+ * the network in time proportional to its size. That placement is then
+ * refined as described by Fruchterman and Reingold: routes pull their ends
+ * together and every pair of nearby intersections pushes apart, while the
+ * distance each intersection may move shrinks on every iteration. Repulsion
+ * is only applied between intersections in neighbouring cells of a grid,
+ * hashed into a fixed number of buckets, which keeps each iteration linear
+ * in the size of the network.
+ * <p>
+ * Positions are in layout units, with connected intersections roughly one
+ * unit apart. Computing a layout for a large network takes a few seconds,
+ * so layouts can be saved to a file and loaded again, see
+ * {@link ForceDirectedLayout#loadOrCompute(RoutingGraph, Path)}.
+ */
+public class ForceDirectedLayout {
+    /** Number of iterations used by compute() */
+    public static final int ITERATIONS = 50;
+    /** Number of pivots used for the initial positions */
+    private static final int PIVOTS = 32;
+    /** Intersections further apart than this are not pushed apart */
+    private static final float REPULSION_RANGE = 2;
+
+    private final float[] xs, ys;
+
+    private ForceDirectedLayout(float[] xs, float[] ys) {
+        this.xs = xs;
+        this.ys = ys;
+    }
+
+    /**
+     * Computes a layout for the intersections of the given graph.
+     *
+     * @param graph the graph to lay out
+     * @param seed seed for the choice of the first pivot and the small
+     * random offsets separating intersections that start out together
+     * @return the new layout
+     */
+    public static ForceDirectedLayout compute(RoutingGraph graph, long seed) {
+        int n = graph.size();
+        float[] xs = new float[n];
+        float[] ys = new float[n];
+        Random random = new Random(seed);
+        pivotMds(graph, random, xs, ys);
+        for (int i = 0; i < n; i++) {
+            xs[i] += (random.nextFloat() - 0.5f) * 0.1f;
+            ys[i] += (random.nextFloat() - 0.5f) * 0.1f;
+        }
+
+        float[] dx = new float[n];
+        float[] dy = new float[n];
+        int buckets = 2 * n + 1;
+        int[] bucketOf = new int[n];
+        int[] order = new int[n];
+        float temperature = 1;
+        float cooling = temperature / ITERATIONS;
+
+        for (int iteration = 0; iteration < ITERATIONS; iteration++) {
+            Arrays.fill(dx, 0);
+            Arrays.fill(dy, 0);
+
+            // Bucket intersections by the grid cell they are in, hashing
+            // cells into a fixed number of buckets however far apart the
+            // intersections spread
+            int[] firstInBucket = new int[buckets + 1];
+            for (int i = 0; i < n; i++) {
+                bucketOf[i] = bucket(cell(xs[i]), cell(ys[i]), buckets);
+                firstInBucket[bucketOf[i] + 1]++;
+            }
+            for (int b = 0; b < buckets; b++) {
+                firstInBucket[b + 1] += firstInBucket[b];
+            }
+            int[] next = Arrays.copyOf(firstInBucket, buckets);
+            for (int i = 0; i < n; i++) {
+                order[next[bucketOf[i]]++] = i;
+            }
+
+            // Repulsion between intersections in neighbouring cells
+            int[] near = new int[9];
+            for (int i = 0; i < n; i++) {
+                int column = cell(xs[i]), row = cell(ys[i]);
+                int count = 0;
+                for (int r = row - 1; r <= row + 1; r++) {
+                    for (int c = column - 1; c <= column + 1; c++) {
+                        int b = bucket(c, r, buckets);
+                        // Neighbouring cells may share a bucket
+                        boolean seen = false;
+                        for (int k = 0; k < count && !seen; k++) {
+                            seen = near[k] == b;
+                        }
+                        if (!seen) {
+                            near[count++] = b;
+                        }
+                    }
+                }
+                for (int k = 0; k < count; k++) {
+                    for (int m = firstInBucket[near[k]];
+                         m < firstInBucket[near[k] + 1]; m++) {
+                        int j = order[m];
+                        if (j == i) {
+                            continue;
+                        }
+                        float ox = xs[i] - xs[j];
+                        float oy = ys[i] - ys[j];
+                        float squared = ox * ox + oy * oy;
+                        if (squared > REPULSION_RANGE * REPULSION_RANGE) {
+                            continue;
+                        }
+                        if (squared < 1e-6f) {
+                            // Coincident; push apart in any direction
+                            ox = (i - j) * 1e-3f;
+                            oy = 1e-3f;
+                            squared = ox * ox + oy * oy;
+                        }
+                        // k^2 / d along the unit vector, with k = 1
+                        dx[i] += ox / squared;
+                        dy[i] += oy / squared;
+                    }
+                }
+            }
+
+            // Attraction along routes: d^2 / k along the unit vector
+            for (int edge = 0; edge < graph.edgeCount(); edge++) {
+                int a = graph.source(edge);
+                int b = graph.target(edge);
+                if (a == b) {
+                    continue;
+                }
+                float ox = xs[a] - xs[b];
+                float oy = ys[a] - ys[b];
+                float distance = (float) Math.sqrt(ox * ox + oy * oy);
+                dx[a] -= ox * distance;
+                dy[a] -= oy * distance;
+                dx[b] += ox * distance;
+                dy[b] += oy * distance;
+            }
+
+            // Move each intersection no further than the temperature
+            for (int i = 0; i < n; i++) {
+                float length = (float) Math.sqrt(dx[i] * dx[i]
+                        + dy[i] * dy[i]);
+                if (length > 0) {
+                    float step = Math.min(length, temperature) / length;
+                    xs[i] += dx[i] * step;
+                    ys[i] += dy[i] * step;
+                }
+            }
+            temperature = Math.max(temperature - cooling, 0.01f);
+        }
+        return new ForceDirectedLayout(xs, ys);
+    }
+
+    /**
+     * Places the intersections by Pivot MDS, scaled so that connected
+     * intersections are one unit apart on average.
+     */
+    private static void pivotMds(RoutingGraph graph, Random random,
+                                 float[] xs, float[] ys) {
+        int n = graph.size();
+        if (n < 2) {
+            return;
+        }
+
+        // Routes are followed in both directions to measure distances
+        int[] firstNeighbour = new int[n + 1];
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            firstNeighbour[graph.source(edge) + 1]++;
+            firstNeighbour[graph.target(edge) + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            firstNeighbour[i + 1] += firstNeighbour[i];
+        }
+        int[] neighbours = new int[firstNeighbour[n]];
+        int[] next = Arrays.copyOf(firstNeighbour, n);
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            neighbours[next[graph.source(edge)]++] = graph.target(edge);
+            neighbours[next[graph.target(edge)]++] = graph.source(edge);
+        }
+
+        // Each pivot is the intersection furthest from those chosen so far
+        int k = Math.min(PIVOTS, n);
+        float[][] columns = new float[k][];
+        int[] nearest = new int[n];
+        Arrays.fill(nearest, Integer.MAX_VALUE);
+        int[] hops = new int[n];
+        int[] queue = new int[n];
+        int pivot = random.nextInt(n);
+        for (int p = 0; p < k; p++) {
+            breadthFirst(pivot, firstNeighbour, neighbours, hops, queue);
+            int furthest = 0;
+            for (int i = 0; i < n; i++) {
+                if (hops[i] > furthest) {
+                    furthest = hops[i];
+                }
+            }
+            // Disconnected intersections count as just beyond the furthest
+            columns[p] = new float[n];
+            for (int i = 0; i < n; i++) {
+                int h = hops[i] < 0 ? furthest + 1 : hops[i];
+                columns[p][i] = (float) h * h;
+                nearest[i] = Math.min(nearest[i], h);
+            }
+            for (int i = 0; i < n; i++) {
+                if (nearest[i] > nearest[pivot]) {
+                    pivot = i;
+                }
+            }
+        }
+
+        // Double centre the squared distances
+        double[] rowMean = new double[n];
+        double grandMean = 0;
+        for (float[] column : columns) {
+            double mean = 0;
+            for (int i = 0; i < n; i++) {
+                mean += column[i];
+                rowMean[i] += column[i] / k;
+            }
+            mean /= n;
+            grandMean += mean / k;
+            for (int i = 0; i < n; i++) {
+                column[i] -= (float) mean;
+            }
+        }
+        for (float[] column : columns) {
+            for (int i = 0; i < n; i++) {
+                column[i] = (float) (-0.5 * (column[i] - rowMean[i]
+                        + grandMean));
+            }
+        }
+
+        // The two leading eigenvectors of C^T C give the axes
+        double[][] product = new double[k][k];
+        for (int a = 0; a < k; a++) {
+            for (int b = a; b < k; b++) {
+                double sum = 0;
+                for (int i = 0; i < n; i++) {
+                    sum += (double) columns[a][i] * columns[b][i];
+                }
+                product[a][b] = product[b][a] = sum;
+            }
+        }
+        double[] first = leadingEigenvector(product, null, random);
+        double[] second = leadingEigenvector(product, first, random);
+        for (int i = 0; i < n; i++) {
+            double x = 0, y = 0;
+            for (int p = 0; p < k; p++) {
+                x += columns[p][i] * first[p];
+                y += columns[p][i] * second[p];
+            }
+            xs[i] = (float) x;
+            ys[i] = (float) y;
+        }
+
+        double length = 0;
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int a = graph.source(edge), b = graph.target(edge);
+            length += Math.hypot(xs[a] - xs[b], ys[a] - ys[b]);
+        }
+        length /= Math.max(graph.edgeCount(), 1);
+        if (length > 0) {
+            for (int i = 0; i < n; i++) {
+                xs[i] /= length;
+                ys[i] /= length;
+            }
+        }
+    }
+
+    /**
+     * Sets hops[i] to the number of routes between the source and i, or -1
+     * if i cannot be reached.
+     */
+    private static void breadthFirst(int source, int[] firstNeighbour,
+                                     int[] neighbours, int[] hops,
+                                     int[] queue) {
+        Arrays.fill(hops, -1);
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        hops[source] = 0;
+        while (head < tail) {
+            int node = queue[head++];
+            for (int i = firstNeighbour[node]; i < firstNeighbour[node + 1];
+                 i++) {
+                int neighbour = neighbours[i];
+                if (hops[neighbour] < 0) {
+                    hops[neighbour] = hops[node] + 1;
+                    queue[tail++] = neighbour;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the eigenvector of a symmetric matrix with the largest
+     * eigenvalue by power iteration, orthogonal to 'other' if given.
+     */
+    private static double[] leadingEigenvector(double[][] matrix,
+                                               double[] other,
+                                               Random random) {
+        int k = matrix.length;
+        double[] vector = new double[k];
+        for (int i = 0; i < k; i++) {
+            vector[i] = random.nextDouble() - 0.5;
+        }
+        double[] product = new double[k];
+        for (int iteration = 0; iteration < 200; iteration++) {
+            if (other != null) {
+                double dot = 0;
+                for (int i = 0; i < k; i++) {
+                    dot += vector[i] * other[i];
+                }
+                for (int i = 0; i < k; i++) {
+                    vector[i] -= dot * other[i];
+                }
+            }
+            double norm = 0;
+            for (int i = 0; i < k; i++) {
+                product[i] = 0;
+                for (int j = 0; j < k; j++) {
+                    product[i] += matrix[i][j] * vector[j];
+                }
+                norm += product[i] * product[i];
+            }
+            norm = Math.sqrt(norm);
+            if (norm == 0) {
+                break;
+            }
+            for (int i = 0; i < k; i++) {
+                vector[i] = product[i] / norm;
+            }
+        }
+        return vector;
+    }
+
+    private static int cell(float position) {
+        return (int) Math.floor(position / REPULSION_RANGE);
+    }
+
+    private static int bucket(int column, int row, int buckets) {
+        return Math.floorMod(column * 73856093 ^ row * 19349663, buckets);
+    }
+
+    /**
+     * Loads the layout saved in the given file if it has a position for
+     * every intersection of the graph. Otherwise, computes a new layout and
+     * tries to save it to the file for next time.
+     *
+     * @param graph the graph to lay out
+     * @param file file to load the layout from and save it to
+     * @return the loaded or computed layout
+     */
+    public static ForceDirectedLayout loadOrCompute(RoutingGraph graph,
+                                                    Path file) {
+        try {
+            ForceDirectedLayout layout = load(graph, file);
+            if (layout != null) {
+                return layout;
+            }
+        } catch (IOException | RuntimeException e) {
+            // Unreadable or out of date; compute a new layout instead.
+        }
+
+        ForceDirectedLayout layout = compute(graph, 0);
+        try {
+            layout.save(graph, file);
+        } catch (IOException e) {
+            // The layout can still be used, it just won't be cached.
+        }
+        return layout;
+    }
+
+    /**
+     * Loads a layout saved by {@link ForceDirectedLayout#save}.
+     *
+     * @param graph the graph whose intersections are to be positioned
+     * @param file the file to read
+     * @return the layout, or null if the file does not exist or lacks the
+     * position of some intersection of the graph
+     * @throws IOException if the file cannot be read
+     */
+    public static ForceDirectedLayout load(RoutingGraph graph, Path file)
+            throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        Map<String, float[]> positions = new HashMap<>();
+        try (BufferedReader in = Files.newBufferedReader(file,
+                StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                String[] parts = line.split(":");
+                if (parts.length == 3) {
+                    positions.put(parts[0], new float[] {
+                            Float.parseFloat(parts[1]),
+                            Float.parseFloat(parts[2])});
+                }
+            }
+        }
+
+        int n = graph.size();
+        float[] xs = new float[n];
+        float[] ys = new float[n];
+        for (int i = 0; i < n; i++) {
+            float[] position = positions.get(graph.getIntersection(i).getId());
+            if (position == null) {
+                return null;
+            }
+            xs[i] = position[0];
+            ys[i] = position[1];
+        }
+        return new ForceDirectedLayout(xs, ys);
+    }
+
+    /**
+     * Saves this layout to a file, one "ID:x:y" line per intersection.
+     *
+     * @param graph the graph this layout was computed for
+     * @param file the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void save(RoutingGraph graph, Path file) throws IOException {
+        try (BufferedWriter out = Files.newBufferedWriter(file,
+                StandardCharsets.UTF_8)) {
+            for (int i = 0; i < xs.length; i++) {
+                out.write(graph.getIntersection(i).getId() + ":" + xs[i]
+                        + ":" + ys[i]);
+                out.newLine();
+            }
+        }
+    }
+
+    /**
+     * @param node index of an intersection in the routing graph
+     * @return horizontal position of the intersection
+     */
+    public float x(int node) {
+        return xs[node];
+    }
+
+    /**
+     * @param node index of an intersection in the routing graph
+     * @return vertical position of the intersection
+     */
+    public float y(int node) {
+        return ys[node];
+    }
+
+    /**
+     * @return number of intersections positioned by this layout
+     */
+    public int size() {
+        return xs.length;
+    }
+}
@@ -0,0 +1,79 @@
+package tms.display;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * A queue of {@link ButtonOptions} commands to be applied to the network
+ * together, see {@link MainViewModel#takeInstructions(InstructionBatch)}.
+ * <p>
+ * Each command names the routes and intersections it acts on with
+ * parameters, as described by {@link CommandProcessor}. Applying a batch
+ * checks every command's parameters first, then applies the valid commands
+ * in order between two ticks, with a single change notification for the
+ * whole batch. A command that fails does not stop the rest.
+ */
+public class InstructionBatch {
+    private final List<ButtonOptions> options = new ArrayList<>();
+    private final List<Map<String, String>> parameters = new ArrayList<>();
+
+    /**
+     * Adds a command to the end of the batch.
+     *
+     * @param option the command
+     * @param params the command's parameters, see {@link CommandProcessor}
+     * @return this batch, so that calls can be chained
+     */
+    public InstructionBatch add(ButtonOptions option,
+                                Map<String, String> params) {
+        options.add(option);
+        parameters.add(Map.copyOf(params));
+        return this;
+    }
+
+    /**
+     * @return the number of commands in the batch
+     */
+    public int size() {
+        return options.size();
+    }
+
+    /**
+     * Applies every command in the batch. Must not run at the same time as
+     * a tick.
+     *
+     * @param processor the processor applying commands to the network
+     * @return for each command in order, empty if it succeeded, otherwise
+     * the error message
+     */
+    List<Optional<String>> applyTo(CommandProcessor processor) {
+        List<Optional<String>> results = new ArrayList<>(
+                Collections.nCopies(options.size(), Optional.empty()));
+
+        // Reject malformed commands before changing anything
+        boolean[] valid = new boolean[options.size()];
+        for (int i = 0; i < options.size(); i++) {
+            try {
+                CommandProcessor.validate(options.get(i), parameters.get(i));
+                valid[i] = true;
+            } catch (IllegalArgumentException e) {
+                results.set(i, Optional.of(e.getMessage()));
+            }
+        }
+
+        for (int i = 0; i < options.size(); i++) {
+            if (!valid[i]) {
+                continue;
+            }
+            try {
+                processor.apply(options.get(i), parameters.get(i));
+            } catch (IllegalArgumentException e) {
+                results.set(i, Optional.of(e.getMessage()));
+            }
+        }
+        return results;
+    }
+}
@@ -31,11 +31,10 @@ public class MainView {
     private Stage root;
     private Group rootGroup;
     private VBox mainArea;
-    private StructureView structureView;
+    private NetworkView structureView;
 
     // Models
     private MainViewModel model;
-    private long lastTime = 0;
 
     // Button press action queue.
     private LinkedList<String> input;
@@ -157,9 +156,13 @@ public class MainView {
         reduceSpeed.setOnAction(e -> model.takeInstruction(ButtonOptions.REDUCE_SPEED, new ArrayList<>()));
         reduceSpeed.disableProperty().bind(model.isNothingSelected());
 
+        var bulkEdit = new Button("Apply a bulk edit file");
+        bulkEdit.setOnAction(e -> getResponse("Apply bulk edit file",
+                "File name:").ifPresent(model::applyBulkEdit));
+
         buttonBox.getChildren().addAll(addIntersection, addSensor, addSign,
                 setSpeed, addConnection, addTwoWayConnection, addTrafficLight,
-                changeLightDuration, reduceSpeed);
+                changeLightDuration, reduceSpeed, bulkEdit);
         return buttonBox;
     }
 
@@ -243,7 +246,12 @@ public class MainView {
 
         var infoBar = createInfoBar();
         infoBar.setId("infoBar");
-        structureView = new StructureView(model);
+        // The map suits large networks; the list shows every route's speed
+        if ("canvas".equals(System.getProperty("tms.view"))) {
+            structureView = new CanvasNetworkView(model);
+        } else {
+            structureView = new VirtualStructureView(model);
+        }
         var bottomPanel = createBottomPanel();
 
         var error = new Label();
@@ -270,13 +278,16 @@ public class MainView {
      * Ticks and updates the simulation though the ViewModel.
      * Also processes queued user input.
      * <p>
-     * Once per second, calls {@link MainViewModel#tick()}
+     * Starts the simulation thread, which ticks once per second. Each frame,
+     * polls {@link MainViewModel#pollSimulation()} and refreshes the network
+     * view if the simulation has ticked.
      * <p>
      * If the model registers a change, it updates the view.
      *
      * @ass2_given View code for A2.
      */
     public void run() {
+        model.startSimulation();
         new AnimationTimer() {
 
             public void handle(long currentNanoTime) {
@@ -284,9 +295,10 @@ public class MainView {
                     var key = input.pop();
                     model.accept(key);
                 }
-                if (currentNanoTime - lastTime > 1000000000) {
-                    lastTime = currentNanoTime;
-                    model.tick();
+                // Shows the latest tick only, however many have happened
+                if (model.pollSimulation()) {
+                    // Only visible rows or changed cells are redrawn
+                    structureView.refresh();
                 }
                 if (model.isChanged()) {
                     model.notChanged();
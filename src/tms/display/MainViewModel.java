@@ -1,8 +1,14 @@
 package tms.display;
 
 import javafx.beans.property.*;
+import tms.congestion.CongestionRecorder;
+import tms.congestion.CongestionStore;
+import tms.congestion.CongestionSummary;
 import tms.intersection.Intersection;
+import tms.network.BulkEditor;
+import tms.network.BulkMutationEvent;
 import tms.network.Network;
+import tms.replay.SimulationRecorder;
 import tms.route.Route;
 import tms.sensors.*;
 import tms.util.*;
@@ -11,9 +17,16 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.concurrent.TimeUnit;
 
 /**
  * The representation of the TMS model to be displayed in the GUI.
@@ -49,6 +62,18 @@ public class MainViewModel {
     /** A boolean variable to indicate whether the simulation is paused. */
     private boolean paused = false;
 
+    /** Ticks the network's timed items on the simulation thread */
+    private final SimulationClock clock =
+            new SimulationClock(this::simulateOneSecond);
+    /** Records congestion after each tick, or null */
+    private volatile CongestionRecorder recorder;
+    /** Records each tick and change for replay, or null */
+    private volatile SimulationRecorder simulationRecorder;
+    /** Ticks of the clock reflected in the seconds property */
+    private long shownTicks;
+    /** Applies batched instructions to the network */
+    private final CommandProcessor processor;
+
     /**
      * Creates a model of the network to be used in the GUI.
      *
@@ -58,6 +83,8 @@ public class MainViewModel {
     public MainViewModel(Network network) {
         this.network = network;
         title.setValue("TMS Control Portal");
+        clock.setPaused(pausedProperty.getValue());
+        processor = new CommandProcessor(network, clock);
     }
 
     /**
@@ -91,6 +118,9 @@ public class MainViewModel {
      * @ass2 View-Model code for A2.
      */
     public void save(String filename) {
+        SaveEvent event = new SaveEvent();
+        event.begin();
+        event.filename = filename;
         try{
             BufferedWriter out = new BufferedWriter(
                     new FileWriter(
@@ -98,14 +128,16 @@ public class MainViewModel {
                     )
             );
 
-            out.write(
-                    network.toString()
-            );
+            String contents = clock.callExclusive(network::toString);
+            out.write(contents);
             out.close();
+            event.size = contents.length();
+            event.succeeded = true;
             System.out.println("Saved file " +  filename);
         } catch (IOException e){
             error.setValue("Error accessing file.");
         }
+        event.commit();
     }
 
     /**
@@ -141,13 +173,18 @@ public class MainViewModel {
             pausedButtonText.set("Pause");
             pausedText.set("System paused: true");
         }
+        clock.setPaused(pausedProperty.getValue());
     }
 
     /**
      *
-     * Tick is called by the view, approximately once per second while not paused.
-     * This method invokes the {@link TimedItemManager#oneSecond()} method so
-     * that it can notify all {@link tms.util.TimedItem}s.
+     * Advances the simulation by one second on the calling thread while not
+     * paused. This method invokes the {@link TimedItemManager#oneSecond()}
+     * method so that it can notify all {@link tms.util.TimedItem}s.
+     * <p>
+     * The view does not call this method; instead it starts the simulation
+     * thread with {@link MainViewModel#startSimulation()} and calls
+     * {@link MainViewModel#pollSimulation()} once per frame.
      * <p>
      * After calling this method, {@link MainViewModel#getTimeElapsed()}
      * should return the updated time elapsed.
@@ -157,14 +194,105 @@ public class MainViewModel {
      * @ass2 View-Model code for A2.
      */
     public void tick() {
-        if (!pausedProperty.getValue()){
-            TimedItemManager.getTimedItemManager().oneSecond();
-            seconds.set(
-                    seconds.getValue() + 1
-            );
-            timeElapsed.set("Seconds Elapsed: " + seconds.getValue().toString());
+        clock.tick();
+        pollSimulation();
+    }
+
+    /**
+     * Records the congestion of every route to the given store after each
+     * tick, and shows a summary of the selected route's recorded congestion
+     * in its details.
+     *
+     * @param store store to record to
+     */
+    public void recordCongestion(CongestionStore store) {
+        recorder = new CongestionRecorder(network, store);
+    }
+
+    /**
+     * Records every tick and every change made to the network with the
+     * given recorder from now on, so that the run can be replayed, see
+     * {@link tms.replay.SimulationReplayer}. Must be called before the
+     * simulation is started.
+     *
+     * @param log recorder to record to
+     */
+    public void recordSimulation(SimulationRecorder log) {
+        simulationRecorder = log;
+        processor.recordTo(log);
+    }
+
+    /**
+     * Advances every timed item by one second, then records the tick and
+     * congestion if recording. Called on the simulation thread.
+     */
+    private void simulateOneSecond() {
+        TimedItemManager.getTimedItemManager().oneSecond();
+        SimulationRecorder log = simulationRecorder;
+        if (log != null) {
+            try {
+                log.tick();
+            } catch (IOException e) {
+                System.err.println("Error recording simulation, stopped"
+                        + " recording: " + e.toString());
+                recordSimulation(null);
+            }
         }
+        CongestionRecorder current = recorder;
+        if (current != null) {
+            try {
+                current.record(clock.getSnapshot().getTicks() + 1);
+            } catch (IOException e) {
+                System.err.println("Error recording congestion, stopped"
+                        + " recording: " + e.toString());
+                recorder = null;
+            }
+        }
+    }
 
+    /**
+     * Starts ticking the simulation once per second on its own thread, so
+     * that ticks and drawing do not hold each other up. Ticks do nothing
+     * while the simulation is paused.
+     */
+    public void startSimulation() {
+        clock.start(1, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Brings the time elapsed up to date with the simulation thread. Called
+     * by the view once per frame; never blocks, and any number of ticks
+     * since the last call are shown as one update.
+     *
+     * @return true if the simulation has ticked since the last call, so
+     * congestion shown by the view may have changed
+     */
+    public boolean pollSimulation() {
+        SimulationClock.Snapshot snapshot = clock.getSnapshot();
+        long ticks = snapshot.getTicks();
+        if (ticks == shownTicks) {
+            return false;
+        }
+        TickMetrics metrics = TickMetrics.getTickMetrics();
+        if (metrics.isEnabled()) {
+            metrics.recordDisplayLag(System.nanoTime()
+                    - snapshot.getFinishedNanos());
+        }
+        shownTicks = ticks;
+        seconds.set((int) ticks);
+        timeElapsed.set("Seconds Elapsed: " + seconds.getValue().toString());
+        return true;
+    }
+
+    /**
+     * Gets the clock that ticks the simulation. Changes to the network made
+     * outside of {@link MainViewModel#takeInstruction} should be made
+     * through {@link SimulationClock#runExclusive(Runnable)}.
+     *
+     * @return the simulation clock
+     */
+    public SimulationClock getClock() {
+        return clock;
     }
 
     /**
@@ -273,18 +401,21 @@ public class MainViewModel {
         return network.getIntersections();
     }
 
+    /**
+     * Gets the network displayed by this model.
+     *
+     * @return the network
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
     /**
      * takes a ButtonOption and args and calls the appropriate function.
+     * Commands that change the network act on the selected route or
+     * intersection, as described by {@link CommandProcessor}.
      *
-     * @see MainViewModel#addConnection(String, String)
-     * @see MainViewModel#addLight(String, String)
-     * @see MainViewModel#addSensor(String, String)
-     * @see MainViewModel#addSign(String)
-     * @see MainViewModel#addTwoWayConnection(String, String)
-     * @see MainViewModel#addIntersection(String)
-     * @see MainViewModel#changeDuration(String)
-     * @see MainViewModel#reduceIncomingSpeeds()
-     * @see MainViewModel#setSpeed(String)
+     * @see CommandProcessor#apply(ButtonOptions, Map)
      * @see MainViewModel#save(String)
      * @see MainViewModel#togglePaused()
      * @param option the selected function option
@@ -299,339 +430,177 @@ public class MainViewModel {
             }
         }
 
-        try {
-            switch (option) {
-                case ADD_CONN:
-                    addConnection(args.get(0).orElse(""), args.get(1).orElse(""));
-                    break;
-                case ADD_SIGN:
-                    addSign(args.get(0).orElse(""));
-                    break;
-                case ADD_LIGHT:
-                    addLight(args.get(0).orElse(""), args.get(1).orElse(""));
-                    break;
-                case SET_SPEED:
-                    setSpeed(args.get(0).orElse(""));
-                    break;
-                case ADD_SENSOR:
-                    addSensor(args.get(0).orElse(""), args.get(1).orElse(""));
-                    break;
-                case REDUCE_SPEED:
-                    reduceIncomingSpeeds();
-                    break;
-                case ADD_INTERSECTION:
-                    addIntersection(args.get(0).orElse(""));
-                    break;
-                case ADD_TWO_WAY_CONN:
-                    addTwoWayConnection(args.get(0).orElse(""), args.get(1).orElse(""));
-                    break;
-                case CHANGE_LIGHT_DURATION:
-                    changeDuration(args.get(0).orElse(""));
-                    break;
-                case SAVE:
-                    save(args.get(0).orElse(""));
-                case PAUSE:
-                    togglePaused();
-                default:
-                    //error
-            }
-        } catch (IndexOutOfBoundsException e) {
-            //wrong number of args given
-            System.exit(1);
-        }
+        // Changes must not happen part way through a tick
+        clock.runExclusive(() -> applyInstruction(option, args));
         createDetailsText();
     }
 
     /**
-     * Creates a new DemoSensor and adds it to the selected route.
+     * Applies a batch of instructions, such as a scripted bulk edit, in one
+     * go between ticks. Unlike calling
+     * {@link MainViewModel#takeInstruction} once per command, the view is
+     * only told about the change once, after the whole batch.
      * <p>
-     * Sets the value of error to:
-     * <ul>
-     * <li>"Error adding sensor: Invalid sensor type: [sensorType]" if
-     * sensorType is not "VC", "PP", or "SC"</li>
-     * <li>"Error adding sensor: Threshold must be &gt; 0" if the specified
-     * threshold is less than or equal to zero.</li>
-     * <li>"Error adding sensor: Data values must be &gt;= 0" if one or more of
-     * the specified data values are less than zero.</li>
-     * <li>"Error adding sensor: Invalid data input" if dataString is not of
-     * the format: "int:int,int,...int"</li>
-     * <li>"Error adding sensor: " + error message thrown by
-     * {@link Network#addSensor(String, String, Sensor)} if any other
-     * exception is thrown</li>
-     * </ul>
-     *
-     * @param sensorType the type of sensor. Valid choices are "VC", "PP",
-     *                   or "SC"
-     * @param dataString the sensor data in format "THRESHOLD:int,int,...int"
-     * @ass2_given View-Model code for A2.
-     */
-    public void addSensor(String sensorType, String dataString) {
-        try {
-            int thresh = Integer.parseInt(dataString.split(":")[0]);
-            if (thresh <= 0) {
-                error.setValue("Error adding sensor: Threshold must be > 0");
-                return;
-            }
-            String[] splitData = dataString.split(":")[1].split(",");
-            int[] data = new int[splitData.length];
-            for (int i = 0; i < dataString.split(",").length; i++) {
-                data[i] = Integer.parseInt(splitData[i].strip());
-                if (data[i] < 0) {
-                    error.setValue(
-                            "Error adding sensor: Data values must be >= 0");
-                    return;
-                }
-            }
-
-            Sensor sensor;
-            switch (sensorType) {
-                case "PP":
-                    sensor = new DemoPressurePad(data, thresh);
-                    break;
-                case "SC":
-                    sensor = new DemoSpeedCamera(data, thresh);
-                    break;
-                case "VC":
-                    sensor = new DemoVehicleCount(data, thresh);
-                    break;
-                default:
-                    error.setValue(String.format(
-                            "Error adding sensor: Invalid sensor type: \"%s\"",
-                            sensorType));
-                    return;
-            }
-
-            network.addSensor(selectedRoute.getFrom().getId(),
-                    selectedIntersection.getId(), sensor);
-        } catch (NumberFormatException | IndexOutOfBoundsException e) {
-            error.setValue("Error adding sensor: Invalid data input");
-        } catch (DuplicateSensorException dse) {
-            error.setValue("Error adding sensor: " + dse.getMessage());
-        } catch (IntersectionNotFoundException
-                | RouteNotFoundException ignored) {
-            // selected route/intersection must exist
+     * Commands that fail are skipped. If any fail, the error is set to the
+     * number that failed and the first error message.
+     *
+     * @param batch the instructions to apply
+     * @return for each instruction in order, empty if it succeeded,
+     * otherwise the error message
+     */
+    public List<Optional<String>> takeInstructions(InstructionBatch batch) {
+        BulkMutationEvent event = new BulkMutationEvent();
+        event.begin();
+        List<Optional<String>> results =
+                clock.callExclusive(() -> batch.applyTo(processor));
+        registerChange();
+        // A PAUSE instruction toggles the clock directly
+        if (clock.isPaused() != pausedProperty.getValue()) {
+            togglePaused();
         }
-    }
 
-    /**
-     * Sets the speed of the speed sign on route to a user given speed
-     * <p>
-     * Sets the value of error to:
-     * <ul>
-     * <li>"Error changing speed sign limit: Speed must be a number" if the
-     * speed cannot be read as an int</li>
-     * <li>"Error changing speed sign limit: " + [error message returned by
-     * {@link Network#setSpeedLimit(String, String, int)}] for any other
-     * exception type</li>
-     * </ul>
-     *
-     * @param speed the new speed to set the speed sign to.
-     * @ass2_given View-Model code for A2.
-     */
-    public void setSpeed(String speed) {
-        try {
-            network.setSpeedLimit(selectedRoute.getFrom().getId(),
-                    selectedIntersection.getId(),
-                    Integer.parseInt(speed));
-        } catch (NumberFormatException e) {
-            error.setValue(
-                    "Error changing speed sign limit: Speed must be a number");
-        } catch (IllegalStateException | IllegalArgumentException e) {
-            error.setValue("Error changing speed sign limit: "
-                    + e.getMessage());
-        } catch (IntersectionNotFoundException
-                | RouteNotFoundException ignored) {
-            // selected route/intersection must exist
+        long failed = results.stream().filter(Optional::isPresent).count();
+        if (event.shouldCommit()) {
+            event.kind = "instruction batch";
+            event.changes = results.size();
+            event.failed = (int) failed;
+            event.commit();
         }
-    }
-
-    /**
-     * Reduces the incoming speed of all routes with a speed sign to either
-     * the selected intersection, or the Intersection that feeds the selected
-     * route as per {@link Intersection#reduceIncomingSpeedSigns()}.
-     *
-     * @ass2_given View-Model code for A2.
-     */
-    public void reduceIncomingSpeeds() {
-        if (isRouteSelected().not().getValue()) {
-            selectedIntersection.reduceIncomingSpeedSigns();
-        } else {
-            (selectedRoute.getFrom()).reduceIncomingSpeedSigns();
+        if (failed > 0) {
+            String first = results.stream().filter(Optional::isPresent)
+                    .findFirst().get().get();
+            error.setValue(failed + " of " + results.size()
+                    + " instructions failed. " + first);
         }
-    }
-
-    /**
-     * Creates a new speed sign on the selected Route with the given speed
-     * <p>
-     * Sets the value of error to:
-     * <ul>
-     * <li>"Error adding speed sign: Speed must be a number" if the speed
-     * cannot be read as an int</li>
-     * <li>"Error adding speed sign: " + [error returned by
-     * {@link Network#addSpeedSign(String, String, int)}] if any other
-     * exception is thrown by the Network method</li>
-     * </ul>
-     *
-     * @param speed the speed of the new speed sign.
-     * @ass2_given View-Model code for A2.
-     */
-    public void addSign(String speed) {
-        try {
-            network.addSpeedSign(selectedRoute.getFrom().getId(),
-                    selectedIntersection.getId(),
-                    Integer.parseInt(speed));
-        } catch (NumberFormatException e) {
-            error.setValue("Error adding speed sign: Speed must be a number");
-        } catch (IntersectionNotFoundException
-                | RouteNotFoundException ignored) {
-            // selected route/intersection must exist
-        } catch (IllegalArgumentException e) {
-            error.setValue("Error adding speed sign: " + e.getMessage());
+        createDetailsText();
+        return results;
+    }
+
+    /**
+     * Applies the bulk edit file with the given name to the network between
+     * ticks, see {@link BulkEditor}. Either every edit in the file is
+     * applied or, if the file cannot be read or has an invalid line, none
+     * are and an error message is displayed to the user.
+     *
+     * @param filename path of the bulk edit file
+     */
+    public void applyBulkEdit(String filename) {
+        String failure = clock.callExclusive(() -> {
+            try {
+                BulkEditor editor = new BulkEditor(network);
+                SimulationRecorder log = simulationRecorder;
+                int edits;
+                if (log == null) {
+                    edits = editor.apply(filename);
+                } else {
+                    // Recorded whole, so a replay does not need the file
+                    String script = Files.readString(Paths.get(filename),
+                            Charset.defaultCharset());
+                    log.bulkEdit(script);
+                    edits = editor.apply(new StringReader(script));
+                }
+                System.out.println("Applied " + edits + " edits from "
+                        + filename);
+                return null;
+            } catch (IOException e) {
+                return "Error accessing file.";
+            } catch (InvalidNetworkException e) {
+                return "Error applying bulk edit: " + e.getMessage();
+            }
+        });
+        if (failure != null) {
+            error.setValue(failure);
         }
+        registerChange();
+        createDetailsText();
     }
 
     /**
-     * Adds a light to the selected intersection with the specified order
-     * (default if blank).
-     * <p>
-     * Sets the value of error to:
-     * <ul>
-     * <li>"Error adding traffic lights: Duration must be a number" if the
-     * duration cannot be read as an int</li>
-     * <li>"Error adding traffic lights: " + [error returned by
-     * {@link Network#addLights(String, int, List)} if any other exception
-     * is thrown by the Network method</li>
-     * </ul>
+     * Applies the given instruction to the selected route or intersection,
+     * see {@link MainViewModel#takeInstruction(ButtonOptions, List)}.
+     * Commands that change the network are applied, and recorded if
+     * recording, by the same {@link CommandProcessor} as batches, naming the
+     * selection with parameters. If one fails, the error is set to its
+     * message.
      *
-     * @param duration the duration of the new light
-     * @param order the order of the lights (default if blank)
-     * @ass2_given View-Model code for A2.
+     * @param option the selected function option
+     * @param args the supplied args
      */
-    public void addLight(String duration, String order) {
-        List<String> intersectionOrder;
-        if (order.isBlank()) {
-            intersectionOrder = selectedIntersection.getConnectedIntersections()
-                    .stream().map(Intersection::getId).collect(Collectors.toList());
-        } else {
-            intersectionOrder = List.of(order.split(","));
+    private void applyInstruction(ButtonOptions option,
+                                  List<Optional<String>> args) {
+        switch (option) {
+            case SAVE:
+                save(arg(args, 0));
+            case PAUSE:
+                togglePaused();
+                return;
+            default:
         }
-
         try {
-            network.addLights(selectedIntersection.getId(),
-                    Integer.parseInt(duration.strip()),
-                    intersectionOrder);
-        } catch (NumberFormatException e) {
-            error.setValue(
-                    "Error adding traffic lights: Duration must be a number");
-        } catch (InvalidOrderException | IntersectionNotFoundException
-                | IllegalArgumentException e) {
-            error.setValue("Error adding traffic lights: " + e.getMessage());
-        }
-    }
-
-    /**
-     * Changes the duration of a traffic light at the selected intersection
-     * <p>
-     * Sets the value of error to:
-     * <ul>
-     * <li>"Error changing traffic light duration: Duration must be a number"
-     * if the duration cannot be read as an int</li>
-     * <li>"Error changing traffic light duration: " + [Error message thrown by
-     * {@link Network#changeLightDuration(String, int)}] if any other exception
-     * type is thrown</li>
-     * </ul>
-     *
-     * @param duration the new duration to set the traffic light to
-     * @ass2_given View-Model code for A2.
-     */
-    public void changeDuration(String duration) {
-        try {
-            network.changeLightDuration(selectedIntersection.getId(),
-                    Integer.parseInt(duration));
-        } catch (NumberFormatException e) {
-            error.setValue("Error changing traffic light duration: " +
-                    "Duration must be a number");
-        } catch (IllegalStateException | IllegalArgumentException e) {
-            error.setValue("Error changing traffic light duration: " + e.getMessage());
-        } catch (IntersectionNotFoundException ignored) {
-            // selected intersection must exist
+            processor.apply(option, commandParams(option, args));
+        } catch (IllegalArgumentException e) {
+            error.setValue(e.getMessage());
         }
     }
 
     /**
-     * Adds a connection from a user given intersection with id "id" to selected Intersection.
-     * <p>
-     * Sets the value of error to:
-     * <ul>
-     * <li>"Error adding connection: Speed must be a number" if the speed
-     * cannot be read as an int</li>
-     * <li>"Error adding connection: " + [Error message thrown by
-     * {@link Network#connectIntersections(String, String, int)}] if the
-     * networks cannot be found</li>
-     * </ul>
-     *
-     * @param id the id of the Intersection to connect from
-     * @param speed the default speed of the new route
-     * @ass2_given View-Model code for A2.
-     */
-    public void addConnection(String id, String speed) {
-        addConnectionFromAndTo(id, selectedIntersection.getId(), speed);
-    }
-
-    /**
-     * Creates a new route between two intersections.
-     * <p>
-     * Sets the value of error to:
-     * <ul>
-     * <li>"Error adding connection: Speed must be a number" if the speed
-     * cannot be read as an int</li>
-     * <li>"Error adding connection: " + [Error message thrown by
-     * {@link Network#connectIntersections(String, String, int)}] for any other
-     * exception type</li>
-     * </ul>
+     * Returns the parameters of the {@link CommandProcessor} command for an
+     * instruction, naming the selected route or intersection.
      *
-     * @param from the unchecked from id
-     * @param to the unchecked to id
-     * @param speed the default speed of the new route
-     * @ass2_given View-Model code for A2.
-     */
-    public void addConnectionFromAndTo(String from, String to, String speed) {
-        try {
-            int val = Integer.parseInt(speed.strip());
-            network.connectIntersections(from.strip(),
-                    to.strip(), val);
-        } catch (NumberFormatException e) {
-            error.setValue("Error adding connection: Speed must be a number");
-        } catch (IntersectionNotFoundException | IllegalStateException
-                | IllegalArgumentException e) {
-            error.setValue("Error adding connection: " + e.getMessage());
+     * @param option the selected function option
+     * @param args the supplied args
+     * @return the command's parameters
+     */
+    private Map<String, String> commandParams(ButtonOptions option,
+                                              List<Optional<String>> args) {
+        String selected = selectedIntersection == null ? ""
+                : selectedIntersection.getId();
+        String from = selectedRoute == null ? ""
+                : selectedRoute.getFrom().getId();
+        Map<String, String> params = new HashMap<>();
+        switch (option) {
+            case ADD_CONN:
+            case ADD_TWO_WAY_CONN:
+                params.put("from", arg(args, 0));
+                params.put("to", selected);
+                params.put("speed", arg(args, 1));
+                break;
+            case ADD_SIGN:
+            case SET_SPEED:
+                params.put("from", from);
+                params.put("to", selected);
+                params.put("speed", arg(args, 0));
+                break;
+            case ADD_LIGHT:
+                params.put("id", selected);
+                params.put("duration", arg(args, 0));
+                params.put("order", arg(args, 1));
+                break;
+            case ADD_SENSOR:
+                params.put("from", from);
+                params.put("to", selected);
+                params.put("type", arg(args, 0));
+                params.put("data", arg(args, 1));
+                break;
+            case REDUCE_SPEED:
+                params.put("id", routeSelected.getValue() ? from : selected);
+                break;
+            case ADD_INTERSECTION:
+                params.put("id", arg(args, 0));
+                break;
+            case CHANGE_LIGHT_DURATION:
+                params.put("id", selected);
+                params.put("duration", arg(args, 0));
+                break;
+            default:
         }
+        return params;
     }
 
-    /**
-     * Adds a connection from a selected intersection to an intersection that has the specified id
-     * <p>
-     * Sets the value of error to:
-     * <ul>
-     * <li>"Error adding connection: Speed must be a number" ifd the speed
-     * cannot be read as an int</li>
-     * <li>"Error adding connection: " + [Error message thrown by
-     * {@link Network#connectIntersections(String, String, int)}] if the
-     * networkId cannot be found</li>
-     * </ul>
-     *
-     * @param fromId the id of the intersection to connect to
-     * @param speed the default speed to be set on both new created routes
-     * @ass2_given View-Model code for A2.
-     */
-    public void addTwoWayConnection(String fromId, String speed) {
-        // Create the connection from the intersection entered by the user to
-        // the selected intersection
-        addConnectionFromAndTo(fromId, selectedIntersection.getId(), speed);
-        addConnectionFromAndTo(selectedIntersection.getId(), fromId, speed);
+    private static String arg(List<Optional<String>> args, int index) {
+        return index < args.size() ? args.get(index).orElse("") : "";
     }
 
-
     /**
      * Sets changedStructureProperty's value to true to reflect that a change has occurred.
      * This typically is called after change is observed.
@@ -831,6 +800,7 @@ public class MainViewModel {
                         route.getTrafficLight().getSignal()).append(System.lineSeparator());
             }
             routeDetails.append("Congestion: ").append(route.getCongestion()).append(System.lineSeparator());
+            appendRecordedCongestion(routeDetails, route, intersection);
             if (!route.getSensors().isEmpty()) {
                 routeDetails.append("Sensors present:").append(System.lineSeparator());
                 for (Sensor sensor : route.getSensors()) {
@@ -850,20 +820,27 @@ public class MainViewModel {
     }
 
     /**
-     * Adds a new intersection with given unique ID to the network.
-     * <p>
-     * If the intersection id is duplciate or otherwise illegal the textProperty this.error's value should be
-     * set to 'Error adding new intersection: ' followed by the error message raised by network.
-     *
-     * @param newIntersectionId the user provided (non checked) string ID of the new intersection
-     * @ass2_given View-Model code for A2.
+     * Appends the minimum, mean and maximum congestion of the given route
+     * recorded over the last hour, if recording. The minute in progress is
+     * not included, as it is not yet written.
      */
-    public void addIntersection(String newIntersectionId) {
-        registerChange();
-        try {
-            network.createIntersection(newIntersectionId);
-        } catch (IllegalArgumentException e) {
-            error.setValue("Error adding new intersection: " + e.getMessage());
+    private void appendRecordedCongestion(StringBuilder details, Route route,
+            Intersection to) {
+        CongestionRecorder current = recorder;
+        if (current == null) {
+            return;
+        }
+        CongestionStore store = current.getStore();
+        int series = store.findSeries(CongestionRecorder.keyOf(route, to));
+        long end = Math.max(store.getLastSecond(), 0) + 1;
+        CongestionSummary summary = series == -1 ? null : store.summarise(
+                series, end - CongestionStore.Resolution.HOUR.getSeconds(),
+                end);
+        if (summary != null) {
+            details.append(String.format(Locale.ROOT,
+                    "Congestion over the last hour: min %d, mean %.1f, max %d",
+                    summary.getMin(), summary.getMean(), summary.getMax()))
+                    .append(System.lineSeparator());
         }
     }
 }
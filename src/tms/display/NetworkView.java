@@ -0,0 +1,29 @@
+package tms.display;
+
+import javafx.scene.layout.Pane;
+
+/**
+ * A view of the traffic network shown in the main window, such as the list
+ * of intersections in {@link VirtualStructureView} or the map drawn by
+ * {@link CanvasNetworkView}.
+ */
+public interface NetworkView {
+    /**
+     * Updates the view after the structure of the network has changed,
+     * e.g. an intersection or route has been added or selected.
+     */
+    void update();
+
+    /**
+     * Updates the congestion, speed and selection shown for routes, after
+     * the simulation has ticked.
+     */
+    void refresh();
+
+    /**
+     * Gets the pane displayed
+     *
+     * @return the panel to display
+     */
+    Pane getPane();
+}
@@ -0,0 +1,27 @@
+package tms.display;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for saving the network to a file, see
+ * {@link MainViewModel#save(String)}.
+ */
+@Name("tms.Save")
+@Label("Network Save")
+@Category({"TMS", "Saving"})
+@Description("The network written to a save file")
+public class SaveEvent extends Event {
+    @Label("File")
+    public String filename;
+
+    @Label("Size")
+    @Description("Number of characters written")
+    public long size;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -153,7 +153,7 @@ public class StructureView {
 
             // Display details of all connections going into this intersection.
             var routeBox = new HBox(2);
-            for (Route route: intersection.getConnections()) {
+            for (Route route: intersection.getConnectionsView()) {
                 var routeButton = new Button(route.getFrom().getId() + ", Con:" + route.getCongestion() +
                         ", speed:" + route.getSpeed());
 
@@ -0,0 +1,251 @@
+package tms.display;
+
+import javafx.geometry.Pos;
+import javafx.scene.control.Button;
+import javafx.scene.control.Label;
+import javafx.scene.control.ListCell;
+import javafx.scene.control.ListView;
+import javafx.scene.layout.HBox;
+import javafx.scene.layout.Pane;
+import javafx.scene.layout.Priority;
+import javafx.scene.layout.Region;
+import javafx.scene.layout.VBox;
+import tms.intersection.Intersection;
+import tms.route.Route;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Displays the structure of the traffic network like {@link StructureView},
+ * with one row per intersection showing the routes going into it, but only
+ * creates JavaFX nodes for the rows that are visible.
+ * <p>
+ * Rows are cells of a {@link ListView}, which reuses a fixed number of cells
+ * as the list is scrolled. Each cell keeps its buttons between updates and
+ * only changes the text and colour of a route button when the route's
+ * congestion, speed or selection has changed. Updating the view therefore
+ * costs time proportional to the number of visible routes, not to the size
+ * of the network.
+ */
+public class VirtualStructureView implements NetworkView {
+    private static final double INTERSECTION_DISPLAY_WIDTH = 200;
+    private static final double DISPLAY_HEIGHT = 250;
+    private static final double ROW_HEIGHT = 34;
+
+    private static final String BUTTON_STYLE =
+            "-fx-background-insets: 0, 1, 2;"
+            + "-fx-background-radius: 5, 4, 3;";
+    private static final String BORDER = "-fx-border-color: #000000;";
+    private static final String SELECTED_BORDER = "-fx-border-color: #999999;";
+
+    private final MainViewModel viewModel;
+    private final VBox pane;
+    private final ListView<Intersection> list;
+    /** Every cell created by the list; only the visible ones have items */
+    private final List<IntersectionCell> cells = new ArrayList<>();
+
+    /**
+     * Creates the view, showing the intersections of the given model.
+     *
+     * @param viewModel the model used to populate the view
+     */
+    public VirtualStructureView(MainViewModel viewModel) {
+        this.viewModel = viewModel;
+
+        var connectionsLabel = new Label("Connections going Into: ");
+        connectionsLabel.setPrefWidth(MainView.WINDOW_WIDTH
+                - INTERSECTION_DISPLAY_WIDTH);
+        var intersectionLabel = new Label("Intersections ");
+        var header = new HBox(connectionsLabel, intersectionLabel);
+
+        list = new ListView<>();
+        list.setPrefSize(MainView.WINDOW_WIDTH, DISPLAY_HEIGHT);
+        list.setFixedCellSize(ROW_HEIGHT);
+        list.setFocusTraversable(false);
+        list.setCellFactory(view -> {
+            var cell = new IntersectionCell();
+            cells.add(cell);
+            return cell;
+        });
+        list.getItems().setAll(viewModel.getIntersections());
+
+        pane = new VBox(header, list);
+    }
+
+    /**
+     * Updates the view after the structure of the network has changed,
+     * e.g. an intersection or route has been added or selected.
+     * <p>
+     * The list of intersections is replaced, which only lays out the
+     * visible rows again.
+     */
+    @Override
+    public void update() {
+        List<Intersection> intersections = viewModel.getIntersections();
+        if (!intersections.equals(list.getItems())) {
+            list.getItems().setAll(intersections);
+        }
+        refresh();
+    }
+
+    /**
+     * Updates the congestion, speed and selection shown for the visible
+     * routes, without changing which intersections are listed.
+     */
+    @Override
+    public void refresh() {
+        for (IntersectionCell cell : cells) {
+            cell.refresh();
+        }
+    }
+
+    /**
+     * Gets the pane displayed
+     *
+     * @return the structural panel to display
+     */
+    @Override
+    public Pane getPane() {
+        return pane;
+    }
+
+    /**
+     * A row showing the routes going into an intersection, followed by the
+     * intersection itself.
+     */
+    private class IntersectionCell extends ListCell<Intersection> {
+        private final HBox row = new HBox(2);
+        private final HBox routeBox = new HBox(2);
+        private final Button intersectionButton = new Button();
+        /** Route buttons, reused for each intersection shown */
+        private final List<RouteButton> routeButtons = new ArrayList<>();
+        private boolean intersectionSelected;
+
+        IntersectionCell() {
+            routeBox.setAlignment(Pos.CENTER_RIGHT);
+            routeBox.setMinWidth(Region.USE_PREF_SIZE);
+            HBox.setHgrow(routeBox, Priority.ALWAYS);
+            var spacer = new Region();
+            spacer.setMinWidth(MainView.WINDOW_WIDTH
+                    - INTERSECTION_DISPLAY_WIDTH - 30);
+
+            intersectionButton.setMinWidth(INTERSECTION_DISPLAY_WIDTH - 20);
+            intersectionButton.setMaxWidth(INTERSECTION_DISPLAY_WIDTH - 20);
+            intersectionButton.setAlignment(Pos.CENTER_LEFT);
+            intersectionButton.setStyle(BUTTON_STYLE + BORDER);
+            intersectionButton.setOnAction(e -> {
+                if (getItem() != null) {
+                    viewModel.setSelected(getItem());
+                    VirtualStructureView.this.refresh();
+                }
+            });
+
+            var routes = new HBox(spacer, routeBox);
+            routes.setAlignment(Pos.CENTER_RIGHT);
+            row.getChildren().addAll(routes, intersectionButton);
+            row.setAlignment(Pos.CENTER_LEFT);
+            setText(null);
+        }
+
+        @Override
+        protected void updateItem(Intersection intersection, boolean empty) {
+            super.updateItem(intersection, empty);
+            if (empty || intersection == null) {
+                setGraphic(null);
+                return;
+            }
+            intersectionButton.setText(intersection.getId());
+            // Force every route button to be redrawn for the new item
+            for (RouteButton button : routeButtons) {
+                button.route = null;
+            }
+            refresh();
+            setGraphic(row);
+        }
+
+        /**
+         * Brings the buttons up to date with the intersection's routes.
+         */
+        void refresh() {
+            Intersection intersection = getItem();
+            if (intersection == null || isEmpty()) {
+                return;
+            }
+
+            boolean selected = intersection.equals(
+                    viewModel.getSelectedIntersection());
+            if (selected != intersectionSelected) {
+                intersectionSelected = selected;
+                intersectionButton.setStyle(BUTTON_STYLE
+                        + (selected ? SELECTED_BORDER : BORDER));
+            }
+
+            List<Route> routes = intersection.getConnectionsView();
+            while (routeButtons.size() < routes.size()) {
+                routeButtons.add(new RouteButton(this));
+            }
+            if (routeBox.getChildren().size() != routes.size()) {
+                List<Button> shown = new ArrayList<>(routes.size());
+                for (int i = 0; i < routes.size(); i++) {
+                    shown.add(routeButtons.get(i).button);
+                }
+                routeBox.getChildren().setAll(shown);
+            }
+            Route selectedRoute = viewModel.getSelectedRoute();
+            for (int i = 0; i < routes.size(); i++) {
+                Route route = routes.get(i);
+                routeButtons.get(i).show(route, route == selectedRoute);
+            }
+        }
+    }
+
+    /**
+     * A button for a route, remembering what it currently shows so that its
+     * text and style are only rebuilt when they change.
+     */
+    private class RouteButton {
+        private final Button button = new Button();
+        private Route route;
+        private int congestion, speed;
+        private boolean selected;
+
+        RouteButton(IntersectionCell cell) {
+            button.setMinWidth(130);
+            button.setMinHeight(30);
+            button.setPrefHeight(25);
+            button.setOnAction(e -> {
+                if (route != null && cell.getItem() != null) {
+                    viewModel.setSelected(route, cell.getItem());
+                    VirtualStructureView.this.refresh();
+                }
+            });
+        }
+
+        void show(Route route, boolean selected) {
+            int congestion = route.getCongestion();
+            int speed = route.getSpeed();
+            if (route == this.route && congestion == this.congestion
+                    && speed == this.speed && selected == this.selected) {
+                return;
+            }
+
+            String from = route.getFrom().getId();
+            if (route != this.route || congestion != this.congestion
+                    || speed != this.speed) {
+                button.setText(from + ", Con:" + congestion + ", speed:"
+                        + speed);
+            }
+            if (route != this.route || congestion != this.congestion
+                    || selected != this.selected) {
+                button.setStyle("-fx-background-color: "
+                        + MainViewModel.getColor(congestion) + ";"
+                        + BUTTON_STYLE + (selected ? SELECTED_BORDER : BORDER));
+            }
+            this.route = route;
+            this.congestion = congestion;
+            this.speed = speed;
+            this.selected = selected;
+        }
+    }
+}
@@ -1,12 +1,15 @@
 package tms.intersection;
 
-import tms.network.NetworkInitialiser;
 import tms.route.Route;
 import tms.util.InvalidOrderException;
 import tms.util.RouteNotFoundException;
+import tms.util.SymbolTable;
+import tms.util.TimedItemManager;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Represents a point at which routes can originate and terminate.
@@ -15,8 +18,16 @@ import java.util.List;
  * @ass1_2
  */
 public class Intersection {
-    /** Unique identifier for this intersection. */
-    private String id;
+    /**
+     * Table shared by every intersection created without a network, so
+     * that each needs no table of its own; guarded by itself
+     */
+    private static final SymbolTable STANDALONE_SYMBOLS = new SymbolTable();
+
+    /** Table holding this intersection's identifier, shared by a network */
+    private final SymbolTable symbols;
+    /** Handle of this intersection's identifier in the symbol table */
+    private final int handle;
     /** List of routes that terminate here. */
     private List<Route> incomingConnections;
     /** Used manage the traffic lights associated with this intersection.
@@ -40,8 +51,28 @@ public class Intersection {
      * @ass1
      */
     public Intersection(String id) {
-        this.id = id;
-        this.incomingConnections = new ArrayList<>();
+        this.symbols = STANDALONE_SYMBOLS;
+        synchronized (STANDALONE_SYMBOLS) {
+            this.handle = STANDALONE_SYMBOLS.intern(id);
+        }
+        // Most intersections have a few incoming routes, so grow from empty
+        this.incomingConnections = new ArrayList<>(0);
+    }
+
+    /**
+     * Creates a new intersection whose identifier has been added to the
+     * given symbol table, such as a network's.
+     *
+     * @param symbols table holding the identifier
+     * @param handle handle of the identifier in the table
+     * @throws IndexOutOfBoundsException if the handle is not in the table
+     */
+    public Intersection(SymbolTable symbols, int handle) {
+        symbols.name(handle);
+        this.symbols = symbols;
+        this.handle = handle;
+        // Most intersections have a few incoming routes, so grow from empty
+        this.incomingConnections = new ArrayList<>(0);
     }
 
     /**
@@ -51,7 +82,35 @@ public class Intersection {
      * @ass1
      */
     public String getId() {
-        return this.id;
+        if (symbols == STANDALONE_SYMBOLS) {
+            synchronized (STANDALONE_SYMBOLS) {
+                return symbols.name(handle);
+            }
+        }
+        return symbols.name(handle);
+    }
+
+    /**
+     * Returns the handle of this intersection's ID in its symbol table.
+     * Handles are only comparable between intersections with the same
+     * table.
+     *
+     * @return the handle
+     */
+    public int getHandle() {
+        return handle;
+    }
+
+    /**
+     * Returns the symbol table holding this intersection's ID. Every
+     * intersection in a network shares the network's table; intersections
+     * created with {@link #Intersection(String)} share one table between
+     * them, which must only be used while holding its lock.
+     *
+     * @return the symbol table
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
     }
 
     /**
@@ -68,6 +127,26 @@ public class Intersection {
         return new ArrayList<>(this.incomingConnections);
     }
 
+    /**
+     * Returns a read-only view of the incoming connections to this
+     * intersection, which follows routes being added and removed. Unlike
+     * {@link #getConnections()}, nothing is copied.
+     *
+     * @return unmodifiable list of all connecting routes to this intersection
+     */
+    public List<Route> getConnectionsView() {
+        return Collections.unmodifiableList(this.incomingConnections);
+    }
+
+    /**
+     * Returns the number of routes that end at this intersection.
+     *
+     * @return number of incoming connections
+     */
+    public int getConnectionCount() {
+        return this.incomingConnections.size();
+    }
+
     /**
      * Gets a list containing all intersections that have incoming routes to
      * this intersection.
@@ -141,14 +220,12 @@ public class Intersection {
         if (defaultSpeed < 0) {
             throw new IllegalArgumentException("Speed must be positive");
         }
-        if (getConnectedIntersections().contains(from)) {
+        if (hasConnection(from)) {
             throw new IllegalStateException(
                     "Connection already exists from intersection: \""
                             + from.getId() + "\"");
         }
-        Route newRoute = new Route(
-                from + NetworkInitialiser.LINE_INFO_SEPARATOR + id,
-                from, defaultSpeed);
+        Route newRoute = new Route(from, this, defaultSpeed);
         incomingConnections.add(newRoute);
 
         if (intersectionLights != null) {
@@ -157,6 +234,37 @@ public class Intersection {
 
     }
 
+    /**
+     * Removes the route from the given intersection to this intersection.
+     * If this intersection has traffic lights, the route is also removed
+     * from their cycle.
+     *
+     * @param from the intersection the route starts at
+     * @return the removed route
+     * @throws RouteNotFoundException if there is no route from the given
+     * intersection
+     */
+    public Route removeConnection(Intersection from)
+            throws RouteNotFoundException {
+        Route route = getConnection(from);
+        // The traffic lights share this list, so they lose the route too
+        incomingConnections.remove(route);
+        return route;
+    }
+
+    /**
+     * Returns true if there is a route from the given intersection to this
+     * intersection.
+     */
+    private boolean hasConnection(Intersection from) {
+        for (Route route : incomingConnections) {
+            if (route.getFrom().equals(from)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Reduces the speed limit on incoming routes to this intersection.
      * <p>
@@ -221,10 +329,22 @@ public class Intersection {
      */
     @Override
     public String toString() {
+        return toStringLater().get();
+    }
+
+    /**
+     * Returns the string representation of this intersection as it is now,
+     * which may be turned into text later, and on another thread.
+     *
+     * @return a supplier of the text toString() gives at the time of this call
+     */
+    public Supplier<String> toStringLater() {
+        String id = getId();
         if (hasTrafficLights()){
-            return id + ":" + this.intersectionLights.toString();
+            Supplier<String> lights = this.intersectionLights.toStringLater();
+            return () -> id + ":" + lights.get();
         }
-        return this.id;
+        return () -> id;
     }
 
     /**
@@ -236,6 +356,16 @@ public class Intersection {
         return (intersectionLights != null);
     }
 
+    /**
+     * Returns the traffic lights at this intersection.
+     *
+     * @return the set of traffic lights, or null if this intersection has no
+     * traffic lights
+     */
+    public IntersectionLights getTrafficLights() {
+        return intersectionLights;
+    }
+
     /**
      * Adds traffic lights to this intersection the given route order.
      *
@@ -290,6 +420,23 @@ public class Intersection {
                 duration);
     }
 
+    /**
+     * Removes the traffic lights from this intersection, and the traffic
+     * light signals from its incoming routes. The incoming routes stay in
+     * the order that was given to the traffic lights.
+     */
+    public void removeTrafficLights() {
+        if (intersectionLights == null) {
+            return;
+        }
+        TimedItemManager.getTimedItemManager()
+                .deregisterTimedItem(intersectionLights);
+        for (Route route : incomingConnections) {
+            route.removeTrafficLight();
+        }
+        intersectionLights = null;
+    }
+
     /**
      * Returns true if and only if this intersection is equal to the other given
      * intersection.
@@ -305,7 +452,11 @@ public class Intersection {
     public boolean equals(Object obj){
         if (obj instanceof Intersection){
             Intersection intersectionObject = (Intersection) obj;
-            return intersectionObject.getId().equals(this.id);
+            if (intersectionObject.symbols == symbols){
+                // IDs in the same table are equal only if handles are
+                return intersectionObject.handle == handle;
+            }
+            return intersectionObject.getId().equals(getId());
         }
         return false;
     }
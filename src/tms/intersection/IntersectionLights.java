@@ -8,6 +8,7 @@ import tms.util.TimedItemManager;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
 
 /**
  * Represents a set of traffic lights at an intersection.
@@ -114,20 +115,110 @@ public class IntersectionLights implements TimedItem {
         int mTime = time % duration;
         int greenTime = duration - yellowTime;
 
-        if (0 <= mTime && mTime < greenTime) {
+        // Each route is active for one duration in turn, wrapping around to
+        // the start of the list once every route has had a turn.
+        activeIndex = (time / duration) % connections.size();
+
+        if (mTime < greenTime) {
             setTrafficLights(TrafficSignal.GREEN);
-        }
-        if (greenTime <= mTime && mTime <= duration) {
+        } else {
             setTrafficLights(TrafficSignal.YELLOW);
+        }
+
+        time++;
+    }
+
+    /**
+     * Returns the number of seconds simulated since the lights were created
+     * or their duration was last changed.
+     *
+     * @return seconds into the lights' cycles
+     */
+    public int getTime() {
+        return time;
+    }
 
-            if (mTime == duration - 1) { // last one before mTime = 0
-                if (time == duration * connections.size() - 1) {
-                    activeIndex = 0;
-                } else activeIndex++;
+    /**
+     * Returns the position, in the order given to
+     * {@link IntersectionLights#IntersectionLights(List, int, int)}, of the
+     * route whose signal was last set to green or yellow.
+     *
+     * @return index of the active route
+     */
+    public int getActiveIndex() {
+        return activeIndex;
+    }
+
+    /**
+     * Sets the progress of the lights' cycles, such as when restoring a
+     * saved simulation. The signals of the routes are not changed.
+     *
+     * @param time seconds into the lights' cycles, see {@link #getTime()}
+     * @param activeIndex index of the active route, see
+     *                    {@link #getActiveIndex()}
+     * @throws IllegalArgumentException if time is negative or activeIndex is
+     * not the index of a route
+     */
+    public void restoreCycle(int time, int activeIndex) {
+        if (time < 0 || activeIndex < 0
+                || activeIndex >= Math.max(connections.size(), 1)) {
+            throw new IllegalArgumentException("Invalid lights cycle: "
+                    + time + ", " + activeIndex);
+        }
+        this.time = time;
+        this.activeIndex = activeIndex;
+    }
+
+    /**
+     * Returns the duration of each green-yellow cycle.
+     *
+     * @return light signal duration in seconds
+     */
+    public int getDuration(){
+        return duration;
+    }
+
+    /**
+     * Returns the number of seconds until the given incoming route will have
+     * a green signal, if traffic arrives at the intersection 'seconds'
+     * seconds from now, assuming that oneSecond() is called once every
+     * second and the duration is not changed in the meantime.
+     *
+     * The signal at any time follows directly from the number of seconds
+     * elapsed since the cycle was last reset, so this does not need to
+     * simulate the lights.
+     *
+     * @param route an incoming route controlled by these lights
+     * @param seconds number of seconds from now at which traffic arrives
+     * @return seconds to wait from arrival until the route is green (0 if
+     * it is green on arrival), or -1 if the route is not controlled by these
+     * lights
+     * @requires seconds >= 0
+     */
+    public int secondsUntilGreen(Route route, int seconds){
+        int index = -1;
+        for (int i = 0; i < connections.size(); i++){
+            if (connections.get(i) == route){
+                index = i;
+                break;
             }
         }
+        if (index < 0) return -1;
 
-        time++;
+        // The signals shown after the n-th call to oneSecond() are those set
+        // for time n - 1. Before the first call they match time 0, which is
+        // then shown for one extra second.
+        long at = (long) time + seconds - 1;
+        int extra = 0;
+        if (at < 0){
+            at = 0;
+            extra = 1;
+        }
+        long cycle = (long) duration * connections.size();
+        long position = Math.floorMod(at - (long) index * duration, cycle);
+        int greenTime = duration - yellowTime;
+
+        return position < greenTime ? 0 : (int) (cycle - position) + extra;
     }
 
     /**
@@ -145,9 +236,20 @@ public class IntersectionLights implements TimedItem {
      */
     @Override
     public String toString(){
-        return duration + ":" + parseList(
-                getIncomingIntersections(connections)
-        );
+        return toStringLater().get();
+    }
+
+    /**
+     * Returns the string representation of these lights as it is now, which
+     * may be turned into text later, and on another thread.
+     *
+     * @return a supplier of the text toString() gives at the time of this call
+     */
+    public Supplier<String> toStringLater() {
+        int duration = this.duration;
+        List<String> intersectionIDs = parseList(
+                getIncomingIntersections(connections));
+        return () -> duration + ":" + String.join(",", intersectionIDs);
     }
 
     /***
@@ -174,17 +276,18 @@ public class IntersectionLights implements TimedItem {
     }
 
     /**
-     * A method which turns a list object into a string of comma delimited
-     * values. Used in the toString method.
+     * A method which turns a list of intersections into a list of their IDs,
+     * to be joined as comma delimited values. Used in the toString method.
      */
-    private static String parseList(List<Intersection> originIntersections) {
+    private static List<String> parseList(
+            List<Intersection> originIntersections) {
         List<String> intersectionIDs = new ArrayList<>();
 
         for (Intersection i: originIntersections) {
             intersectionIDs.add(i.getId());
         }
 
-        return String.join(",", intersectionIDs);
+        return intersectionIDs;
     }
 
     /**
@@ -0,0 +1,137 @@
+package tms.network;
+
+import tms.sensors.Sensor;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Logs every item loaded by {@link NetworkInitialiser} as one line of
+ * space separated key=value pairs, for example
+ * "event=route from=A to=B speed=60", written by a daemon thread so that the
+ * loader does not wait for output.
+ * <p>
+ * Lines are passed to the thread through a bounded queue. If the queue is
+ * full the loader waits for space, so no line is ever lost. Once
+ * {@link #finished(String, boolean)} is called, the remaining lines are
+ * written, the writer is flushed, and the thread stops. The writer is not
+ * closed.
+ */
+public class AsyncLoaderLog implements LoaderDiagnostics {
+    /** Number of lines that can be waiting to be written */
+    public static final int QUEUE_CAPACITY = 8192;
+
+    /** Put on the queue to stop the thread, compared by identity */
+    private static final String END = new String("");
+
+    private final BlockingQueue<String> queue =
+            new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final Thread thread;
+    private volatile IOException error;
+
+    /**
+     * Creates a log and starts the thread writing it.
+     *
+     * @param out where the lines are written
+     */
+    public AsyncLoaderLog(Writer out) {
+        thread = new Thread(() -> write(out), "loader-log");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void write(Writer out) {
+        try {
+            for (String line = queue.take(); line != END;
+                    line = queue.take()) {
+                out.write(line);
+                out.write(System.lineSeparator());
+            }
+            out.flush();
+        } catch (IOException e) {
+            error = e;
+            // Keep taking lines so that the loader never waits forever
+            try {
+                while (queue.take() != END) {
+                    // Discard
+                }
+            } catch (InterruptedException ignored) {
+                // Stop
+            }
+        } catch (InterruptedException ignored) {
+            // Stop
+        }
+    }
+
+    private void log(String line) {
+        try {
+            queue.put(line);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Override
+    public void intersectionAdded(String id) {
+        log("event=intersection id=" + id);
+    }
+
+    @Override
+    public void routeAdded(String from, String to, int defaultSpeed) {
+        log("event=route from=" + from + " to=" + to + " speed="
+                + defaultSpeed);
+    }
+
+    @Override
+    public void sensorAdded(String from, String to, Sensor sensor) {
+        log("event=sensor from=" + from + " to=" + to + " sensor="
+                + sensor);
+    }
+
+    @Override
+    public void lightsAdded(String id, int duration, List<String> order) {
+        log("event=lights id=" + id + " duration=" + duration + " order="
+                + String.join(",", order));
+    }
+
+    @Override
+    public void speedSignAdded(String from, String to, int speed) {
+        log("event=sign from=" + from + " to=" + to + " speed=" + speed);
+    }
+
+    @Override
+    public void sensorsChecked(String from, String to, int sensors) {
+        log("event=sensors from=" + from + " to=" + to + " count="
+                + sensors);
+    }
+
+    @Override
+    public void warning(String message) {
+        log("event=warning message=\"" + message + "\"");
+    }
+
+    /**
+     * Logs the end of loading, then waits for every line to be written.
+     *
+     * @param source name of the file loaded
+     * @param succeeded whether a valid network was loaded
+     * @throws UncheckedIOException if a line could not be written
+     */
+    @Override
+    public void finished(String source, boolean succeeded) {
+        log("event=finished source=" + source + " succeeded=" + succeeded);
+        log(END);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (error != null) {
+            throw new UncheckedIOException(error);
+        }
+    }
+}
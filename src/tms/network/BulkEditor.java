@@ -0,0 +1,342 @@
+package tms.network;
+
+import tms.intersection.Intersection;
+import tms.intersection.IntersectionLights;
+import tms.route.Route;
+import tms.sensors.DemoPressurePad;
+import tms.sensors.DemoSpeedCamera;
+import tms.sensors.DemoVehicleCount;
+import tms.sensors.Sensor;
+import tms.util.DuplicateSensorException;
+import tms.util.IntersectionNotFoundException;
+import tms.util.InvalidNetworkException;
+import tms.util.InvalidOrderException;
+import tms.util.RouteNotFoundException;
+import tms.util.TimedItem;
+import tms.util.TimedItemManager;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Applies a script of edits to an existing network in one pass.
+ * <p>
+ * A bulk edit file has one edit per line, with colon separated fields in
+ * the same style as a network file:
+ * <pre>
+ * SIGN:from:to:speed                 add a speed sign to a route
+ * SPEED:from:to:speed                set the speed limit of a signed route
+ * LIGHTS:id:duration:from,from,...   add traffic lights to an intersection
+ * DURATION:id:duration               change the duration of traffic lights
+ * SENSOR:from:to:TYPE:threshold:d,...  add a PP, SC or VC sensor to a route
+ * TWOWAY:from:to                     add the route in the other direction
+ * </pre>
+ * Empty lines and lines starting with a semicolon are ignored.
+ * <p>
+ * The script is streamed in large chunks, so its text is never held in memory
+ * all at once, and intersections are looked up by ID through the network's
+ * index. The undo log still keeps an entry for each edit applied until the
+ * script ends, so memory grows with the number of edits. Edits are applied
+ * atomically: if any line is invalid, the edits already made are undone in
+ * reverse order and the network is left as it was before the script, with two
+ * exceptions. Traffic lights whose duration was changed restart their cycle,
+ * and routes into an intersection whose new lights were removed stay in the
+ * order given to the lights.
+ */
+public class BulkEditor {
+    /** Number of characters read from the script at a time */
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final Network network;
+    /** Actions undoing each edit applied so far, in the order applied */
+    private final List<Runnable> undo = new ArrayList<>();
+    /** Number of the line being applied, starting from 1 */
+    private int lineNumber;
+
+    /**
+     * Creates an editor for the given network.
+     *
+     * @param network the network to edit
+     */
+    public BulkEditor(Network network) {
+        this.network = network;
+    }
+
+    /**
+     * Applies every edit in the file with the given name, decoded using the
+     * platform's default charset.
+     *
+     * @param filename name of the bulk edit file
+     * @return number of edits applied
+     * @throws IOException if the file cannot be read
+     * @throws InvalidNetworkException if any line is not a valid edit of the
+     * network; no edits are applied
+     */
+    public int apply(String filename)
+            throws IOException, InvalidNetworkException {
+        try (Reader reader = Files.newBufferedReader(Paths.get(filename),
+                Charset.defaultCharset())) {
+            return apply(reader);
+        }
+    }
+
+    /**
+     * Applies every edit read from the given reader. Must not run at the
+     * same time as a tick.
+     *
+     * @param reader source of the bulk edit script
+     * @return number of edits applied
+     * @throws IOException if the script cannot be read; no edits are applied
+     * @throws InvalidNetworkException if any line is not a valid edit of the
+     * network; no edits are applied
+     */
+    public int apply(Reader reader)
+            throws IOException, InvalidNetworkException {
+        undo.clear();
+        lineNumber = 0;
+        int edits = 0;
+        BulkMutationEvent event = new BulkMutationEvent();
+        event.begin();
+        try {
+            char[] buffer = new char[CHUNK_SIZE];
+            int filled = 0;
+            int read;
+            while ((read = reader.read(buffer, filled,
+                    buffer.length - filled)) >= 0) {
+                filled += read;
+                // Only whole lines are applied; the rest waits for more input
+                int end = filled;
+                while (end > 0 && buffer[end - 1] != '\n') {
+                    end--;
+                }
+                if (end == 0) {
+                    if (filled == buffer.length) {
+                        buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                    }
+                    continue;
+                }
+                edits += applyLines(buffer, end);
+                System.arraycopy(buffer, end, buffer, 0, filled - end);
+                filled -= end;
+            }
+            edits += applyLines(buffer, filled);
+        } catch (IOException | InvalidNetworkException | RuntimeException e) {
+            int rolledBack = undo.size();
+            rollback();
+            commit(event, rolledBack, rolledBack);
+            throw e;
+        }
+        undo.clear();
+        commit(event, edits, 0);
+        return edits;
+    }
+
+    private static void commit(BulkMutationEvent event, int edits,
+                               int failed) {
+        if (event.shouldCommit()) {
+            event.kind = "bulk edit";
+            event.changes = edits;
+            event.failed = failed;
+            event.commit();
+        }
+    }
+
+    /**
+     * Undoes every edit applied so far, most recent first.
+     */
+    private void rollback() {
+        for (int i = undo.size() - 1; i >= 0; i--) {
+            undo.get(i).run();
+        }
+        undo.clear();
+    }
+
+    private int applyLines(char[] buffer, int end)
+            throws InvalidNetworkException {
+        NetworkTokenizer line = new NetworkTokenizer(
+                CharBuffer.wrap(buffer, 0, end));
+        int edits = 0;
+        while (line.nextLine()) {
+            lineNumber++;
+            if (line.isEmptyLine() || line.isComment()) {
+                continue;
+            }
+            try {
+                applyEdit(line);
+            } catch (IntersectionNotFoundException e) {
+                throw invalidLine(line, "No such intersection", e);
+            } catch (RouteNotFoundException e) {
+                throw invalidLine(line, "No such route", e);
+            } catch (DuplicateSensorException | InvalidOrderException
+                    | IllegalArgumentException | IllegalStateException e) {
+                throw invalidLine(line, e.getMessage() == null
+                        ? "Invalid value" : e.getMessage(), e);
+            }
+            edits++;
+        }
+        return edits;
+    }
+
+    private InvalidNetworkException invalidLine(NetworkTokenizer line,
+                                                String message,
+                                                Exception cause) {
+        return new InvalidNetworkException("Line " + lineNumber + ": "
+                + message + " (" + line.lineString() + ")", cause);
+    }
+
+    private void applyEdit(NetworkTokenizer line)
+            throws IntersectionNotFoundException, RouteNotFoundException,
+            DuplicateSensorException, InvalidOrderException {
+        if (line.fieldEquals(0, "SIGN")) {
+            requireFields(line, 4);
+            addSpeedSign(line.fieldString(1), line.fieldString(2),
+                    intField(line, 3));
+        } else if (line.fieldEquals(0, "SPEED")) {
+            requireFields(line, 4);
+            setSpeedLimit(line.fieldString(1), line.fieldString(2),
+                    intField(line, 3));
+        } else if (line.fieldEquals(0, "LIGHTS")) {
+            requireFields(line, 4);
+            List<String> order = new ArrayList<>();
+            int size = line.splitList(3);
+            for (int i = 0; i < size; i++) {
+                order.add(line.itemString(i));
+            }
+            addLights(line.fieldString(1), intField(line, 2), order);
+        } else if (line.fieldEquals(0, "DURATION")) {
+            requireFields(line, 3);
+            changeLightDuration(line.fieldString(1), intField(line, 2));
+        } else if (line.fieldEquals(0, "SENSOR")) {
+            requireFields(line, 6);
+            addSensor(line);
+        } else if (line.fieldEquals(0, "TWOWAY")) {
+            requireFields(line, 3);
+            makeTwoWay(line.fieldString(1), line.fieldString(2));
+        } else {
+            throw new IllegalArgumentException("Unknown edit");
+        }
+    }
+
+    private void addSpeedSign(String from, String to, int speed)
+            throws IntersectionNotFoundException, RouteNotFoundException {
+        Route route = network.getConnection(from, to);
+        boolean hadSign = route.hasSpeedSign();
+        int previous = route.getSpeed();
+        network.addSpeedSign(from, to, speed);
+        undo.add(hadSign ? () -> route.addSpeedSign(previous)
+                : route::removeSpeedSign);
+    }
+
+    private void setSpeedLimit(String from, String to, int speed)
+            throws IntersectionNotFoundException, RouteNotFoundException {
+        Route route = network.getConnection(from, to);
+        int previous = route.getSpeed();
+        network.setSpeedLimit(from, to, speed);
+        undo.add(() -> route.setSpeedLimit(previous));
+    }
+
+    private void addLights(String id, int duration, List<String> order)
+            throws IntersectionNotFoundException, InvalidOrderException {
+        Intersection intersection = network.findIntersection(id);
+        // Replaced lights could not be restored, so replacing is not allowed
+        if (intersection.hasTrafficLights()) {
+            throw new IllegalStateException(
+                    "Intersection already has traffic lights");
+        }
+        network.addLights(id, duration, order);
+        undo.add(intersection::removeTrafficLights);
+    }
+
+    private void changeLightDuration(String id, int duration)
+            throws IntersectionNotFoundException {
+        Intersection intersection = network.findIntersection(id);
+        IntersectionLights lights = intersection.getTrafficLights();
+        if (lights == null) {
+            throw new IllegalStateException(
+                    "Intersection has no traffic lights");
+        }
+        int previous = lights.getDuration();
+        network.changeLightDuration(id, duration);
+        undo.add(() -> intersection.setLightDuration(previous));
+    }
+
+    private void addSensor(NetworkTokenizer line)
+            throws IntersectionNotFoundException, RouteNotFoundException,
+            DuplicateSensorException {
+        Route route = network.getConnection(line.fieldString(1),
+                line.fieldString(2));
+        int threshold = intField(line, 4);
+        if (threshold <= 0) {
+            throw new IllegalArgumentException(
+                    "Sensor threshold must be positive");
+        }
+        int[] data = new int[line.splitList(5)];
+        if (!line.readNonNegativeList(data)) {
+            throw new IllegalArgumentException(
+                    "Sensor data must be non-negative integers");
+        }
+
+        Sensor sensor;
+        if (line.fieldEquals(3, "PP")) {
+            sensor = new DemoPressurePad(data, threshold);
+        } else if (line.fieldEquals(3, "SC")) {
+            sensor = new DemoSpeedCamera(data, threshold);
+        } else if (line.fieldEquals(3, "VC")) {
+            sensor = new DemoVehicleCount(data, threshold);
+        } else {
+            throw new IllegalArgumentException("Invalid sensor type");
+        }
+
+        // Demo sensors register themselves, so must not outlive a failure
+        TimedItem timed = (TimedItem) sensor;
+        TimedItemManager manager = TimedItemManager.getTimedItemManager();
+        try {
+            route.addSensor(sensor);
+            network.modified();
+        } catch (DuplicateSensorException e) {
+            manager.deregisterTimedItem(timed);
+            throw e;
+        }
+        undo.add(() -> {
+            route.removeSensor(sensor);
+            manager.deregisterTimedItem(timed);
+        });
+    }
+
+    private void makeTwoWay(String from, String to)
+            throws IntersectionNotFoundException, RouteNotFoundException {
+        network.makeTwoWay(from, to);
+        undo.add(() -> {
+            try {
+                network.removeConnection(to, from);
+            } catch (IntersectionNotFoundException
+                    | RouteNotFoundException e) {
+                // Later edits have been undone, so the route still exists
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    private static void requireFields(NetworkTokenizer line, int count) {
+        if (line.fieldCount() != count) {
+            throw new IllegalArgumentException("Expected " + count
+                    + " fields but found " + line.fieldCount());
+        }
+    }
+
+    private static int intField(NetworkTokenizer line, int field) {
+        long value = line.fieldInt(field);
+        if (value == NetworkTokenizer.NOT_AN_INTEGER) {
+            throw new IllegalArgumentException("Not an integer: "
+                    + line.fieldString(field));
+        }
+        return (int) value;
+    }
+}
@@ -0,0 +1,30 @@
+package tms.network;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for a change made to many parts of a network
+ * at once, such as a {@link BulkEditor} script or a batch of instructions
+ * from the user interface.
+ */
+@Name("tms.BulkMutation")
+@Label("Bulk Mutation")
+@Category({"TMS", "Editing"})
+@Description("Many changes applied to a network between two ticks")
+public class BulkMutationEvent extends Event {
+    @Label("Kind")
+    @Description("What made the changes, e.g. a bulk edit file")
+    public String kind;
+
+    @Label("Changes")
+    @Description("Number of changes attempted")
+    public int changes;
+
+    @Label("Failed")
+    @Description("Number of changes that failed or were rolled back")
+    public int failed;
+}
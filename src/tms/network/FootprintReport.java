@@ -0,0 +1,253 @@
+package tms.network;
+
+import tms.congestion.AveragingCongestionCalculator;
+import tms.intersection.Intersection;
+import tms.intersection.IntersectionLights;
+import tms.route.Route;
+import tms.route.SpeedSign;
+import tms.route.TrafficLight;
+import tms.sensors.DemoSensor;
+import tms.sensors.ReadingHistory;
+import tms.sensors.Sensor;
+import tms.util.ObjectLayout;
+import tms.util.SymbolTable;
+import tms.util.TimedItemManager;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Estimates the heap used by a loaded network, by type of entity, so that
+ * heap sizes can be chosen from the size of the networks to be run.
+ * <p>
+ * The network is walked from its intersections to their incoming routes,
+ * and from each route to its sensors, traffic light and speed sign. Each
+ * object's size is estimated by {@link ObjectLayout}, along with the arrays
+ * and strings it alone refers to, such as the data and reading history of
+ * a sensor or the ID of an intersection. Lists and tables are counted at the
+ * size they hold, not counting spare capacity, and every route is counted
+ * with the congestion calculator it creates once its congestion is first
+ * asked for.
+ * <p>
+ * The network must not change while it is measured, so the report must be
+ * made between ticks.
+ */
+public class FootprintReport {
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+
+    private FootprintReport() {}
+
+    /**
+     * Measures the given network.
+     *
+     * @param network the network to measure
+     * @return the estimated footprint of the network
+     */
+    public static FootprintReport measure(Network network) {
+        FootprintReport report = new FootprintReport();
+        List<Intersection> intersections = network.getIntersections();
+        SymbolTable symbols = network.getSymbols();
+        int routes = 0;
+
+        for (Intersection intersection : intersections) {
+            report.count("Intersection");
+            report.addObject("Intersection", Intersection.class);
+            // Incoming route list
+            report.addObject("Intersection", ArrayList.class);
+            report.addArray("Intersection", Object.class,
+                    intersection.getConnectionCount());
+            report.count("Intersection ID");
+            report.addBytes("Intersection ID",
+                    ObjectLayout.stringSize(intersection.getId()));
+            if (intersection.hasTrafficLights()) {
+                report.count("IntersectionLights");
+                report.addObject("IntersectionLights",
+                        IntersectionLights.class);
+            }
+
+            for (Route route : intersection.getConnectionsView()) {
+                routes++;
+                report.count("Route");
+                report.addObject("Route", Route.class);
+                report.addObject("Route", AveragingCongestionCalculator.class);
+                if (route.getSensorCount() > 0) {
+                    report.addArray("Route", Object.class,
+                            route.getSensorCount());
+                }
+                if (route.getTrafficLight() != null) {
+                    report.count("TrafficLight");
+                    report.addObject("TrafficLight", TrafficLight.class);
+                }
+                if (route.hasSpeedSign()) {
+                    report.count("SpeedSign");
+                    report.addObject("SpeedSign", SpeedSign.class);
+                }
+                for (Sensor sensor : route.getSensorsView()) {
+                    String type = sensor.getClass().getSimpleName();
+                    report.count(type);
+                    report.addObject(type, sensor.getClass());
+                    if (sensor instanceof DemoSensor) {
+                        report.addArray(type, int.class,
+                                ((DemoSensor) sensor).getDataLength());
+                    }
+                    ReadingHistory history = sensor.getHistory();
+                    if (history != null) {
+                        report.addObject(type, ReadingHistory.class);
+                        report.addArray(type, int.class, history.getWindow());
+                    }
+                }
+            }
+        }
+
+        // The network, its lists, and its table of IDs and handles
+        report.count("Network");
+        report.addObject("Network", Network.class);
+        report.addObject("Network", ArrayList.class);
+        report.addArray("Network", Object.class, intersections.size());
+        report.addObject("Network", ArrayList.class);
+        report.addArray("Network", Object.class, routes);
+        report.addArray("Network", Object.class, intersections.size());
+        report.addObject("Network", SymbolTable.class);
+        report.addArray("Network", Object.class, symbols.size());
+        report.addArray("Network", int.class, 2 * symbols.size());
+
+        // Every timed item has a slot in the manager, whichever network
+        // it belongs to
+        int timedItems = TimedItemManager.getTimedItemManager()
+                .getTimedItemCount();
+        report.entry("TimedItemManager registration").count = timedItems;
+        report.addArray("TimedItemManager registration", Object.class,
+                timedItems);
+        return report;
+    }
+
+    /**
+     * Returns the entity types measured, in the order they were first
+     * found.
+     *
+     * @return unmodifiable list of entries
+     */
+    public List<Entry> getEntries() {
+        return List.copyOf(entries.values());
+    }
+
+    /**
+     * Returns the entry for the given entity type.
+     *
+     * @param type entity type, e.g. "Route" or "DemoPressurePad"
+     * @return the entry, or null if there are no entities of the type
+     */
+    public Entry getEntry(String type) {
+        return entries.get(type);
+    }
+
+    /**
+     * @return estimated bytes used by the whole network
+     */
+    public long getTotalBytes() {
+        long total = 0;
+        for (Entry entry : entries.values()) {
+            total += entry.bytes;
+        }
+        return total;
+    }
+
+    /**
+     * Returns a table with a line per entity type giving the number of
+     * entities, the estimated bytes they use and the bytes used by each,
+     * followed by the total.
+     *
+     * @return the report as text
+     */
+    @Override
+    public String toString() {
+        StringBuilder table = new StringBuilder(String.format(Locale.ROOT,
+                "%-30s %10s %14s %10s%n", "Type", "Count", "Bytes",
+                "Bytes each"));
+        for (Entry entry : entries.values()) {
+            table.append(String.format(Locale.ROOT,
+                    "%-30s %10d %14d %10.1f%n", entry.type, entry.count,
+                    entry.bytes, entry.getBytesEach()));
+        }
+        table.append(String.format(Locale.ROOT, "%-30s %10s %14d%n",
+                "Total", "", getTotalBytes()));
+        return table.toString();
+    }
+
+    /**
+     * Counts one more entity of the given type.
+     */
+    private void count(String type) {
+        entry(type).count++;
+    }
+
+    /**
+     * Adds an object of the given class, without the objects it refers to,
+     * to the bytes used by an entity type.
+     */
+    private void addObject(String type, Class<?> objectClass) {
+        addBytes(type, ObjectLayout.shallowSize(objectClass));
+    }
+
+    /**
+     * Adds an array to the bytes used by an entity type.
+     */
+    private void addArray(String type, Class<?> elementType, int length) {
+        addBytes(type, ObjectLayout.arraySize(elementType, length));
+    }
+
+    /**
+     * Adds the given bytes to those used by an entity type.
+     */
+    private void addBytes(String type, long bytes) {
+        entry(type).bytes += bytes;
+    }
+
+    private Entry entry(String type) {
+        return entries.computeIfAbsent(type, Entry::new);
+    }
+
+    /**
+     * The number of entities of one type and the bytes they use.
+     */
+    public static class Entry {
+        private final String type;
+        private int count;
+        private long bytes;
+
+        private Entry(String type) {
+            this.type = type;
+        }
+
+        /**
+         * @return the entity type, e.g. "Route" or "DemoPressurePad"
+         */
+        public String getType() {
+            return type;
+        }
+
+        /**
+         * @return number of entities of the type
+         */
+        public int getCount() {
+            return count;
+        }
+
+        /**
+         * @return estimated bytes used by all entities of the type
+         */
+        public long getBytes() {
+            return bytes;
+        }
+
+        /**
+         * @return estimated bytes used by each entity, or 0 if there are none
+         */
+        public double getBytesEach() {
+            return count == 0 ? 0 : (double) bytes / count;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package tms.network;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for one phase of
+ * {@link NetworkInitialiser#loadNetwork(String)}: reading the file, adding
+ * intersections, routes, sensors, lights and signs, and validating the
+ * counts given in the file.
+ */
+@Name("tms.LoadPhase")
+@Label("Network Load Phase")
+@Category({"TMS", "Loading"})
+@Description("One phase of loading a network file")
+public class LoadPhaseEvent extends Event {
+    @Label("Source")
+    @Description("Name of the network file")
+    public String source;
+
+    @Label("Phase")
+    public String phase;
+
+    @Label("Lines")
+    @Description("Number of lines handled by the phase")
+    public int lines;
+}
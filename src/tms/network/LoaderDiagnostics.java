@@ -0,0 +1,149 @@
+package tms.network;
+
+import tms.sensors.Sensor;
+
+import java.util.List;
+
+/**
+ * Receives what {@link NetworkInitialiser} does while loading a network,
+ * one call per intersection, route, sensor, set of lights and speed sign.
+ * <p>
+ * Every method does nothing by default, so a sink only overrides what it
+ * needs. Calls are made on the loading thread while the network is being
+ * built, so a sink must be quick; see {@link LoaderStatistics} for counts
+ * and {@link AsyncLoaderLog} for a full log written on another thread.
+ */
+public interface LoaderDiagnostics {
+    /** Ignores everything; the default when loading a network */
+    LoaderDiagnostics SILENT = new LoaderDiagnostics() {};
+
+    /**
+     * Called when an intersection has been added.
+     *
+     * @param id ID of the intersection
+     */
+    default void intersectionAdded(String id) {}
+
+    /**
+     * Called when a route has been added.
+     *
+     * @param from ID of the intersection the route starts at
+     * @param to ID of the intersection the route ends at
+     * @param defaultSpeed default speed of the route
+     */
+    default void routeAdded(String from, String to, int defaultSpeed) {}
+
+    /**
+     * Called when a sensor has been added to a route.
+     *
+     * @param from ID of the intersection the route starts at
+     * @param to ID of the intersection the route ends at
+     * @param sensor the sensor
+     */
+    default void sensorAdded(String from, String to, Sensor sensor) {}
+
+    /**
+     * Called when traffic lights have been added to an intersection.
+     *
+     * @param id ID of the intersection
+     * @param duration duration of the lights
+     * @param order IDs of the intersections given green in turn
+     */
+    default void lightsAdded(String id, int duration, List<String> order) {}
+
+    /**
+     * Called when an electronic speed sign has been added to a route.
+     *
+     * @param from ID of the intersection the route starts at
+     * @param to ID of the intersection the route ends at
+     * @param speed initial speed shown by the sign
+     */
+    default void speedSignAdded(String from, String to, int speed) {}
+
+    /**
+     * Called when the number of sensors on a route has been checked against
+     * the number given in the file.
+     *
+     * @param from ID of the intersection the route starts at
+     * @param to ID of the intersection the route ends at
+     * @param sensors number of sensors on the route
+     */
+    default void sensorsChecked(String from, String to, int sensors) {}
+
+    /**
+     * Called for anything unusual about the file that is not an error.
+     *
+     * @param message description of what is unusual
+     */
+    default void warning(String message) {}
+
+    /**
+     * Called once loading has finished, whether or not it succeeded. No
+     * other method is called after this.
+     *
+     * @param source name of the file loaded
+     * @param succeeded whether a valid network was loaded
+     */
+    default void finished(String source, boolean succeeded) {}
+
+    /**
+     * Returns a sink that passes every call to this sink, then to the given
+     * sink.
+     *
+     * @param next sink to call after this one
+     * @return the combined sink
+     */
+    default LoaderDiagnostics andThen(LoaderDiagnostics next) {
+        LoaderDiagnostics first = this;
+        return new LoaderDiagnostics() {
+            @Override
+            public void intersectionAdded(String id) {
+                first.intersectionAdded(id);
+                next.intersectionAdded(id);
+            }
+
+            @Override
+            public void routeAdded(String from, String to, int defaultSpeed) {
+                first.routeAdded(from, to, defaultSpeed);
+                next.routeAdded(from, to, defaultSpeed);
+            }
+
+            @Override
+            public void sensorAdded(String from, String to, Sensor sensor) {
+                first.sensorAdded(from, to, sensor);
+                next.sensorAdded(from, to, sensor);
+            }
+
+            @Override
+            public void lightsAdded(String id, int duration,
+                                    List<String> order) {
+                first.lightsAdded(id, duration, order);
+                next.lightsAdded(id, duration, order);
+            }
+
+            @Override
+            public void speedSignAdded(String from, String to, int speed) {
+                first.speedSignAdded(from, to, speed);
+                next.speedSignAdded(from, to, speed);
+            }
+
+            @Override
+            public void sensorsChecked(String from, String to, int sensors) {
+                first.sensorsChecked(from, to, sensors);
+                next.sensorsChecked(from, to, sensors);
+            }
+
+            @Override
+            public void warning(String message) {
+                first.warning(message);
+                next.warning(message);
+            }
+
+            @Override
+            public void finished(String source, boolean succeeded) {
+                first.finished(source, succeeded);
+                next.finished(source, succeeded);
+            }
+        };
+    }
+}
@@ -0,0 +1,144 @@
+package tms.network;
+
+import tms.sensors.PressurePad;
+import tms.sensors.Sensor;
+import tms.sensors.SpeedCamera;
+import tms.sensors.VehicleCount;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Counts what was loaded by {@link NetworkInitialiser} and summarises it in
+ * one line once loading has finished, instead of a line per item.
+ */
+public class LoaderStatistics implements LoaderDiagnostics {
+    private final Consumer<String> summaries;
+    private int intersections, routes, lights, speedSigns, warnings;
+    private int pressurePads, speedCameras, vehicleCounts, otherSensors;
+    private long startNanos = System.nanoTime();
+    private long loadNanos;
+
+    /**
+     * Creates statistics that are only read through the getters and
+     * {@link #toString()}.
+     */
+    public LoaderStatistics() {
+        this(summary -> {});
+    }
+
+    /**
+     * Creates statistics that hand their summary, see {@link #toString()},
+     * to the given consumer when loading finishes, e.g.
+     * {@code System.out::println}.
+     *
+     * @param summaries receives the summary of each load
+     */
+    public LoaderStatistics(Consumer<String> summaries) {
+        this.summaries = summaries;
+    }
+
+    @Override
+    public void intersectionAdded(String id) {
+        intersections++;
+    }
+
+    @Override
+    public void routeAdded(String from, String to, int defaultSpeed) {
+        routes++;
+    }
+
+    @Override
+    public void sensorAdded(String from, String to, Sensor sensor) {
+        if (sensor instanceof PressurePad) {
+            pressurePads++;
+        } else if (sensor instanceof SpeedCamera) {
+            speedCameras++;
+        } else if (sensor instanceof VehicleCount) {
+            vehicleCounts++;
+        } else {
+            otherSensors++;
+        }
+    }
+
+    @Override
+    public void lightsAdded(String id, int duration, List<String> order) {
+        lights++;
+    }
+
+    @Override
+    public void speedSignAdded(String from, String to, int speed) {
+        speedSigns++;
+    }
+
+    @Override
+    public void warning(String message) {
+        warnings++;
+    }
+
+    @Override
+    public void finished(String source, boolean succeeded) {
+        loadNanos = System.nanoTime() - startNanos;
+        summaries.accept((succeeded ? "Loaded " : "Failed to load ")
+                + source + ": " + this);
+    }
+
+    /**
+     * @return number of intersections added
+     */
+    public int getIntersections() {
+        return intersections;
+    }
+
+    /**
+     * @return number of routes added
+     */
+    public int getRoutes() {
+        return routes;
+    }
+
+    /**
+     * @return number of sensors of any type added
+     */
+    public int getSensors() {
+        return pressurePads + speedCameras + vehicleCounts + otherSensors;
+    }
+
+    /**
+     * @return number of sets of traffic lights added
+     */
+    public int getLights() {
+        return lights;
+    }
+
+    /**
+     * @return number of electronic speed signs added
+     */
+    public int getSpeedSigns() {
+        return speedSigns;
+    }
+
+    /**
+     * @return number of warnings
+     */
+    public int getWarnings() {
+        return warnings;
+    }
+
+    /**
+     * Returns a summary of the counts, for example "4 intersections, 5
+     * routes, 4 sensors (2 PP, 1 SC, 1 VC), 1 traffic lights, 1 speed signs,
+     * 0 warnings in 12 ms".
+     *
+     * @return summary of the counts
+     */
+    @Override
+    public String toString() {
+        return intersections + " intersections, " + routes + " routes, "
+                + getSensors() + " sensors (" + pressurePads + " PP, "
+                + speedCameras + " SC, " + vehicleCounts + " VC), "
+                + lights + " traffic lights, " + speedSigns
+                + " speed signs, " + warnings + " warnings in "
+                + loadNanos / 1_000_000 + " ms";
+    }
+}
@@ -8,20 +8,29 @@ import tms.util.IntersectionNotFoundException;
 import tms.util.DuplicateSensorException;
 import tms.util.RouteNotFoundException;
 import tms.util.InvalidOrderException;
+import tms.util.SymbolTable;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class Network {
     /** A list of all instantiated intersections in the network */
     private List<Intersection> intersections = new ArrayList<>();
+    /** Handles of the intersection IDs, shared by every intersection */
+    private final SymbolTable symbols = new SymbolTable();
+    /** The intersections in the network by handle, for constant time lookup */
+    private Intersection[] intersectionsByHandle = new Intersection[16];
     /** A list of all routes in the network */
     private List<Route> routes = new ArrayList<>();
     /** Line break constant for the toString method*/
     private final String LINE_BREAK = System.lineSeparator();
     /** When instantiated, the yellow time of a network should be 1 @1159*/
     int yellowTime = 1;
+    /** Number of changes made to the structure through this network */
+    private int modificationCount = 0;
 
     /**
      * Creates a new empty network with no intersections.
@@ -55,6 +64,20 @@ public class Network {
 
         // Set yellow time
         this.yellowTime = yellowTime;
+        modificationCount++;
+    }
+
+    /**
+     * Returns the number of changes made to this network's structure through
+     * its methods, such as adding intersections, routes, sensors, signs and
+     * lights, or changing speed limits and light durations. Comparing two
+     * counts is a cheap way to tell whether the saved network, as given by
+     * toString(), may have changed in between.
+     *
+     * @return number of changes made so far
+     */
+    public int getModificationCount(){
+        return modificationCount;
     }
 
     /**
@@ -73,17 +96,19 @@ public class Network {
             throw new IllegalArgumentException("ID is whitespace");
         }
 
-        for (Intersection i : intersections){
-            String existingID = i.getId();
-
-            if (existingID.equals(id)){
-                throw new IllegalArgumentException("ID already exists");
-            }
+        if (symbols.find(id) >= 0){
+            throw new IllegalArgumentException("ID already exists");
         }
 
-        intersections.add(
-                new Intersection(id)
-        );
+        int handle = symbols.intern(id);
+        if (handle == intersectionsByHandle.length){
+            intersectionsByHandle = Arrays.copyOf(intersectionsByHandle,
+                    handle * 2);
+        }
+        Intersection intersection = new Intersection(symbols, handle);
+        intersections.add(intersection);
+        intersectionsByHandle[handle] = intersection;
+        modificationCount++;
     }
 
     /***
@@ -109,17 +134,8 @@ public class Network {
             throw new IllegalArgumentException("Default speed is negative");
         }
 
-        Intersection intersectionFrom = null;
-        Intersection intersectionTo = null;
-
-        for (Intersection i : intersections){
-            if (i.getId().equals(from)){
-                intersectionFrom = i;
-            }
-            if (i.getId().equals(to)){
-                intersectionTo = i;
-            }
-        }
+        Intersection intersectionFrom = lookup(from);
+        Intersection intersectionTo = lookup(to);
 
         if (intersectionFrom == null || intersectionTo == null){
             throw new IntersectionNotFoundException("Can not find intersection");
@@ -141,6 +157,7 @@ public class Network {
             } catch (RouteNotFoundException ignored){
 
             }
+            modificationCount++;
 
         } else {
             throw new IllegalStateException("Route already exists");
@@ -196,7 +213,7 @@ public class Network {
             }
         }
 
-        if (!routePermutation(incomingRoutes, target.getConnections())){
+        if (!routePermutation(incomingRoutes, target.getConnectionsView())){
             throw new InvalidOrderException("incomingRoutes: " +
                     incomingRoutes.toString() + " is not a permutation of " +
                     "the intersection's incoming routes " +
@@ -205,6 +222,7 @@ public class Network {
 
         target.addTrafficLights(incomingRoutes, this.getYellowTime(),
                 duration);
+        modificationCount++;
     }
 
     /**
@@ -230,6 +248,7 @@ public class Network {
         // Route.addSpeedSign.
         Route target = getConnection(from, to);
         target.addSpeedSign(initialSpeed);
+        modificationCount++;
     }
 
     /**
@@ -267,6 +286,7 @@ public class Network {
         }
 
         target.setSpeedLimit(newLimit);
+        modificationCount++;
     }
 
     /**
@@ -290,6 +310,30 @@ public class Network {
         if (duration < getYellowTime() + 1)
             throw new IllegalArgumentException();
         target.setLightDuration(duration);
+        modificationCount++;
+    }
+
+    /**
+     * Reduces the speed limits of the routes into the intersection with the
+     * given ID, as by {@link Intersection#reduceIncomingSpeedSigns()}.
+     *
+     * @param intersectionId id of target intersection
+     *
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'intersectionID'
+     */
+    public void reduceIncomingSpeedSigns(String intersectionId)
+            throws IntersectionNotFoundException{
+        findIntersection(intersectionId).reduceIncomingSpeedSigns();
+        modificationCount++;
+    }
+
+    /**
+     * Records a change to the structure made directly to one of this
+     * network's routes or intersections, rather than through its methods.
+     */
+    void modified(){
+        modificationCount++;
     }
 
     /**
@@ -333,7 +377,7 @@ public class Network {
 
         Route target = getRoute(from, to);
         target.addSensor(sensor);
-
+        modificationCount++;
     }
 
     /**
@@ -369,12 +413,53 @@ public class Network {
      */
     public Intersection findIntersection(String id)
             throws IntersectionNotFoundException{
-        for (Intersection i : intersections){
-            if (i.equals(new Intersection(id))){
-                return i;
+        Intersection intersection = lookup(id);
+        if (intersection == null){
+            throw new IntersectionNotFoundException();
+        }
+        return intersection;
+    }
+
+    /**
+     * Returns the symbol table giving the handle of each intersection ID in
+     * this network. See {@link Intersection#getHandle()}.
+     *
+     * @return the symbol table, which must not be changed
+     */
+    public SymbolTable getSymbols() {
+        return symbols;
+    }
+
+    /**
+     * Returns the intersection with the given ID, or null if there is none.
+     */
+    private Intersection lookup(String id) {
+        int handle = symbols.find(id);
+        return handle < 0 ? null : intersectionsByHandle[handle];
+    }
+
+    /**
+     * Removes the route between the two given intersections.
+     *
+     * @param from ID of the intersection the route starts at
+     * @param to ID of the intersection the route ends at
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     * @throws RouteNotFoundException if no route exists between the two
+     * given intersections
+     */
+    public void removeConnection(String from, String to)
+            throws IntersectionNotFoundException, RouteNotFoundException{
+        Route route = findIntersection(to).removeConnection(
+                findIntersection(from));
+        // Routes are usually removed soon after being added, so search back
+        for (int i = routes.size() - 1; i >= 0; i--){
+            if (routes.get(i) == route){
+                routes.remove(i);
+                break;
             }
         }
-        throw new IntersectionNotFoundException();
+        modificationCount++;
     }
 
     /**
@@ -418,6 +503,7 @@ public class Network {
 
         if (existing.hasSpeedSign()){
             newRoute.addSpeedSign(newRouteSpeed);
+            modificationCount++;
         }
     }
 
@@ -491,11 +577,39 @@ public class Network {
      * representation of a network.
      */
     public String toString(){
-        return (intersections.size() + LINE_BREAK +
-                        routes.size() + LINE_BREAK +
-                        getYellowTime() + LINE_BREAK +
-                        intersectionStrings() + LINE_BREAK +
-                        routeStrings())
+        return toStringLater().get();
+    }
+
+    /**
+     * Returns the string representation of this network as it is now, which
+     * may be turned into text later, and on another thread, while this
+     * network carries on changing.
+     * <p>
+     * Only the values that make up the text are copied by this method, which
+     * is much quicker than toString() for a large network. Making the text
+     * is left to the supplier.
+     *
+     * @return a supplier of the text toString() gives at the time of this call
+     */
+    public Supplier<String> toStringLater() {
+        int intersectionCount = intersections.size();
+        int routeCount = routes.size();
+        int yellowTime = getYellowTime();
+        List<Supplier<String>> intersectionTexts =
+                new ArrayList<>(intersectionCount);
+        for (Intersection i : intersections) {
+            intersectionTexts.add(i.toStringLater());
+        }
+        List<Supplier<String>> routeTexts = new ArrayList<>(routeCount);
+        for (Route r : routes) {
+            routeTexts.add(r.toStringLater());
+        }
+
+        return () -> (intersectionCount + LINE_BREAK +
+                        routeCount + LINE_BREAK +
+                        yellowTime + LINE_BREAK +
+                        joinLines(intersectionTexts) + LINE_BREAK +
+                        joinLines(routeTexts))
                 .trim(); // Remove whitespace at EOF
     }
 
@@ -511,31 +625,16 @@ public class Network {
     }
 
     /**
-     * A method to return the all the routes as a concatenated string.
-     * @return concatenated string of routes.toString()
-     */
-    private String routeStrings(){
-        StringBuilder output = new StringBuilder();
-
-        if (routes.size() != 0){
-            for (Route r : routes){
-                output.append(r.toString()).append(LINE_BREAK);
-            }
-        }
-        return output.toString().trim();
-    }
-
-    /**
-     * A method to return all the intersections as a concatenated string.
-     * @return concatenated string of intersections.toString()
+     * A method to return the texts of routes or intersections as a
+     * concatenated string, one per line.
+     * @param texts suppliers given by toStringLater()
+     * @return concatenated string of the supplied texts
      */
-    private String intersectionStrings(){
+    private String joinLines(List<Supplier<String>> texts){
         StringBuilder output = new StringBuilder();
 
-        if (intersections.size() != 0){
-            for (Intersection i : intersections){
-                output.append(i.toString()).append(LINE_BREAK);
-            }
+        for (Supplier<String> text : texts){
+            output.append(text.get()).append(LINE_BREAK);
         }
         return output.toString().trim();
     }
@@ -0,0 +1,548 @@
+package tms.network;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Locale;
+
+/**
+ * Generates synthetic network files, in the format read by
+ * {@link NetworkInitialiser#loadNetwork(String)}, for load and scale
+ * testing.
+ * <p>
+ * Intersections are named "I0", "I1", ... and are laid out by a
+ * {@link Topology}, which gives each intersection up to eight candidate
+ * neighbours. Every decision about a road, intersection or sensor (whether
+ * it exists, its direction, speeds, lights and readings) is a hash of the
+ * seed and the IDs involved, so the same settings always produce the same
+ * file. Nothing is remembered between lines, so files of any size are
+ * written in constant memory, at the cost of visiting every intersection
+ * three times.
+ * <p>
+ * The degree of each intersection is shaped by its topology, the fraction
+ * of candidate roads that are kept, and the fraction of kept roads that are
+ * two way.
+ */
+public class NetworkGenerator {
+    /**
+     * The layout of the intersections, which decides which pairs of
+     * intersections may be joined by a road.
+     */
+    public enum Topology {
+        /**
+         * A square grid filled in row order, with roads between horizontal
+         * and vertical neighbours.
+         */
+        GRID,
+        /**
+         * A hub ("I0") surrounded by rings of {@link #RADIAL_SPOKES}
+         * intersections, with roads along each spoke and around each ring.
+         */
+        RADIAL,
+        /**
+         * A grid where each square also has one diagonal road, with the
+         * direction of the diagonal chosen at random, so that roads never
+         * cross.
+         */
+        RANDOM_PLANAR
+    }
+
+    /** Number of spokes of a {@link Topology#RADIAL} network */
+    public static final int RADIAL_SPOKES = 8;
+
+    // Salts that keep the hashes of different decisions independent
+    private static final long EDGE = 1, TWO_WAY = 2, DIRECTION = 3,
+            DIAGONAL = 4, LIGHTS = 5, ROUTE = 6, DURATION = 7;
+
+    private final Topology topology;
+    private final int intersections;
+    private final long seed;
+    /** Width of the grid of GRID and RANDOM_PLANAR networks */
+    private final int width;
+
+    private double edgeFraction = 1;
+    private double twoWayFraction = 0.8;
+    private double lightFraction = 0.5;
+    private double signFraction = 0.2;
+    private double pressurePadFraction = 0.5;
+    private double speedCameraFraction = 0.3;
+    private double vehicleCountFraction = 0.2;
+    private int traceLength = 20;
+    private int yellowTime = 1;
+
+    /** Reused buffers for neighbours and the line being written */
+    private final int[] neighbours = new int[8];
+    private final StringBuilder line = new StringBuilder();
+    private char[] chars = new char[256];
+
+    /**
+     * Creates a generator with the default settings: every candidate road
+     * kept, 80% of roads two way, lights on half of the intersections,
+     * signs on 20% of routes, sensors of each type on 50% (PP), 30% (SC) and
+     * 20% (VC) of routes, 20 readings per sensor and a yellow time of 1.
+     *
+     * @param topology layout of the intersections
+     * @param intersections number of intersections
+     * @param seed seed for every random decision
+     * @throws IllegalArgumentException if the number of intersections is
+     * negative
+     */
+    public NetworkGenerator(Topology topology, int intersections, long seed) {
+        if (intersections < 0) {
+            throw new IllegalArgumentException(
+                    "Number of intersections must be >= 0");
+        }
+        this.topology = topology;
+        this.intersections = intersections;
+        this.seed = seed;
+        this.width = Math.max(1, (int) Math.ceil(Math.sqrt(intersections)));
+    }
+
+    /**
+     * Sets the fraction of the topology's candidate roads that are built.
+     *
+     * @param fraction between 0 and 1
+     * @return this generator, so that calls can be chained
+     */
+    public NetworkGenerator setEdgeFraction(double fraction) {
+        this.edgeFraction = checkFraction(fraction);
+        return this;
+    }
+
+    /**
+     * Sets the fraction of roads that have a route in both directions. The
+     * others have one route, in a random direction.
+     *
+     * @param fraction between 0 and 1
+     * @return this generator, so that calls can be chained
+     */
+    public NetworkGenerator setTwoWayFraction(double fraction) {
+        this.twoWayFraction = checkFraction(fraction);
+        return this;
+    }
+
+    /**
+     * Sets the fraction of intersections with incoming routes that have
+     * traffic lights.
+     *
+     * @param fraction between 0 and 1
+     * @return this generator, so that calls can be chained
+     */
+    public NetworkGenerator setLightFraction(double fraction) {
+        this.lightFraction = checkFraction(fraction);
+        return this;
+    }
+
+    /**
+     * Sets the fraction of routes that have an electronic speed sign.
+     *
+     * @param fraction between 0 and 1
+     * @return this generator, so that calls can be chained
+     */
+    public NetworkGenerator setSignFraction(double fraction) {
+        this.signFraction = checkFraction(fraction);
+        return this;
+    }
+
+    /**
+     * Sets the fraction of routes that have each type of sensor. A route may
+     * have any combination of the three types.
+     *
+     * @param pressurePads fraction of routes with a pressure pad (PP)
+     * @param speedCameras fraction of routes with a speed camera (SC)
+     * @param vehicleCounts fraction of routes with a vehicle count (VC)
+     * @return this generator, so that calls can be chained
+     */
+    public NetworkGenerator setSensorFractions(double pressurePads,
+                                               double speedCameras,
+                                               double vehicleCounts) {
+        this.pressurePadFraction = checkFraction(pressurePads);
+        this.speedCameraFraction = checkFraction(speedCameras);
+        this.vehicleCountFraction = checkFraction(vehicleCounts);
+        return this;
+    }
+
+    /**
+     * Sets the number of readings in each sensor's data.
+     *
+     * @param length at least 1
+     * @return this generator, so that calls can be chained
+     */
+    public NetworkGenerator setTraceLength(int length) {
+        if (length < 1) {
+            throw new IllegalArgumentException("Trace length must be >= 1");
+        }
+        this.traceLength = length;
+        return this;
+    }
+
+    /**
+     * Sets the yellow time of the network's traffic lights.
+     *
+     * @param yellowTime at least 1
+     * @return this generator, so that calls can be chained
+     */
+    public NetworkGenerator setYellowTime(int yellowTime) {
+        if (yellowTime < 1) {
+            throw new IllegalArgumentException("Yellow time must be >= 1");
+        }
+        this.yellowTime = yellowTime;
+        return this;
+    }
+
+    /**
+     * Writes the network to the file with the given name, encoded using
+     * the platform's default charset.
+     *
+     * @param filename name of the file to write
+     * @throws IOException if the file cannot be written
+     */
+    public void write(String filename) throws IOException {
+        try (Writer out = Files.newBufferedWriter(Paths.get(filename),
+                Charset.defaultCharset())) {
+            write(out);
+        }
+    }
+
+    /**
+     * Writes the network to the given writer, which is not closed.
+     *
+     * @param out writer to write the network file to
+     * @throws IOException if the writer throws one
+     */
+    public void write(Writer out) throws IOException {
+        Writer writer = out instanceof BufferedWriter ? out
+                : new BufferedWriter(out, 1 << 16);
+
+        long routes = 0;
+        for (int i = 0; i < intersections; i++) {
+            int count = neighbours(i);
+            for (int k = 0; k < count; k++) {
+                if (hasRoute(neighbours[k], i)) {
+                    routes++;
+                }
+            }
+        }
+        line.setLength(0);
+        line.append("; ").append(topology).append(" network, seed ")
+                .append(seed).append('\n')
+                .append(intersections).append('\n')
+                .append(routes).append('\n')
+                .append(yellowTime).append('\n');
+        flushLine(writer);
+
+        for (int i = 0; i < intersections; i++) {
+            line.append('I').append(i);
+            if (unit(hash(LIGHTS, i, i)) < lightFraction) {
+                appendLights(i);
+            }
+            line.append('\n');
+            flushLine(writer);
+        }
+
+        for (int i = 0; i < intersections; i++) {
+            int count = neighbours(i);
+            for (int k = 0; k < count; k++) {
+                if (hasRoute(neighbours[k], i)) {
+                    appendRoute(neighbours[k], i);
+                    flushLine(writer);
+                }
+            }
+        }
+        writer.flush();
+    }
+
+    /**
+     * Writes a network file from the command line.
+     * <p>
+     * Arguments: TOPOLOGY INTERSECTIONS SEED FILENAME [SETTING=VALUE ...]
+     * <p>
+     * TOPOLOGY is one of GRID, RADIAL or RANDOM_PLANAR. Settings are edges,
+     * twoWay, lights, signs, pp, sc and vc (fractions between 0 and 1), and
+     * trace and yellow (integers), e.g. "lights=0.25 trace=100".
+     *
+     * @param args from the command line
+     */
+    public static void main(String... args) {
+        if (args.length < 4) {
+            System.out.println("Usage: TOPOLOGY INTERSECTIONS SEED FILENAME"
+                    + " [SETTING=VALUE ...]");
+            System.exit(1);
+        }
+
+        try {
+            NetworkGenerator generator = new NetworkGenerator(
+                    Topology.valueOf(args[0].toUpperCase(Locale.ROOT)),
+                    Integer.parseInt(args[1]), Long.parseLong(args[2]));
+            double pp = generator.pressurePadFraction;
+            double sc = generator.speedCameraFraction;
+            double vc = generator.vehicleCountFraction;
+            for (int i = 4; i < args.length; i++) {
+                String[] setting = args[i].split("=", 2);
+                String value = setting.length == 2 ? setting[1] : "";
+                switch (setting[0]) {
+                    case "edges":
+                        generator.setEdgeFraction(Double.parseDouble(value));
+                        break;
+                    case "twoWay":
+                        generator.setTwoWayFraction(
+                                Double.parseDouble(value));
+                        break;
+                    case "lights":
+                        generator.setLightFraction(Double.parseDouble(value));
+                        break;
+                    case "signs":
+                        generator.setSignFraction(Double.parseDouble(value));
+                        break;
+                    case "pp":
+                        pp = Double.parseDouble(value);
+                        break;
+                    case "sc":
+                        sc = Double.parseDouble(value);
+                        break;
+                    case "vc":
+                        vc = Double.parseDouble(value);
+                        break;
+                    case "trace":
+                        generator.setTraceLength(Integer.parseInt(value));
+                        break;
+                    case "yellow":
+                        generator.setYellowTime(Integer.parseInt(value));
+                        break;
+                    default:
+                        throw new IllegalArgumentException(
+                                "Unknown setting: " + setting[0]);
+                }
+            }
+            generator.setSensorFractions(pp, sc, vc);
+            generator.write(args[3]);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Error generating network: " + e.toString());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Appends the lights of the given intersection, which go green for its
+     * incoming routes in the order they are found. Nothing is appended if
+     * the intersection has no incoming routes.
+     */
+    private void appendLights(int to) {
+        int start = line.length();
+        line.append(':').append(yellowTime + 1
+                + (int) (hash(DURATION, to, to) >>> 59)).append(':');
+        int count = neighbours(to);
+        boolean any = false;
+        for (int k = 0; k < count; k++) {
+            if (hasRoute(neighbours[k], to)) {
+                if (any) {
+                    line.append(',');
+                }
+                line.append('I').append(neighbours[k]);
+                any = true;
+            }
+        }
+        if (!any) {
+            line.setLength(start);
+        }
+    }
+
+    /**
+     * Appends the route from one intersection to another, followed by its
+     * sensors.
+     */
+    private void appendRoute(int from, int to) {
+        long state = hash(ROUTE, from, to);
+        state = next(state);
+        int speed = 40 + (int) ((state >>> 33) % 61);
+        state = next(state);
+        boolean sign = unit(state) < signFraction;
+        state = next(state);
+        boolean pp = unit(state) < pressurePadFraction;
+        state = next(state);
+        boolean sc = unit(state) < speedCameraFraction;
+        state = next(state);
+        boolean vc = unit(state) < vehicleCountFraction;
+        int sensors = (pp ? 1 : 0) + (sc ? 1 : 0) + (vc ? 1 : 0);
+
+        line.append('I').append(from).append(":I").append(to).append(':')
+                .append(speed).append(':').append(sensors);
+        if (sign) {
+            state = next(state);
+            line.append(':').append(40 + (int) ((state >>> 33) % 61));
+        }
+        line.append('\n');
+
+        if (pp) {
+            // Seconds per vehicle passing over the pad
+            state = next(state);
+            int threshold = 1 + (int) ((state >>> 33) % 10);
+            state = appendSensor("PP", threshold, 2 * threshold + 1, state);
+        }
+        if (sc) {
+            // Average speed of vehicles, limited by the route's speed
+            state = appendSensor("SC", speed, speed + 1, state);
+        }
+        if (vc) {
+            // Vehicles per minute
+            state = next(state);
+            int threshold = 20 + (int) ((state >>> 33) % 41);
+            appendSensor("VC", threshold, threshold + 21, state);
+        }
+    }
+
+    /**
+     * Appends a sensor with readings between 0 and bound - 1, returning the
+     * state of the random sequence after the readings.
+     */
+    private long appendSensor(String type, int threshold, int bound,
+                              long state) {
+        line.append(type).append(':').append(threshold).append(':');
+        for (int i = 0; i < traceLength; i++) {
+            state = next(state);
+            if (i > 0) {
+                line.append(',');
+            }
+            line.append((int) ((state >>> 33) % bound));
+        }
+        line.append('\n');
+        return state;
+    }
+
+    /**
+     * Returns true if there is a route from one neighbouring intersection to
+     * the other.
+     */
+    private boolean hasRoute(int from, int to) {
+        int low = Math.min(from, to), high = Math.max(from, to);
+        if (unit(hash(EDGE, low, high)) >= edgeFraction) {
+            return false;
+        }
+        if (unit(hash(TWO_WAY, low, high)) < twoWayFraction) {
+            return true;
+        }
+        boolean upwards = hash(DIRECTION, low, high) < 0;
+        return upwards == (from == low);
+    }
+
+    /**
+     * Stores the candidate neighbours of the given intersection in
+     * {@link #neighbours}, always in the same order.
+     *
+     * @return number of candidate neighbours
+     */
+    private int neighbours(int i) {
+        int count = 0;
+        if (topology == Topology.RADIAL) {
+            if (i == 0) {
+                for (int k = 1; k <= RADIAL_SPOKES && k < intersections;
+                     k++) {
+                    neighbours[count++] = k;
+                }
+                return count;
+            }
+            int spoke = (i - 1) % RADIAL_SPOKES;
+            int ringStart = i - spoke;
+            neighbours[count++] = i <= RADIAL_SPOKES ? 0 : i - RADIAL_SPOKES;
+            count = addIfPresent(count, i + RADIAL_SPOKES);
+            int next = ringStart + (spoke + 1) % RADIAL_SPOKES;
+            int previous = ringStart
+                    + (spoke + RADIAL_SPOKES - 1) % RADIAL_SPOKES;
+            count = addIfPresent(count, next);
+            if (previous != next) {
+                count = addIfPresent(count, previous);
+            }
+            return count;
+        }
+
+        int x = i % width, y = i / width;
+        if (x > 0) {
+            neighbours[count++] = i - 1;
+        }
+        if (x + 1 < width) {
+            count = addIfPresent(count, i + 1);
+        }
+        if (y > 0) {
+            neighbours[count++] = i - width;
+        }
+        count = addIfPresent(count, i + width);
+
+        if (topology == Topology.RANDOM_PLANAR) {
+            // Each square has the diagonal "\" (false) or "/" (true)
+            if (x > 0 && y > 0 && !slash(x - 1, y - 1)) {
+                neighbours[count++] = i - width - 1;
+            }
+            if (y > 0 && square(x, y - 1) && slash(x, y - 1)) {
+                neighbours[count++] = i - width + 1;
+            }
+            if (x > 0 && square(x - 1, y) && slash(x - 1, y)) {
+                neighbours[count++] = i + width - 1;
+            }
+            if (x + 1 < width && square(x, y) && !slash(x, y)) {
+                neighbours[count++] = i + width + 1;
+            }
+        }
+        return count;
+    }
+
+    private int addIfPresent(int count, int neighbour) {
+        if (neighbour < intersections) {
+            neighbours[count++] = neighbour;
+        }
+        return count;
+    }
+
+    /**
+     * Returns true if all four corners of the square whose top left corner
+     * is at the given position exist.
+     */
+    private boolean square(int x, int y) {
+        return x + 1 < width && (y + 1) * width + x + 1 < intersections;
+    }
+
+    private boolean slash(int x, int y) {
+        return hash(DIAGONAL, x, y) < 0;
+    }
+
+    private void flushLine(Writer writer) throws IOException {
+        int length = line.length();
+        if (chars.length < length) {
+            chars = new char[Math.max(length, 2 * chars.length)];
+        }
+        line.getChars(0, length, chars, 0);
+        writer.write(chars, 0, length);
+        line.setLength(0);
+    }
+
+    private long hash(long salt, long a, long b) {
+        return next(next(next(seed ^ salt * 0x9E3779B97F4A7C15L) ^ a) ^ b);
+    }
+
+    /**
+     * One step of the SplitMix64 sequence, which also serves as a hash.
+     */
+    private static long next(long state) {
+        long z = state + 0x9E3779B97F4A7C15L;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Returns a value in [0, 1) from the top 53 bits of the given hash.
+     */
+    private static double unit(long hash) {
+        return (hash >>> 11) * 0x1.0p-53;
+    }
+
+    private static double checkFraction(double fraction) {
+        if (!(fraction >= 0 && fraction <= 1)) {
+            throw new IllegalArgumentException(
+                    "Fraction must be between 0 and 1");
+        }
+        return fraction;
+    }
+}
@@ -1,9 +1,11 @@
 package tms.network;
 
+import tms.intersection.Intersection;
 import tms.sensors.*;
 import tms.util.*;
 
 import java.io.*;
+import java.nio.CharBuffer;
 import java.util.*;
 
 public class NetworkInitialiser {
@@ -12,6 +14,9 @@ public class NetworkInitialiser {
     /** Delimiter used to separate individual elements in a variable-length list
         on a single line */
     public static final String LINE_LIST_SEPARATOR = ",";
+    /** Types of sensor which may be defined in a network file. These are
+        also forbidden as intersection IDs */
+    private static final String[] SENSOR_TYPES = {"PP", "SC", "VC"};
 
 
     public NetworkInitialiser() {
@@ -81,10 +86,73 @@ public class NetworkInitialiser {
      */
     public static Network loadNetwork(String filename) throws IOException,
             InvalidNetworkException {
+        return loadNetwork(filename, LoaderDiagnostics.SILENT);
+    }
+
+    /**
+     * Loads a network from the given file, reporting every intersection,
+     * route, sensor, set of traffic lights and speed sign added to the given
+     * diagnostics. See {@link NetworkInitialiser#loadNetwork(String)} for the
+     * file format.
+     * <p>
+     * {@link LoaderDiagnostics#finished(String, boolean)} is called once
+     * loading ends, whether or not the network was valid.
+     *
+     * @param filename name of the file from which to load the network
+     * @param diagnostics told about each item as it is loaded
+     * @return the Network loaded from the file
+     * @throws IOException if the file cannot be read
+     * @throws InvalidNetworkException if the format of the file is invalid
+     */
+    public static Network loadNetwork(String filename,
+                                      LoaderDiagnostics diagnostics)
+            throws IOException, InvalidNetworkException {
+        boolean succeeded = false;
+        try {
+            Network n = loadNetwork(NetworkTokenizer.fromFile(filename),
+                    filename, diagnostics);
+            succeeded = true;
+            return n;
+        } finally {
+            diagnostics.finished(filename, succeeded);
+        }
+    }
+
+    /**
+     * Loads a network from the given characters, such as a network saved to
+     * a string with {@link Network#toString()}. See
+     * {@link NetworkInitialiser#loadNetwork(String)} for the format.
+     *
+     * @param input characters of a network file
+     * @param name name of the source, used in error messages
+     * @return the Network loaded from the characters
+     * @throws InvalidNetworkException if the format of the input is invalid
+     */
+    public static Network loadNetwork(CharBuffer input, String name)
+            throws InvalidNetworkException {
+        return loadNetwork(new NetworkTokenizer(input), name,
+                LoaderDiagnostics.SILENT);
+    }
+
+    /**
+     * Loads a network from the characters read by the given tokenizer. See
+     * {@link NetworkInitialiser#loadNetwork(String)} for the file format.
+     *
+     * @param tokenizer tokenizer positioned at the start of the network file
+     * @param name name of the source, used in error messages
+     * @param diagnostics told about each item as it is loaded
+     * @return the Network loaded from the tokenizer's input
+     * @throws InvalidNetworkException if the format of the input is invalid
+     */
+    private static Network loadNetwork(NetworkTokenizer tokenizer,
+                                       String name,
+                                       LoaderDiagnostics diagnostics)
+            throws InvalidNetworkException {
         Network n = new Network();
 
-        // Parse the network as a file.
-        List<String> file = read(filename);
+        // Tokenize and classify every line of the file.
+        LoadPhaseEvent event = beginPhase();
+        NetworkLines file = read(tokenizer, name, diagnostics);
 
         // Make sure that the first 3 lines are valid constant values;
         // Number of intersections must be non-negative
@@ -92,32 +160,66 @@ public class NetworkInitialiser {
         // YellowTime must be positive (non-negative and non-zero)
         validateConstants(file);
         n.setYellowTime(getYellowTime(file));
+        event = endPhase(event, name, "read", file.size());
 
         // Create intersections, then routes, sensors and traffic lights
-        addIntersections(file, n);
-        addRoutes(file, n);
-        addSensors(file, n);
-
-        addLights(file, n);
-        addSpeedSign(file, n);
+        int intersections = file.count(NetworkLines.INTERSECTION);
+        int routes = file.count(NetworkLines.ROUTE);
+        addIntersections(file, n, diagnostics);
+        event = endPhase(event, name, "intersections", intersections);
+        addRoutes(file, n, diagnostics);
+        event = endPhase(event, name, "routes", routes);
+        addSensors(file, n, diagnostics);
+        event = endPhase(event, name, "sensors",
+                file.count(NetworkLines.SENSOR));
+
+        addLights(file, n, diagnostics);
+        event = endPhase(event, name, "lights", intersections);
+        addSpeedSign(file, n, diagnostics);
+        event = endPhase(event, name, "signs", routes);
 
         checkNumRoutes(file, n);
         checkNumIntersections(file, n);
-        checkNumSensors(file, n);
+        checkNumSensors(file, n, diagnostics);
+        endPhase(event, name, "validation", file.size());
         return n;
     }
 
-    private static void validateConstants(List<String> file)
+    private static LoadPhaseEvent beginPhase() {
+        LoadPhaseEvent event = new LoadPhaseEvent();
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Records the given phase of loading if Flight Recorder is on, and
+     * begins the next phase.
+     *
+     * @return event for the next phase
+     */
+    private static LoadPhaseEvent endPhase(LoadPhaseEvent event,
+                                           String source, String phase,
+                                           int lines) {
+        event.end();
+        if (event.shouldCommit()) {
+            event.source = source;
+            event.phase = phase;
+            event.lines = lines;
+            event.commit();
+        }
+        return beginPhase();
+    }
+
+    private static void validateConstants(NetworkLines file)
             throws InvalidNetworkException {
         for (int lineNumber = 1; lineNumber < 4; lineNumber++){
-            String line = file.get(lineNumber-1);
-            if (!isInteger(line)){
+            long value = file.integer(lineNumber - 1);
+            if (value == NetworkTokenizer.NOT_AN_INTEGER){
                 throw new InvalidNetworkException(
-                        "Argument cannot be converted to an integer (" + line
-                                + ")"
+                        "Argument cannot be converted to an integer (" +
+                                file.lineString(lineNumber - 1) + ")"
                 );
             }
-            int value = Integer.parseInt(line);
             if (value < 0){
                 // Number of intersections, routes and yellowTime can't be
                 // negative
@@ -134,7 +236,8 @@ public class NetworkInitialiser {
         }
     }
 
-    private static void addIntersections(List<String> file, Network n)
+    private static void addIntersections(NetworkLines file, Network n,
+                                         LoaderDiagnostics diagnostics)
             throws InvalidNetworkException {
         // We can loop through the file until we get to a line which is not a
         // valid intersection string. This will lead to one of two cases:
@@ -142,9 +245,8 @@ public class NetworkInitialiser {
         // 2) The line is a route string -> Move on to the next one.
         // Let both cases be handled by the addRoute() method.
         for (int i = 3; i < file.size(); i++){
-            String line = file.get(i);
-            if (validIntersectionDefinition(line)){
-                String intersectionID = line.split(LINE_INFO_SEPARATOR)[0];
+            if (file.kind(i) == NetworkLines.INTERSECTION){
+                String intersectionID = file.seek(i).fieldString(0);
                 boolean intersectionExists = true;
                 try{
                     n.findIntersection(intersectionID);
@@ -157,8 +259,7 @@ public class NetworkInitialiser {
                 } else throw new InvalidNetworkException("Duplicate " +
                         "Intersection ID");
 
-
-                System.out.println("+ intersection " + intersectionID);
+                diagnostics.intersectionAdded(intersectionID);
             } else return;
             // Don't throw as we might have a (valid) route
             // definition. Just exit the function and let the addRoutes()
@@ -175,111 +276,102 @@ public class NetworkInitialiser {
      * by (4 + i) where i is the number of intersections.
      * @param file object to parse
      * @param n    network to add to / to use for comparison
+     * @param diagnostics told about each route added
      * @throws InvalidNetworkException
      */
-    private static void addRoutes(List<String> file, Network n) throws InvalidNetworkException {
+    private static void addRoutes(NetworkLines file, Network n,
+                                  LoaderDiagnostics diagnostics)
+            throws InvalidNetworkException {
         int numberOfIntersections = n.getIntersections().size();
         int start = 4 + numberOfIntersections;
         String from, to;
 
         for (int lineNumber = start; lineNumber <= file.size(); lineNumber++){
-            String line = file.get(lineNumber - 1);
-            boolean validRoute = validRouteDefinition(line);
-            boolean validSensor = validSensorDefinition(line);
-            boolean valid = validRoute || validSensor;
-
-            if (valid){
-                String[] components = line.split(LINE_INFO_SEPARATOR);
-                if (validRoute){
-                    from = components[0];
-                    to  = components[1];
-                    int defaultSpeed = Integer.parseInt(components[2]);
-
-                    // Check to see whether intersections with id 'to' and
-                    // 'from' exist.
-                    try{
-                        n.findIntersection(to);
-                        n.findIntersection(from);
-                    } catch (IntersectionNotFoundException e){
-                        throw new InvalidNetworkException(
-                                "Route is invalid as intersection(s) '" +
-                                        to + "', '" + from + "' have not been " +
-                                        "instantiated."
-                        );
-                    }
+            if (file.kind(lineNumber - 1) == NetworkLines.ROUTE){
+                NetworkTokenizer line = file.seek(lineNumber - 1);
+                from = line.fieldString(0);
+                to = line.fieldString(1);
+                int defaultSpeed = (int) line.fieldInt(2);
+
+                // Check to see whether intersections with id 'to' and
+                // 'from' exist.
+                try{
+                    n.findIntersection(to);
+                    n.findIntersection(from);
+                } catch (IntersectionNotFoundException e){
+                    throw new InvalidNetworkException(
+                            "Route is invalid as intersection(s) '" +
+                                    to + "', '" + from + "' have not been " +
+                                    "instantiated."
+                    );
+                }
 
-                    boolean routeExists = true;
+                boolean routeExists = true;
 
-                    try{
-                        n.getConnection(from, to);
-                    } catch (RouteNotFoundException e){
-                        routeExists = false;
-                    } catch (IntersectionNotFoundException e){
-                        throw new InvalidNetworkException("Logic error");
-                    }
+                try{
+                    n.getConnection(from, to);
+                } catch (RouteNotFoundException e){
+                    routeExists = false;
+                } catch (IntersectionNotFoundException e){
+                    throw new InvalidNetworkException("Logic error");
+                }
 
-                    if (routeExists){
-                        throw new InvalidNetworkException(
-                                "Route already exists from " + from + " to "
-                                        + to
-                        );
-                    }
+                if (routeExists){
+                    throw new InvalidNetworkException(
+                            "Route already exists from " + from + " to "
+                                    + to
+                    );
+                }
 
-                    try{
-                        System.out.println("+ Route from " + from + " to " + to);
-                        n.connectIntersections(from, to, defaultSpeed);
-                    } catch (IntersectionNotFoundException e){
-                        throw new InvalidNetworkException("Logic error "
-                            + e.getMessage() + " (" + from + ", " + to + ")");
-                    }
+                try{
+                    n.connectIntersections(from, to, defaultSpeed);
+                    diagnostics.routeAdded(from, to, defaultSpeed);
+                } catch (IntersectionNotFoundException e){
+                    throw new InvalidNetworkException("Logic error "
+                        + e.getMessage() + " (" + from + ", " + to + ")");
                 }
             }
         }
     }
 
-    private static void addSensors(List<String> file, Network n)
+    private static void addSensors(NetworkLines file, Network n,
+                                   LoaderDiagnostics diagnostics)
             throws InvalidNetworkException {
         String from = null, to = null;
 
-        for (String line : file){
-            String[] components = line.split(LINE_INFO_SEPARATOR);
+        for (int i = 0; i < file.size(); i++){
+            int kind = file.kind(i);
+
+            if (kind == NetworkLines.ROUTE){
+                NetworkTokenizer line = file.seek(i);
+                from = line.fieldString(0);
+                to = line.fieldString(1);
+            } else if (kind == NetworkLines.SENSOR){
+                if (from == null){
+                    throw new InvalidNetworkException("Sensor defined " +
+                            "before any route (" + file.lineString(i) + ")");
+                }
 
-            if (validRouteDefinition(line)){
-                from = components[0];
-                to = components[1];
-            } else if (validSensorDefinition(line)){
-                String type = components[0];
-                int threshold = Integer.parseInt(components[1]);
-                int[] data = parseSensorData(components[2]);
+                NetworkTokenizer line = file.seek(i);
+                int threshold = (int) line.fieldInt(1);
+                int[] data = parseSensorData(line);
 
                 Sensor sensorToAdd;
 
-                switch (type){
-                    case "PP":
-                        sensorToAdd = new DemoPressurePad(data, threshold);
-                        break;
-                    case "SC":
-                        sensorToAdd = new DemoSpeedCamera(data, threshold);
-                        break;
-                    case "VC":
-                        sensorToAdd = new DemoVehicleCount(data, threshold);
-                        break;
-                    default:
-                        throw new InvalidNetworkException("Invalid sensor " +
-                                "type");
-                }
+                if (line.fieldEquals(0, "PP")){
+                    sensorToAdd = new DemoPressurePad(data, threshold);
+                } else if (line.fieldEquals(0, "SC")){
+                    sensorToAdd = new DemoSpeedCamera(data, threshold);
+                } else if (line.fieldEquals(0, "VC")){
+                    sensorToAdd = new DemoVehicleCount(data, threshold);
+                } else throw new InvalidNetworkException("Invalid sensor " +
+                        "type");
 
                 boolean duplicateSensor = false;
 
                 try{
-                    List<Sensor> existingSensors =
-                            n.getConnection(from, to).getSensors();
-
-                    for (Sensor s : existingSensors){
-                        String existingType =
-                                s.toString().split(LINE_INFO_SEPARATOR)[0];
-
-                        if (existingType.equals(type)){
+                    for (Sensor s : n.getConnection(from, to).getSensorsView()){
+                        if (s.getClass().equals(sensorToAdd.getClass())){
                             // Same type as existing sensor
                             duplicateSensor = true;
                         }
@@ -295,8 +387,7 @@ public class NetworkInitialiser {
 
                 try{
                     n.addSensor(from, to, sensorToAdd);
-                    System.out.println("+ sensor            [" + from + "] ->" +
-                            " [" + to + "] " + sensorToAdd.toString());
+                    diagnostics.sensorAdded(from, to, sensorToAdd);
                 } catch (IntersectionNotFoundException | RouteNotFoundException e){
                     throw new InvalidNetworkException();
                 } catch (DuplicateSensorException e){
@@ -312,21 +403,23 @@ public class NetworkInitialiser {
      * @param file data to iterate through
      * @param n network object
      */
-    private static void addLights(List<String> file, Network n)
+    private static void addLights(NetworkLines file, Network n,
+                                  LoaderDiagnostics diagnostics)
             throws InvalidNetworkException {
+        int yellowTime = getYellowTime(file);
+
         for (int i = 3; i < file.size(); i++){
-            String line = file.get(i);
-            if (validIntersectionDefinition(line)){
-                String[] components = line.split(LINE_INFO_SEPARATOR);
-                if (components.length == 3){
+            if (file.kind(i) == NetworkLines.INTERSECTION){
+                NetworkTokenizer line = file.seek(i);
+                if (line.fieldCount() == 3){
                     // Is a traffic light, we have already validated the
-                    // string by running it through validIntersectionDefinition.
+                    // line when it was classified as an intersection.
 
-                    List<String> order = parseLightOrder(components[2], n);
-                    String id = components[0];
-                    int duration = Integer.parseInt(components[1]);
+                    List<String> order = parseLightOrder(line, n);
+                    String id = line.fieldString(0);
+                    int duration = (int) line.fieldInt(1);
 
-                    if (duration < getYellowTime(file) + 1){
+                    if (duration < yellowTime + 1){
                         throw new InvalidNetworkException(
                                 "Invalid duration value (" + duration + ")."
                         );
@@ -334,8 +427,7 @@ public class NetworkInitialiser {
 
                     try{
                         n.addLights(id, duration, order);
-                        System.out.println("+ TrafficLight [" + id + ", "
-                                + duration + ", " + order + "].");
+                        diagnostics.lightsAdded(id, duration, order);
                     } catch (IntersectionNotFoundException
                             | InvalidOrderException e){
                         throw new InvalidNetworkException(
@@ -348,42 +440,34 @@ public class NetworkInitialiser {
         }
     }
 
-    public static void addSpeedSign(List<String> file, Network n) throws InvalidNetworkException {
+    private static void addSpeedSign(NetworkLines file, Network n,
+                                     LoaderDiagnostics diagnostics)
+            throws InvalidNetworkException {
         for (int i = 3; i < file.size(); i++){
-            String line = file.get(i);
-            String[] components = line.split(LINE_INFO_SEPARATOR);
-            if (validRouteDefinition(line) && components.length == 5){
-                String from = components[0];
-                String to = components[1];
-                int defaultSpeed;
-
-                try{
-                    defaultSpeed = Integer.parseInt(components[4]);
-                } catch (NumberFormatException e){
-                    throw new InvalidNetworkException("Invalid default speed");
-                }
-
-                if (defaultSpeed < 0){
-                    // Is negative
-                    throw new InvalidNetworkException(
-                            "Invalid default speed (" + defaultSpeed + ")"
-                    );
+            if (file.kind(i) == NetworkLines.ROUTE){
+                NetworkTokenizer line = file.seek(i);
+                if (line.fieldCount() != 5){
+                    continue;
                 }
 
+                String from = line.fieldString(0);
+                String to = line.fieldString(1);
+                // Already validated as non-negative when classified.
+                int speedSignSpeed = (int) line.fieldInt(4);
 
                 // Has speed sign
                 try{
-                    n.addSpeedSign(from, to, defaultSpeed);
+                    n.addSpeedSign(from, to, speedSignSpeed);
+                    diagnostics.speedSignAdded(from, to, speedSignSpeed);
                 } catch (IntersectionNotFoundException
                         | RouteNotFoundException e){
                     throw new InvalidNetworkException("Logic error!");
                 }
-
             }
         }
     }
 
-    private static void checkNumIntersections(List<String> file, Network n)
+    private static void checkNumIntersections(NetworkLines file, Network n)
         throws InvalidNetworkException {
         int expected = getNumberOfIntersections(file);
         int actual = n.getIntersections().size();
@@ -394,49 +478,44 @@ public class NetworkInitialiser {
         }
     }
 
-    private static void checkNumRoutes(List<String> file, Network n)
+    private static void checkNumRoutes(NetworkLines file, Network n)
             throws InvalidNetworkException {
         int expected = getNumberOfRoutes(file);
         int actual = getNumberOfInstantiatedRoutes(n);
 
         if (expected != actual){
             throw new InvalidNetworkException("Mismatch between number of " +
-                    "intersections defined and declared");
+                    "routes defined and declared");
         }
     }
 
     private static int getNumberOfInstantiatedRoutes(Network n){
-        String networkToString = n.toString();
-        String[] lines = networkToString.split(System.lineSeparator());
         int numberOfInstantiatedRoutes = 0;
 
-        for (String line : lines){
-            if (validRouteDefinition(line)){
-                numberOfInstantiatedRoutes++;
-            }
+        for (Intersection i : n.getIntersections()){
+            numberOfInstantiatedRoutes += i.getConnectionCount();
         }
 
         return numberOfInstantiatedRoutes;
     }
 
-    public static void checkNumSensors(List<String> file, Network n)
+    private static void checkNumSensors(NetworkLines file, Network n,
+                                        LoaderDiagnostics diagnostics)
         throws InvalidNetworkException{
 
-        for (String line : file){
-            if (validRouteDefinition(line)){
-                String[] components = line.split(LINE_INFO_SEPARATOR);
+        for (int i = 0; i < file.size(); i++){
+            if (file.kind(i) == NetworkLines.ROUTE){
+                NetworkTokenizer line = file.seek(i);
 
-                String from = components[0];
-                String to = components[1];
+                String from = line.fieldString(0);
+                String to = line.fieldString(1);
 
-                int numSensorsFromDefinition = Integer.parseInt(
-                        components[3]
-                );
+                int numSensorsFromDefinition = (int) line.fieldInt(3);
 
                 int numSensors;
 
                 try{
-                    numSensors = n.getConnection(from, to).getSensors().size();
+                    numSensors = n.getConnection(from, to).getSensorCount();
                 } catch (IntersectionNotFoundException |
                         RouteNotFoundException e){
                     throw new InvalidNetworkException("Logic error");
@@ -446,21 +525,30 @@ public class NetworkInitialiser {
                     throw new InvalidNetworkException("Mismatch between " +
                             "defined number of sensors and instantiated " +
                             "number of sensors");
-                } else System.out.println(
-                        "Number of sensors for (" + line + ") is ("
-                                + numSensors + ")"
-                );
+                }
+                diagnostics.sensorsChecked(from, to, numSensors);
             }
         }
     }
 
-    public static List<String> parseLightOrder(String inputString, Network n)
+    /**
+     * Reads the traffic light order from the third field of an intersection
+     * line.
+     * @param line tokenizer positioned at an intersection line with lights
+     * @param n network in which the intersections must exist
+     * @return list of intersection IDs in the order given by the line
+     * @throws InvalidNetworkException if an ID is invalid or an intersection
+     * with that ID does not exist in the network
+     */
+    private static List<String> parseLightOrder(NetworkTokenizer line,
+                                                Network n)
             throws InvalidNetworkException {
-        String[] parsedOrder = inputString.split(LINE_LIST_SEPARATOR);
-        List<String> order = new ArrayList<>();
+        int size = line.splitList(2);
+        List<String> order = new ArrayList<>(size);
 
-        for (String intersectionID : parsedOrder){
-            if (validIntersectionID(intersectionID)){
+        for (int i = 0; i < size; i++){
+            String intersectionID = line.itemString(i);
+            if (validOrderID(line, i)){
 
                 try{
                     n.findIntersection(intersectionID);
@@ -482,46 +570,48 @@ public class NetworkInitialiser {
         return order;
     }
 
-    private static int[] parseSensorData(String inputString)
+    private static int[] parseSensorData(NetworkTokenizer line)
             throws InvalidNetworkException {
-        String[] unformattedData = inputString.split(LINE_LIST_SEPARATOR);
-        int[] data = new int[unformattedData.length];
+        int[] data = new int[line.splitList(2)];
 
-        for (int i = 0; i < unformattedData.length; i++){
-            String datum = unformattedData[i];
-            if (isInteger(datum)){
-                data[i] = Integer.parseInt(datum);
-            } else throw new InvalidNetworkException("Data to be parsed is " +
-                    "not an integer! (" + datum + ")");
+        if (!line.readNonNegativeList(data)){
+            throw new InvalidNetworkException("Data to be parsed is " +
+                    "not an integer! (" + line.fieldString(2) + ")");
         }
 
         return data;
     }
 
-    private static boolean validSensorDefinition(String sensorString){
-        String[] components = sensorString.split(LINE_INFO_SEPARATOR);
-
+    /**
+     * Determines whether the tokenizer's current line is a valid sensor
+     * definition: "SENSORTYPE:threshold:list,of,data,values".
+     * @param line tokenizer positioned at the line to be validated
+     * @return true if the line is a valid way of defining a sensor.
+     */
+    private static boolean validSensorDefinition(NetworkTokenizer line){
         // Incorrect number of delimiters, incorrect sensor definition;
-        if (components.length != 3) return false;
-
-        String type = components[0], threshold = components[1], data =
-                components[2];
+        if (line.fieldCount() != 3) return false;
 
         boolean validType = false, validThreshold, validData = true;
 
         // Add to this list when creating a new sensor type;
-        String[] sensorTypes = new String[] {"PP", "SC", "VC"};
-        for (String sensorType : sensorTypes){
-            if (type.equals(sensorType)) {
+        for (String sensorType : SENSOR_TYPES){
+            if (line.fieldEquals(0, sensorType)) {
                 validType = true;
                 break;
             }
         }
 
-        validThreshold = isPositive(threshold);
+        validThreshold = line.fieldInt(1) > 0;
 
-        for (String datum : data.split(LINE_LIST_SEPARATOR)){
-            if (!isNonNeg(datum)){
+        int size = line.splitList(2);
+        if (size == 0){
+            // A sensor needs at least one data value
+            validData = false;
+        }
+        for (int i = 0; i < size; i++){
+            if (line.itemInt(i) < 0){
+                // Negative, or NOT_AN_INTEGER
                 validData = false;
             }
         }
@@ -532,32 +622,21 @@ public class NetworkInitialiser {
 
     /**
      *
-     * @param routeString string to be validated
-     * @return true if the string passed is a valid way of defining a route.
+     * @param line tokenizer positioned at the line to be validated
+     * @return true if the line is a valid way of defining a route.
      */
-    private static boolean validRouteDefinition(String routeString) {
-        String[] components = routeString.split(LINE_INFO_SEPARATOR);
+    private static boolean validRouteDefinition(NetworkTokenizer line) {
+        int length = line.fieldCount();
 
-        if (components.length == 4 || components.length == 5){
+        if (length == 4 || length == 5){
             // Correct length
-            String from = components[0];
-            String to = components[1];
-            if (validIntersectionID(from) && validIntersectionID(to)){
+            if (validIntersectionID(line, 0) && validIntersectionID(line, 1)){
                 // Now validate the default speed and number of sensors
-                String unformattedDefaultSpeed = components[2];
-                String unformattedNumOfSensors = components[3];
-
-                if (isNonNeg(unformattedDefaultSpeed)
-                        && isNonNeg(unformattedNumOfSensors)){
-                    if (components.length == 5){
-                        // Has traffic light
-                        String unformattedSpeedSignSpeed = components[4];
-                        if (isNonNeg(unformattedSpeedSignSpeed)){
-                            // It's fine, return true
-                            return true;
-                        } else{
-                            System.out.println("- route spd is negative");
-                        }
+                if (line.fieldInt(2) >= 0 && line.fieldInt(3) >= 0){
+                    if (length == 5){
+                        // Has speed sign
+                        // A negative speed is reported as an invalid line
+                        return line.fieldInt(4) >= 0;
                     } else return true;
 
                 }
@@ -567,34 +646,32 @@ public class NetworkInitialiser {
         return false;
     }
 
-    private static int getNumberOfIntersections(List<String> file)
-            throws InvalidNetworkException {
-        int numberOfIntersections = Integer.parseInt(file.get(0));
-        if (numberOfIntersections >= 0){
-            return numberOfIntersections;
-        } throw new InvalidNetworkException("Invalid number of intersections");
+    private static int getNumberOfIntersections(NetworkLines file){
+        return (int) file.integer(0);
     }
 
-    private static int getNumberOfRoutes(List<String> file){
-        return Integer.parseInt(file.get(1));
+    private static int getNumberOfRoutes(NetworkLines file){
+        return (int) file.integer(1);
     }
 
-    private static int getYellowTime(List<String> file){
-        return Integer.parseInt(file.get(2));
+    private static int getYellowTime(NetworkLines file){
+        return (int) file.integer(2);
     }
 
-    private static boolean validIntersectionDefinition(String intersectionStr){
-        String[] components = intersectionStr.split(LINE_INFO_SEPARATOR);
-        int length = components.length;
+    /**
+     * @param line tokenizer positioned at the line to be validated
+     * @return true if the line is a valid way of defining an intersection,
+     * with or without traffic lights.
+     */
+    private static boolean validIntersectionDefinition(NetworkTokenizer line){
+        int length = line.fieldCount();
         if (length == 1 || length == 3){
-            String id = components[0];
-            if (validIntersectionID(id)){
+            if (validIntersectionID(line, 0)){
                 if (length == 3){
-                    String duration = components[1], order = components[2];
-
-                    if (isPositive(duration)){
-                        for (String s : order.split(LINE_LIST_SEPARATOR)){
-                            if (!validIntersectionID(s)){
+                    if (line.fieldInt(1) > 0){
+                        int size = line.splitList(2);
+                        for (int i = 0; i < size; i++){
+                            if (!validOrderID(line, i)){
                                 return false;
                             }
                         }
@@ -608,77 +685,61 @@ public class NetworkInitialiser {
         return false;
     }
 
-    private static boolean validIntersectionID(String intersectionID){
-        String[] forbiddenIDs = {"PP", "SC", "VC"};
-
-        for (String forbiddenID : forbiddenIDs){
-            if (intersectionID.equals(forbiddenID)){
+    /**
+     * Determines whether the given field of the tokenizer's current line is
+     * a valid intersection ID.
+     */
+    private static boolean validIntersectionID(NetworkTokenizer line,
+                                               int field){
+        for (String forbiddenID : SENSOR_TYPES){
+            if (line.fieldEquals(field, forbiddenID)){
                 return false;
             }
         }
 
-        return isNotWhitespace(intersectionID);
-    }
-
-    private static boolean isPositive(String toCompare){
-        return isNonNeg(toCompare) && Integer.parseInt(toCompare) != 0;
-    }
-
-    private static boolean isNonNeg(String toCompare){
-        return isInteger(toCompare) && Integer.parseInt(toCompare) >= 0;
-    }
-
-    private static boolean isInteger(String toCompare){
-        try{
-            Integer.parseInt(toCompare);
-        } catch (NumberFormatException e){
-            return false;
-        }
-        return true;
+        return line.fieldHasContent(field);
     }
 
     /**
-     * A method to determine whether a string is completely comprised of
-     * whitespace characters. Whitespace characters are defined as:
-     * 1) Tab character (\t)
-     * 2) Space character ( )
-     * 3) New line character (Given by System.lineSeparator())
-     * @param str the string to compare
-     * @return true if contains at least one non whitespace character. False
-     * otherwise.
+     * Determines whether the given item of the tokenizer's most recently
+     * split list is a valid intersection ID.
      */
-    private static boolean isNotWhitespace(String str){
-        return (str.trim().length() != 0);
-    }
+    private static boolean validOrderID(NetworkTokenizer line, int item){
+        for (String forbiddenID : SENSOR_TYPES){
+            if (line.itemEquals(item, forbiddenID)){
+                return false;
+            }
+        }
 
-    private static List<String> read(String filename) throws IOException,
-            InvalidNetworkException{
-        List<String> file = new ArrayList<>();
-        final char startOfComment = ';';
-        Scanner scanner = new Scanner(new File(filename));
+        return line.itemHasContent(item);
+    }
 
-        while (scanner.hasNextLine()) {
-            String line = scanner.nextLine();
+    private static NetworkLines read(NetworkTokenizer tokenizer,
+                                     String filename,
+                                     LoaderDiagnostics diagnostics)
+            throws InvalidNetworkException{
+        NetworkLines file = new NetworkLines(tokenizer);
 
-            if (line.length() == 0) {
-                // To avoid NPE below, check line length.
-                file.add(System.lineSeparator());
-            } else if (line.charAt(0) != startOfComment) {
+        while (tokenizer.nextLine()) {
+            if (tokenizer.isEmptyLine()) {
+                file.add(NetworkLines.BLANK);
+            } else if (!tokenizer.isComment()) {
                 // Don't add lines which are comments.
-                if (validIntersectionDefinition(line) ||
-                    validRouteDefinition(line) ||
-                    validSensorDefinition(line) ||
-                    isInteger(line)){
-                    file.add(line);
+                if (validIntersectionDefinition(tokenizer)) {
+                    file.add(NetworkLines.INTERSECTION);
+                } else if (validRouteDefinition(tokenizer)) {
+                    file.add(NetworkLines.ROUTE);
+                } else if (validSensorDefinition(tokenizer)) {
+                    file.add(NetworkLines.SENSOR);
                 } else {
                     throw new InvalidNetworkException(
-                            "Invalid line (" + line + ")"
+                            "Invalid line (" + tokenizer.lineString() + ")"
                     );
                 }
             }
         }
         // Check that the only blank lines are on the last two (optionally)
-        checkBlankLines(file);
+        checkBlankLines(file, diagnostics);
 
         // Check that file is at least 3 lines long (length of empty network).
         if (file.size() < 3) {
@@ -695,22 +756,98 @@ public class NetworkInitialiser {
      * A method which checks that the only blank lines in the file are
      * (optionally) the last two lines.
      * @param file the file object to check through
+     * @param diagnostics warned about each blank line at the end
      * @throws InvalidNetworkException If there are blank lines at incorrect
      * locations.
      */
-    private static void checkBlankLines(List<String> file)
+    private static void checkBlankLines(NetworkLines file,
+                                        LoaderDiagnostics diagnostics)
             throws InvalidNetworkException {
         for (int lineNumber = 1; lineNumber < file.size(); lineNumber++){
-            String line = file.get(lineNumber - 1);
-
-            if (line.equals(System.lineSeparator())){
+            if (file.kind(lineNumber - 1) == NetworkLines.BLANK){
                 if (lineNumber <= file.size() - 2){
                     throw new InvalidNetworkException(
                             "Invalid Linebreak at line " + lineNumber + " " +
                                     "with file size + " + file.size()
                     );
-                } else System.out.println(lineNumber + "|" + (file.size() - 2));
+                }
+                diagnostics.warning("Blank line " + lineNumber
+                        + " at the end of the file");
             }
         }
     }
+
+    /**
+     * The non-comment lines of a network file, stored as the kind of each
+     * line and its bounds within the tokenizer's input. Lines are
+     * re-tokenized on demand instead of being copied into Strings.
+     */
+    private static class NetworkLines {
+        static final int BLANK = 0;
+        static final int INTERSECTION = 1;
+        static final int ROUTE = 2;
+        static final int SENSOR = 3;
+
+        private final NetworkTokenizer tokenizer;
+        private int[] kinds = new int[64];
+        private int[] starts = new int[64];
+        private int[] ends = new int[64];
+        private int size = 0;
+        private final int[] counts = new int[4];
+
+        NetworkLines(NetworkTokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        /** Records the tokenizer's current line with the given kind. */
+        void add(int kind) {
+            if (size == kinds.length) {
+                kinds = Arrays.copyOf(kinds, size * 2);
+                starts = Arrays.copyOf(starts, size * 2);
+                ends = Arrays.copyOf(ends, size * 2);
+            }
+            kinds[size] = kind;
+            starts[size] = tokenizer.lineStart();
+            ends[size] = tokenizer.lineEnd();
+            // The first three lines are the constants, not definitions
+            if (size >= 3) {
+                counts[kind]++;
+            }
+            size++;
+        }
+
+        int size() {
+            return size;
+        }
+
+        /**
+         * Returns the number of lines of the given kind, not counting the
+         * constants at the start of the file.
+         */
+        int count(int kind) {
+            return counts[kind];
+        }
+
+        int kind(int index) {
+            return kinds[index];
+        }
+
+        /** Positions the tokenizer at the given line and returns it. */
+        NetworkTokenizer seek(int index) {
+            tokenizer.seekLine(starts[index], ends[index]);
+            return tokenizer;
+        }
+
+        /** Parses the whole of the given line as an integer. */
+        long integer(int index) {
+            if (kinds[index] == BLANK) {
+                return NetworkTokenizer.NOT_AN_INTEGER;
+            }
+            return seek(index).lineInt();
+        }
+
+        String lineString(int index) {
+            return seek(index).lineString();
+        }
+    }
 }
@@ -0,0 +1,405 @@
+package tms.network;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * A hand-written tokenizer for the network file format described in
+ * {@link NetworkInitialiser#loadNetwork(String)}.
+ * <p>
+ * The tokenizer works directly on a {@link CharBuffer} holding the whole file.
+ * Lines, colon separated fields and comma separated list items are all
+ * represented as offsets into that buffer, and integers are parsed straight
+ * from the buffer, so no intermediate String objects are created. Strings
+ * are only created when an identifier has to be handed to the
+ * {@link Network} API (see {@link NetworkTokenizer#fieldString(int)}).
+ * <p>
+ * Fields and list items follow the same rules as
+ * {@link String#split(String)}: every separator starts a new field and
+ * trailing empty fields are discarded.
+ */
+public class NetworkTokenizer {
+    /** Character at the start of a line that marks the line as a comment */
+    public static final char COMMENT = ';';
+    /** Returned by the integer parsing methods if a value is not an integer */
+    public static final long NOT_AN_INTEGER = Long.MIN_VALUE;
+
+    private static final char INFO_SEPARATOR =
+            NetworkInitialiser.LINE_INFO_SEPARATOR.charAt(0);
+    private static final char LIST_SEPARATOR =
+            NetworkInitialiser.LINE_LIST_SEPARATOR.charAt(0);
+
+    /** Contents of the whole file being tokenized */
+    private final CharBuffer input;
+    /** Position at which the next call to nextLine() starts reading */
+    private int position = 0;
+    /** Bounds of the current line, excluding the line terminator */
+    private int lineStart = 0, lineEnd = 0;
+
+    /** Bounds of the fields of the current line */
+    private int[] fieldStarts = new int[8], fieldEnds = new int[8];
+    private int fieldCount;
+
+    /** Bounds of the list items of the most recently split field */
+    private int[] itemStarts = new int[32], itemEnds = new int[32];
+    private int itemCount;
+
+    /**
+     * Creates a tokenizer over the given characters.
+     *
+     * @param input characters of a network file
+     */
+    public NetworkTokenizer(CharBuffer input) {
+        this.input = input;
+        this.position = input.position();
+    }
+
+    /**
+     * Reads the whole file with the given name and creates a tokenizer over
+     * its contents, decoded using the platform's default charset.
+     *
+     * @param filename name of the file to read
+     * @return tokenizer over the file's contents
+     * @throws IOException if the file cannot be read
+     */
+    public static NetworkTokenizer fromFile(String filename)
+            throws IOException {
+        ByteBuffer bytes = ByteBuffer.wrap(
+                Files.readAllBytes(Paths.get(filename)));
+        return new NetworkTokenizer(Charset.defaultCharset().decode(bytes));
+    }
+
+    /**
+     * Advances to the next line of the input and splits it into fields.
+     * <p>
+     * Lines may be terminated by "\n", "\r\n" or "\r". A terminator at the
+     * very end of the input does not start another (empty) line.
+     *
+     * @return true if another line was read, false at the end of the input
+     */
+    public boolean nextLine() {
+        int limit = input.limit();
+        if (position >= limit) {
+            return false;
+        }
+
+        int end = position;
+        while (end < limit) {
+            char c = input.get(end);
+            if (c == '\n' || c == '\r') {
+                break;
+            }
+            end++;
+        }
+
+        lineStart = position;
+        lineEnd = end;
+
+        if (end < limit && input.get(end) == '\r' && end + 1 < limit
+                && input.get(end + 1) == '\n') {
+            end++;
+        }
+        position = end + 1;
+
+        splitFields();
+        return true;
+    }
+
+    /**
+     * Moves back to a line previously returned by {@link #nextLine()}, using
+     * the bounds given by {@link #lineStart()} and {@link #lineEnd()}.
+     *
+     * @param start offset of the first character of the line
+     * @param end offset one past the last character of the line
+     */
+    public void seekLine(int start, int end) {
+        lineStart = start;
+        lineEnd = end;
+        splitFields();
+    }
+
+    /**
+     * @return offset of the first character of the current line
+     */
+    public int lineStart() {
+        return lineStart;
+    }
+
+    /**
+     * @return offset one past the last character of the current line
+     */
+    public int lineEnd() {
+        return lineEnd;
+    }
+
+    /**
+     * @return true if the current line contains no characters at all
+     */
+    public boolean isEmptyLine() {
+        return lineStart == lineEnd;
+    }
+
+    /**
+     * @return true if the current line is a comment
+     */
+    public boolean isComment() {
+        return lineStart < lineEnd && input.get(lineStart) == COMMENT;
+    }
+
+    /**
+     * @return the current line as a string, for use in error messages
+     */
+    public String lineString() {
+        return substring(lineStart, lineEnd);
+    }
+
+    /**
+     * Parses the whole of the current line as an integer.
+     *
+     * @return the value of the line, or {@link #NOT_AN_INTEGER}
+     */
+    public long lineInt() {
+        return parseInt(lineStart, lineEnd);
+    }
+
+    /**
+     * Returns the number of colon separated fields on the current line, not
+     * counting trailing empty fields.
+     *
+     * @return number of fields on the current line
+     */
+    public int fieldCount() {
+        return fieldCount;
+    }
+
+    /**
+     * Parses the given field of the current line as an integer.
+     *
+     * @param field index of the field
+     * @return the value of the field, or {@link #NOT_AN_INTEGER}
+     */
+    public long fieldInt(int field) {
+        return parseInt(fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * @param field index of the field
+     * @return the value of the field as a new string
+     */
+    public String fieldString(int field) {
+        return substring(fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * Returns true if the given field contains at least one character that
+     * is not whitespace, as defined by {@link String#trim()}.
+     *
+     * @param field index of the field
+     * @return true if the field is not entirely whitespace
+     */
+    public boolean fieldHasContent(int field) {
+        return hasContent(fieldStarts[field], fieldEnds[field]);
+    }
+
+    /**
+     * @param field index of the field
+     * @param value string to compare to
+     * @return true if the field is equal to the given string
+     */
+    public boolean fieldEquals(int field, String value) {
+        return regionEquals(fieldStarts[field], fieldEnds[field], value);
+    }
+
+    /**
+     * Splits the given field of the current line into its comma separated
+     * list items. The items can then be read with the item methods.
+     *
+     * @param field index of the field to split
+     * @return number of list items, not counting trailing empty items
+     */
+    public int splitList(int field) {
+        int start = fieldStarts[field];
+        int end = fieldEnds[field];
+
+        itemCount = 0;
+        int itemStart = start;
+        for (int i = start; i <= end; i++) {
+            if (i == end || input.get(i) == LIST_SEPARATOR) {
+                if (itemCount == itemStarts.length) {
+                    itemStarts = grow(itemStarts);
+                    itemEnds = grow(itemEnds);
+                }
+                itemStarts[itemCount] = itemStart;
+                itemEnds[itemCount] = i;
+                itemCount++;
+                itemStart = i + 1;
+            }
+        }
+        while (itemCount > 0 && itemStarts[itemCount - 1]
+                == itemEnds[itemCount - 1]) {
+            itemCount--;
+        }
+        return itemCount;
+    }
+
+    /**
+     * @param item index of the list item
+     * @return the value of the list item, or {@link #NOT_AN_INTEGER}
+     */
+    public long itemInt(int item) {
+        return parseInt(itemStarts[item], itemEnds[item]);
+    }
+
+    /**
+     * @param item index of the list item
+     * @return the list item as a new string
+     */
+    public String itemString(int item) {
+        return substring(itemStarts[item], itemEnds[item]);
+    }
+
+    /**
+     * @param item index of the list item
+     * @return true if the list item is not entirely whitespace
+     */
+    public boolean itemHasContent(int item) {
+        return hasContent(itemStarts[item], itemEnds[item]);
+    }
+
+    /**
+     * @param item index of the list item
+     * @param value string to compare to
+     * @return true if the list item is equal to the given string
+     */
+    public boolean itemEquals(int item, String value) {
+        return regionEquals(itemStarts[item], itemEnds[item], value);
+    }
+
+    /**
+     * Parses the items of the most recently split list into the given array.
+     *
+     * @param destination array to store the values in; must have room for
+     *                    every item of the list
+     * @return true if every item was a non-negative integer
+     */
+    public boolean readNonNegativeList(int[] destination) {
+        for (int i = 0; i < itemCount; i++) {
+            long value = itemInt(i);
+            if (value < 0) {
+                // Also covers NOT_AN_INTEGER
+                return false;
+            }
+            destination[i] = (int) value;
+        }
+        return true;
+    }
+
+    /**
+     * Parses the characters between the two offsets as a decimal integer,
+     * accepting the same (ASCII) strings as {@link Integer#parseInt(String)}.
+     *
+     * @param start offset of the first character
+     * @param end offset one past the last character
+     * @return the parsed value, or {@link #NOT_AN_INTEGER} if the characters
+     * do not form an integer within the range of an int
+     */
+    public long parseInt(int start, int end) {
+        if (start >= end) {
+            return NOT_AN_INTEGER;
+        }
+
+        boolean negative = false;
+        int i = start;
+        char first = input.get(i);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            i++;
+            if (i == end) {
+                return NOT_AN_INTEGER;
+            }
+        }
+
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = input.get(i) - '0';
+            if (digit < 0 || digit > 9) {
+                return NOT_AN_INTEGER;
+            }
+            value = value * 10 + digit;
+            if (value > (long) Integer.MAX_VALUE + 1) {
+                return NOT_AN_INTEGER;
+            }
+        }
+
+        value = negative ? -value : value;
+        if (value > Integer.MAX_VALUE) {
+            return NOT_AN_INTEGER;
+        }
+        return value;
+    }
+
+    /**
+     * Splits the current line into fields on the info separator, dropping
+     * trailing empty fields as String.split() does.
+     */
+    private void splitFields() {
+        fieldCount = 0;
+        int fieldStart = lineStart;
+        for (int i = lineStart; i <= lineEnd; i++) {
+            if (i == lineEnd || input.get(i) == INFO_SEPARATOR) {
+                if (fieldCount == fieldStarts.length) {
+                    fieldStarts = grow(fieldStarts);
+                    fieldEnds = grow(fieldEnds);
+                }
+                fieldStarts[fieldCount] = fieldStart;
+                fieldEnds[fieldCount] = i;
+                fieldCount++;
+                fieldStart = i + 1;
+            }
+        }
+        // An empty line is a single empty field, like "".split(":")
+        if (lineStart == lineEnd) {
+            return;
+        }
+        while (fieldCount > 0 && fieldStarts[fieldCount - 1]
+                == fieldEnds[fieldCount - 1]) {
+            fieldCount--;
+        }
+    }
+
+    private boolean hasContent(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (input.get(i) > ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean regionEquals(int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            if (input.get(start + i) != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private String substring(int start, int end) {
+        return input.subSequence(start - input.position(),
+                end - input.position()).toString();
+    }
+
+    private static int[] grow(int[] array) {
+        int[] grown = new int[array.length * 2];
+        System.arraycopy(array, 0, grown, 0, array.length);
+        return grown;
+    }
+}
@@ -0,0 +1,467 @@
+package tms.replay;
+
+import tms.network.LoaderDiagnostics;
+import tms.network.Network;
+import tms.network.NetworkInitialiser;
+import tms.util.InvalidNetworkException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+
+/**
+ * Writes checkpoints of a running simulation to a directory, from which the
+ * simulation can be restarted where it left off if the process dies.
+ * <p>
+ * A checkpoint is the network's structure, as saved by
+ * {@link Network#toString()}, and its {@link SimulationState}: the seconds
+ * passed of each demo sensor, the cycle of each set of traffic lights and
+ * the signal of each traffic light, which the saved structure lacks. Saving
+ * a large network's structure takes far longer than capturing its state,
+ * so the structure is only saved again once the network has been changed,
+ * as told by {@link Network#getModificationCount()}.
+ * <p>
+ * The directory holds:
+ * <ul>
+ *   <li>network-N.txt, the structure, in the usual network file format,
+ *   where N is a generation number counting each new structure</li>
+ *   <li>{@value #CHECKPOINT_FILE}, the state, with the tick it was taken
+ *   after and the generation of its structure</li>
+ * </ul>
+ * The state file is {@link #MAGIC}, {@link #VERSION}, the generation, the
+ * tick as a long, the number of values and the values, all big-endian,
+ * followed by a CRC-32 of everything before it. Each file is written in
+ * full beside its final name, forced to disk, then moved into place, and a
+ * structure is only removed once a newer state replaces the one using it,
+ * so a crash at any point leaves the last complete checkpoint.
+ * <p>
+ * Checkpoints are taken on the simulation thread, between ticks or at the
+ * end of one, which only captures the state, and copies the structure with
+ * {@link Network#toStringLater()} if it has changed. The structure is turned
+ * into text and both are written on a background thread. A checkpoint that
+ * falls due while the last is still being written is skipped.
+ */
+public class SimulationCheckpointer implements Closeable {
+    /** Ticks between checkpoints unless another interval is given */
+    public static final int DEFAULT_INTERVAL = 60;
+    /** First int of a state file, "TMSC" in ASCII */
+    public static final int MAGIC = 0x544D5343;
+    /** Version of the state file format */
+    public static final int VERSION = 1;
+    /** Name of the state file in a checkpoint directory */
+    public static final String CHECKPOINT_FILE = "checkpoint.bin";
+
+    /** Bytes of the state file before the values */
+    private static final int HEADER = 24;
+    /** Bytes of the CRC after the values */
+    private static final int TRAILER = 4;
+    private static final String NETWORK_PREFIX = "network-";
+    private static final String NETWORK_SUFFIX = ".txt";
+
+    private final Network network;
+    private final Path directory;
+    private final int interval;
+
+    private long ticks;
+    /** Generation of the structure last saved, at first the newest in the
+     *  directory, or 0 if there is none */
+    private int generation;
+    /** Whether the network's structure has been saved, and its
+     *  modification count when it was */
+    private boolean structureSaved;
+    private int savedModifications;
+    private Future<?> written;
+    private boolean closed;
+    private final ExecutorService writer =
+            Executors.newSingleThreadExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "checkpoint");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    /**
+     * The network and tick restored from a checkpoint.
+     */
+    public static final class Restored {
+        private final Network network;
+        private final long tick;
+        private final Path directory;
+        private final int generation;
+
+        private Restored(Network network, long tick, Path directory,
+                int generation) {
+            this.network = network;
+            this.tick = tick;
+            this.directory = directory;
+            this.generation = generation;
+        }
+
+        /**
+         * @return the network, with the state it had when checkpointed
+         */
+        public Network getNetwork() {
+            return network;
+        }
+
+        /**
+         * @return number of ticks simulated when the checkpoint was taken
+         */
+        public long getTick() {
+            return tick;
+        }
+    }
+
+    /**
+     * Starts checkpointing the given network to the given directory, which
+     * is created if need be. Earlier checkpoints in the directory are kept
+     * until the first new one is written. No checkpoint is taken until the
+     * first is due, or {@link #checkpoint()} is called.
+     *
+     * @param network the network to checkpoint
+     * @param directory directory to write checkpoints to
+     * @param interval ticks between checkpoints
+     * @param tick number of ticks already simulated, such as the tick of a
+     *             restored checkpoint
+     * @throws IOException if the directory cannot be created or read
+     * @throws IllegalArgumentException if interval is less than 1 or tick is
+     * negative
+     */
+    public SimulationCheckpointer(Network network, Path directory,
+            int interval, long tick) throws IOException {
+        if (interval < 1) {
+            throw new IllegalArgumentException(
+                    "Checkpoint interval must be at least 1");
+        }
+        if (tick < 0) {
+            throw new IllegalArgumentException("Tick must not be negative");
+        }
+        this.network = network;
+        this.directory = directory;
+        this.interval = interval;
+        this.ticks = tick;
+        Files.createDirectories(directory);
+        // New structures must not replace one an old checkpoint uses
+        try (DirectoryStream<Path> files = networkFiles(directory)) {
+            for (Path file : files) {
+                generation = Math.max(generation, generationOf(file));
+            }
+        }
+    }
+
+    /**
+     * Starts checkpointing the given network, from tick 0, every
+     * {@link #DEFAULT_INTERVAL} ticks.
+     *
+     * @param network the network to checkpoint
+     * @param directory directory to write checkpoints to
+     * @throws IOException if the directory cannot be created or read
+     */
+    public SimulationCheckpointer(Network network, Path directory)
+            throws IOException {
+        this(network, directory, DEFAULT_INTERVAL, 0);
+    }
+
+    /**
+     * Carries on checkpointing a network restored from a checkpoint, to the
+     * directory it was restored from, counting ticks from the checkpoint's.
+     * The structure already saved there is used until the network is
+     * changed, so the first checkpoint only captures the state.
+     *
+     * @param restored the restored network
+     * @param interval ticks between checkpoints
+     * @throws IOException if the directory cannot be read
+     * @throws IllegalArgumentException if interval is less than 1
+     */
+    public SimulationCheckpointer(Restored restored, int interval)
+            throws IOException {
+        this(restored.network, restored.directory, interval, restored.tick);
+        generation = restored.generation;
+        structureSaved = true;
+        savedModifications = network.getModificationCount();
+    }
+
+    /**
+     * Returns true if the given directory holds a checkpoint.
+     *
+     * @param directory checkpoint directory
+     * @return true if a checkpoint can be restored from the directory
+     */
+    public static boolean hasCheckpoint(Path directory) {
+        return Files.isRegularFile(directory.resolve(CHECKPOINT_FILE));
+    }
+
+    /**
+     * Loads the network of the last checkpoint in the given directory and
+     * restores its state. The network's timed items are registered, so it
+     * carries on from the checkpoint when next ticked. Sensors that were
+     * live are restored as live sensors with their last current value, and
+     * need attaching to a feed again.
+     *
+     * @param directory checkpoint directory
+     * @param diagnostics receives the progress of loading the network
+     * @return the restored network and the tick of the checkpoint
+     * @throws IOException if the checkpoint cannot be read, is corrupt or
+     * does not match its network
+     * @throws InvalidNetworkException if the checkpoint's network is invalid
+     */
+    public static Restored restore(Path directory,
+            LoaderDiagnostics diagnostics)
+            throws IOException, InvalidNetworkException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        int end = buffer.capacity() - TRAILER;
+        if (end < HEADER || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a checkpoint: " + file);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported checkpoint version "
+                    + buffer.getInt(4) + ": " + file);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, end);
+        int count = buffer.getInt(20);
+        if ((int) crc.getValue() != buffer.getInt(end)
+                || count != (end - HEADER) / 4 || (end - HEADER) % 4 != 0) {
+            throw new IOException("Corrupt checkpoint: " + file);
+        }
+        int generation = buffer.getInt(8);
+        long tick = buffer.getLong(12);
+        int[] values = new int[count];
+        buffer.position(HEADER);
+        buffer.asIntBuffer().get(values);
+
+        Network network = NetworkInitialiser.loadNetwork(
+                directory.resolve(networkFile(generation)).toString(),
+                diagnostics);
+        try {
+            new SimulationState(values).restore(network);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Checkpoint does not match its network: "
+                    + file, e);
+        }
+        return new Restored(network, tick, directory, generation);
+    }
+
+    /**
+     * Restores the last checkpoint in the given directory, without reporting
+     * the progress of loading its network.
+     *
+     * @param directory checkpoint directory
+     * @return the restored network and the tick of the checkpoint
+     * @throws IOException if the checkpoint cannot be read, is corrupt or
+     * does not match its network
+     * @throws InvalidNetworkException if the checkpoint's network is invalid
+     * @see #restore(Path, LoaderDiagnostics)
+     */
+    public static Restored restore(Path directory)
+            throws IOException, InvalidNetworkException {
+        return restore(directory, LoaderDiagnostics.SILENT);
+    }
+
+    /**
+     * @return ticks between checkpoints
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @return number of ticks simulated, including those before this
+     * checkpointer started
+     */
+    public synchronized long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Counts a tick that has just finished, and takes a checkpoint if one is
+     * due. Must be called on the simulation thread, within the tick.
+     *
+     * @throws IOException if the last checkpoint could not be written
+     */
+    public synchronized void tick() throws IOException {
+        ticks++;
+        if (ticks % interval == 0) {
+            checkpoint();
+        }
+    }
+
+    /**
+     * Takes a checkpoint now, unless the last is still being written, and
+     * writes it in the background. Must be called between ticks, or at the
+     * end of one on the simulation thread.
+     *
+     * @throws IOException if the last checkpoint could not be written
+     */
+    public synchronized void checkpoint() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (written != null) {
+            if (!written.isDone()) {
+                return;
+            }
+            awaitWritten();
+        }
+        Supplier<String> structure = null;
+        int modifications = network.getModificationCount();
+        if (!structureSaved || savedModifications != modifications) {
+            structure = network.toStringLater();
+        }
+        int[] values = SimulationState.capture(network).values;
+        int saving = structure == null ? generation : generation + 1;
+        Supplier<String> text = structure;
+        long tick = ticks;
+        written = writer.submit(() -> {
+            write(saving, text, tick, values);
+            return null;
+        });
+        // Counted as saved now, and saved again if writing it fails
+        generation = saving;
+        structureSaved = true;
+        savedModifications = modifications;
+    }
+
+    /**
+     * Waits for the last checkpoint to be written.
+     *
+     * @throws IOException if the last checkpoint could not be written
+     */
+    public synchronized void flush() throws IOException {
+        awaitWritten();
+    }
+
+    /**
+     * Waits for the last checkpoint to be written and stops taking them.
+     *
+     * @throws IOException if the last checkpoint could not be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            awaitWritten();
+        } finally {
+            writer.shutdown();
+        }
+    }
+
+    /**
+     * Waits for the last checkpoint to be written. If it failed, the next
+     * checkpoint saves the structure again.
+     */
+    private void awaitWritten() throws IOException {
+        if (written == null) {
+            return;
+        }
+        boolean succeeded = false;
+        try {
+            written.get();
+            succeeded = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted writing checkpoint", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error writing checkpoint", e.getCause());
+        } finally {
+            written = null;
+            structureSaved &= succeeded;
+        }
+    }
+
+    /**
+     * Writes a checkpoint, with its structure if given, then removes the
+     * structures no longer used. Run on the writer thread.
+     */
+    private void write(int generation, Supplier<String> structure, long tick,
+            int[] values) throws IOException {
+        if (structure != null) {
+            writeAtomically(directory.resolve(networkFile(generation)),
+                    ByteBuffer.wrap(structure.get().getBytes(
+                            StandardCharsets.UTF_8)));
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER + 4 * values.length
+                + TRAILER);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(generation).putLong(tick)
+                .putInt(values.length);
+        buffer.asIntBuffer().put(values);
+        int end = HEADER + 4 * values.length;
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, end);
+        buffer.putInt(end, (int) crc.getValue());
+        buffer.clear();
+        writeAtomically(directory.resolve(CHECKPOINT_FILE), buffer);
+
+        if (structure != null) {
+            try (DirectoryStream<Path> files = networkFiles(directory)) {
+                for (Path file : files) {
+                    if (generationOf(file) != generation) {
+                        Files.deleteIfExists(file);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the given bytes to a file beside the given one, forces them to
+     * disk and moves the file into place.
+     */
+    private static void writeAtomically(Path target, ByteBuffer content)
+            throws IOException {
+        Path partial = target.resolveSibling(target.getFileName() + ".part");
+        try (FileChannel channel = FileChannel.open(partial,
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (content.hasRemaining()) {
+                channel.write(content);
+            }
+            channel.force(true);
+        }
+        Files.move(partial, target, StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private static String networkFile(int generation) {
+        return NETWORK_PREFIX + generation + NETWORK_SUFFIX;
+    }
+
+    private static DirectoryStream<Path> networkFiles(Path directory)
+            throws IOException {
+        return Files.newDirectoryStream(directory,
+                NETWORK_PREFIX + "*" + NETWORK_SUFFIX);
+    }
+
+    /**
+     * Returns the generation in the name of a structure file, or 0 if it is
+     * not a number.
+     */
+    private static int generationOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Integer.parseInt(name.substring(NETWORK_PREFIX.length(),
+                    name.length() - NETWORK_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package tms.replay;
+
+import tms.display.ButtonOptions;
+import tms.network.Network;
+import tms.sensors.LiveSensor;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Records a run of the simulation to a log file, so that it can be replayed
+ * exactly, and much faster than it ran, by a {@link SimulationReplayer}.
+ * <p>
+ * The log starts with the network's structure, as saved by
+ * {@link Network#toString()}, and its {@link SimulationState}. After that it
+ * holds everything that changes the course of the simulation, in order:
+ * <ul>
+ *   <li>each command, as given to {@link tms.display.CommandProcessor}</li>
+ *   <li>each bulk edit script, see {@link tms.network.BulkEditor}</li>
+ *   <li>each tick, with the readings of the live sensors whose current
+ *   value changed in it</li>
+ * </ul>
+ * Every {@link #getCheckpointInterval()} ticks a checkpoint of the state is
+ * added, from which a replay can start, and against which it is checked.
+ * <p>
+ * The log is a header, {@link #MAGIC} and {@link #VERSION} as ints, followed
+ * by records. Each record is a type byte and the length of its payload as
+ * an int, followed by the payload, in which numbers are unsigned varints or,
+ * where they may be negative, zigzag varints, and strings are UTF-8 bytes
+ * after their length. A record cut off at the end of the log, as by a
+ * crash, is ignored when it is read. Records are buffered and written in
+ * blocks, or when {@link #flush()} is called.
+ * <p>
+ * The simulation must be recorded from the start of each tick or change of
+ * the network: the recorder must be told of each command and bulk edit
+ * before it is applied, and of each tick once it finishes, on the thread
+ * that made it. Live sensors must be attached to their feeds before
+ * recording starts.
+ */
+public class SimulationRecorder implements Closeable {
+    /** Ticks between checkpoints unless another interval is given */
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 600;
+    /** First int of a log, "TMSR" in ASCII */
+    public static final int MAGIC = 0x544D5352;
+    /** Version of the log format */
+    public static final int VERSION = 1;
+
+    /** Record of the network's structure; the payload is a string */
+    static final byte NETWORK = 1;
+    /** Record of the state after a tick; the tick, the number of values and
+     *  the values */
+    static final byte CHECKPOINT = 2;
+    /** Record of a command; the option's ordinal, the number of parameters
+     *  and each parameter's name and value */
+    static final byte COMMAND = 3;
+    /** Record of a bulk edit; the payload is the script */
+    static final byte BULK_EDIT = 4;
+    /** Record of a tick; for each reading, the distance from the previous
+     *  live sensor to its sensor, and the reading */
+    static final byte TICK = 5;
+    /** Bytes of a record's type and length */
+    static final int RECORD_HEADER = 5;
+
+    /** Buffered bytes at which they are written to the log */
+    private static final int BLOCK_BYTES = 1 << 16;
+
+    private final Network network;
+    private final OutputStream out;
+    private final int checkpointInterval;
+
+    /** Records not yet written */
+    private byte[] buffer = new byte[2 * BLOCK_BYTES];
+    private int length;
+    /** Start of the record being added */
+    private int recordStart;
+
+    private long ticks;
+    /** Whether the network may have changed since the last tick */
+    private boolean changed = true;
+    /** Live sensors, in walk order, and the reading last recorded for each */
+    private LiveSensor[] live = new LiveSensor[0];
+    private int[] recorded = new int[0];
+    /** Live sensors whose reading must be recorded on the next tick */
+    private boolean[] unrecorded = new boolean[0];
+    private boolean closed;
+
+    /**
+     * Starts recording the given network to a new log at the given path,
+     * replacing any file there. The network's structure and state are
+     * written straight away. Must be called between ticks.
+     *
+     * @param network the network to record
+     * @param log path of the log file
+     * @param checkpointInterval ticks between checkpoints
+     * @throws IOException if the log cannot be written
+     * @throws IllegalArgumentException if checkpointInterval is less than 1
+     */
+    public SimulationRecorder(Network network, Path log,
+            int checkpointInterval) throws IOException {
+        if (checkpointInterval < 1) {
+            throw new IllegalArgumentException(
+                    "Checkpoint interval must be at least 1");
+        }
+        this.network = network;
+        this.checkpointInterval = checkpointInterval;
+        out = Files.newOutputStream(log);
+        putInt(MAGIC);
+        putInt(VERSION);
+        startRecord(NETWORK);
+        putString(network.toString());
+        endRecord();
+        checkpoint();
+        findLiveSensors();
+        for (int i = 0; i < live.length; i++) {
+            recorded[i] = live[i].getCurrentValue();
+            unrecorded[i] = false;
+        }
+        changed = false;
+        try {
+            flush();
+        } catch (IOException e) {
+            out.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Starts recording the given network, with a checkpoint every
+     * {@link #DEFAULT_CHECKPOINT_INTERVAL} ticks.
+     *
+     * @param network the network to record
+     * @param log path of the log file
+     * @throws IOException if the log cannot be written
+     */
+    public SimulationRecorder(Network network, Path log) throws IOException {
+        this(network, log, DEFAULT_CHECKPOINT_INTERVAL);
+    }
+
+    /**
+     * @return ticks between checkpoints
+     */
+    public int getCheckpointInterval() {
+        return checkpointInterval;
+    }
+
+    /**
+     * @return number of ticks recorded
+     */
+    public synchronized long getTicks() {
+        return ticks;
+    }
+
+    /**
+     * Records a command that is about to be applied. Commands that do not
+     * change the simulation, saving and pausing, are not recorded. Nothing
+     * is recorded once the recorder is closed.
+     *
+     * @param option the command
+     * @param params the command's parameters
+     */
+    public synchronized void command(ButtonOptions option,
+            Map<String, String> params) {
+        if (closed || option == ButtonOptions.SAVE
+                || option == ButtonOptions.PAUSE) {
+            return;
+        }
+        startRecord(COMMAND);
+        putVarint(option.ordinal());
+        putVarint(params.size());
+        for (Map.Entry<String, String> param : params.entrySet()) {
+            putString(param.getKey());
+            putString(param.getValue());
+        }
+        endRecord();
+        changed = true;
+    }
+
+    /**
+     * Records a bulk edit script that is about to be applied. Nothing is
+     * recorded once the recorder is closed.
+     *
+     * @param script the whole bulk edit script
+     */
+    public synchronized void bulkEdit(String script) {
+        if (closed) {
+            return;
+        }
+        startRecord(BULK_EDIT);
+        putString(script);
+        endRecord();
+        changed = true;
+    }
+
+    /**
+     * Records a tick that has just finished, with the new current values of
+     * live sensors, and a checkpoint if one is due. Must be called on the
+     * simulation thread, within the tick. Nothing is recorded once the
+     * recorder is closed.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void tick() throws IOException {
+        if (closed) {
+            return;
+        }
+        if (changed) {
+            findLiveSensors();
+            changed = false;
+        }
+        startRecord(TICK);
+        int previous = -1;
+        for (int i = 0; i < live.length; i++) {
+            int reading = live[i].getCurrentValue();
+            if (reading != recorded[i] || unrecorded[i]) {
+                putVarint(i - previous);
+                putVarint(zigzag(reading));
+                recorded[i] = reading;
+                unrecorded[i] = false;
+                previous = i;
+            }
+        }
+        endRecord();
+
+        ticks++;
+        if (ticks % checkpointInterval == 0) {
+            checkpoint();
+        }
+        if (length >= BLOCK_BYTES) {
+            write();
+        }
+    }
+
+    /**
+     * Writes every buffered record to the log.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        if (!closed) {
+            write();
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes every buffered record and closes the log. Later commands and
+     * ticks are not recorded.
+     *
+     * @throws IOException if the log cannot be written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        try {
+            write();
+        } finally {
+            closed = true;
+            out.close();
+        }
+    }
+
+    /**
+     * Adds a checkpoint of the network's current state.
+     */
+    private void checkpoint() {
+        int[] values = SimulationState.capture(network).values;
+        startRecord(CHECKPOINT);
+        ensure(15 + 5 * values.length);
+        putVarlong(ticks);
+        putVarint(values.length);
+        for (int value : values) {
+            putVarint(zigzag(value));
+        }
+        endRecord();
+    }
+
+    /**
+     * Finds the live sensors after the network may have changed. Sensors
+     * already known keep their last reading; the readings of new ones are
+     * recorded on the next tick.
+     */
+    private void findLiveSensors() {
+        Map<LiveSensor, Integer> known = new IdentityHashMap<>();
+        for (int i = 0; i < live.length; i++) {
+            if (!unrecorded[i]) {
+                known.put(live[i], recorded[i]);
+            }
+        }
+        live = SimulationState.liveSensors(network);
+        recorded = new int[live.length];
+        unrecorded = new boolean[live.length];
+        for (int i = 0; i < live.length; i++) {
+            Integer reading = known.get(live[i]);
+            if (reading == null) {
+                unrecorded[i] = true;
+            } else {
+                recorded[i] = reading;
+            }
+        }
+    }
+
+    private void write() throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+
+    private void startRecord(byte type) {
+        ensure(RECORD_HEADER);
+        recordStart = length;
+        buffer[length] = type;
+        length += RECORD_HEADER;
+    }
+
+    private void endRecord() {
+        int payload = length - recordStart - RECORD_HEADER;
+        int at = recordStart + 1;
+        buffer[at] = (byte) (payload >>> 24);
+        buffer[at + 1] = (byte) (payload >>> 16);
+        buffer[at + 2] = (byte) (payload >>> 8);
+        buffer[at + 3] = (byte) payload;
+    }
+
+    private void ensure(int bytes) {
+        if (length + bytes > buffer.length) {
+            buffer = Arrays.copyOf(buffer,
+                    Math.max(length + bytes, 2 * buffer.length));
+        }
+    }
+
+    private void putInt(int value) {
+        ensure(4);
+        buffer[length++] = (byte) (value >>> 24);
+        buffer[length++] = (byte) (value >>> 16);
+        buffer[length++] = (byte) (value >>> 8);
+        buffer[length++] = (byte) value;
+    }
+
+    private void putVarint(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            buffer[length++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void putVarlong(long value) {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer[length++] = (byte) (value & 0x7F | 0x80);
+            value >>>= 7;
+        }
+        buffer[length++] = (byte) value;
+    }
+
+    private void putString(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarint(bytes.length);
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    private static int zigzag(int value) {
+        return value << 1 ^ value >> 31;
+    }
+}
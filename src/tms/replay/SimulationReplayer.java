@@ -0,0 +1,502 @@
+package tms.replay;
+
+import tms.display.ButtonOptions;
+import tms.display.CommandProcessor;
+import tms.intersection.Intersection;
+import tms.network.BulkEditor;
+import tms.network.Network;
+import tms.network.NetworkInitialiser;
+import tms.route.Route;
+import tms.sensors.LiveSensor;
+import tms.util.InvalidNetworkException;
+import tms.util.TimedItem;
+import tms.util.TimedItemManager;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays a log written by a {@link SimulationRecorder}, reproducing the
+ * recorded run exactly, tick by tick, as fast as the network can be ticked.
+ * <p>
+ * The replay has its own network, loaded from the log. Its timed items are
+ * ticked by the replayer instead of the {@link TimedItemManager}, so that a
+ * replay neither disturbs nor is disturbed by a simulation running in the
+ * same program.
+ * <p>
+ * Each checkpoint in the log that is replayed past is compared with the
+ * replayed state, so a replay that runs to the end has been checked against
+ * the recording. {@link #seek(long)} reaches any tick by restoring the
+ * latest checkpoint before it, then replaying the ticks after the
+ * checkpoint, so at most one checkpoint interval of ticks is replayed.
+ * <p>
+ * The log is mapped into memory, so must be smaller than 2 GB. A replayer
+ * must only be used by one thread at a time.
+ */
+public class SimulationReplayer {
+    private static final ButtonOptions[] OPTIONS = ButtonOptions.values();
+
+    private final ByteBuffer log;
+    private final String name;
+    private final String structure;
+    /** Position just past the last whole record */
+    private final int end;
+    /** Ticks and positions of the checkpoints, in order */
+    private final long[] checkpointTicks;
+    private final int[] checkpointPositions;
+    /** Positions of the commands and bulk edits, in order */
+    private final int[] mutationPositions;
+    private final long lastTick;
+
+    private Network network;
+    private CommandProcessor commands;
+    /** Position of the next record to replay */
+    private int position;
+    /** Position of the next byte to decode */
+    private int cursor;
+    private long tick;
+    /** The network's timed items and live sensors, in walk order */
+    private TimedItem[] items;
+    private LiveSensor[] live;
+    /** Whether the network has changed since the items were found */
+    private boolean changed;
+    private int checked;
+
+    /**
+     * Opens the log at the given path and replays it up to its first
+     * checkpoint, at tick 0.
+     *
+     * @param log path of a log written by a {@link SimulationRecorder}
+     * @return a replayer at tick 0
+     * @throws IOException if the log cannot be read or is not a valid log
+     */
+    public static SimulationReplayer open(Path log) throws IOException {
+        ByteBuffer bytes;
+        try (FileChannel channel = FileChannel.open(log,
+                StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("Log is too large to replay: " + log);
+            }
+            bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0,
+                    channel.size());
+        }
+        return new SimulationReplayer(bytes, log.toString());
+    }
+
+    /**
+     * Indexes the checkpoints and ticks of the given log, then restores
+     * the first checkpoint.
+     */
+    private SimulationReplayer(ByteBuffer log, String name)
+            throws IOException {
+        this.log = log;
+        this.name = name;
+        int limit = log.limit();
+        if (limit < 8 || log.getInt(0) != SimulationRecorder.MAGIC) {
+            throw new IOException("Not a simulation log: " + name);
+        } else if (log.getInt(4) != SimulationRecorder.VERSION) {
+            throw new IOException("Unsupported version " + log.getInt(4)
+                    + " of simulation log: " + name);
+        }
+
+        String text = null;
+        long[] ticks = new long[16];
+        int[] positions = new int[16];
+        int checkpoints = 0;
+        int[] mutations = new int[16];
+        int mutationCount = 0;
+        long count = 0;
+        int at = 8;
+        while (at + SimulationRecorder.RECORD_HEADER <= limit) {
+            int length = log.getInt(at + 1);
+            int payload = at + SimulationRecorder.RECORD_HEADER;
+            if (length < 0 || length > limit - payload) {
+                // Cut off by a crash while it was written
+                break;
+            }
+            cursor = payload;
+            switch (log.get(at)) {
+                case SimulationRecorder.NETWORK:
+                    if (at != 8) {
+                        throw new IOException("Unexpected network at byte "
+                                + at + " of simulation log: " + name);
+                    }
+                    text = readString();
+                    break;
+                case SimulationRecorder.CHECKPOINT:
+                    if (checkpoints == ticks.length) {
+                        ticks = Arrays.copyOf(ticks, 2 * checkpoints);
+                        positions = Arrays.copyOf(positions, 2 * checkpoints);
+                    }
+                    ticks[checkpoints] = readVarlong();
+                    positions[checkpoints++] = at;
+                    break;
+                case SimulationRecorder.TICK:
+                    count++;
+                    break;
+                case SimulationRecorder.COMMAND:
+                case SimulationRecorder.BULK_EDIT:
+                    if (mutationCount == mutations.length) {
+                        mutations = Arrays.copyOf(mutations,
+                                2 * mutationCount);
+                    }
+                    mutations[mutationCount++] = at;
+                    break;
+                default:
+                    throw new IOException("Unknown record at byte " + at
+                            + " of simulation log: " + name);
+            }
+            at = payload + length;
+        }
+        if (text == null) {
+            throw new IOException("No network at the start of"
+                    + " simulation log: " + name);
+        } else if (checkpoints == 0 || ticks[0] != 0) {
+            throw new IOException("No checkpoint at the start of"
+                    + " simulation log: " + name);
+        }
+        structure = text;
+        end = at;
+        checkpointTicks = Arrays.copyOf(ticks, checkpoints);
+        checkpointPositions = Arrays.copyOf(positions, checkpoints);
+        mutationPositions = Arrays.copyOf(mutations, mutationCount);
+        lastTick = count;
+
+        try {
+            load();
+        } catch (InvalidNetworkException e) {
+            throw new IOException("Invalid network in simulation log: "
+                    + name, e);
+        }
+        restore(0);
+    }
+
+    /**
+     * Returns the replayed network. The network is replaced when a seek
+     * goes back in time or restores a checkpoint.
+     *
+     * @return the network as of {@link #getTick()}
+     */
+    public Network getNetwork() {
+        return network;
+    }
+
+    /**
+     * @return number of ticks replayed
+     */
+    public long getTick() {
+        return tick;
+    }
+
+    /**
+     * @return number of ticks in the log
+     */
+    public long getLastTick() {
+        return lastTick;
+    }
+
+    /**
+     * @return number of checkpoints in the log, including the one at tick 0
+     */
+    public int getCheckpointCount() {
+        return checkpointTicks.length;
+    }
+
+    /**
+     * @return number of checkpoints replayed past and found to match
+     */
+    public int getCheckedCount() {
+        return checked;
+    }
+
+    /**
+     * Replays the next tick, and the changes made to the network before it.
+     *
+     * @return true if a tick was replayed, false if the end of the log has
+     * been reached
+     * @throws IllegalStateException if a checkpoint does not match the
+     * replayed state
+     */
+    public boolean step() {
+        while (position < end) {
+            int payload = position + SimulationRecorder.RECORD_HEADER;
+            int next = payload + log.getInt(position + 1);
+            byte type = log.get(position);
+            position = next;
+            cursor = payload;
+            switch (type) {
+                case SimulationRecorder.COMMAND:
+                    applyCommand();
+                    break;
+                case SimulationRecorder.BULK_EDIT:
+                    applyBulkEdit();
+                    break;
+                case SimulationRecorder.CHECKPOINT:
+                    check();
+                    break;
+                case SimulationRecorder.TICK:
+                    tick(next);
+                    return true;
+                default:
+                    // Only the network, at the start
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replays every tick left in the log.
+     *
+     * @throws IllegalStateException if a checkpoint does not match the
+     * replayed state
+     */
+    public void run() {
+        while (step()) {
+            // Each step replays one tick
+        }
+    }
+
+    /**
+     * Moves the replay to just after the given tick, restoring the latest
+     * checkpoint at or before it if that is quicker than replaying from the
+     * current tick, or if the tick has already been replayed.
+     * <p>
+     * The network is only reloaded when going back past a change to it.
+     * Otherwise the checkpoint is restored to the current network, after
+     * applying any changes made before the checkpoint.
+     *
+     * @param target tick to replay to, from 0 to {@link #getLastTick()}
+     * @throws IllegalArgumentException if the tick is not in the log
+     * @throws IllegalStateException if a checkpoint does not match the
+     * replayed state
+     */
+    public void seek(long target) {
+        if (target < 0 || target > lastTick) {
+            throw new IllegalArgumentException("No tick " + target
+                    + " in a log of " + lastTick + " ticks");
+        }
+        int index = Arrays.binarySearch(checkpointTicks, target);
+        if (index < 0) {
+            index = -index - 2;
+        }
+        int checkpoint = checkpointPositions[index];
+        if (target < tick && changedSince(checkpoint)) {
+            try {
+                load();
+            } catch (InvalidNetworkException e) {
+                // Loaded when the replayer was opened, so cannot happen
+                throw new IllegalStateException(e);
+            }
+            restore(index);
+        } else if (target < tick || checkpointTicks[index] > tick) {
+            restore(index);
+        }
+        while (tick < target) {
+            step();
+        }
+    }
+
+    /**
+     * Loads a new copy of the recorded network, as at the start of the log.
+     */
+    private void load() throws InvalidNetworkException {
+        network = NetworkInitialiser.loadNetwork(CharBuffer.wrap(structure),
+                name);
+        commands = new CommandProcessor(network, null);
+        position = checkpointPositions[0];
+    }
+
+    /**
+     * Returns true if the network was changed between the given position
+     * and the current position.
+     */
+    private boolean changedSince(int from) {
+        int index = Arrays.binarySearch(mutationPositions, from);
+        index = index < 0 ? -index - 1 : index;
+        return index < mutationPositions.length
+                && mutationPositions[index] < position;
+    }
+
+    /**
+     * Applies the changes made to the network from the current position up
+     * to the given checkpoint, without ticking, then restores the
+     * checkpoint's state. If the checkpoint is before the current position,
+     * the network must not have changed since the checkpoint.
+     */
+    private void restore(int checkpoint) {
+        int target = checkpointPositions[checkpoint];
+        while (position < target) {
+            byte type = log.get(position);
+            cursor = position + SimulationRecorder.RECORD_HEADER;
+            position = cursor + log.getInt(position + 1);
+            if (type == SimulationRecorder.COMMAND) {
+                applyCommand();
+            } else if (type == SimulationRecorder.BULK_EDIT) {
+                applyBulkEdit();
+            }
+        }
+        cursor = target + SimulationRecorder.RECORD_HEADER;
+        position = cursor + log.getInt(target + 1);
+        tick = readVarlong();
+        readState().restore(network);
+        findItems();
+    }
+
+    private void check() {
+        long at = readVarlong();
+        if (!SimulationState.capture(network).equals(readState())) {
+            throw new IllegalStateException("Replay of " + name
+                    + " differs from the recording at tick " + at);
+        }
+        checked++;
+    }
+
+    private void tick(int next) {
+        if (changed) {
+            findItems();
+        }
+        int index = -1;
+        while (cursor < next) {
+            index += readVarint();
+            int reading = readVarint();
+            if (index >= live.length) {
+                throw new IllegalStateException("Reading for unknown sensor "
+                        + index + " at tick " + (tick + 1) + " of " + name);
+            }
+            live[index].publish(reading >>> 1 ^ -(reading & 1));
+        }
+        for (TimedItem item : items) {
+            item.oneSecond();
+        }
+        tick++;
+    }
+
+    private void applyCommand() {
+        ButtonOptions option = OPTIONS[readVarint()];
+        int count = readVarint();
+        Map<String, String> params = new HashMap<>();
+        for (int i = 0; i < count; i++) {
+            params.put(readString(), readString());
+        }
+        try {
+            commands.apply(option, params);
+        } catch (IllegalArgumentException e) {
+            // Failed in the recording too, making the same changes
+        }
+        changed = true;
+    }
+
+    private void applyBulkEdit() {
+        try {
+            new BulkEditor(network).apply(new StringReader(readString()));
+        } catch (IOException | InvalidNetworkException e) {
+            // Failed in the recording too, making no changes
+        }
+        changed = true;
+    }
+
+    /**
+     * Finds the network's timed items and live sensors after it has
+     * changed, and stops the {@link TimedItemManager} from ticking them.
+     */
+    private void findItems() {
+        List<TimedItem> found = SimulationState.timedItems(network);
+        TimedItemManager.getTimedItemManager().deregisterTimedItems(found);
+        items = found.toArray(new TimedItem[0]);
+        live = SimulationState.liveSensors(network);
+        changed = false;
+    }
+
+    private SimulationState readState() {
+        int[] values = new int[readVarint()];
+        for (int i = 0; i < values.length; i++) {
+            int value = readVarint();
+            values[i] = value >>> 1 ^ -(value & 1);
+        }
+        return new SimulationState(values);
+    }
+
+    private int readVarint() {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = log.get(cursor++);
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private long readVarlong() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = log.get(cursor++);
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private String readString() {
+        int length = readVarint();
+        byte[] bytes = new byte[length];
+        log.get(cursor, bytes);
+        cursor += length;
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Replays a simulation log and prints the congestion of each route,
+     * with its signal if it has a traffic light, at the end of the log or
+     * the given tick.
+     * <p>
+     * Arguments: LOG_FILENAME [TICK]
+     *
+     * @param args from the command line
+     */
+    public static void main(final String... args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: [LOG_FILENAME] [TICK]");
+            System.exit(1);
+        }
+
+        try {
+            long start = System.nanoTime();
+            SimulationReplayer replayer = open(Paths.get(args[0]));
+            if (args.length > 1) {
+                replayer.seek(Long.parseLong(args[1]));
+            } else {
+                replayer.run();
+            }
+            System.out.printf("Replayed to tick %d of %d in %d ms,"
+                            + " checking %d checkpoints%n", replayer.getTick(),
+                    replayer.getLastTick(),
+                    (System.nanoTime() - start) / 1_000_000,
+                    replayer.getCheckedCount());
+            for (Intersection to : replayer.getNetwork().getIntersections()) {
+                for (Route route : to.getConnectionsView()) {
+                    System.out.println(route.getFrom().getId() + ":"
+                            + to.getId() + " " + route.getCongestion()
+                            + (route.getTrafficLight() == null ? ""
+                            : " " + route.getTrafficLight().getSignal()));
+                }
+            }
+        } catch (IOException | IllegalArgumentException
+                | IllegalStateException e) {
+            System.err.println("Error replaying: " + e.toString());
+            System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,386 @@
+package tms.replay;
+
+import tms.intersection.Intersection;
+import tms.intersection.IntersectionLights;
+import tms.network.Network;
+import tms.route.Route;
+import tms.route.TrafficSignal;
+import tms.sensors.DemoSensor;
+import tms.sensors.LivePressurePad;
+import tms.sensors.LiveSensor;
+import tms.sensors.LiveSpeedCamera;
+import tms.sensors.LiveVehicleCount;
+import tms.sensors.PressurePad;
+import tms.sensors.Sensor;
+import tms.sensors.SpeedCamera;
+import tms.util.DuplicateSensorException;
+import tms.util.TimedItem;
+import tms.util.TimedItemManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The part of a network's state that changes as it is ticked, as opposed to
+ * its structure, which is saved by {@link Network#toString()}:
+ * <ul>
+ *   <li>the seconds passed of each demo sensor</li>
+ *   <li>the current value of each live sensor</li>
+ *   <li>the progress of each set of traffic lights through its cycle</li>
+ *   <li>the signal of each traffic light</li>
+ * </ul>
+ * Together with the structure, this is enough to carry on a simulation
+ * exactly as it would have gone. Sensors' histories are not included, nor
+ * are readings published to live sensors but not yet used.
+ * <p>
+ * The state is a flat array of ints, in the order the network is walked:
+ * each intersection with its lights, then each of its incoming routes with
+ * the route's signal and sensors. It can only be restored to a network of
+ * the same structure, such as one loaded from the saved structure, which
+ * is checked before anything is changed. Sensors are matched by type, as
+ * a saved network lists each route's sensors sorted, and sensors that were
+ * live are replaced by live sensors, as a saved network has only demo
+ * sensors.
+ * <p>
+ * States must be captured and restored between ticks.
+ */
+public final class SimulationState {
+    /** Signal of a route without a traffic light */
+    private static final int NO_LIGHT = -1;
+    /** Sensor kinds, by the interface the sensor implements */
+    private static final int PRESSURE_PAD = 0, SPEED_CAMERA = 1,
+            VEHICLE_COUNT = 2;
+    /** Added to the kind of a live sensor */
+    private static final int LIVE = 4;
+    /** Added to the kind of a sensor that is neither demo nor live */
+    private static final int STATELESS = 8;
+    private static final TrafficSignal[] SIGNALS = TrafficSignal.values();
+
+    /** The state, in walk order, see the class description */
+    final int[] values;
+
+    /**
+     * Creates a state from the given values, which are not copied.
+     *
+     * @param values the state in walk order
+     */
+    SimulationState(int[] values) {
+        this.values = values;
+    }
+
+    /**
+     * Captures the state of the given network.
+     *
+     * @param network the network to capture
+     * @return the network's current state
+     */
+    public static SimulationState capture(Network network) {
+        int[] values = new int[1024];
+        int size = 0;
+        for (Intersection intersection : network.getIntersections()) {
+            // Lights add at most 4 values, routes 2 and sensors 2 each
+            List<Route> routes = intersection.getConnectionsView();
+            int needed = size + 4 + 2 * routes.size();
+            for (Route route : routes) {
+                needed += 2 * route.getSensorCount();
+            }
+            if (needed > values.length) {
+                values = Arrays.copyOf(values,
+                        Math.max(needed, 2 * values.length));
+            }
+
+            if (intersection.hasTrafficLights()) {
+                IntersectionLights lights = intersection.getTrafficLights();
+                values[size++] = 1;
+                values[size++] = lights.getTime();
+                values[size++] = lights.getActiveIndex();
+            } else {
+                values[size++] = 0;
+            }
+            values[size++] = routes.size();
+            for (Route route : routes) {
+                values[size++] = route.getTrafficLight() == null ? NO_LIGHT
+                        : route.getTrafficLight().getSignal().ordinal();
+                List<Sensor> sensors = route.getSensorsView();
+                values[size++] = sensors.size();
+                for (Sensor sensor : sensors) {
+                    int kind = kindOf(sensor);
+                    values[size++] = kind;
+                    if (sensor instanceof DemoSensor) {
+                        values[size++] =
+                                ((DemoSensor) sensor).getSecondsPassed();
+                    } else if (sensor instanceof LiveSensor) {
+                        values[size++] =
+                                ((LiveSensor) sensor).getCurrentValue();
+                    }
+                }
+            }
+        }
+        return new SimulationState(Arrays.copyOf(values, size));
+    }
+
+    /**
+     * Sets the state of the given network to this state. Demo sensors that
+     * were live when the state was captured are replaced by live sensors,
+     * which are registered as timed items in their place.
+     *
+     * @param network the network to restore, with the same structure as
+     *                the network captured
+     * @throws IllegalArgumentException if the network's structure does not
+     * match this state; the network is not changed
+     */
+    public void restore(Network network) {
+        if (!matches(network)) {
+            throw new IllegalArgumentException(
+                    "The network does not match the saved state");
+        }
+        List<TimedItem> replaced = new ArrayList<>();
+        int i = 0;
+        for (Intersection intersection : network.getIntersections()) {
+            if (values[i++] == 1) {
+                intersection.getTrafficLights().restoreCycle(values[i],
+                        values[i + 1]);
+                i += 2;
+            }
+            int routes = values[i++];
+            List<Route> connections = intersection.getConnectionsView();
+            for (int r = 0; r < routes; r++) {
+                Route route = connections.get(r);
+                int signal = values[i++];
+                if (signal != NO_LIGHT) {
+                    route.setSignal(SIGNALS[signal]);
+                }
+                i = restoreSensors(route, i, replaced);
+            }
+        }
+        TimedItemManager.getTimedItemManager().deregisterTimedItems(replaced);
+    }
+
+    /**
+     * Returns the number of values in this state, which grows with the
+     * size of the network.
+     *
+     * @return number of ints in the state
+     */
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Returns true if the other object is a state with the same values.
+     *
+     * @param obj other object to compare equality
+     * @return true if equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof SimulationState
+                && Arrays.equals(values, ((SimulationState) obj).values);
+    }
+
+    /**
+     * Returns the hashcode of this state.
+     *
+     * @return hash of the values
+     */
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    /**
+     * Returns every live sensor in the given network, in walk order.
+     *
+     * @param network network to search
+     * @return the live sensors
+     */
+    static LiveSensor[] liveSensors(Network network) {
+        List<LiveSensor> live = new ArrayList<>();
+        for (Intersection intersection : network.getIntersections()) {
+            for (Route route : intersection.getConnectionsView()) {
+                for (Sensor sensor : route.getSensorsView()) {
+                    if (sensor instanceof LiveSensor) {
+                        live.add((LiveSensor) sensor);
+                    }
+                }
+            }
+        }
+        return live.toArray(new LiveSensor[0]);
+    }
+
+    /**
+     * Returns every timed item in the given network: its traffic lights and
+     * sensors that are ticked.
+     *
+     * @param network network to search
+     * @return the timed items, in walk order
+     */
+    static List<TimedItem> timedItems(Network network) {
+        List<TimedItem> items = new ArrayList<>();
+        for (Intersection intersection : network.getIntersections()) {
+            if (intersection.hasTrafficLights()) {
+                items.add(intersection.getTrafficLights());
+            }
+            for (Route route : intersection.getConnectionsView()) {
+                for (Sensor sensor : route.getSensorsView()) {
+                    if (sensor instanceof TimedItem) {
+                        items.add((TimedItem) sensor);
+                    }
+                }
+            }
+        }
+        return items;
+    }
+
+    /**
+     * Returns true if this state can be restored to the given network.
+     */
+    private boolean matches(Network network) {
+        int i = 0;
+        try {
+            for (Intersection intersection : network.getIntersections()) {
+                int lights = values[i++];
+                if (lights != (intersection.hasTrafficLights() ? 1 : 0)) {
+                    return false;
+                }
+                i += 2 * lights;
+                List<Route> connections = intersection.getConnectionsView();
+                if (values[i++] != connections.size()) {
+                    return false;
+                }
+                for (Route route : connections) {
+                    int signal = values[i++];
+                    boolean light = route.getTrafficLight() != null;
+                    if ((signal == NO_LIGHT) == light
+                            || signal < NO_LIGHT || signal >= SIGNALS.length) {
+                        return false;
+                    }
+                    i = matchSensors(route, i);
+                    if (i < 0) {
+                        return false;
+                    }
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            return false;
+        }
+        return i == values.length;
+    }
+
+    /**
+     * Returns the index after the given route's sensors, or -1 if they do
+     * not match those of the route.
+     */
+    private int matchSensors(Route route, int i) {
+        List<Sensor> sensors = route.getSensorsView();
+        int count = values[i++];
+        if (count != sensors.size()) {
+            return -1;
+        }
+        boolean[] used = new boolean[count];
+        for (int s = 0; s < count; s++) {
+            int kind = values[i++];
+            int match = find(sensors, used, kind);
+            if (match < 0) {
+                return -1;
+            }
+            used[match] = true;
+            i += valuesOf(kind);
+        }
+        return i;
+    }
+
+    /**
+     * Restores the given route's sensors, in the order captured, and
+     * returns the index after them.
+     */
+    private int restoreSensors(Route route, int i, List<TimedItem> replaced) {
+        List<Sensor> current = route.getSensorsView();
+        int count = values[i++];
+        Sensor[] restored = new Sensor[count];
+        boolean[] used = new boolean[count];
+        boolean reordered = false;
+        for (int s = 0; s < count; s++) {
+            int kind = values[i++];
+            int match = find(current, used, kind);
+            used[match] = true;
+            reordered |= match != s;
+            Sensor sensor = current.get(match);
+            if ((kind & LIVE) != 0) {
+                if (!(sensor instanceof LiveSensor)) {
+                    replaced.add((TimedItem) sensor);
+                    sensor = liveSensor(kind, sensor.getThreshold());
+                    reordered = true;
+                }
+                ((LiveSensor) sensor).restoreReading(values[i]);
+            } else if ((kind & STATELESS) == 0) {
+                ((DemoSensor) sensor).setSecondsPassed(values[i]);
+            }
+            restored[s] = sensor;
+            i += valuesOf(kind);
+        }
+        if (reordered) {
+            for (Sensor sensor : current.toArray(new Sensor[0])) {
+                route.removeSensor(sensor);
+            }
+            try {
+                for (Sensor sensor : restored) {
+                    route.addSensor(sensor);
+                }
+            } catch (DuplicateSensorException e) {
+                // The same sensors, or live ones of the same types
+                throw new IllegalStateException(e);
+            }
+        }
+        return i;
+    }
+
+    /**
+     * Returns the index of the first unused sensor that can be restored to
+     * the given kind, or -1 if there is none.
+     */
+    private static int find(List<Sensor> sensors, boolean[] used, int kind) {
+        for (int s = 0; s < sensors.size(); s++) {
+            if (used[s]) {
+                continue;
+            }
+            int actual = kindOf(sensors.get(s));
+            // A demo sensor can be replaced by a live one of the same type
+            if (actual == kind || kind >= LIVE && kind < LIVE + 3
+                    && actual == kind - LIVE) {
+                return s;
+            }
+        }
+        return -1;
+    }
+
+    private static int kindOf(Sensor sensor) {
+        int kind = sensor instanceof PressurePad ? PRESSURE_PAD
+                : sensor instanceof SpeedCamera ? SPEED_CAMERA : VEHICLE_COUNT;
+        if (sensor instanceof LiveSensor) {
+            return kind | LIVE;
+        } else if (!(sensor instanceof DemoSensor)) {
+            return kind | STATELESS;
+        }
+        return kind;
+    }
+
+    /**
+     * Returns the number of values saved for a sensor of the given kind.
+     */
+    private static int valuesOf(int kind) {
+        return (kind & STATELESS) != 0 ? 0 : 1;
+    }
+
+    private static LiveSensor liveSensor(int kind, int threshold) {
+        switch (kind & ~LIVE) {
+            case PRESSURE_PAD:
+                return new LivePressurePad(threshold, 0);
+            case SPEED_CAMERA:
+                return new LiveSpeedCamera(threshold, 0);
+            default:
+                return new LiveVehicleCount(threshold, 0);
+        }
+    }
+}
@@ -9,6 +9,7 @@ import tms.sensors.Sensor;
 import tms.util.DuplicateSensorException;
 
 import java.util.*;
+import java.util.function.Supplier;
 
 /**
  * Represents a one-way connection between two intersections.
@@ -19,19 +20,24 @@ import java.util.*;
  * @ass1_2
  */
 public class Route {
-    /** Identifier string. */
+    /** Identifier string, or null if it is made from the intersections. */
     private String id;
     /** Intersection at which this route begins. */
     private Intersection from;
-    /** List of sensors on this route, limited to up to one of each type. */
-    private List<Sensor> sensors;
+    /** Intersection at which this route ends, null if given an ID instead */
+    private Intersection to;
+    /** Shared by every route without sensors */
+    private static final Sensor[] NO_SENSORS = new Sensor[0];
+
+    /** Sensors on this route, limited to up to one of each type. */
+    private Sensor[] sensors = NO_SENSORS;
     /** Electronic speed sign on this route, null if none exists. */
     private SpeedSign speedSign;
     /** Traffic light signal on this route, null if none exists. */
     private TrafficLight trafficLight;
     /** Speed limit of this route if no electronic speed sign exists. */
     private int defaultSpeed;
-    /** Instance variable for the congestion calculator */
+    /** Congestion calculator, created when congestion is first asked for */
     private AveragingCongestionCalculator congestionCalculator;
 
     /**
@@ -48,8 +54,20 @@ public class Route {
         this.id = id;
         this.from = from;
         this.defaultSpeed = defaultSpeed;
-        sensors = new ArrayList<>();
-        congestionCalculator = new AveragingCongestionCalculator(sensors);
+    }
+
+    /**
+     * Creates a new route between the given intersections, with the ID
+     * "from:to" made from their IDs only when it is needed, such as by
+     * {@link #toString()}.
+     *
+     * @param from the intersection from which this route originates
+     * @param to the intersection at which this route ends
+     * @param defaultSpeed the default speed limit for vehicles on this route
+     */
+    public Route(Intersection from, Intersection to, int defaultSpeed) {
+        this((String) null, from, defaultSpeed);
+        this.to = to;
     }
 
     /**
@@ -82,7 +100,27 @@ public class Route {
      * @ass1
      */
     public List<Sensor> getSensors() {
-        return new ArrayList<>(this.sensors);
+        return new ArrayList<>(Arrays.asList(this.sensors));
+    }
+
+    /**
+     * Returns a read-only view of the sensors on this route, which follows
+     * sensors being added and removed. Unlike {@link #getSensors()}, nothing
+     * is copied.
+     *
+     * @return unmodifiable list of the sensors on this route
+     */
+    public List<Sensor> getSensorsView() {
+        return new SensorsView();
+    }
+
+    /**
+     * Returns the number of sensors on this route.
+     *
+     * @return number of sensors of all types
+     */
+    public int getSensorCount() {
+        return this.sensors.length;
     }
 
     /**
@@ -134,6 +172,13 @@ public class Route {
         trafficLight = new TrafficLight();
     }
 
+    /**
+     * Removes the TrafficLight signal from the route, if it has one.
+     */
+    public void removeTrafficLight() {
+        trafficLight = null;
+    }
+
     /**
      * Creates and adds a new electronic speed sign to this route.
      * <p>
@@ -151,6 +196,14 @@ public class Route {
         this.speedSign = new SpeedSign(initialSpeed);
     }
 
+    /**
+     * Removes the electronic speed sign from this route, if it has one, so
+     * that its speed is the default speed again.
+     */
+    public void removeSpeedSign() {
+        this.speedSign = null;
+    }
+
     /**
      * Sets the speed limit of this route to the given value.
      * <p>
@@ -191,7 +244,30 @@ public class Route {
                                 + s.getClass().getSimpleName() + "\"");
             }
         }
-        sensors.add(sensor);
+        // At most one of each type, so copying is cheaper than spare room
+        Sensor[] added = Arrays.copyOf(sensors, sensors.length + 1);
+        added[sensors.length] = sensor;
+        sensors = added;
+    }
+
+    /**
+     * Removes the given sensor from this route. Has no effect if the sensor
+     * is not on this route.
+     *
+     * @param sensor the sensor to remove
+     */
+    public void removeSensor(Sensor sensor) {
+        for (int i = sensors.length - 1; i >= 0; i--) {
+            if (sensors[i] == sensor) {
+                Sensor[] removed = sensors.length == 1 ? NO_SENSORS
+                        : new Sensor[sensors.length - 1];
+                System.arraycopy(sensors, 0, removed, 0, i);
+                System.arraycopy(sensors, i + 1, removed, i,
+                        removed.length - i);
+                sensors = removed;
+                return;
+            }
+        }
     }
 
     /**
@@ -224,22 +300,79 @@ public class Route {
      */
     @Override
     public String toString() {
-        StringBuilder str = new StringBuilder(String.format("%s%s%d%s%d",
-                this.id, NetworkInitialiser.LINE_INFO_SEPARATOR,
-                this.defaultSpeed, NetworkInitialiser.LINE_INFO_SEPARATOR,
-                this.sensors.size()));
-
-        if (this.speedSign != null) {
-            str.append(NetworkInitialiser.LINE_INFO_SEPARATOR)
-                    .append(this.speedSign.getCurrentSpeed());
+        return toStringLater().get();
+    }
+
+    /**
+     * Returns the string representation of this route as it is now, which
+     * may be turned into text later, and on another thread.
+     * <p>
+     * Only the IDs, speeds and sensors are copied by this method, leaving the
+     * formatting and sorting of the lines to the supplier.
+     *
+     * @return a supplier of the text toString() gives at the time of this call
+     * @see Sensor#toStringLater()
+     */
+    public Supplier<String> toStringLater() {
+        String id = this.id;
+        String fromId = id == null ? from.getId() : null;
+        String toId = id == null ? to.getId() : null;
+        int defaultSpeed = this.defaultSpeed;
+        boolean hasSpeedSign = this.speedSign != null;
+        int signSpeed = hasSpeedSign ? this.speedSign.getCurrentSpeed() : 0;
+        List<Supplier<String>> sensorTexts = new ArrayList<>(sensors.length);
+        for (Sensor sensor : sensors) {
+            sensorTexts.add(sensor.toStringLater());
         }
 
-        String[] sensorLines = this.sensors.stream().map(Object::toString)
-                .sorted().toArray(String[]::new);
-        for (String sensorLine : sensorLines) {
-            str.append(System.lineSeparator()).append(sensorLine);
+        return () -> {
+            String routeId = id != null ? id
+                    : fromId + NetworkInitialiser.LINE_INFO_SEPARATOR + toId;
+            StringBuilder str = new StringBuilder(String.format("%s%s%d%s%d",
+                    routeId, NetworkInitialiser.LINE_INFO_SEPARATOR,
+                    defaultSpeed, NetworkInitialiser.LINE_INFO_SEPARATOR,
+                    sensorTexts.size()));
+
+            if (hasSpeedSign) {
+                str.append(NetworkInitialiser.LINE_INFO_SEPARATOR)
+                        .append(signSpeed);
+            }
+
+            String[] sensorLines = sensorTexts.stream().map(Supplier::get)
+                    .sorted().toArray(String[]::new);
+            for (String sensorLine : sensorLines) {
+                str.append(System.lineSeparator()).append(sensorLine);
+            }
+            return str.toString();
+        };
+    }
+
+    /**
+     * Returns the ID of this route, of the form "from:to" for routes created
+     * between two intersections.
+     *
+     * @return the identifier string
+     */
+    private String getId() {
+        if (id != null) {
+            return id;
         }
-        return str.toString();
+        return from.getId() + NetworkInitialiser.LINE_INFO_SEPARATOR
+                + to.getId();
+    }
+
+    /**
+     * Returns true if both routes are known to join different intersections
+     * of the same network, by their handles, without building their IDs.
+     */
+    private static boolean differentEnds(Route a, Route b) {
+        if (a.to == null || b.to == null
+                || a.from.getSymbols() != b.from.getSymbols()
+                || a.to.getSymbols() != b.to.getSymbols()) {
+            return false;
+        }
+        return a.from.getHandle() != b.from.getHandle()
+                || a.to.getHandle() != b.to.getHandle();
     }
 
     /**
@@ -251,6 +384,10 @@ public class Route {
      * @return the congestion level on this route as returned by the calculator
      */
     public int getCongestion(){
+        if (congestionCalculator == null) {
+            congestionCalculator = new AveragingCongestionCalculator(
+                    new SensorsView());
+        }
         return congestionCalculator.calculateCongestion();
     }
 
@@ -275,6 +412,10 @@ public class Route {
      */
     @Override
     public boolean equals(Object obj){
+        if (obj == this) {
+            // Skips comparing sensors, as when checking lights orders
+            return true;
+        }
         if (!(obj instanceof Route)){
             return false;
         }
@@ -309,10 +450,13 @@ public class Route {
      * @return whether routes are equal or not using these suite of tests.
      */
     private static boolean compareParameters(Route a, Route b){
+        if (differentEnds(a, b)){
+            return false;
+        }
         if (a.toString().equals(b.toString())){
             if (a.hasSpeedSign() == b.hasSpeedSign()){
-                List<Sensor> aSensors = a.getSensors();
-                List<Sensor> bSensors = b.getSensors();
+                List<Sensor> aSensors = a.getSensorsView();
+                List<Sensor> bSensors = b.getSensorsView();
 
                 // If the sensor lists are permutations
                 return compare(aSensors, bSensors);
@@ -353,7 +497,7 @@ public class Route {
      * @return whether routes are equal or not using these suite of tests.
      */
     private static boolean compareSignAndSensors(Route a, Route b){
-        if (compare(a.getSensors(), b.getSensors())){
+        if (compare(a.getSensorsView(), b.getSensorsView())){
             if ((a.hasSpeedSign() && b.hasSpeedSign())){
                 return a.getSpeed() == b.getSpeed();
                 // @1160 on Piazza
@@ -392,4 +536,19 @@ public class Route {
         return true;
     }
 
+    /**
+     * Read-only view of the sensors currently on this route.
+     */
+    private class SensorsView extends AbstractList<Sensor> {
+        @Override
+        public Sensor get(int index) {
+            Objects.checkIndex(index, sensors.length);
+            return sensors[index];
+        }
+
+        @Override
+        public int size() {
+            return sensors.length;
+        }
+    }
 }
@@ -0,0 +1,655 @@
+package tms.routing;
+
+import tms.intersection.Intersection;
+import tms.route.Route;
+import tms.util.IntersectionNotFoundException;
+import tms.util.RouteNotFoundException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A customizable contraction hierarchy (CCH) over a {@link RoutingGraph},
+ * answering fastest-route queries with a bidirectional search that only
+ * explores a small part of the network.
+ * <p>
+ * Building the hierarchy happens in two steps:
+ * <ol>
+ *   <li><b>Contraction</b> depends only on the structure of the network.
+ *   Intersections are ranked by nested dissection, so that intersections
+ *   separating large parts of the network are ranked highest. They are
+ *   then removed in rank order, connecting all of each intersection's
+ *   remaining neighbours to each other with shortcut arcs. This produces an
+ *   undirected "upward" graph in which every arc leads from a lower ranked
+ *   intersection to a higher ranked one.</li>
+ *   <li><b>Customisation</b> assigns travel times to the arcs, in both
+ *   directions, from the current travel times of the routing graph. It is
+ *   much faster than contraction and is repeated by
+ *   {@link ContractionHierarchy#customise()} whenever route speeds or
+ *   congestion change, e.g. after {@code Network.setSpeedLimit()} or
+ *   {@code Intersection.reduceIncomingSpeedSigns()}.</li>
+ * </ol>
+ * Since no witness searches are used during contraction, every shortcut
+ * is kept regardless of travel times, which is what allows the hierarchy to
+ * be re-customised without contracting it again.
+ * <p>
+ * A hierarchy is not thread-safe.
+ */
+public class ContractionHierarchy {
+    private final RoutingGraph graph;
+    private final int n;
+
+    /** Rank of each intersection, and the intersection with each rank */
+    private final int[] rank, nodeOfRank;
+
+    /** Offset of the first upward arc of each rank (n + 1) */
+    private final int[] firstArc;
+    /** Higher ranked end of each arc; arcs of a rank are sorted by head */
+    private final int[] arcHead;
+
+    /** Travel time from the lower to the higher end of each arc */
+    private final float[] upCost;
+    /** Travel time from the higher to the lower end of each arc */
+    private final float[] downCost;
+    /**
+     * How the cost of each arc was achieved: a non-negative value is the
+     * rank of the middle intersection of a shortcut, and a negative value
+     * encodes the original edge e as -(e + 1).
+     */
+    private final int[] upVia, downVia;
+
+    /**
+     * Parent of each rank in the elimination tree: its lowest ranked upward
+     * neighbour, or -1. Every upward neighbour of a rank is an ancestor.
+     */
+    private final int[] treeParent;
+
+    /** Scratch space for queries; distances are infinite between queries */
+    private final float[] forwardDistance, backwardDistance;
+    private final int[] forwardParent, backwardParent;
+    private int lastSource = -1, lastTarget = -1;
+
+    /**
+     * Contracts and customises a hierarchy for the given routing graph.
+     *
+     * @param graph the graph to build the hierarchy for
+     */
+    public ContractionHierarchy(RoutingGraph graph) {
+        this.graph = graph;
+        this.n = graph.size();
+
+        rank = new int[n];
+        nodeOfRank = new int[n];
+        List<int[]> upward = contract();
+
+        firstArc = new int[n + 1];
+        for (int r = 0; r < n; r++) {
+            firstArc[r + 1] = firstArc[r] + upward.get(r).length;
+        }
+        int arcs = firstArc[n];
+        arcHead = new int[arcs];
+        for (int r = 0; r < n; r++) {
+            int[] heads = upward.get(r);
+            System.arraycopy(heads, 0, arcHead, firstArc[r], heads.length);
+        }
+
+        upCost = new float[arcs];
+        downCost = new float[arcs];
+        upVia = new int[arcs];
+        downVia = new int[arcs];
+
+        treeParent = new int[n];
+        for (int r = 0; r < n; r++) {
+            treeParent[r] = firstArc[r] < firstArc[r + 1]
+                    ? arcHead[firstArc[r]] : -1;
+        }
+
+        forwardDistance = new float[n];
+        backwardDistance = new float[n];
+        Arrays.fill(forwardDistance, Float.POSITIVE_INFINITY);
+        Arrays.fill(backwardDistance, Float.POSITIVE_INFINITY);
+        forwardParent = new int[n];
+        backwardParent = new int[n];
+
+        customise();
+    }
+
+    /**
+     * Reads the current travel times of the routing graph and recomputes the
+     * travel time of every arc, without changing the hierarchy's structure.
+     * <p>
+     * Call {@link RoutingGraph#refreshCosts()} first to pick up changes to
+     * route speeds and congestion.
+     */
+    public void customise() {
+        Arrays.fill(upCost, Float.POSITIVE_INFINITY);
+        Arrays.fill(downCost, Float.POSITIVE_INFINITY);
+
+        // Original routes
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int from = rank[graph.source(edge)];
+            int to = rank[graph.target(edge)];
+            float cost = graph.cost(edge);
+            if (from < to) {
+                int arc = findArc(from, to);
+                if (cost < upCost[arc]) {
+                    upCost[arc] = cost;
+                    upVia[arc] = -(edge + 1);
+                }
+            } else if (to < from) {
+                int arc = findArc(to, from);
+                if (cost < downCost[arc]) {
+                    downCost[arc] = cost;
+                    downVia[arc] = -(edge + 1);
+                }
+            }
+        }
+
+        // Lower triangles, in increasing rank: for the arcs (u, v) and
+        // (u, w) with u < v < w, travelling v -> u -> w may be faster than
+        // the arc (v, w), and likewise w -> u -> v.
+        int[] arcTo = new int[n];
+        for (int u = 0; u < n; u++) {
+            for (int a = firstArc[u]; a < firstArc[u + 1]; a++) {
+                int v = arcHead[a];
+                for (int b = firstArc[v]; b < firstArc[v + 1]; b++) {
+                    arcTo[arcHead[b]] = b;
+                }
+                for (int c = a + 1; c < firstArc[u + 1]; c++) {
+                    int vw = arcTo[arcHead[c]];
+
+                    float viaUp = downCost[a] + upCost[c];
+                    if (viaUp < upCost[vw]) {
+                        upCost[vw] = viaUp;
+                        upVia[vw] = u;
+                    }
+                    float viaDown = downCost[c] + upCost[a];
+                    if (viaDown < downCost[vw]) {
+                        downCost[vw] = viaDown;
+                        downVia[vw] = u;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Refreshes the travel times of the routing graph and re-customises the
+     * hierarchy if any of them changed.
+     *
+     * @return true if the hierarchy was re-customised
+     */
+    public boolean refresh() {
+        float[] previous = graph.edgeCost.clone();
+        graph.refreshCosts();
+        if (Arrays.equals(previous, graph.edgeCost)) {
+            return false;
+        }
+        customise();
+        return true;
+    }
+
+    /**
+     * @return the routing graph this hierarchy was built for
+     */
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return number of arcs in the hierarchy, including shortcuts
+     */
+    public int arcCount() {
+        return arcHead.length;
+    }
+
+    /**
+     * Estimates the memory used by the hierarchy's arrays, including query
+     * scratch space but not the routing graph.
+     *
+     * @return estimated size in bytes
+     */
+    public long memoryFootprint() {
+        long perNode = 4L * 9;  // ranks, first arcs, tree, query scratch
+        long perArc = 4L * 5;       // head, two costs, two vias
+        return perNode * n + perArc * arcHead.length;
+    }
+
+    /**
+     * Finds the fastest path from the intersection with ID 'from' to the
+     * intersection with ID 'to'.
+     *
+     * @param from ID of the origin intersection
+     * @param to   ID of the destination intersection
+     * @return the fastest route plan between the two intersections
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     * @throws RouteNotFoundException if the destination cannot be reached
+     * from the origin
+     */
+    public RoutePlan fastestRoute(String from, String to)
+            throws IntersectionNotFoundException, RouteNotFoundException {
+        int source = rank[graph.indexOf(from)];
+        int target = rank[graph.indexOf(to)];
+
+        int meeting = query(source, target);
+        if (meeting < 0) {
+            throw new RouteNotFoundException("No path from \"" + from
+                    + "\" to \"" + to + "\"");
+        }
+
+        List<Route> routes = new ArrayList<>();
+        List<Route> tail = new ArrayList<>();
+        for (int r = meeting; r != source; ) {
+            int arc = forwardParent[r];
+            int lower = lowerEnd(arc);
+            unpack(arc, true, tail);
+            Collections.reverse(tail);
+            routes.addAll(tail);
+            tail.clear();
+            r = lower;
+        }
+        Collections.reverse(routes);
+        for (int r = meeting; r != target; ) {
+            int arc = backwardParent[r];
+            unpack(arc, false, routes);
+            r = lowerEnd(arc);
+        }
+
+        // Routes only know where they start, so each route ends where the
+        // next one starts and the last one ends at the target.
+        List<Intersection> intersections = new ArrayList<>();
+        for (Route route : routes) {
+            intersections.add(route.getFrom());
+        }
+        intersections.add(graph.getIntersection(nodeOfRank[target]));
+        return new RoutePlan(intersections, routes,
+                forwardDistance[meeting] + backwardDistance[meeting]);
+    }
+
+    /**
+     * Returns the fastest travel time in seconds from the intersection with
+     * ID 'from' to the intersection with ID 'to'.
+     *
+     * @param from ID of the origin intersection
+     * @param to   ID of the destination intersection
+     * @return travel time in seconds, or infinity if the destination cannot
+     * be reached
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     */
+    public double travelTime(String from, String to)
+            throws IntersectionNotFoundException {
+        return travelTime(graph.indexOf(from), graph.indexOf(to));
+    }
+
+    /**
+     * Returns the fastest travel time in seconds between two intersections
+     * given by their routing graph indices.
+     *
+     * @param source index of the origin intersection
+     * @param target index of the destination intersection
+     * @return travel time in seconds, or infinity if the destination cannot
+     * be reached
+     */
+    public float travelTime(int source, int target) {
+        int meeting = query(rank[source], rank[target]);
+        if (meeting < 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return forwardDistance[meeting] + backwardDistance[meeting];
+    }
+
+    /**
+     * Runs a bidirectional upward search between two ranks.
+     * <p>
+     * Every intersection reachable by going upwards from a rank is one of
+     * its ancestors in the elimination tree, so rather than using priority
+     * queues, each search visits the ancestors of its start in increasing
+     * rank order. The fastest path meets at a common ancestor.
+     *
+     * @return the rank at which the fastest path meets, or -1 if none
+     */
+    private int query(int source, int target) {
+        clear(lastSource, forwardDistance);
+        clear(lastTarget, backwardDistance);
+        lastSource = source;
+        lastTarget = target;
+
+        forwardDistance[source] = 0;
+        forwardParent[source] = -1;
+        climb(source, forwardDistance, forwardParent, upCost);
+        backwardDistance[target] = 0;
+        backwardParent[target] = -1;
+        climb(target, backwardDistance, backwardParent, downCost);
+
+        float best = Float.POSITIVE_INFINITY;
+        int meeting = -1;
+        for (int r = source; r != -1; r = treeParent[r]) {
+            float distance = forwardDistance[r] + backwardDistance[r];
+            if (distance < best) {
+                best = distance;
+                meeting = r;
+            }
+        }
+        return meeting;
+    }
+
+    private void climb(int start, float[] distances, int[] parents,
+                       float[] costs) {
+        for (int r = start; r != -1; r = treeParent[r]) {
+            float distance = distances[r];
+            if (distance == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            for (int arc = firstArc[r]; arc < firstArc[r + 1]; arc++) {
+                float candidate = distance + costs[arc];
+                int next = arcHead[arc];
+                if (candidate < distances[next]) {
+                    distances[next] = candidate;
+                    parents[next] = arc;
+                }
+            }
+        }
+    }
+
+    private void clear(int start, float[] distances) {
+        for (int r = start; r >= 0; r = treeParent[r]) {
+            distances[r] = Float.POSITIVE_INFINITY;
+        }
+    }
+
+    /**
+     * Appends the routes making up the given arc to the list, in travel
+     * order.
+     *
+     * @param arc the arc to unpack
+     * @param up true to travel from the lower to the higher end of the arc
+     * @param routes list to append the routes to
+     */
+    private void unpack(int arc, boolean up, List<Route> routes) {
+        int via = up ? upVia[arc] : downVia[arc];
+        if (via < 0) {
+            routes.add(graph.getRoute(-via - 1));
+            return;
+        }
+        int lower = lowerEnd(arc);
+        int higher = arcHead[arc];
+        // lower -> via -> higher when going up, the reverse when going down
+        int toLower = findArc(via, lower);
+        int toHigher = findArc(via, higher);
+        if (up) {
+            unpack(toLower, false, routes);
+            unpack(toHigher, true, routes);
+        } else {
+            unpack(toHigher, false, routes);
+            unpack(toLower, true, routes);
+        }
+    }
+
+    /**
+     * @return the lower ranked end of the given arc
+     */
+    private int lowerEnd(int arc) {
+        // Binary search for the rank whose arcs contain the given arc
+        int low = 0, high = n - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (firstArc[mid] <= arc) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * @return the arc from the lower rank to the higher rank
+     */
+    private int findArc(int lower, int higher) {
+        int index = Arrays.binarySearch(arcHead, firstArc[lower],
+                firstArc[lower + 1], higher);
+        if (index < 0) {
+            throw new IllegalStateException("Missing arc " + lower + " -> "
+                    + higher);
+        }
+        return index;
+    }
+
+    /**
+     * Ranks every intersection by nested dissection, then contracts them in
+     * rank order.
+     *
+     * @return the sorted upward neighbours of each rank
+     */
+    private List<int[]> contract() {
+        // Undirected neighbour lists, without self loops or duplicates
+        int[][] neighbours = new int[n][];
+        int[] degree = new int[n];
+        for (int v = 0; v < n; v++) {
+            neighbours[v] = new int[4];
+        }
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            int a = graph.source(edge);
+            int b = graph.target(edge);
+            if (a != b && !contains(neighbours[a], degree[a], b)) {
+                neighbours[a] = add(neighbours[a], degree[a]++, b);
+                neighbours[b] = add(neighbours[b], degree[b]++, a);
+            }
+        }
+
+        dissect(neighbours, degree);
+
+        // Keep only the neighbours ranked above each intersection
+        for (int v = 0; v < n; v++) {
+            int size = 0;
+            for (int i = 0; i < degree[v]; i++) {
+                if (rank[neighbours[v][i]] > rank[v]) {
+                    neighbours[v][size++] = neighbours[v][i];
+                }
+            }
+            degree[v] = size;
+        }
+
+        // Contracting an intersection connects all of its upward neighbours
+        // to each other. It is enough to pass them on to the lowest ranked
+        // of them, which passes them on in turn when it is contracted.
+        int[] mark = new int[n];
+        Arrays.fill(mark, -1);
+        for (int r = 0; r < n; r++) {
+            int v = nodeOfRank[r];
+            if (degree[v] == 0) {
+                continue;
+            }
+            int lowest = neighbours[v][0];
+            for (int i = 1; i < degree[v]; i++) {
+                if (rank[neighbours[v][i]] < rank[lowest]) {
+                    lowest = neighbours[v][i];
+                }
+            }
+            for (int i = 0; i < degree[lowest]; i++) {
+                mark[neighbours[lowest][i]] = r;
+            }
+            for (int i = 0; i < degree[v]; i++) {
+                int w = neighbours[v][i];
+                if (w != lowest && mark[w] != r) {
+                    neighbours[lowest] = add(neighbours[lowest],
+                            degree[lowest]++, w);
+                }
+            }
+        }
+
+        // Convert neighbour IDs to ranks, sorted for binary searching
+        List<int[]> upward = new ArrayList<>(n);
+        for (int r = 0; r < n; r++) {
+            int v = nodeOfRank[r];
+            int[] heads = new int[degree[v]];
+            for (int i = 0; i < heads.length; i++) {
+                heads[i] = rank[neighbours[v][i]];
+            }
+            Arrays.sort(heads);
+            upward.add(heads);
+            neighbours[v] = null;
+        }
+        return upward;
+    }
+
+    /**
+     * Ranks every intersection by nested dissection: a set of intersections
+     * is split in two by a separator, the separator is ranked above the
+     * rest of the set, and both halves are split in the same way.
+     * <p>
+     * Separators are found with a breadth first search from an intersection
+     * at the edge of the set. Intersections in the same level separate the
+     * earlier levels from the later ones, so the smallest level reached
+     * between a third and two thirds of the way through the search is used.
+     */
+    private void dissect(int[][] neighbours, int[] degree) {
+        int[] member = new int[n];
+        int[] level = new int[n];
+        int[] queue = new int[n];
+        int[] all = new int[n];
+        for (int v = 0; v < n; v++) {
+            all[v] = v;
+        }
+
+        Deque<int[]> sets = new ArrayDeque<>();
+        if (n > 0) {
+            sets.push(all);
+        }
+        int next = n - 1;
+        int token = 0;
+        while (!sets.isEmpty()) {
+            int[] set = sets.pop();
+            if (set.length <= 2) {
+                for (int v : set) {
+                    rank[v] = next--;
+                }
+                continue;
+            }
+
+            // Search from any intersection, then again from the last one
+            // reached, which is likely to be at the edge of the set.
+            token++;
+            for (int v : set) {
+                member[v] = token;
+            }
+            int reached = levels(set[0], neighbours, degree, member, token,
+                    level, queue);
+            if (reached < set.length) {
+                // Disconnected: split off the part that was reached
+                int[] rest = new int[set.length - reached];
+                int size = 0;
+                for (int v : set) {
+                    if (member[v] == token) {
+                        rest[size++] = v;
+                    }
+                }
+                sets.push(Arrays.copyOf(queue, reached));
+                sets.push(rest);
+                continue;
+            }
+            token++;
+            for (int v : set) {
+                member[v] = token;
+            }
+            levels(queue[reached - 1], neighbours, degree, member, token,
+                    level, queue);
+
+            // The smallest level in the middle third of the search
+            int separatorLevel = level[queue[reached / 3]];
+            int separatorSize = Integer.MAX_VALUE;
+            for (int i = reached / 3; i <= 2 * reached / 3; ) {
+                int j = i;
+                while (j < reached && level[queue[j]] == level[queue[i]]) {
+                    j++;
+                }
+                if (j - i < separatorSize) {
+                    separatorSize = j - i;
+                    separatorLevel = level[queue[i]];
+                }
+                i = j;
+            }
+            int lowCount = 0, separatorCount = 0;
+            for (int v : set) {
+                if (level[v] < separatorLevel) {
+                    lowCount++;
+                } else if (level[v] == separatorLevel) {
+                    separatorCount++;
+                }
+            }
+            int[] low = new int[lowCount];
+            int[] high = new int[set.length - lowCount - separatorCount];
+            int lowSize = 0, highSize = 0;
+            for (int v : set) {
+                if (level[v] < separatorLevel) {
+                    low[lowSize++] = v;
+                } else if (level[v] > separatorLevel) {
+                    high[highSize++] = v;
+                } else {
+                    rank[v] = next--;
+                }
+            }
+            if (low.length > 0) {
+                sets.push(low);
+            }
+            if (high.length > 0) {
+                sets.push(high);
+            }
+        }
+
+        for (int v = 0; v < n; v++) {
+            nodeOfRank[rank[v]] = v;
+        }
+    }
+
+    /**
+     * Breadth first search within the intersections whose member value is
+     * token. Reached intersections have their member value set to -token and
+     * their distance from the start stored in level.
+     *
+     * @return number of intersections reached, listed in order in queue
+     */
+    private static int levels(int start, int[][] neighbours, int[] degree,
+                              int[] member, int token, int[] level,
+                              int[] queue) {
+        int head = 0, tail = 0;
+        queue[tail++] = start;
+        member[start] = -token;
+        level[start] = 0;
+        while (head < tail) {
+            int v = queue[head++];
+            for (int i = 0; i < degree[v]; i++) {
+                int w = neighbours[v][i];
+                if (member[w] == token) {
+                    member[w] = -token;
+                    level[w] = level[v] + 1;
+                    queue[tail++] = w;
+                }
+            }
+        }
+        return tail;
+    }
+
+    private static boolean contains(int[] list, int size, int value) {
+        for (int i = 0; i < size; i++) {
+            if (list[i] == value) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int[] add(int[] list, int size, int value) {
+        if (size == list.length) {
+            list = Arrays.copyOf(list, size * 2);
+        }
+        list[size] = value;
+        return list;
+    }
+}
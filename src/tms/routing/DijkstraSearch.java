@@ -0,0 +1,175 @@
+package tms.routing;
+
+import java.util.Arrays;
+
+/**
+ * Dijkstra's shortest path algorithm over a {@link RoutingGraph}, with
+ * reusable scratch space.
+ * <p>
+ * Distances and parent edges are only valid for intersections reached by
+ * the most recent search. Instead of clearing the arrays before each search,
+ * every entry is tagged with the number of the search that wrote it, so
+ * starting a new search costs nothing regardless of the size of the graph.
+ * <p>
+ * A search instance is not thread-safe; each thread needs its own.
+ */
+class DijkstraSearch {
+    private final int[] firstEdge;
+    private final int[] edgeTarget;
+    private final float[] edgeCost;
+    private final IndexedMinHeap queue;
+    /** Best known travel time to each intersection */
+    private final float[] distances;
+    /** Edge used to reach each intersection, or -1 for the source */
+    private final int[] parentEdges;
+    /** Search number in which each intersection was last reached */
+    private final int[] reached;
+    /** Search number in which each intersection was last settled */
+    private final int[] settled;
+    /** Number of the current search */
+    private int search = 0;
+
+    /**
+     * Creates a search with scratch space for the given graph.
+     *
+     * @param graph the graph to search
+     */
+    DijkstraSearch(RoutingGraph graph) {
+        this(graph.firstEdge, graph.edgeTarget, graph.edgeCost);
+    }
+
+    /**
+     * Creates a search over a graph given in compressed sparse row form,
+     * e.g. a reversed graph or one with different edge costs.
+     *
+     * @param firstEdge offset of the first edge of each node (n + 1)
+     * @param edgeTarget node at which each edge ends
+     * @param edgeCost cost of each edge
+     */
+    DijkstraSearch(int[] firstEdge, int[] edgeTarget, float[] edgeCost) {
+        this.firstEdge = firstEdge;
+        this.edgeTarget = edgeTarget;
+        this.edgeCost = edgeCost;
+        int n = firstEdge.length - 1;
+        queue = new IndexedMinHeap(n);
+        distances = new float[n];
+        parentEdges = new int[n];
+        reached = new int[n];
+        settled = new int[n];
+    }
+
+    /**
+     * Finds the fastest paths from the source, stopping once the target has
+     * been settled. If the target is negative, every reachable intersection
+     * is settled.
+     *
+     * @param source index of the intersection to start from
+     * @param target index of the intersection to stop at, or -1
+     * @return true if the target was reached (always true for no target)
+     */
+    boolean run(int source, int target) {
+        start(source);
+
+        while (!queue.isEmpty()) {
+            int node = settleNext();
+            if (node == target) {
+                queue.clear();
+                return true;
+            }
+        }
+        return target < 0;
+    }
+
+    /**
+     * Starts a new search from the given source without settling anything.
+     *
+     * @param source index of the intersection to start from
+     */
+    void start(int source) {
+        queue.clear();
+        search++;
+        if (search == 0) {
+            // Wrapped around; forget every previous search.
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            search = 1;
+        }
+        reach(source, 0, -1);
+    }
+
+    /**
+     * @return true if there are no more intersections to settle
+     */
+    boolean isFinished() {
+        return queue.isEmpty();
+    }
+
+    /**
+     * @return the travel time to the next intersection to be settled
+     * @requires !isFinished()
+     */
+    float nextDistance() {
+        return queue.peekKey();
+    }
+
+    /**
+     * Settles the closest unsettled intersection and relaxes its outgoing
+     * edges.
+     *
+     * @return index of the settled intersection
+     * @requires !isFinished()
+     */
+    int settleNext() {
+        int node = queue.poll();
+        settled[node] = search;
+        float distance = distances[node];
+
+        for (int edge = firstEdge[node], last = firstEdge[node + 1];
+             edge < last; edge++) {
+            int next = edgeTarget[edge];
+            if (settled[next] == search) {
+                continue;
+            }
+            float candidate = distance + edgeCost[edge];
+            if (reached[next] != search || candidate < distances[next]) {
+                if (candidate != Float.POSITIVE_INFINITY) {
+                    reach(next, candidate, edge);
+                }
+            }
+        }
+        return node;
+    }
+
+    /**
+     * @param node index of an intersection
+     * @return true if the intersection was settled by the current search
+     */
+    boolean isSettled(int node) {
+        return settled[node] == search;
+    }
+
+    /**
+     * @param node index of an intersection
+     * @return travel time to the intersection, or infinity if it has not
+     * been reached by the current search
+     */
+    float distance(int node) {
+        return reached[node] == search ? distances[node]
+                : Float.POSITIVE_INFINITY;
+    }
+
+    /**
+     * @param node index of an intersection reached by the current search
+     * @return the edge used to reach the intersection, or -1 for the source
+     */
+    int parentEdge(int node) {
+        return parentEdges[node];
+    }
+
+    private void reach(int node, float distance, int edge) {
+        reached[node] = search;
+        distances[node] = distance;
+        parentEdges[node] = edge;
+        queue.insertOrDecrease(node, distance);
+    }
+}
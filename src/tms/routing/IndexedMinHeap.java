@@ -0,0 +1,144 @@
+package tms.routing;
+
+import java.util.Arrays;
+
+/**
+ * A binary min-heap of integer items in the range 0 to capacity-1, keyed by
+ * float priorities, backed entirely by primitive arrays.
+ * <p>
+ * Each item can be in the heap at most once. Its key can be lowered with
+ * {@link IndexedMinHeap#insertOrDecrease(int, float)}, which keeps the
+ * position of every item so that no duplicate entries are needed.
+ */
+class IndexedMinHeap {
+    /** Items in heap order */
+    private final int[] heap;
+    /** Key of each item in the heap */
+    private final float[] keys;
+    /** Position of each item in the heap, or -1 if it is not in the heap */
+    private final int[] positions;
+    private int size = 0;
+
+    /**
+     * Creates an empty heap for items 0 to capacity-1.
+     *
+     * @param capacity number of distinct items
+     */
+    IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        keys = new float[capacity];
+        positions = new int[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    /**
+     * @return true if the heap contains no items
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * @return number of items in the heap
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * @return the smallest key in the heap
+     * @requires !isEmpty()
+     */
+    float peekKey() {
+        return keys[heap[0]];
+    }
+
+    /**
+     * Adds the item with the given key, or lowers its key if the item is
+     * already in the heap with a larger key.
+     *
+     * @param item item to add
+     * @param key new key of the item
+     */
+    void insertOrDecrease(int item, float key) {
+        int position = positions[item];
+        if (position < 0) {
+            position = size++;
+            heap[position] = item;
+            positions[item] = position;
+        } else if (key >= keys[item]) {
+            return;
+        }
+        keys[item] = key;
+        siftUp(position);
+    }
+
+    /**
+     * Removes and returns the item with the smallest key.
+     *
+     * @return the removed item
+     * @requires !isEmpty()
+     */
+    int poll() {
+        int top = heap[0];
+        positions[top] = -1;
+        size--;
+        if (size > 0) {
+            int last = heap[size];
+            heap[0] = last;
+            positions[last] = 0;
+            siftDown(0);
+        }
+        return top;
+    }
+
+    /**
+     * Removes every item from the heap. Runs in time proportional to the
+     * number of items in the heap rather than its capacity.
+     */
+    void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int position) {
+        int item = heap[position];
+        float key = keys[item];
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            int parentItem = heap[parent];
+            if (keys[parentItem] <= key) {
+                break;
+            }
+            heap[position] = parentItem;
+            positions[parentItem] = position;
+            position = parent;
+        }
+        heap[position] = item;
+        positions[item] = position;
+    }
+
+    private void siftDown(int position) {
+        int item = heap[position];
+        float key = keys[item];
+        int half = size >>> 1;
+        while (position < half) {
+            int child = 2 * position + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            int childItem = heap[child];
+            if (key <= keys[childItem]) {
+                break;
+            }
+            heap[position] = childItem;
+            positions[childItem] = position;
+            position = child;
+        }
+        heap[position] = item;
+        positions[item] = position;
+    }
+}
@@ -0,0 +1,294 @@
+package tms.routing;
+
+import tms.util.IntersectionNotFoundException;
+
+import java.util.Arrays;
+
+/**
+ * Answers reachability and isochrone queries over a {@link RoutingGraph},
+ * such as "which intersections can be reached from X within T seconds" or
+ * "which intersections are affected if the lights at Y fail".
+ * <p>
+ * Every query can run forwards, following routes from the start, or in
+ * reverse, finding the intersections from which the start can be reached.
+ * Visited intersections are tracked in a bitset and searches stop as soon as
+ * their answer is known, so a query costs time proportional to the part of
+ * the network it explores. Results are returned as arrays of routing graph
+ * indices, or of intersection IDs.
+ * <p>
+ * Travel times are those of the graph, see
+ * {@link RoutingGraph#refreshCosts()}. An instance is not thread-safe.
+ */
+public class Reachability {
+    private final RoutingGraph graph;
+
+    /** One bit per intersection, set once it has been visited */
+    private final long[] visited;
+    /** One bit per intersection, set once its travel time is final */
+    private final long[] settled;
+    /** Breadth first search queue, also used to collect results */
+    private final int[] queue;
+    private final IndexedMinHeap heap;
+    private final float[] distances;
+
+    /**
+     * Creates a reachability engine for the given graph.
+     *
+     * @param graph the graph to search
+     */
+    public Reachability(RoutingGraph graph) {
+        this.graph = graph;
+        int n = graph.size();
+        visited = new long[(n + 63) >>> 6];
+        settled = new long[visited.length];
+        queue = new int[n];
+        heap = new IndexedMinHeap(n);
+        distances = new float[n];
+    }
+
+    /**
+     * Returns the intersections that can be reached from the intersection
+     * with the given ID, including itself.
+     *
+     * @param id ID of the intersection to start from
+     * @return IDs of the reachable intersections
+     * @throws IntersectionNotFoundException if no intersection has the ID
+     */
+    public String[] reachableFrom(String id)
+            throws IntersectionNotFoundException {
+        return idsOf(reachable(graph.indexOf(id), false));
+    }
+
+    /**
+     * Returns the intersections from which the intersection with the given
+     * ID can be reached, including itself.
+     *
+     * @param id ID of the intersection to reach
+     * @return IDs of the intersections that can reach it
+     * @throws IntersectionNotFoundException if no intersection has the ID
+     */
+    public String[] reachableTo(String id)
+            throws IntersectionNotFoundException {
+        return idsOf(reachable(graph.indexOf(id), true));
+    }
+
+    /**
+     * Returns the intersections that can be reached from the intersection
+     * with the given ID within the given travel time, including itself.
+     *
+     * @param id ID of the intersection to start from
+     * @param seconds maximum travel time in seconds
+     * @return IDs of the intersections within the travel time
+     * @throws IntersectionNotFoundException if no intersection has the ID
+     */
+    public String[] isochrone(String id, double seconds)
+            throws IntersectionNotFoundException {
+        return idsOf(within(graph.indexOf(id), (float) seconds, false));
+    }
+
+    /**
+     * Returns the intersections from which the intersection with the given
+     * ID can be reached within the given travel time, including itself.
+     *
+     * @param id ID of the intersection to reach
+     * @param seconds maximum travel time in seconds
+     * @return IDs of the intersections within the travel time
+     * @throws IntersectionNotFoundException if no intersection has the ID
+     */
+    public String[] reverseIsochrone(String id, double seconds)
+            throws IntersectionNotFoundException {
+        return idsOf(within(graph.indexOf(id), (float) seconds, true));
+    }
+
+    /**
+     * Returns the intersections affected by a problem at the intersection
+     * with the given ID, such as its lights failing: those whose traffic
+     * can arrive at it, or can be reached from it, within the given travel
+     * time.
+     *
+     * @param id ID of the intersection with the problem
+     * @param seconds maximum travel time in seconds
+     * @return IDs of the affected intersections, not including itself
+     * @throws IntersectionNotFoundException if no intersection has the ID
+     */
+    public String[] impactOf(String id, double seconds)
+            throws IntersectionNotFoundException {
+        return idsOf(impactOf(graph.indexOf(id), (float) seconds));
+    }
+
+    /**
+     * Returns true if the intersection with ID 'to' can be reached from the
+     * intersection with ID 'from'.
+     *
+     * @param from ID of the intersection to start from
+     * @param to ID of the intersection to reach
+     * @return whether 'to' can be reached from 'from'
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     */
+    public boolean canReach(String from, String to)
+            throws IntersectionNotFoundException {
+        return canReach(graph.indexOf(from), graph.indexOf(to));
+    }
+
+    /**
+     * Returns the intersections reachable from the source, or that can reach
+     * the source if 'reverse' is true, including the source itself.
+     *
+     * @param source index of the intersection to start from
+     * @param reverse whether to follow routes backwards
+     * @return indices of the intersections in breadth first order
+     */
+    public int[] reachable(int source, boolean reverse) {
+        return Arrays.copyOf(queue, search(source, -1, reverse));
+    }
+
+    /**
+     * Returns true if the target can be reached from the source, stopping as
+     * soon as the target is found.
+     *
+     * @param source index of the intersection to start from
+     * @param target index of the intersection to reach
+     * @return whether the target can be reached from the source
+     */
+    public boolean canReach(int source, int target) {
+        search(source, target, false);
+        return isSet(visited, target);
+    }
+
+    /**
+     * Returns the intersections within the given travel time of the source,
+     * travelling from the source, or towards it if 'reverse' is true. The
+     * search stops at the first intersection beyond the travel time.
+     *
+     * @param source index of the intersection to start from
+     * @param seconds maximum travel time in seconds
+     * @param reverse whether to follow routes backwards
+     * @return indices of the intersections in order of travel time
+     */
+    public int[] within(int source, float seconds, boolean reverse) {
+        return Arrays.copyOf(queue, boundedSearch(source, seconds, reverse));
+    }
+
+    /**
+     * See {@link Reachability#impactOf(String, double)}.
+     *
+     * @param node index of the intersection with the problem
+     * @param seconds maximum travel time in seconds
+     * @return indices of the affected intersections, in increasing order
+     */
+    public int[] impactOf(int node, float seconds) {
+        // The bitset left by the second search is the union of both.
+        boundedSearch(node, seconds, false);
+        long[] downstream = settled.clone();
+        boundedSearch(node, seconds, true);
+        for (int i = 0; i < settled.length; i++) {
+            settled[i] |= downstream[i];
+        }
+        settled[node >>> 6] &= ~(1L << node);
+
+        int count = 0;
+        for (long word : settled) {
+            count += Long.bitCount(word);
+        }
+        int[] result = new int[count];
+        int size = 0;
+        for (int i = 0; i < settled.length; i++) {
+            for (long word = settled[i]; word != 0; word &= word - 1) {
+                result[size++] = (i << 6) + Long.numberOfTrailingZeros(word);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Breadth first search, stopping early once the target (if any) has
+     * been visited.
+     *
+     * @return number of visited intersections, listed in queue
+     */
+    private int search(int source, int target, boolean reverse) {
+        Arrays.fill(visited, 0);
+        int head = 0, tail = 0;
+        queue[tail++] = source;
+        set(visited, source);
+
+        while (head < tail && !isSet(visited, target)) {
+            int node = queue[head++];
+            int first = reverse ? graph.firstIncoming[node]
+                    : graph.firstEdge[node];
+            int last = reverse ? graph.firstIncoming[node + 1]
+                    : graph.firstEdge[node + 1];
+            for (int i = first; i < last; i++) {
+                int next = reverse ? graph.edgeSource[graph.incomingEdges[i]]
+                        : graph.edgeTarget[i];
+                if (!isSet(visited, next)) {
+                    set(visited, next);
+                    queue[tail++] = next;
+                }
+            }
+        }
+        return tail;
+    }
+
+    /**
+     * Dijkstra's algorithm, stopping at the first intersection further than
+     * the given travel time.
+     *
+     * @return number of settled intersections, listed in queue
+     */
+    private int boundedSearch(int source, float seconds, boolean reverse) {
+        Arrays.fill(visited, 0);
+        Arrays.fill(settled, 0);
+        heap.clear();
+        int count = 0;
+        reach(source, 0);
+
+        while (!heap.isEmpty() && heap.peekKey() <= seconds) {
+            int node = heap.poll();
+            set(settled, node);
+            queue[count++] = node;
+            float distance = distances[node];
+
+            int first = reverse ? graph.firstIncoming[node]
+                    : graph.firstEdge[node];
+            int last = reverse ? graph.firstIncoming[node + 1]
+                    : graph.firstEdge[node + 1];
+            for (int i = first; i < last; i++) {
+                int edge = reverse ? graph.incomingEdges[i] : i;
+                int next = reverse ? graph.edgeSource[edge]
+                        : graph.edgeTarget[edge];
+                float candidate = distance + graph.edgeCost[edge];
+                if (candidate > seconds || isSet(settled, next)) {
+                    continue;
+                }
+                if (!isSet(visited, next) || candidate < distances[next]) {
+                    reach(next, candidate);
+                }
+            }
+        }
+        return count;
+    }
+
+    private void reach(int node, float distance) {
+        set(visited, node);
+        distances[node] = distance;
+        heap.insertOrDecrease(node, distance);
+    }
+
+    private String[] idsOf(int[] indices) {
+        String[] ids = new String[indices.length];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = graph.getIntersection(indices[i]).getId();
+        }
+        return ids;
+    }
+
+    private static void set(long[] bits, int index) {
+        bits[index >>> 6] |= 1L << index;
+    }
+
+    private static boolean isSet(long[] bits, int index) {
+        return index >= 0 && (bits[index >>> 6] & (1L << index)) != 0;
+    }
+}
@@ -0,0 +1,81 @@
+package tms.routing;
+
+import tms.intersection.Intersection;
+import tms.route.Route;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The result of a route planning query: a sequence of routes leading from
+ * an origin intersection to a destination intersection, and the expected
+ * time taken to travel along them.
+ */
+public class RoutePlan {
+    /** Intersections visited, starting at the origin */
+    private final List<Intersection> intersections;
+    /** Routes travelled along, in order */
+    private final List<Route> routes;
+    /** Expected travel time in seconds */
+    private final double travelTime;
+
+    /**
+     * Creates a new route plan.
+     *
+     * @param intersections intersections visited, starting at the origin and
+     *                      ending at the destination
+     * @param routes routes travelled along, in order
+     * @param travelTime expected travel time in seconds
+     * @requires intersections.size() == routes.size() + 1
+     */
+    public RoutePlan(List<Intersection> intersections, List<Route> routes,
+                     double travelTime) {
+        this.intersections = intersections;
+        this.routes = routes;
+        this.travelTime = travelTime;
+    }
+
+    /**
+     * Returns a new list of the intersections visited by this plan, starting
+     * at the origin and ending at the destination.
+     *
+     * @return intersections visited by this plan
+     */
+    public List<Intersection> getIntersections() {
+        return new ArrayList<>(intersections);
+    }
+
+    /**
+     * Returns a new list of the routes travelled along by this plan, in
+     * order.
+     *
+     * @return routes travelled along by this plan
+     */
+    public List<Route> getRoutes() {
+        return new ArrayList<>(routes);
+    }
+
+    /**
+     * @return the expected travel time of this plan in seconds
+     */
+    public double getTravelTime() {
+        return travelTime;
+    }
+
+    /**
+     * Returns the string representation of this plan.
+     * <p>
+     * The format is "A,B,C:time" where 'A,B,C' are the IDs of the visited
+     * intersections and 'time' is the travel time in whole seconds.
+     *
+     * @return string representation of this plan
+     */
+    @Override
+    public String toString() {
+        List<String> ids = new ArrayList<>();
+        for (Intersection i : intersections) {
+            ids.add(i.getId());
+        }
+        return String.join(",", ids) + ":" + Math.round(travelTime);
+    }
+}
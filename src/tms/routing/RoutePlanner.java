@@ -0,0 +1,130 @@
+package tms.routing;
+
+import tms.intersection.Intersection;
+import tms.network.Network;
+import tms.route.Route;
+import tms.util.IntersectionNotFoundException;
+import tms.util.RouteNotFoundException;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * Finds the fastest way to travel between two intersections of a
+ * {@link Network}.
+ * <p>
+ * Travel times are based on each route's current speed limit and
+ * congestion, see {@link RoutingGraph#travelTime(Route)}. The planner works
+ * on a {@link RoutingGraph} snapshot of the network: call
+ * {@link RoutePlanner#refresh()} after speeds or congestion change, and
+ * {@link RoutePlanner#rebuild()} after intersections or routes are added.
+ * <p>
+ * A planner is not thread-safe.
+ */
+public class RoutePlanner {
+    private final Network network;
+    private RoutingGraph graph;
+    private DijkstraSearch search;
+
+    /**
+     * Creates a route planner for the given network.
+     *
+     * @param network the network to plan routes through
+     */
+    public RoutePlanner(Network network) {
+        this.network = network;
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the planner's graph from the current structure of the
+     * network.
+     */
+    public void rebuild() {
+        graph = new RoutingGraph(network);
+        search = new DijkstraSearch(graph);
+    }
+
+    /**
+     * Updates travel times from the current speed and congestion of every
+     * route.
+     */
+    public void refresh() {
+        graph.refreshCosts();
+    }
+
+    /**
+     * @return the graph used by this planner
+     */
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Finds the fastest path from the intersection with ID 'from' to the
+     * intersection with ID 'to'.
+     *
+     * @param from ID of the origin intersection
+     * @param to   ID of the destination intersection
+     * @return the fastest route plan between the two intersections
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     * @throws RouteNotFoundException if the destination cannot be reached
+     * from the origin
+     */
+    public RoutePlan fastestRoute(String from, String to)
+            throws IntersectionNotFoundException, RouteNotFoundException {
+        int source = graph.indexOf(from);
+        int target = graph.indexOf(to);
+
+        if (!search.run(source, target)) {
+            throw new RouteNotFoundException("No path from \"" + from
+                    + "\" to \"" + to + "\"");
+        }
+        return buildPlan(graph, source, target, search.distance(target),
+                search::parentEdge);
+    }
+
+    /**
+     * Returns the fastest travel time in seconds from the intersection with
+     * ID 'from' to the intersection with ID 'to', without building a plan.
+     *
+     * @param from ID of the origin intersection
+     * @param to   ID of the destination intersection
+     * @return travel time in seconds, or infinity if the destination cannot
+     * be reached
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     */
+    public double travelTime(String from, String to)
+            throws IntersectionNotFoundException {
+        int target = graph.indexOf(to);
+        search.run(graph.indexOf(from), target);
+        return search.distance(target);
+    }
+
+    /**
+     * Builds a plan by following parent edges back from the target.
+     */
+    static RoutePlan buildPlan(RoutingGraph graph, int source, int target,
+                               double travelTime,
+                               IntUnaryOperator parentEdge) {
+        List<Intersection> intersections = new ArrayList<>();
+        List<Route> routes = new ArrayList<>();
+
+        int node = target;
+        intersections.add(graph.getIntersection(node));
+        while (node != source) {
+            int edge = parentEdge.applyAsInt(node);
+            routes.add(graph.getRoute(edge));
+            node = graph.source(edge);
+            intersections.add(graph.getIntersection(node));
+        }
+
+        Collections.reverse(intersections);
+        Collections.reverse(routes);
+        return new RoutePlan(intersections, routes, travelTime);
+    }
+}
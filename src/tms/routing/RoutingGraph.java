@@ -0,0 +1,261 @@
+package tms.routing;
+
+import tms.intersection.Intersection;
+import tms.network.Network;
+import tms.route.Route;
+import tms.util.IntersectionNotFoundException;
+import tms.util.SymbolTable;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A compact, array based snapshot of the routes in a {@link Network}, used
+ * for path-finding.
+ * <p>
+ * Intersections are numbered 0 to n-1 in the order returned by
+ * {@link Network#getIntersections()}. Routes are stored as outgoing edges in
+ * compressed sparse row (CSR) form: the edges leaving intersection i are
+ * numbered {@code firstEdge(i)} to {@code firstEdge(i + 1) - 1}. Since
+ * intersections only store their incoming routes, the adjacency is built by
+ * reversing each intersection's incoming connections.
+ * <p>
+ * The graph does not follow changes to the network's structure; a new graph
+ * must be built after intersections or routes are added. Changes to route
+ * speeds and congestion can be picked up with
+ * {@link RoutingGraph#refreshCosts()}.
+ */
+public class RoutingGraph {
+    /**
+     * Routes have no length in this model, so every route is treated as
+     * being this many metres long when converting speeds to travel times.
+     */
+    public static final float ROUTE_LENGTH = 1000;
+    /**
+     * Extra travel time on a fully congested route, as a multiple of the
+     * route's free-flow travel time.
+     */
+    public static final float CONGESTION_DELAY = 3;
+
+    /** Intersections in index order */
+    private final Intersection[] intersections;
+    /** Symbol table of the network's intersection IDs */
+    private final SymbolTable symbols;
+    /** Index of each intersection by its handle, or -1 */
+    private final int[] indices;
+
+    // The arrays below are read directly by the searches in this package.
+    /** Offset of the first outgoing edge of each intersection (n + 1) */
+    final int[] firstEdge;
+    /** Source intersection of each edge */
+    final int[] edgeSource;
+    /** Target intersection of each edge */
+    final int[] edgeTarget;
+    /** Travel time in seconds along each edge */
+    final float[] edgeCost;
+    /** Offset of the first incoming edge of each intersection (n + 1) */
+    final int[] firstIncoming;
+    /** Edges grouped by target intersection, see firstIncoming */
+    final int[] incomingEdges;
+    /** Route represented by each edge */
+    private final Route[] edgeRoutes;
+
+    /**
+     * Builds a routing graph from the current routes of the given network,
+     * with edge costs given by {@link RoutingGraph#travelTime(Route)}.
+     *
+     * @param network the network to build the graph from
+     */
+    public RoutingGraph(Network network) {
+        List<Intersection> networkIntersections = network.getIntersections();
+        int n = networkIntersections.size();
+
+        intersections = networkIntersections.toArray(new Intersection[0]);
+        symbols = network.getSymbols();
+        indices = new int[symbols.size()];
+        Arrays.fill(indices, -1);
+        for (int i = 0; i < n; i++) {
+            indices[intersections[i].getHandle()] = i;
+        }
+
+        // Gather every intersection's incoming routes once, counting the
+        // outgoing degree of their origins as we go.
+        Route[][] incoming = new Route[n][];
+        int[] degree = new int[n];
+        int m = 0;
+        for (int to = 0; to < n; to++) {
+            incoming[to] = intersections[to].getConnectionsView()
+                    .toArray(new Route[0]);
+            for (Route route : incoming[to]) {
+                degree[indices[route.getFrom().getHandle()]]++;
+                m++;
+            }
+        }
+
+        firstEdge = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            firstEdge[i + 1] = firstEdge[i] + degree[i];
+        }
+
+        edgeSource = new int[m];
+        edgeTarget = new int[m];
+        edgeCost = new float[m];
+        edgeRoutes = new Route[m];
+
+        // Reuse degree as the next free slot of each intersection.
+        System.arraycopy(firstEdge, 0, degree, 0, n);
+        for (int to = 0; to < n; to++) {
+            for (Route route : incoming[to]) {
+                int from = indices[route.getFrom().getHandle()];
+                int edge = degree[from]++;
+                edgeSource[edge] = from;
+                edgeTarget[edge] = to;
+                edgeRoutes[edge] = route;
+            }
+        }
+
+        firstIncoming = new int[n + 1];
+        for (int edge = 0; edge < m; edge++) {
+            firstIncoming[edgeTarget[edge] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            firstIncoming[i + 1] += firstIncoming[i];
+        }
+        incomingEdges = new int[m];
+        System.arraycopy(firstIncoming, 0, degree, 0, n);
+        for (int edge = 0; edge < m; edge++) {
+            incomingEdges[degree[edgeTarget[edge]]++] = edge;
+        }
+        refreshCosts();
+    }
+
+    /**
+     * Returns the travel time in seconds along the given route, based on its
+     * current speed limit and congestion.
+     * <p>
+     * The free-flow travel time is {@link RoutingGraph#ROUTE_LENGTH} divided
+     * by the route's speed, and congestion increases it linearly, up to
+     * {@code 1 + CONGESTION_DELAY} times the free-flow time at a congestion
+     * of 100. Routes with a speed of zero cannot be travelled along and have
+     * an infinite travel time.
+     *
+     * @param route the route to find the travel time of
+     * @return travel time in seconds
+     */
+    public static float travelTime(Route route) {
+        return travelTime(route.getSpeed(), route.getCongestion());
+    }
+
+    /**
+     * See {@link RoutingGraph#travelTime(Route)}.
+     *
+     * @param speed speed limit in km/h
+     * @param congestion congestion level, 0 to 100
+     * @return travel time in seconds
+     */
+    public static float travelTime(int speed, int congestion) {
+        if (speed <= 0) {
+            return Float.POSITIVE_INFINITY;
+        }
+        float freeFlow = ROUTE_LENGTH / (speed / 3.6f);
+        return freeFlow * (1 + CONGESTION_DELAY * congestion / 100f);
+    }
+
+    /**
+     * Recalculates the cost of every edge from the current speed and
+     * congestion of its route.
+     */
+    public void refreshCosts() {
+        for (int edge = 0; edge < edgeRoutes.length; edge++) {
+            edgeCost[edge] = travelTime(edgeRoutes[edge]);
+        }
+    }
+
+    /**
+     * @return number of intersections in the graph
+     */
+    public int size() {
+        return intersections.length;
+    }
+
+    /**
+     * @return number of edges (routes) in the graph
+     */
+    public int edgeCount() {
+        return edgeRoutes.length;
+    }
+
+    /**
+     * Returns the index of the intersection with the given ID.
+     *
+     * @param id intersection identifier to search for
+     * @return index of the intersection
+     * @throws IntersectionNotFoundException if the graph has no intersection
+     * with the given ID
+     */
+    public int indexOf(String id) throws IntersectionNotFoundException {
+        int handle = symbols.find(id);
+        int index = handle < 0 ? -1 : indices[handle];
+        if (index < 0) {
+            throw new IntersectionNotFoundException(
+                    "Intersection not found: \"" + id + "\"");
+        }
+        return index;
+    }
+
+    /**
+     * @param index index of an intersection
+     * @return the intersection with the given index
+     */
+    public Intersection getIntersection(int index) {
+        return intersections[index];
+    }
+
+    /**
+     * @param node index of an intersection
+     * @return index of the first edge leaving the intersection
+     */
+    public int firstEdge(int node) {
+        return firstEdge[node];
+    }
+
+    /**
+     * @param node index of an intersection
+     * @return one past the index of the last edge leaving the intersection
+     */
+    public int lastEdge(int node) {
+        return firstEdge[node + 1];
+    }
+
+    /**
+     * @param edge index of an edge
+     * @return index of the intersection at which the edge starts
+     */
+    public int source(int edge) {
+        return edgeSource[edge];
+    }
+
+    /**
+     * @param edge index of an edge
+     * @return index of the intersection at which the edge ends
+     */
+    public int target(int edge) {
+        return edgeTarget[edge];
+    }
+
+    /**
+     * @param edge index of an edge
+     * @return travel time along the edge in seconds
+     */
+    public float cost(int edge) {
+        return edgeCost[edge];
+    }
+
+    /**
+     * @param edge index of an edge
+     * @return the route represented by the edge
+     */
+    public Route getRoute(int edge) {
+        return edgeRoutes[edge];
+    }
+}
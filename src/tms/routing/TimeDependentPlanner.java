@@ -0,0 +1,400 @@
+package tms.routing;
+
+import tms.intersection.Intersection;
+import tms.intersection.IntersectionLights;
+import tms.network.Network;
+import tms.route.Route;
+import tms.util.IntersectionNotFoundException;
+import tms.util.RouteNotFoundException;
+
+import java.util.Arrays;
+
+/**
+ * Finds the fastest way to travel between two intersections of a
+ * {@link Network}, taking into account the time spent waiting at red
+ * traffic lights along the way.
+ * <p>
+ * Travel along each route takes {@link RoutingGraph#travelTime(Route)}
+ * seconds, based on the route's speed and the congestion reported by its
+ * sensors. Traffic arriving at an intersection with traffic lights then
+ * waits until its route's light turns green, which is worked out directly
+ * from the state of the lights with
+ * {@link IntersectionLights#secondsUntilGreen(Route, int)}. The fastest path
+ * therefore depends on the departure time.
+ * <p>
+ * Searches use A* with landmark (ALT) lower bounds: the free-flow travel
+ * time to and from a few landmark intersections is precomputed, and the
+ * triangle inequality gives a lower bound on the remaining travel time from
+ * any intersection. Waiting and congestion only ever make travel slower, so
+ * the bounds never overestimate and the paths found are exact.
+ * <p>
+ * Call {@link TimeDependentPlanner#refresh()} after speeds or congestion
+ * change, and {@link TimeDependentPlanner#rebuild()} after intersections,
+ * routes or traffic lights are added. A planner is not thread-safe.
+ */
+public class TimeDependentPlanner {
+    /** Maximum number of landmarks used for lower bounds */
+    public static final int LANDMARKS = 8;
+    /**
+     * Lower bounds are scaled down by this factor, so that rounding errors
+     * in float arithmetic cannot make them overestimate.
+     */
+    private static final float BOUND_SCALE = 0.9999f;
+
+    private final Network network;
+    private RoutingGraph graph;
+    /** Lights at the end of each edge, or null */
+    private IntersectionLights[] edgeLights;
+    /** Free-flow travel time of each edge, used for the lower bounds */
+    private float[] freeFlowCost;
+
+    /** Number of landmarks actually chosen */
+    private int landmarkCount;
+    /** Free-flow time from landmark k to node v, at v * LANDMARKS + k */
+    private float[] fromLandmark;
+    /** Free-flow time from node v to landmark k, at v * LANDMARKS + k */
+    private float[] toLandmark;
+
+    /** Scratch space for searches */
+    private IndexedMinHeap queue;
+    private float[] arrivals;
+    private int[] parentEdges;
+    /** Search number in which each node was last reached and settled */
+    private int[] reached, settled;
+    private int search = 0;
+
+    /**
+     * Creates a time-dependent route planner for the given network.
+     *
+     * @param network the network to plan routes through
+     */
+    public TimeDependentPlanner(Network network) {
+        this.network = network;
+        rebuild();
+    }
+
+    /**
+     * Rebuilds the planner's graph and lower bounds from the current
+     * structure of the network.
+     */
+    public void rebuild() {
+        graph = new RoutingGraph(network);
+        int n = graph.size();
+        queue = new IndexedMinHeap(n);
+        arrivals = new float[n];
+        parentEdges = new int[n];
+        reached = new int[n];
+        settled = new int[n];
+        search = 0;
+
+        freeFlowCost = null;
+        refresh();
+    }
+
+    /**
+     * Updates travel times from the current speed and congestion of every
+     * route, and recomputes the lower bounds if any speed has changed.
+     */
+    public void refresh() {
+        graph.refreshCosts();
+
+        edgeLights = new IntersectionLights[graph.edgeCount()];
+        float[] freeFlow = new float[graph.edgeCount()];
+        for (int edge = 0; edge < freeFlow.length; edge++) {
+            Route route = graph.getRoute(edge);
+            freeFlow[edge] = RoutingGraph.travelTime(route.getSpeed(), 0);
+            if (route.getTrafficLight() != null) {
+                Intersection to = graph.getIntersection(graph.target(edge));
+                edgeLights[edge] = to.getTrafficLights();
+            }
+        }
+        if (!Arrays.equals(freeFlow, freeFlowCost)) {
+            freeFlowCost = freeFlow;
+            chooseLandmarks();
+        }
+    }
+
+    /**
+     * @return the graph used by this planner
+     */
+    public RoutingGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Finds the fastest path from the intersection with ID 'from' to the
+     * intersection with ID 'to', departing now.
+     *
+     * @param from ID of the origin intersection
+     * @param to   ID of the destination intersection
+     * @return the fastest route plan, including time spent waiting at lights
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     * @throws RouteNotFoundException if the destination cannot be reached
+     * from the origin
+     */
+    public RoutePlan fastestRoute(String from, String to)
+            throws IntersectionNotFoundException, RouteNotFoundException {
+        return fastestRoute(from, to, 0);
+    }
+
+    /**
+     * Finds the fastest path from the intersection with ID 'from' to the
+     * intersection with ID 'to', departing the given number of seconds from
+     * now.
+     *
+     * @param from ID of the origin intersection
+     * @param to   ID of the destination intersection
+     * @param departure seconds from now at which to depart
+     * @return the fastest route plan, including time spent waiting at lights
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     * @throws RouteNotFoundException if the destination cannot be reached
+     * from the origin
+     * @requires departure >= 0
+     */
+    public RoutePlan fastestRoute(String from, String to, int departure)
+            throws IntersectionNotFoundException, RouteNotFoundException {
+        int source = graph.indexOf(from);
+        int target = graph.indexOf(to);
+
+        float arrival = run(source, target, departure);
+        if (arrival == Float.POSITIVE_INFINITY) {
+            throw new RouteNotFoundException("No path from \"" + from
+                    + "\" to \"" + to + "\"");
+        }
+        return RoutePlanner.buildPlan(graph, source, target,
+                arrival - departure, node -> parentEdges[node]);
+    }
+
+    /**
+     * Returns the fastest travel time in seconds, including time spent
+     * waiting at lights, from the intersection with ID 'from' to the
+     * intersection with ID 'to', departing the given number of seconds from
+     * now.
+     *
+     * @param from ID of the origin intersection
+     * @param to   ID of the destination intersection
+     * @param departure seconds from now at which to depart
+     * @return travel time in seconds, or infinity if the destination cannot
+     * be reached
+     * @throws IntersectionNotFoundException if no intersection exists with
+     * an ID given by 'from' or 'to'
+     * @requires departure >= 0
+     */
+    public double travelTime(String from, String to, int departure)
+            throws IntersectionNotFoundException {
+        return travelTime(graph.indexOf(from), graph.indexOf(to), departure);
+    }
+
+    /**
+     * See {@link TimeDependentPlanner#travelTime(String, String, int)}.
+     *
+     * @param source index of the origin intersection
+     * @param target index of the destination intersection
+     * @param departure seconds from now at which to depart
+     * @return travel time in seconds, or infinity if the destination cannot
+     * be reached
+     */
+    public float travelTime(int source, int target, int departure) {
+        return run(source, target, departure) - departure;
+    }
+
+    /**
+     * @return the number of intersections settled by the last search
+     */
+    int lastSearchSize() {
+        int count = 0;
+        for (int s : settled) {
+            if (s == search) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Runs a time-dependent A* search.
+     *
+     * Waiting for a green light never lets traffic that arrives later leave
+     * earlier, so the earliest arrival at an intersection is always the best
+     * one to continue from and every intersection is settled at most once.
+     *
+     * @return arrival time at the target in seconds from now, or infinity
+     */
+    private float run(int source, int target, int departure) {
+        queue.clear();
+        search++;
+        if (search == 0) {
+            Arrays.fill(reached, 0);
+            Arrays.fill(settled, 0);
+            search = 1;
+        }
+
+        reach(source, departure, -1, target);
+        while (!queue.isEmpty()) {
+            int node = queue.poll();
+            settled[node] = search;
+            if (node == target) {
+                return arrivals[node];
+            }
+            float time = arrivals[node];
+
+            for (int edge = graph.firstEdge[node];
+                 edge < graph.firstEdge[node + 1]; edge++) {
+                int next = graph.edgeTarget[edge];
+                float cost = graph.edgeCost[edge];
+                if (settled[next] == search
+                        || cost == Float.POSITIVE_INFINITY) {
+                    continue;
+                }
+                float arrival = time + cost;
+                arrival += waitAtLights(edge, arrival);
+                if (reached[next] != search || arrival < arrivals[next]) {
+                    reach(next, arrival, edge, target);
+                }
+            }
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+
+    private void reach(int node, float arrival, int edge, int target) {
+        float bound = lowerBound(node, target);
+        if (bound == Float.POSITIVE_INFINITY) {
+            // The target cannot be reached from here
+            return;
+        }
+        reached[node] = search;
+        arrivals[node] = arrival;
+        parentEdges[node] = edge;
+        queue.insertOrDecrease(node, arrival + bound);
+    }
+
+    /**
+     * Returns the time spent waiting for a green light by traffic arriving
+     * at the end of the given edge at the given time.
+     */
+    private float waitAtLights(int edge, float arrival) {
+        IntersectionLights lights = edgeLights[edge];
+        if (lights == null) {
+            return 0;
+        }
+        int second = (int) arrival;
+        int wait = lights.secondsUntilGreen(graph.getRoute(edge), second);
+        if (wait <= 0) {
+            return 0;
+        }
+        // The light changes at the start of a whole second
+        return second + wait - arrival;
+    }
+
+    /**
+     * Returns a lower bound on the free-flow travel time from a node to the
+     * target, or infinity if the landmarks show that the target cannot be
+     * reached from the node.
+     */
+    private float lowerBound(int node, int target) {
+        float bound = 0;
+        int v = node * LANDMARKS;
+        int t = target * LANDMARKS;
+        for (int k = 0; k < landmarkCount; k++) {
+            // d(L, t) - d(L, v) <= d(v, t)
+            float landmarkToTarget = fromLandmark[t + k];
+            float landmarkToNode = fromLandmark[v + k];
+            if (landmarkToTarget != Float.POSITIVE_INFINITY) {
+                if (landmarkToNode != Float.POSITIVE_INFINITY) {
+                    bound = Math.max(bound,
+                            landmarkToTarget - landmarkToNode);
+                }
+            } else if (landmarkToNode != Float.POSITIVE_INFINITY) {
+                // L reaches the node but not the target
+                return Float.POSITIVE_INFINITY;
+            }
+
+            // d(v, L) - d(t, L) <= d(v, t)
+            float nodeToLandmark = toLandmark[v + k];
+            float targetToLandmark = toLandmark[t + k];
+            if (targetToLandmark != Float.POSITIVE_INFINITY) {
+                if (nodeToLandmark != Float.POSITIVE_INFINITY) {
+                    bound = Math.max(bound,
+                            nodeToLandmark - targetToLandmark);
+                } else {
+                    // The target reaches L but the node does not
+                    return Float.POSITIVE_INFINITY;
+                }
+            }
+        }
+        return bound * BOUND_SCALE;
+    }
+
+    /**
+     * Chooses landmarks far apart from each other, each one being the
+     * intersection furthest from the landmarks chosen so far, and stores
+     * the free-flow travel times to and from each of them.
+     */
+    private void chooseLandmarks() {
+        int n = graph.size();
+        int m = graph.edgeCount();
+        fromLandmark = new float[n * LANDMARKS];
+        toLandmark = new float[n * LANDMARKS];
+        landmarkCount = 0;
+        if (n == 0) {
+            return;
+        }
+
+        // Reversed graph with free-flow costs, for travel times to landmarks
+        int[] reverseTarget = new int[m];
+        float[] reverseCost = new float[m];
+        for (int i = 0; i < m; i++) {
+            int edge = graph.incomingEdges[i];
+            reverseTarget[i] = graph.edgeSource[edge];
+            reverseCost[i] = freeFlowCost[edge];
+        }
+        DijkstraSearch forward = new DijkstraSearch(graph.firstEdge,
+                graph.edgeTarget, freeFlowCost);
+        DijkstraSearch backward = new DijkstraSearch(graph.firstIncoming,
+                reverseTarget, reverseCost);
+
+        // Distance from the nearest landmark; start from any intersection
+        float[] nearest = new float[n];
+        Arrays.fill(nearest, Float.POSITIVE_INFINITY);
+        forward.run(0, -1);
+        int landmark = Math.max(furthest(forward, n, null), 0);
+
+        while (landmark >= 0 && landmarkCount < Math.min(LANDMARKS, n)) {
+            int k = landmarkCount++;
+            forward.run(landmark, -1);
+            backward.run(landmark, -1);
+            for (int v = 0; v < n; v++) {
+                fromLandmark[v * LANDMARKS + k] = forward.distance(v);
+                toLandmark[v * LANDMARKS + k] = backward.distance(v);
+                nearest[v] = Math.min(nearest[v], Math.min(
+                        forward.distance(v), backward.distance(v)));
+            }
+            landmark = furthest(null, n, nearest);
+        }
+    }
+
+    /**
+     * Returns the intersection furthest from the last search, or from the
+     * nearest landmark, preferring intersections no landmark can reach so
+     * that every part of a disconnected network gets a landmark. Returns -1
+     * if every intersection is a landmark.
+     */
+    private static int furthest(DijkstraSearch search, int n,
+                                float[] nearest) {
+        int best = -1;
+        float bestDistance = -1;
+        for (int v = 0; v < n; v++) {
+            float distance = search != null ? search.distance(v) : nearest[v];
+            if (search != null && distance == Float.POSITIVE_INFINITY) {
+                continue;
+            }
+            if (distance > bestDistance) {
+                best = v;
+                bestDistance = distance;
+            }
+        }
+        return bestDistance > 0 ? best : -1;
+    }
+}
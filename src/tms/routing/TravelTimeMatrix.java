@@ -0,0 +1,165 @@
+package tms.routing;
+
+import tms.util.IntersectionNotFoundException;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Computes origin-destination matrices of travel times between sets of
+ * intersections, running one search per origin in parallel on a
+ * {@link ForkJoinPool}.
+ * <p>
+ * Each worker thread keeps its own {@link DijkstraSearch}, whose distance,
+ * heap and epoch stamp arrays are reused for every origin it handles, so a
+ * matrix needs no allocation beyond its result. Each search stops as soon
+ * as every destination has been settled.
+ * <p>
+ * Travel times are read from the routing graph while matrices are being
+ * computed, so {@link RoutingGraph#refreshCosts()} must not be called at the
+ * same time. Otherwise, matrices may be computed from several threads at
+ * once.
+ */
+public class TravelTimeMatrix {
+    /** Number of origins below which a task is not split any further */
+    private static final int ROWS_PER_TASK = 4;
+
+    private final RoutingGraph graph;
+    private final ForkJoinPool pool;
+    /** Scratch space of each worker thread */
+    private final ThreadLocal<DijkstraSearch> searches;
+
+    /**
+     * Creates a matrix calculator for the given graph, running on the common
+     * fork-join pool.
+     *
+     * @param graph the graph to search
+     */
+    public TravelTimeMatrix(RoutingGraph graph) {
+        this(graph, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Creates a matrix calculator for the given graph, running on the given
+     * pool.
+     *
+     * @param graph the graph to search
+     * @param pool the pool to run searches on
+     */
+    public TravelTimeMatrix(RoutingGraph graph, ForkJoinPool pool) {
+        this.graph = graph;
+        this.pool = pool;
+        this.searches = ThreadLocal.withInitial(
+                () -> new DijkstraSearch(graph));
+    }
+
+    /**
+     * Computes the travel times from every origin to every destination,
+     * given by intersection IDs.
+     *
+     * @param origins IDs of the origin intersections
+     * @param destinations IDs of the destination intersections
+     * @return see {@link TravelTimeMatrix#compute(int[], int[])}
+     * @throws IntersectionNotFoundException if any of the IDs is not an
+     * intersection in the graph
+     */
+    public float[] compute(List<String> origins, List<String> destinations)
+            throws IntersectionNotFoundException {
+        return compute(indicesOf(origins), indicesOf(destinations));
+    }
+
+    /**
+     * Computes the travel times from every origin to every destination,
+     * given by routing graph indices.
+     * <p>
+     * The result is a flat, row-major array: the travel time in seconds from
+     * origins[i] to destinations[j] is at index
+     * {@code i * destinations.length + j}, and is infinite if the
+     * destination cannot be reached.
+     *
+     * @param origins indices of the origin intersections
+     * @param destinations indices of the destination intersections
+     * @return travel times in seconds
+     */
+    public float[] compute(int[] origins, int[] destinations) {
+        float[] result = new float[origins.length * destinations.length];
+
+        // Searches stop once every distinct destination has been settled.
+        boolean[] isDestination = new boolean[graph.size()];
+        int distinct = 0;
+        for (int destination : destinations) {
+            if (!isDestination[destination]) {
+                isDestination[destination] = true;
+                distinct++;
+            }
+        }
+
+        pool.invoke(new Rows(origins, destinations, isDestination, distinct,
+                result, 0, origins.length));
+        return result;
+    }
+
+    private int[] indicesOf(List<String> ids)
+            throws IntersectionNotFoundException {
+        int[] indices = new int[ids.size()];
+        for (int i = 0; i < indices.length; i++) {
+            indices[i] = graph.indexOf(ids.get(i));
+        }
+        return indices;
+    }
+
+    /**
+     * Computes a range of rows of the matrix, splitting it in half until it
+     * is small enough.
+     */
+    private class Rows extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final int[] origins, destinations;
+        private final boolean[] isDestination;
+        private final int distinct;
+        private final float[] result;
+        private final int from, to;
+
+        Rows(int[] origins, int[] destinations, boolean[] isDestination,
+             int distinct, float[] result, int from, int to) {
+            this.origins = origins;
+            this.destinations = destinations;
+            this.isDestination = isDestination;
+            this.distinct = distinct;
+            this.result = result;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > ROWS_PER_TASK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new Rows(origins, destinations, isDestination,
+                                distinct, result, from, middle),
+                        new Rows(origins, destinations, isDestination,
+                                distinct, result, middle, to));
+                return;
+            }
+
+            DijkstraSearch search = searches.get();
+            for (int row = from; row < to; row++) {
+                search.start(origins[row]);
+                int remaining = distinct;
+                while (remaining > 0 && !search.isFinished()) {
+                    if (isDestination[search.settleNext()]) {
+                        remaining--;
+                    }
+                }
+
+                // Every destination is either settled or unreachable
+                int offset = row * destinations.length;
+                for (int j = 0; j < destinations.length; j++) {
+                    result[offset + j] = search.distance(destinations[j]);
+                }
+            }
+        }
+    }
+}
@@ -5,6 +5,7 @@ import tms.util.TimedItemManager;
 
 import java.util.Arrays;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * An abstract class to represent the shared functionality of the demo sensor
@@ -21,6 +22,8 @@ public abstract class DemoSensor implements TimedItem {
     private int secondsPassed;
     /** Current data value indicated by the sensor */
     private int currentValue;
+    /** Recent current values, or null if none are kept */
+    private ReadingHistory history;
 
     /**
      * Creates a new sensor, using the given list of data values and threshold.
@@ -43,6 +46,29 @@ public abstract class DemoSensor implements TimedItem {
         this.secondsPassed = 0;
 
         TimedItemManager.getTimedItemManager().registerTimedItem(this);
+        setHistoryWindow(ReadingHistory.DEFAULT_WINDOW);
+    }
+
+    /**
+     * Returns the readings of this sensor from the most recent seconds,
+     * including the current value, if it keeps them.
+     *
+     * @return the history of readings, or null if none is kept
+     */
+    public ReadingHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Sets how many seconds of readings this sensor keeps. The newest
+     * readings already kept are carried over, or if none were kept, the
+     * history starts with the current value.
+     *
+     * @param window number of readings to keep, or 0 to keep none
+     * @throws IllegalArgumentException if the window is negative
+     */
+    public void setHistoryWindow(int window) {
+        history = ReadingHistory.resize(history, window, currentValue);
     }
 
     /**
@@ -56,6 +82,42 @@ public abstract class DemoSensor implements TimedItem {
         this.currentValue = data[0];
     }
 
+    /**
+     * Returns the number of data values this sensor cycles through.
+     *
+     * @return length of the data array
+     */
+    public int getDataLength() {
+        return data.length;
+    }
+
+    /**
+     * Returns the number of seconds this sensor has been called for, which
+     * determines its current data value.
+     *
+     * @return seconds passed since the sensor was created
+     */
+    public int getSecondsPassed() {
+        return secondsPassed;
+    }
+
+    /**
+     * Sets the number of seconds this sensor has been called for, such as
+     * when restoring a saved simulation. The data value for that second
+     * becomes the current value. The history, if kept, is not changed.
+     *
+     * @param secondsPassed seconds passed since the sensor was created
+     * @throws IllegalArgumentException if secondsPassed is negative
+     */
+    public void setSecondsPassed(int secondsPassed) {
+        if (secondsPassed < 0) {
+            throw new IllegalArgumentException(
+                    "Seconds passed must not be negative");
+        }
+        this.secondsPassed = secondsPassed;
+        currentValue = data[secondsPassed % data.length];
+    }
+
     /**
      * Returns the current data value as measured by the sensor.
      *
@@ -90,6 +152,7 @@ public abstract class DemoSensor implements TimedItem {
         secondsPassed++;
         int secs = secondsPassed % data.length;
         currentValue = data[secs];
+        ReadingHistory.record(history, currentValue);
     }
 
     /**
@@ -109,6 +172,17 @@ public abstract class DemoSensor implements TimedItem {
                                 .toArray(String[]::new)));
     }
 
+    /**
+     * Returns this sensor's toString(), made only when it is needed, since
+     * its threshold and data never change.
+     *
+     * @return a supplier of this sensor's string representation
+     * @see Sensor#toStringLater()
+     */
+    public Supplier<String> toStringLater() {
+        return this::toString;
+    }
+
     /**
      * Returns true if and only if this sensor is equal to the other given
      * sensor.
@@ -0,0 +1,41 @@
+package tms.sensors;
+
+/**
+ * A pressure pad whose readings, the number of vehicles that passed over the
+ * pad, are published by a live feed.
+ *
+ * @see LiveSensor
+ */
+public class LivePressurePad extends LiveSensor implements PressurePad {
+
+    /**
+     * Creates a new live pressure pad and registers it as a timed item.
+     *
+     * @param threshold a threshold value that indicates which values represent
+     *                  high congestion
+     * @param initialValue value used until the first reading is published
+     */
+    public LivePressurePad(int threshold, int initialValue) {
+        super(threshold, initialValue);
+    }
+
+    @Override
+    public int countTraffic() {
+        return getCurrentValue();
+    }
+
+    /**
+     * Calculates the congestion in the same way as {@link DemoPressurePad}.
+     *
+     * @return the congestion, from 0 to 100
+     */
+    @Override
+    public int getCongestion() {
+        return congestion(true);
+    }
+
+    @Override
+    public String toString() {
+        return "PP:" + super.toString();
+    }
+}
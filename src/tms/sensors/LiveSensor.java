@@ -0,0 +1,171 @@
+package tms.sensors;
+
+import tms.util.TimedItem;
+import tms.util.TimedItemManager;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+
+/**
+ * A sensor whose readings come from outside the simulation, such as a
+ * roadside feed, instead of a fixed list of data values.
+ * <p>
+ * Readings may be published from any thread with
+ * {@link LiveSensor#publish(int)}, which is lock-free: it only stores the
+ * reading in this sensor's slot, replacing any reading not yet used. On
+ * each simulated second the latest published reading becomes the sensor's
+ * current value, so the value never changes part way through a tick. Until
+ * a reading arrives, the current value is the initial value given.
+ * <p>
+ * Like the demo sensors, live sensors are registered as timed items when
+ * created.
+ *
+ * @see SensorFeed
+ */
+public abstract class LiveSensor implements Sensor, TimedItem {
+    private static final VarHandle LATEST;
+
+    static {
+        try {
+            LATEST = MethodHandles.lookup().findVarHandle(LiveSensor.class,
+                    "latest", int.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /** Threshold data value for determining congestion */
+    private final int threshold;
+    /** Latest published reading, written by any thread */
+    private volatile int latest;
+    /** Reading in use for the current second */
+    private int currentValue;
+    /** Recent current values, or null if none are kept */
+    private ReadingHistory history;
+
+    /**
+     * Creates a new live sensor and registers it as a timed item.
+     *
+     * @param threshold a threshold value that indicates what value is high
+     *                  congestion
+     * @param initialValue value used until the first reading is published
+     */
+    protected LiveSensor(int threshold, int initialValue) {
+        this.threshold = threshold;
+        this.latest = initialValue;
+        this.currentValue = initialValue;
+        TimedItemManager.getTimedItemManager().registerTimedItem(this);
+        setHistoryWindow(ReadingHistory.DEFAULT_WINDOW);
+    }
+
+    @Override
+    public ReadingHistory getHistory() {
+        return history;
+    }
+
+    /**
+     * Sets how many seconds of readings this sensor keeps, as for
+     * {@link DemoSensor#setHistoryWindow(int)}.
+     *
+     * @param window number of readings to keep, or 0 to keep none
+     * @throws IllegalArgumentException if the window is negative
+     */
+    public void setHistoryWindow(int window) {
+        history = ReadingHistory.resize(history, window, currentValue);
+    }
+
+    /**
+     * Stores a new reading, to be used from the next simulated second. May
+     * be called from any thread.
+     *
+     * @param reading the value read by the roadside sensor
+     */
+    public void publish(int reading) {
+        LATEST.setRelease(this, reading);
+    }
+
+    /**
+     * Returns the reading in use for the current second.
+     *
+     * @return the current data value
+     */
+    public int getCurrentValue() {
+        return currentValue;
+    }
+
+    /**
+     * Sets the current value, such as when restoring a saved simulation.
+     * Any reading published but not yet used is replaced, so the value
+     * stays the same until another reading is published. Must be called
+     * between ticks. The history, if kept, is not changed.
+     *
+     * @param reading the reading to use for the current second
+     */
+    public void restoreReading(int reading) {
+        currentValue = reading;
+        LATEST.setRelease(this, reading);
+    }
+
+    @Override
+    public int getThreshold() {
+        return threshold;
+    }
+
+    /**
+     * Makes the latest published reading the current value.
+     */
+    @Override
+    public void oneSecond() {
+        currentValue = (int) LATEST.getAcquire(this);
+        ReadingHistory.record(history, currentValue);
+    }
+
+    /**
+     * Returns the congestion for the given value as a fraction of the
+     * threshold, as a percentage between 0 and 100. If a high value means
+     * free-flowing traffic, such as a speed, the complement is returned.
+     *
+     * @param highIsCongested whether higher values mean more congestion
+     * @return congestion from 0 to 100
+     */
+    protected int congestion(boolean highIsCongested) {
+        float fraction = (float) currentValue / threshold;
+        int congestionPct = Math.round(highIsCongested ? 100 * fraction
+                : 100 - 100 * fraction);
+        return Math.min(Math.max(congestionPct, 0), 100);
+    }
+
+    /**
+     * Returns the string representation of this sensor, in the same form as
+     * a demo sensor with the current value as its only data value, so that
+     * a saved network can be loaded again.
+     *
+     * @return "threshold:currentValue"
+     */
+    @Override
+    public String toString() {
+        return threshold + ":" + currentValue;
+    }
+
+    /**
+     * Returns true if the other object is a live sensor of the same type,
+     * with the same threshold and current value.
+     *
+     * @param obj other object to compare equality
+     * @return true if equal, false otherwise
+     */
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null || obj.getClass() != getClass()) {
+            return false;
+        }
+        LiveSensor other = (LiveSensor) obj;
+        return other.threshold == threshold
+                && other.currentValue == currentValue;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * getClass().hashCode() + threshold) + currentValue;
+    }
+}
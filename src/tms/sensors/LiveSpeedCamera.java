@@ -0,0 +1,41 @@
+package tms.sensors;
+
+/**
+ * A speed camera whose readings, the average speed of vehicles, are
+ * published by a live feed.
+ *
+ * @see LiveSensor
+ */
+public class LiveSpeedCamera extends LiveSensor implements SpeedCamera {
+
+    /**
+     * Creates a new live speed camera and registers it as a timed item.
+     *
+     * @param threshold a threshold value that indicates which values represent
+     *                  high congestion
+     * @param initialValue value used until the first reading is published
+     */
+    public LiveSpeedCamera(int threshold, int initialValue) {
+        super(threshold, initialValue);
+    }
+
+    @Override
+    public int averageSpeed() {
+        return getCurrentValue();
+    }
+
+    /**
+     * Calculates the congestion in the same way as {@link DemoSpeedCamera}.
+     *
+     * @return the congestion, from 0 to 100
+     */
+    @Override
+    public int getCongestion() {
+        return congestion(false);
+    }
+
+    @Override
+    public String toString() {
+        return "SC:" + super.toString();
+    }
+}
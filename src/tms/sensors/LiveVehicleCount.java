@@ -0,0 +1,41 @@
+package tms.sensors;
+
+/**
+ * A vehicle counter whose readings, the number of vehicles counted, are
+ * published by a live feed.
+ *
+ * @see LiveSensor
+ */
+public class LiveVehicleCount extends LiveSensor implements VehicleCount {
+
+    /**
+     * Creates a new live vehicle counter and registers it as a timed item.
+     *
+     * @param threshold a threshold value that indicates which values represent
+     *                  high congestion
+     * @param initialValue value used until the first reading is published
+     */
+    public LiveVehicleCount(int threshold, int initialValue) {
+        super(threshold, initialValue);
+    }
+
+    @Override
+    public int countTraffic() {
+        return getCurrentValue();
+    }
+
+    /**
+     * Calculates the congestion in the same way as {@link DemoVehicleCount}.
+     *
+     * @return the congestion, from 0 to 100
+     */
+    @Override
+    public int getCongestion() {
+        return congestion(false);
+    }
+
+    @Override
+    public String toString() {
+        return "VC:" + super.toString();
+    }
+}
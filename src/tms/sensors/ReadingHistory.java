@@ -0,0 +1,204 @@
+package tms.sensors;
+
+/**
+ * The most recent readings of a sensor, one per simulated second, in a
+ * fixed-size ring buffer. Once full, each new reading replaces the oldest.
+ * <p>
+ * Readings are kept in an int array with the index of the next slot to
+ * write, so recording a reading allocates nothing. Readings are read by
+ * copying a window of them, oldest first, into an array the caller owns,
+ * which can be reused for every sensor and every second.
+ * <p>
+ * Readings are recorded on the simulation thread. A history may be read
+ * from another thread only while no tick is in progress.
+ *
+ * @see Sensor#getHistory()
+ */
+public class ReadingHistory {
+    /**
+     * Number of readings kept by sensors unless they are given another
+     * window, set by the system property "tms.sensors.historySeconds".
+     * Histories take four bytes per reading per sensor, so none are kept
+     * by default.
+     */
+    public static final int DEFAULT_WINDOW =
+            Math.max(Integer.getInteger("tms.sensors.historySeconds", 0), 0);
+
+    private final int[] readings;
+    /** Index the next reading is written to */
+    private int head;
+    private int size;
+
+    /**
+     * Creates an empty history.
+     *
+     * @param window number of readings to keep
+     * @throws IllegalArgumentException if the window is less than 1
+     */
+    public ReadingHistory(int window) {
+        if (window < 1) {
+            throw new IllegalArgumentException("Window must be at least 1");
+        }
+        readings = new int[window];
+    }
+
+    /**
+     * Adds a reading, replacing the oldest reading if the history is full.
+     *
+     * @param reading the newest reading
+     */
+    public void record(int reading) {
+        readings[head] = reading;
+        head = head + 1 == readings.length ? 0 : head + 1;
+        if (size < readings.length) {
+            size++;
+        }
+    }
+
+    /**
+     * @return the largest number of readings kept
+     */
+    public int getWindow() {
+        return readings.length;
+    }
+
+    /**
+     * @return number of readings recorded, up to the window
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns a reading by how many seconds ago it was recorded.
+     *
+     * @param age 0 for the newest reading, 1 for the one before, and so on
+     * @return the reading
+     * @throws IndexOutOfBoundsException if age is negative or not less than
+     * {@link #size()}
+     */
+    public int get(int age) {
+        if (age < 0 || age >= size) {
+            throw new IndexOutOfBoundsException("No reading of age " + age
+                    + " in a history of " + size);
+        }
+        int index = head - 1 - age;
+        return readings[index < 0 ? index + readings.length : index];
+    }
+
+    /**
+     * Copies the newest readings into the given array, oldest first. Fewer
+     * readings are copied if fewer have been recorded.
+     *
+     * @param dest array to copy into
+     * @param offset index in dest of the first reading copied
+     * @param count largest number of readings to copy
+     * @return number of readings copied
+     * @throws IndexOutOfBoundsException if the readings copied would not fit
+     * in dest from offset
+     */
+    public int copyRecent(int[] dest, int offset, int count) {
+        count = Math.min(Math.max(count, 0), size);
+        if (offset < 0 || offset + count > dest.length) {
+            throw new IndexOutOfBoundsException("Cannot copy " + count
+                    + " readings to index " + offset + " of an array of "
+                    + dest.length);
+        }
+        int start = head - count;
+        if (start >= 0) {
+            System.arraycopy(readings, start, dest, offset, count);
+        } else {
+            // Wraps around the end of the array
+            int tail = -start;
+            System.arraycopy(readings, readings.length - tail, dest, offset,
+                    tail);
+            System.arraycopy(readings, 0, dest, offset + tail, head);
+        }
+        return count;
+    }
+
+    /**
+     * Copies every reading kept into the given array, oldest first.
+     *
+     * @param dest array to copy into, at least {@link #size()} long
+     * @return number of readings copied
+     * @throws IndexOutOfBoundsException if dest is too short
+     */
+    public int copyTo(int[] dest) {
+        return copyRecent(dest, 0, size);
+    }
+
+    /**
+     * Returns the mean of the newest readings, such as for congestion over
+     * a window shorter than the history.
+     *
+     * @param count number of readings to average
+     * @return the mean of up to count of the newest readings, or 0 if none
+     * have been recorded
+     */
+    public double mean(int count) {
+        count = Math.min(Math.max(count, 0), size);
+        if (count == 0) {
+            return 0;
+        }
+        long total = 0;
+        for (int age = 0, index = head; age < count; age++) {
+            index = index == 0 ? readings.length - 1 : index - 1;
+            total += readings[index];
+        }
+        return (double) total / count;
+    }
+
+    /**
+     * Returns a history with the given window holding the newest readings
+     * of the given history, for a sensor whose window is changed. If the
+     * sensor kept no history, the new one starts with its current reading.
+     * Shared by every kind of sensor that keeps a history.
+     *
+     * @param history the current history, or null if none is kept
+     * @param window the new window, or 0 to keep no history
+     * @param current the sensor's current reading
+     * @return the new history, or null if the window is 0
+     * @throws IllegalArgumentException if the window is negative
+     */
+    static ReadingHistory resize(ReadingHistory history, int window,
+                                 int current) {
+        if (window < 0) {
+            throw new IllegalArgumentException("Window must not be negative");
+        } else if (window == 0) {
+            return null;
+        }
+        ReadingHistory resized = new ReadingHistory(window);
+        if (history == null) {
+            resized.record(current);
+        } else {
+            int[] kept = new int[Math.min(history.size, window)];
+            history.copyRecent(kept, 0, kept.length);
+            for (int reading : kept) {
+                resized.record(reading);
+            }
+        }
+        return resized;
+    }
+
+    /**
+     * Adds a sensor's reading for the second just simulated to its history,
+     * if it keeps one.
+     *
+     * @param history the sensor's history, or null if none is kept
+     * @param reading the newest reading
+     */
+    static void record(ReadingHistory history, int reading) {
+        if (history != null) {
+            history.record(reading);
+        }
+    }
+
+    /**
+     * Forgets every reading.
+     */
+    public void clear() {
+        head = 0;
+        size = 0;
+    }
+}
@@ -1,5 +1,7 @@
 package tms.sensors;
 
+import java.util.function.Supplier;
+
 /**
  * A device used to detect congestion by comparing observed traffic flow
  * measures to a predefined threshold value. This interface will need to be
@@ -29,4 +31,28 @@ public interface Sensor {
      * @ass1
      */
     int getThreshold();
+
+    /**
+     * Returns the recent readings of this sensor, one per second, if it
+     * keeps them.
+     *
+     * @return the history of readings, or null if none is kept
+     */
+    default ReadingHistory getHistory() {
+        return null;
+    }
+
+    /**
+     * Returns the string representation of this sensor as it is now, which
+     * may be turned into text later, and on another thread.
+     * <p>
+     * By default the text is made straight away, so that a sensor whose
+     * readings change gives the readings it had when this was called.
+     *
+     * @return the text of toString() at the time of this call
+     */
+    default Supplier<String> toStringLater() {
+        String text = toString();
+        return () -> text;
+    }
 }
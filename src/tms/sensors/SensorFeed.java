@@ -0,0 +1,505 @@
+package tms.sensors;
+
+import tms.intersection.Intersection;
+import tms.network.Network;
+import tms.route.Route;
+import tms.util.DuplicateSensorException;
+import tms.util.SymbolTable;
+import tms.util.TimedItemManager;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reads sensor readings from a stream, such as a roadside feed, and
+ * publishes them to {@link LiveSensor}s.
+ * <p>
+ * Each sensor is attached under a key, and is given a channel: the first
+ * sensor attached is channel 0, the next is channel 1, and so on. Readings
+ * come in one of two formats:
+ * <ul>
+ *   <li>{@link Format#CSV}: one reading per line, "key,value", e.g.
+ *   "A:B:PP,12". Lines that are blank are ignored.</li>
+ *   <li>{@link Format#BINARY}: one reading per {@value #RECORD_BYTES} byte
+ *   record, the channel then the value, each a big-endian int.</li>
+ * </ul>
+ * Readings for unknown keys or channels, and lines that cannot be parsed,
+ * are counted as rejected and otherwise ignored.
+ * <p>
+ * The stream is read in blocks, and all the readings in a block are
+ * published together, holding this feed's lock once per block rather than
+ * once per reading. Publishing only stores the reading in the sensor, so the
+ * simulation thread never waits for the feed. If several readings for one
+ * sensor arrive within a second, the last one is used.
+ * <p>
+ * Any number of streams may be read at once, from any threads. Readings can
+ * be read from a file with {@link #ingest(InputStream, Format)}, or from
+ * connections to a local port with {@link #listen(int, Format)}.
+ */
+public class SensorFeed implements Closeable {
+    /** Bytes in each reading in the binary format */
+    public static final int RECORD_BYTES = 8;
+
+    /** Bytes read from a stream at a time */
+    private static final int BLOCK_BYTES = 1 << 16;
+
+    /** Format of the readings in a stream. */
+    public enum Format {
+        /** Text lines of the form "key,value" */
+        CSV,
+        /** Records of a big-endian int channel and a big-endian int value */
+        BINARY
+    }
+
+    private final SymbolTable keys = new SymbolTable();
+    private LiveSensor[] sensors = new LiveSensor[16];
+
+    private final LongAdder readings = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    private final Set<Closeable> connections = new HashSet<>();
+    private boolean closed;
+
+    /**
+     * Attaches a sensor to this feed.
+     *
+     * @param key key identifying the sensor in the feed
+     * @param sensor the sensor to publish readings to
+     * @return the channel of the sensor
+     * @throws IllegalArgumentException if a sensor is already attached with
+     * the given key
+     */
+    public synchronized int attach(String key, LiveSensor sensor) {
+        if (keys.find(key) != -1) {
+            throw new IllegalArgumentException("A sensor is already attached"
+                    + " with key \"" + key + "\"");
+        }
+        int channel = keys.intern(key);
+        if (channel == sensors.length) {
+            sensors = Arrays.copyOf(sensors, channel * 2);
+        }
+        sensors[channel] = sensor;
+        return channel;
+    }
+
+    /**
+     * Replaces every demo sensor in the given network with a live sensor of
+     * the same type and threshold, attached to this feed, whose initial
+     * value is the demo sensor's current value.
+     * <p>
+     * Each sensor is attached with the key "FROM:TO:TYPE", where FROM and TO
+     * are the IDs of the ends of its route and TYPE is "PP", "SC" or "VC".
+     * The demo sensors are no longer called each second. Live sensors
+     * already in the network, such as those restored from a checkpoint, are
+     * attached under the same keys unless a sensor is attached there.
+     * <p>
+     * The network must not change while this is called, so it must be called
+     * between ticks.
+     *
+     * @param network the network whose sensors are to be replaced
+     * @return number of sensors replaced or attached
+     */
+    public synchronized int attach(Network network) {
+        List<DemoSensor> replaced = new ArrayList<>();
+        int attached = 0;
+        for (Intersection to : network.getIntersections()) {
+            for (Route route : to.getConnectionsView()) {
+                for (Sensor sensor : route.getSensors()) {
+                    if (sensor instanceof LiveSensor) {
+                        String key = route.getFrom().getId() + ":"
+                                + to.getId() + ":" + typeCode(sensor);
+                        if (keys.find(key) == -1) {
+                            attach(key, (LiveSensor) sensor);
+                            attached++;
+                        }
+                        continue;
+                    }
+                    if (!(sensor instanceof DemoSensor)) {
+                        continue;
+                    }
+                    LiveSensor live = liveSensorFor(sensor);
+                    route.removeSensor(sensor);
+                    try {
+                        route.addSensor(live);
+                    } catch (DuplicateSensorException e) {
+                        // The route had one of each type, so cannot happen
+                        throw new IllegalStateException(e);
+                    }
+                    attach(route.getFrom().getId() + ":" + to.getId() + ":"
+                            + typeCode(sensor), live);
+                    replaced.add((DemoSensor) sensor);
+                }
+            }
+        }
+        TimedItemManager.getTimedItemManager().deregisterTimedItems(replaced);
+        return replaced.size() + attached;
+    }
+
+    /**
+     * Returns the channel of the sensor attached with the given key.
+     *
+     * @param key key identifying the sensor in the feed
+     * @return the channel, or -1 if no sensor has the key
+     */
+    public synchronized int getChannel(String key) {
+        return keys.find(key);
+    }
+
+    /**
+     * @return number of sensors attached
+     */
+    public synchronized int getSensorCount() {
+        return keys.size();
+    }
+
+    /**
+     * @return number of readings published to sensors
+     */
+    public long getReadings() {
+        return readings.sum();
+    }
+
+    /**
+     * @return number of readings rejected
+     */
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * Reads readings from the given stream until it ends, publishing them
+     * as they are read. The stream is not closed.
+     * <p>
+     * The last line of a CSV stream need not end with a line break. A binary
+     * stream that ends part way through a record has that record rejected.
+     *
+     * @param in stream of readings
+     * @param format format of the readings
+     * @return number of readings published from this stream
+     * @throws IOException if the stream cannot be read
+     */
+    public long ingest(InputStream in, Format format) throws IOException {
+        return format == Format.CSV ? ingestCsv(in) : ingestBinary(in);
+    }
+
+    /**
+     * Starts accepting connections on the given port of the loopback address,
+     * reading each connection with {@link #ingest(InputStream, Format)} on a
+     * daemon thread of its own, until this feed is closed.
+     *
+     * @param port port to listen on, or 0 for any free port
+     * @param format format of the readings sent on every connection
+     * @return the port listened on
+     * @throws IOException if the port cannot be bound
+     */
+    public int listen(int port, Format format) throws IOException {
+        ServerSocket server = new ServerSocket();
+        server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(),
+                port));
+        if (!track(server)) {
+            server.close();
+            throw new IOException("Feed is closed");
+        }
+        Thread acceptor = new Thread(() -> accept(server, format),
+                "sensor-feed-" + server.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    /**
+     * Stops listening on every port and closes every open connection.
+     * Readings already published are kept.
+     */
+    @Override
+    public void close() {
+        List<Closeable> open;
+        synchronized (connections) {
+            closed = true;
+            open = new ArrayList<>(connections);
+            connections.clear();
+        }
+        for (Closeable connection : open) {
+            try {
+                connection.close();
+            } catch (IOException ignored) {
+                // Closing anyway
+            }
+        }
+    }
+
+    private void accept(ServerSocket server, Format format) {
+        try {
+            while (true) {
+                Socket socket = server.accept();
+                if (!track(socket)) {
+                    socket.close();
+                    return;
+                }
+                Thread reader = new Thread(() -> read(socket, format),
+                        "sensor-feed-" + socket.getPort());
+                reader.setDaemon(true);
+                reader.start();
+            }
+        } catch (IOException e) {
+            // Closed, so stop accepting
+        }
+    }
+
+    private void read(Socket socket, Format format) {
+        try (socket) {
+            ingest(socket.getInputStream(), format);
+        } catch (IOException e) {
+            // Connection closed or reset; readings so far are kept
+        } finally {
+            synchronized (connections) {
+                connections.remove(socket);
+            }
+        }
+    }
+
+    /**
+     * Adds a server or connection to those closed by {@link #close()}.
+     *
+     * @return false if this feed is already closed
+     */
+    private boolean track(Closeable connection) {
+        synchronized (connections) {
+            if (closed) {
+                return false;
+            }
+            connections.add(connection);
+            return true;
+        }
+    }
+
+    private long ingestCsv(InputStream in) throws IOException {
+        byte[] block = new byte[BLOCK_BYTES];
+        // Keys and values of the complete lines in the block
+        String[] lineKeys = new String[BLOCK_BYTES / 4];
+        int[] lineValues = new int[lineKeys.length];
+        int[] lineChannels = new int[lineKeys.length];
+        long published = 0;
+        int length = 0;
+        // Whether the rest of an overlong line is still to be skipped
+        boolean skipping = false;
+
+        for (int read; (read = in.read(block, length,
+                block.length - length)) != -1 || length > 0; ) {
+            int end = read == -1 ? length : length + read;
+            int start = 0;
+            int lines = 0;
+            int bad = 0;
+            while (start < end) {
+                int newline = indexOf(block, (byte) '\n', start, end);
+                if (newline == -1) {
+                    if (skipping && read != -1) {
+                        // Still within an overlong line
+                        start = end;
+                    }
+                    if (read != -1) {
+                        break;
+                    }
+                    // The last line, without a line break
+                    newline = end;
+                }
+                if (skipping) {
+                    skipping = false;
+                } else if (parseLine(block, start, newline, lineKeys,
+                        lineValues, lines)) {
+                    lines++;
+                } else if (!isBlank(block, start, newline)) {
+                    bad++;
+                }
+                start = newline + 1;
+            }
+            published += publish(lineKeys, lineValues, lineChannels, lines);
+            rejected.add(bad);
+
+            // Keep a partial line for the next block
+            length = Math.max(end - start, 0);
+            if (length == block.length) {
+                // Longer than a block, so cannot be a valid reading
+                rejected.increment();
+                skipping = true;
+                length = 0;
+            } else {
+                System.arraycopy(block, start, block, 0, length);
+            }
+            if (read == -1) {
+                break;
+            }
+        }
+        return published;
+    }
+
+    private long ingestBinary(InputStream in) throws IOException {
+        byte[] block = new byte[BLOCK_BYTES];
+        int[] channels = new int[BLOCK_BYTES / RECORD_BYTES];
+        int[] values = new int[channels.length];
+        long published = 0;
+        int length = 0;
+
+        for (int read; (read = in.read(block, length,
+                block.length - length)) != -1; ) {
+            length += read;
+            int records = length / RECORD_BYTES;
+            for (int i = 0; i < records; i++) {
+                channels[i] = readInt(block, i * RECORD_BYTES);
+                values[i] = readInt(block, i * RECORD_BYTES + 4);
+            }
+            published += publish(channels, values, records);
+
+            // Keep a partial record for the next block
+            int used = records * RECORD_BYTES;
+            System.arraycopy(block, used, block, 0, length - used);
+            length -= used;
+        }
+        if (length > 0) {
+            rejected.increment();
+        }
+        return published;
+    }
+
+    /**
+     * Publishes the given readings by key, counting unknown keys as rejected.
+     *
+     * @return number of readings published
+     */
+    private int publish(String[] lineKeys, int[] values, int[] channels,
+            int count) {
+        synchronized (this) {
+            for (int i = 0; i < count; i++) {
+                channels[i] = keys.find(lineKeys[i]);
+            }
+        }
+        return publish(channels, values, count);
+    }
+
+    /**
+     * Publishes the given readings by channel, counting unknown channels as
+     * rejected.
+     *
+     * @return number of readings published
+     */
+    private int publish(int[] channels, int[] values, int count) {
+        int published = 0;
+        synchronized (this) {
+            int size = keys.size();
+            for (int i = 0; i < count; i++) {
+                int channel = channels[i];
+                if (channel >= 0 && channel < size) {
+                    sensors[channel].publish(values[i]);
+                    published++;
+                }
+            }
+        }
+        readings.add(published);
+        rejected.add(count - published);
+        return published;
+    }
+
+    /**
+     * Parses a line of the form "key,value", with an optional carriage
+     * return at the end, into the given arrays at the given index.
+     *
+     * @return true if the line is a valid reading
+     */
+    private static boolean parseLine(byte[] block, int start, int end,
+            String[] lineKeys, int[] lineValues, int index) {
+        if (end > start && block[end - 1] == '\r') {
+            end--;
+        }
+        int comma = indexOf(block, (byte) ',', start, end);
+        if (comma <= start || comma == end - 1) {
+            return false;
+        }
+        int i = comma + 1;
+        boolean negative = block[i] == '-';
+        if (negative) {
+            i++;
+        }
+        // Digits of Integer.MIN_VALUE, so that any int fits
+        if (i == end || end - i > 10) {
+            return false;
+        }
+        long value = 0;
+        for (; i < end; i++) {
+            int digit = block[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return false;
+            }
+            value = value * 10 + digit;
+        }
+        value = negative ? -value : value;
+        if (value != (int) value) {
+            return false;
+        }
+        lineKeys[index] = new String(block, start, comma - start,
+                StandardCharsets.UTF_8);
+        lineValues[index] = (int) value;
+        return true;
+    }
+
+    private static boolean isBlank(byte[] block, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (block[i] != ' ' && block[i] != '\t' && block[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int indexOf(byte[] block, byte b, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (block[i] == b) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static int readInt(byte[] block, int offset) {
+        return (block[offset] & 0xFF) << 24
+                | (block[offset + 1] & 0xFF) << 16
+                | (block[offset + 2] & 0xFF) << 8
+                | (block[offset + 3] & 0xFF);
+    }
+
+    /**
+     * Returns a live sensor of the same type and threshold as the given demo
+     * sensor, starting at its current value.
+     */
+    private static LiveSensor liveSensorFor(Sensor sensor) {
+        if (sensor instanceof PressurePad) {
+            return new LivePressurePad(sensor.getThreshold(),
+                    ((PressurePad) sensor).countTraffic());
+        } else if (sensor instanceof SpeedCamera) {
+            return new LiveSpeedCamera(sensor.getThreshold(),
+                    ((SpeedCamera) sensor).averageSpeed());
+        }
+        return new LiveVehicleCount(sensor.getThreshold(),
+                ((VehicleCount) sensor).countTraffic());
+    }
+
+    private static String typeCode(Sensor sensor) {
+        if (sensor instanceof PressurePad) {
+            return "PP";
+        } else if (sensor instanceof SpeedCamera) {
+            return "SC";
+        }
+        return "VC";
+    }
+}
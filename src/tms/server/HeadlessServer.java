@@ -0,0 +1,629 @@
+package tms.server;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import tms.congestion.CongestionRecorder;
+import tms.congestion.CongestionStore;
+import tms.congestion.CongestionSummary;
+import tms.display.ButtonOptions;
+import tms.display.CommandProcessor;
+import tms.network.FootprintReport;
+import tms.network.LoaderStatistics;
+import tms.network.Network;
+import tms.network.NetworkInitialiser;
+import tms.replay.SimulationCheckpointer;
+import tms.replay.SimulationRecorder;
+import tms.sensors.SensorFeed;
+import tms.util.InvalidNetworkException;
+import tms.util.SimulationClock;
+import tms.util.TimedItemManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Runs the simulation without a GUI, answering queries and commands over a
+ * local HTTP API.
+ * <p>
+ * The network is ticked once per second by a {@link SimulationClock}.
+ * After each tick and each command, a {@link NetworkSnapshot} is taken on
+ * the simulation thread and published atomically. Queries only read the
+ * latest snapshot, so they never wait for, or hold up, a tick. Commands
+ * change the live network between ticks.
+ * <p>
+ * The API, served on the loopback address only:
+ * <table>
+ *   <tr><td>GET /status</td><td>seconds simulated, pause state and size
+ *   of the network</td></tr>
+ *   <tr><td>GET /intersections</td><td>every intersection with its lights
+ *   and incoming routes</td></tr>
+ *   <tr><td>GET /intersections/ID</td><td>one intersection</td></tr>
+ *   <tr><td>GET /routes</td><td>every route with its speed, congestion and
+ *   signal</td></tr>
+ *   <tr><td>GET /routes/FROM/TO</td><td>one route</td></tr>
+ *   <tr><td>GET /history/FROM/TO</td><td>recorded congestion of one
+ *   route, if recording, see {@link CongestionStore}; query parameters
+ *   "from" and "to" give the range of seconds, the last hour by default,
+ *   and "resolution" is "second", or "minute" (the default) or "hour" for
+ *   the minimum, mean and maximum of each period</td></tr>
+ *   <tr><td>GET /footprint</td><td>estimated memory used by the network,
+ *   by type of entity, see {@link FootprintReport}</td></tr>
+ *   <tr><td>POST /commands/OPTION</td><td>applies a {@link ButtonOptions}
+ *   command with form or query parameters, see
+ *   {@link CommandProcessor}</td></tr>
+ * </table>
+ * Responses are JSON. Errors have status 400 or 404 and a body of the form
+ * {"error":"message"}.
+ * <p>
+ * Requests are handled on virtual threads when the JVM supports them,
+ * otherwise on a fixed pool of threads.
+ */
+public class HeadlessServer {
+    /** Port used if none is given on the command line */
+    public static final int DEFAULT_PORT = 8080;
+    /** Most seconds of congestion history returned by one request */
+    public static final int MAX_HISTORY_SECONDS = 24 * 3600;
+
+    private final Network network;
+    private final SimulationClock clock;
+    private final CommandProcessor commands;
+    private final AtomicReference<NetworkSnapshot> snapshot =
+            new AtomicReference<>();
+    private final HttpServer server;
+    private final ExecutorService executor;
+    /** Records congestion after each tick, or null */
+    private volatile CongestionRecorder recorder;
+    private CongestionStore history;
+    /** Records each tick and command for replay, or null */
+    private volatile SimulationRecorder simulationRecorder;
+    /** Checkpoints the simulation every so many ticks, or null */
+    private volatile SimulationCheckpointer checkpointer;
+
+    /**
+     * Creates a server for the given network, listening on the given port
+     * of the loopback address. Neither the clock nor the server is started.
+     *
+     * @param network the network to simulate
+     * @param port port to listen on, or 0 for any free port
+     * @throws IOException if the port cannot be bound
+     */
+    public HeadlessServer(Network network, int port) throws IOException {
+        this.network = network;
+        this.clock = new SimulationClock(() -> {
+            TimedItemManager.getTimedItemManager().oneSecond();
+            // Still within the tick, so the network is not changing
+            recordSimulation();
+            recordCongestion();
+            checkpoint();
+            publish(1);
+        });
+        this.commands = new CommandProcessor(network, clock);
+        publish(0);
+
+        server = HttpServer.create(new InetSocketAddress(
+                InetAddress.getLoopbackAddress(), port), 1024);
+        executor = newRequestExecutor();
+        server.setExecutor(executor);
+        server.createContext("/status", exchange -> respond(exchange, 200,
+                snapshot.get().statusJson()));
+        server.createContext("/intersections", this::intersections);
+        server.createContext("/routes", this::routes);
+        server.createContext("/commands", this::command);
+        server.createContext("/footprint", this::footprint);
+        server.createContext("/history", this::history);
+    }
+
+    /**
+     * Records the congestion of every route to the given store after each
+     * tick, and answers queries of it. Must be called before the server is
+     * started. The store is closed when the server is stopped.
+     *
+     * @param store store to record to
+     */
+    public void recordCongestion(CongestionStore store) {
+        recorder = new CongestionRecorder(network, store);
+        history = store;
+    }
+
+    /**
+     * Records every tick and command with the given recorder, so that the
+     * run can be replayed, see {@link tms.replay.SimulationReplayer}. Must
+     * be called before the server is started. The recorder is closed when
+     * the server is stopped.
+     *
+     * @param log recorder to record to
+     */
+    public void recordSimulation(SimulationRecorder log) {
+        simulationRecorder = log;
+        commands.recordTo(log);
+    }
+
+    /**
+     * Checkpoints the simulation with the given checkpointer as it runs, so
+     * that it can be restarted where it left off. Must be called before the
+     * server is started. A last checkpoint is taken, and the checkpointer
+     * closed, when the server is stopped.
+     *
+     * @param checkpointer checkpointer of this server's network
+     */
+    public void checkpointTo(SimulationCheckpointer checkpointer) {
+        this.checkpointer = checkpointer;
+    }
+
+    /**
+     * Starts ticking the network once per second and serving requests.
+     */
+    public void start() {
+        clock.start(1, TimeUnit.SECONDS);
+        server.start();
+    }
+
+    /**
+     * Stops serving requests and ticking the network.
+     */
+    public void stop() {
+        server.stop(0);
+        executor.shutdown();
+        clock.stop();
+        if (simulationRecorder != null) {
+            clock.runExclusive(() -> {
+                try {
+                    simulationRecorder.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing simulation log: "
+                            + e.toString());
+                }
+            });
+        }
+        if (checkpointer != null) {
+            clock.runExclusive(() -> {
+                try {
+                    // Not skipped for a checkpoint still being written
+                    checkpointer.flush();
+                    checkpointer.checkpoint();
+                    checkpointer.close();
+                } catch (IOException e) {
+                    System.err.println("Error writing checkpoint: "
+                            + e.toString());
+                }
+            });
+        }
+        if (history != null) {
+            // Waits for a tick in progress to finish recording
+            clock.runExclusive(() -> {
+                recorder = null;
+                try {
+                    history.close();
+                } catch (IOException e) {
+                    System.err.println("Error closing congestion history: "
+                            + e.toString());
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the port the server is listening on
+     */
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * @return the most recently published snapshot of the network
+     */
+    public NetworkSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * @return the clock ticking the network
+     */
+    public SimulationClock getClock() {
+        return clock;
+    }
+
+    /**
+     * Runs the server until the process is killed.
+     * <p>
+     * Arguments: FILENAME [PORT]
+     * <p>
+     * If the system property "tms.history.dir" is set, the congestion of
+     * every route is recorded each second to a {@link CongestionStore} in
+     * that directory.
+     * <p>
+     * If the system property "tms.replay.log" is set, the run is recorded
+     * to a log file of that name, to be replayed by
+     * {@link tms.replay.SimulationReplayer}.
+     * <p>
+     * If the system property "tms.feed.port" is set, the network's demo
+     * sensors are replaced with live sensors fed by a {@link SensorFeed}
+     * listening on that port, in the format named by "tms.feed.format",
+     * CSV by default.
+     * <p>
+     * If the system property "tms.checkpoint.dir" is set, the simulation is
+     * checkpointed to that directory every "tms.checkpoint.interval"
+     * seconds, {@value SimulationCheckpointer#DEFAULT_INTERVAL} by default,
+     * see {@link SimulationCheckpointer}. If the directory already holds a
+     * checkpoint, the simulation carries on from it, and FILENAME is not
+     * loaded.
+     *
+     * @param args from the command line
+     */
+    public static void main(final String... args) {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("Usage: [NETWORK_LOAD_FILENAME] [PORT]");
+            System.exit(1);
+        }
+
+        try {
+            String checkpointDir = System.getProperty("tms.checkpoint.dir");
+            int interval = Integer.getInteger("tms.checkpoint.interval",
+                    SimulationCheckpointer.DEFAULT_INTERVAL);
+            Network network;
+            SimulationCheckpointer checkpointer = null;
+            if (checkpointDir != null && SimulationCheckpointer.hasCheckpoint(
+                    Paths.get(checkpointDir))) {
+                SimulationCheckpointer.Restored restored =
+                        SimulationCheckpointer.restore(Paths.get(checkpointDir),
+                                new LoaderStatistics(System.out::println));
+                network = restored.getNetwork();
+                checkpointer = new SimulationCheckpointer(restored, interval);
+                System.out.println("Resumed from the checkpoint after "
+                        + restored.getTick() + " seconds");
+            } else {
+                network = NetworkInitialiser.loadNetwork(args[0],
+                        new LoaderStatistics(System.out::println));
+                if (checkpointDir != null) {
+                    checkpointer = new SimulationCheckpointer(network,
+                            Paths.get(checkpointDir), interval, 0);
+                }
+            }
+            int port = args.length > 1 ? Integer.parseInt(args[1])
+                    : DEFAULT_PORT;
+            Integer feedPort = Integer.getInteger("tms.feed.port");
+            if (feedPort != null) {
+                SensorFeed feed = new SensorFeed();
+                int sensors = feed.attach(network);
+                int listening = feed.listen(feedPort, SensorFeed.Format.valueOf(
+                        System.getProperty("tms.feed.format", "CSV")));
+                System.out.println("Feeding " + sensors
+                        + " live sensors from port " + listening);
+            }
+            HeadlessServer server = new HeadlessServer(network, port);
+            String historyDir = System.getProperty("tms.history.dir");
+            if (historyDir != null) {
+                server.recordCongestion(CongestionStore.open(
+                        Paths.get(historyDir)));
+            }
+            String replayLog = System.getProperty("tms.replay.log");
+            if (replayLog != null) {
+                server.recordSimulation(new SimulationRecorder(network,
+                        Paths.get(replayLog)));
+            }
+            if (checkpointer != null) {
+                // Saves the structure, if need be, before ticking starts
+                checkpointer.checkpoint();
+                server.checkpointTo(checkpointer);
+            }
+            server.start();
+            System.out.println("Serving \"" + args[0]
+                    + "\" on http://localhost:" + server.getPort() + "/");
+        } catch (IOException | InvalidNetworkException
+                | IllegalArgumentException e) {
+            System.err.println("Error starting server: " + e.toString());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Takes a new snapshot of the network. Must be called while no tick or
+     * command is in progress on another thread.
+     */
+    private void publish(long extraTicks) {
+        // The clock counts the current tick only once it has finished
+        long seconds = clock.getSnapshot().getTicks() + extraTicks;
+        snapshot.set(NetworkSnapshot.of(network, seconds, clock.isPaused()));
+    }
+
+    /**
+     * Records the tick that is finishing, if recording the simulation.
+     * Stops recording if the log cannot be written.
+     */
+    private void recordSimulation() {
+        SimulationRecorder current = simulationRecorder;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.tick();
+        } catch (IOException e) {
+            System.err.println("Error recording simulation, stopped"
+                    + " recording: " + e.toString());
+            simulationRecorder = null;
+            commands.recordTo(null);
+        }
+    }
+
+    /**
+     * Counts the tick that is finishing towards the next checkpoint, if
+     * checkpointing. Stops checkpointing if a checkpoint cannot be written.
+     */
+    private void checkpoint() {
+        SimulationCheckpointer current = checkpointer;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.tick();
+        } catch (IOException e) {
+            System.err.println("Error writing checkpoint, stopped"
+                    + " checkpointing: " + e.toString());
+            checkpointer = null;
+        }
+    }
+
+    /**
+     * Records the congestion of the tick that is finishing, if recording.
+     * Stops recording if the congestion cannot be written.
+     */
+    private void recordCongestion() {
+        CongestionRecorder current = recorder;
+        if (current == null) {
+            return;
+        }
+        try {
+            current.record(clock.getSnapshot().getTicks() + 1);
+        } catch (IOException e) {
+            System.err.println("Error recording congestion, stopped"
+                    + " recording: " + e.toString());
+            recorder = null;
+        }
+    }
+
+    private void intersections(HttpExchange exchange) throws IOException {
+        String[] path = pathAfter(exchange, "/intersections");
+        NetworkSnapshot current = snapshot.get();
+        if (path.length == 0) {
+            respond(exchange, 200, current.intersectionsJson());
+        } else if (path.length == 1
+                && current.getIntersection(path[0]) != null) {
+            respond(exchange, 200, current.getIntersection(path[0]).toJson());
+        } else {
+            respondError(exchange, 404, "No such intersection");
+        }
+    }
+
+    private void routes(HttpExchange exchange) throws IOException {
+        String[] path = pathAfter(exchange, "/routes");
+        NetworkSnapshot current = snapshot.get();
+        if (path.length == 0) {
+            respond(exchange, 200, current.routesJson());
+        } else if (path.length == 2
+                && current.getRoute(path[0], path[1]) != null) {
+            respond(exchange, 200, current.getRoute(path[0], path[1]).toJson());
+        } else {
+            respondError(exchange, 404, "No such route");
+        }
+    }
+
+    private void footprint(HttpExchange exchange) throws IOException {
+        // Walks the live network, so it must not run during a tick
+        FootprintReport report = clock.callExclusive(
+                () -> FootprintReport.measure(network));
+        StringBuilder json = new StringBuilder("{\"totalBytes\":")
+                .append(report.getTotalBytes()).append(",\"types\":[");
+        for (FootprintReport.Entry entry : report.getEntries()) {
+            if (json.charAt(json.length() - 1) != '[') {
+                json.append(',');
+            }
+            json.append("{\"type\":");
+            NetworkSnapshot.appendQuoted(json, entry.getType());
+            json.append(",\"count\":").append(entry.getCount())
+                    .append(",\"bytes\":").append(entry.getBytes())
+                    .append('}');
+        }
+        respond(exchange, 200, json.append("]}").toString());
+    }
+
+    private void history(HttpExchange exchange) throws IOException {
+        if (history == null) {
+            respondError(exchange, 404, "Congestion is not being recorded");
+            return;
+        }
+        String[] path = pathAfter(exchange, "/history");
+        int series = path.length == 2 ? history.findSeries(
+                path[0] + ":" + path[1]) : -1;
+        if (series == -1) {
+            respondError(exchange, 404, "No such route");
+            return;
+        }
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        String resolution = params.getOrDefault("resolution", "minute");
+        long to;
+        long from;
+        try {
+            to = params.containsKey("to") ? Long.parseLong(params.get("to"))
+                    : Math.max(history.getLastSecond(), 0) + 1;
+            from = params.containsKey("from")
+                    ? Long.parseLong(params.get("from"))
+                    : to - CongestionStore.Resolution.HOUR.getSeconds();
+        } catch (NumberFormatException e) {
+            respondError(exchange, 400, "Invalid range: " + e.getMessage());
+            return;
+        }
+        if (to <= from) {
+            respondError(exchange, 400, "Range must not be empty");
+            return;
+        }
+
+        StringBuilder json = new StringBuilder("{\"route\":");
+        NetworkSnapshot.appendQuoted(json, path[0] + ":" + path[1]);
+        json.append(",\"from\":").append(from).append(",\"to\":")
+                .append(to).append(",\"resolution\":");
+        NetworkSnapshot.appendQuoted(json, resolution);
+        if (resolution.equals("second")) {
+            if (to - from > MAX_HISTORY_SECONDS) {
+                respondError(exchange, 400, "At most " + MAX_HISTORY_SECONDS
+                        + " seconds can be asked for at a time");
+                return;
+            }
+            int[] values = new int[(int) (to - from)];
+            history.range(series, from, to, values);
+            json.append(",\"values\":[");
+            for (int i = 0; i < values.length; i++) {
+                json.append(i == 0 ? "" : ",").append(
+                        values[i] == CongestionStore.MISSING ? "null"
+                                : String.valueOf(values[i]));
+            }
+        } else {
+            CongestionStore.Resolution period;
+            try {
+                period = CongestionStore.Resolution.valueOf(
+                        resolution.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                respondError(exchange, 400, "No such resolution");
+                return;
+            }
+            json.append(",\"summaries\":[");
+            for (CongestionSummary summary : history.downsample(series, from,
+                    to, period)) {
+                if (json.charAt(json.length() - 1) != '[') {
+                    json.append(',');
+                }
+                json.append(String.format(Locale.ROOT, "{\"start\":%d,"
+                        + "\"min\":%d,\"mean\":%.2f,\"max\":%d,"
+                        + "\"count\":%d}", summary.getStart(),
+                        summary.getMin(), summary.getMean(), summary.getMax(),
+                        summary.getCount()));
+            }
+        }
+        respond(exchange, 200, json.append("]}").toString());
+    }
+
+    private void command(HttpExchange exchange) throws IOException {
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            respondError(exchange, 400, "Commands must be sent with POST");
+            return;
+        }
+        String[] path = pathAfter(exchange, "/commands");
+        ButtonOptions option;
+        try {
+            option = ButtonOptions.valueOf(path.length == 1 ? path[0] : "");
+        } catch (IllegalArgumentException e) {
+            respondError(exchange, 404, "No such command");
+            return;
+        }
+
+        Map<String, String> params = new HashMap<>();
+        parseForm(exchange.getRequestURI().getRawQuery(), params);
+        try (InputStream body = exchange.getRequestBody()) {
+            parseForm(new String(body.readAllBytes(), StandardCharsets.UTF_8),
+                    params);
+        }
+
+        String error = clock.callExclusive(() -> {
+            try {
+                commands.apply(option, params);
+                return null;
+            } catch (IllegalArgumentException e) {
+                return e.getMessage();
+            } finally {
+                publish(0);
+            }
+        });
+        if (error == null) {
+            respond(exchange, 200, snapshot.get().statusJson());
+        } else {
+            respondError(exchange, 400, error);
+        }
+    }
+
+    /**
+     * Returns the decoded segments of the request path after the given
+     * prefix, e.g. {"A", "B"} for "/routes/A/B" after "/routes".
+     */
+    private static String[] pathAfter(HttpExchange exchange, String prefix) {
+        String path = exchange.getRequestURI().getRawPath()
+                .substring(prefix.length());
+        if (path.startsWith("/")) {
+            path = path.substring(1);
+        }
+        if (path.isEmpty()) {
+            return new String[0];
+        }
+        String[] segments = path.split("/");
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = URLDecoder.decode(segments[i],
+                    StandardCharsets.UTF_8);
+        }
+        return segments;
+    }
+
+    private static void parseForm(String form, Map<String, String> params) {
+        if (form == null || form.isEmpty()) {
+            return;
+        }
+        for (String pair : form.split("&")) {
+            int equals = pair.indexOf('=');
+            if (equals > 0) {
+                params.put(URLDecoder.decode(pair.substring(0, equals),
+                        StandardCharsets.UTF_8),
+                        URLDecoder.decode(pair.substring(equals + 1),
+                                StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    private static void respondError(HttpExchange exchange, int status,
+                                     String message) throws IOException {
+        StringBuilder json = new StringBuilder("{\"error\":");
+        NetworkSnapshot.appendQuoted(json, message);
+        respond(exchange, status, json.append('}').toString());
+    }
+
+    private static void respond(HttpExchange exchange, int status,
+                                String json) throws IOException {
+        byte[] bytes = json.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type",
+                "application/json; charset=utf-8");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+
+    /**
+     * Returns an executor starting a virtual thread per request if the JVM
+     * has them (Java 21 and later), otherwise a fixed pool of threads.
+     */
+    private static ExecutorService newRequestExecutor() {
+        try {
+            return (ExecutorService) Executors.class
+                    .getMethod("newVirtualThreadPerTaskExecutor")
+                    .invoke(null);
+        } catch (ReflectiveOperationException e) {
+            int threads = Math.max(8,
+                    4 * Runtime.getRuntime().availableProcessors());
+            return Executors.newFixedThreadPool(threads, runnable -> {
+                Thread thread = new Thread(runnable, "http");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
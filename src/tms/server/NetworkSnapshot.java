@@ -0,0 +1,350 @@
+package tms.server;
+
+import tms.intersection.Intersection;
+import tms.intersection.IntersectionLights;
+import tms.network.Network;
+import tms.route.Route;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable copy of the state of a network at one instant, served to
+ * clients of the {@link HeadlessServer} without touching the live network.
+ * <p>
+ * A snapshot is built on the simulation thread after each tick and after
+ * each command, then published for any number of request threads to read.
+ * JSON for the whole network is rendered at most once per snapshot.
+ */
+public class NetworkSnapshot {
+    private final long seconds;
+    private final boolean paused;
+    private final List<IntersectionState> intersections;
+    private final Map<String, IntersectionState> byId;
+    private final int routeCount;
+
+    // Rendered on first use; racing threads render identical strings
+    private volatile String intersectionsJson, routesJson;
+
+    private NetworkSnapshot(long seconds, boolean paused,
+                            List<IntersectionState> intersections) {
+        this.seconds = seconds;
+        this.paused = paused;
+        this.intersections = intersections;
+        this.byId = new HashMap<>();
+        int routes = 0;
+        for (IntersectionState intersection : intersections) {
+            byId.put(intersection.id, intersection);
+            routes += intersection.routes.size();
+        }
+        this.routeCount = routes;
+    }
+
+    /**
+     * Copies the state of the given network. Must not run at the same time
+     * as a tick or a change to the network.
+     *
+     * @param network the network to copy
+     * @param seconds number of seconds simulated so far
+     * @param paused whether the simulation is paused
+     * @return the snapshot
+     */
+    public static NetworkSnapshot of(Network network, long seconds,
+                                     boolean paused) {
+        List<Intersection> live = network.getIntersections();
+        List<IntersectionState> intersections = new ArrayList<>(live.size());
+        for (Intersection intersection : live) {
+            intersections.add(new IntersectionState(intersection));
+        }
+        return new NetworkSnapshot(seconds, paused,
+                Collections.unmodifiableList(intersections));
+    }
+
+    /**
+     * @return number of seconds simulated when the snapshot was taken
+     */
+    public long getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * @return whether the simulation was paused when the snapshot was taken
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * @return number of intersections in the network
+     */
+    public int intersectionCount() {
+        return intersections.size();
+    }
+
+    /**
+     * @return number of routes in the network
+     */
+    public int routeCount() {
+        return routeCount;
+    }
+
+    /**
+     * Returns the state of the intersection with the given ID.
+     *
+     * @param id ID of the intersection
+     * @return the intersection's state, or null if there is none with the ID
+     */
+    public IntersectionState getIntersection(String id) {
+        return byId.get(id);
+    }
+
+    /**
+     * Returns the state of the route between the given intersections.
+     *
+     * @param from ID of the intersection the route starts at
+     * @param to ID of the intersection the route ends at
+     * @return the route's state, or null if there is no such route
+     */
+    public RouteState getRoute(String from, String to) {
+        IntersectionState intersection = byId.get(to);
+        if (intersection == null) {
+            return null;
+        }
+        for (RouteState route : intersection.routes) {
+            if (route.from.equals(from)) {
+                return route;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return JSON object with the time, pause state and size of the network
+     */
+    public String statusJson() {
+        return "{\"seconds\":" + seconds + ",\"paused\":" + paused
+                + ",\"intersections\":" + intersections.size()
+                + ",\"routes\":" + routeCount + "}";
+    }
+
+    /**
+     * @return JSON array of every intersection, see
+     * {@link IntersectionState#toJson()}
+     */
+    public String intersectionsJson() {
+        String json = intersectionsJson;
+        if (json == null) {
+            StringBuilder builder = new StringBuilder("[");
+            for (IntersectionState intersection : intersections) {
+                if (builder.length() > 1) {
+                    builder.append(',');
+                }
+                intersection.appendJson(builder);
+            }
+            json = intersectionsJson = builder.append(']').toString();
+        }
+        return json;
+    }
+
+    /**
+     * @return JSON array of every route, see {@link RouteState#toJson()}
+     */
+    public String routesJson() {
+        String json = routesJson;
+        if (json == null) {
+            StringBuilder builder = new StringBuilder("[");
+            for (IntersectionState intersection : intersections) {
+                for (RouteState route : intersection.routes) {
+                    if (builder.length() > 1) {
+                        builder.append(',');
+                    }
+                    route.appendJson(builder);
+                }
+            }
+            json = routesJson = builder.append(']').toString();
+        }
+        return json;
+    }
+
+    /**
+     * Appends a JSON string literal for the given text.
+     *
+     * @param builder builder to append to
+     * @param text the text to quote
+     */
+    static void appendQuoted(StringBuilder builder, String text) {
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '"' || c == '\\') {
+                builder.append('\\').append(c);
+            } else if (c < 0x20) {
+                builder.append(String.format("\\u%04x", (int) c));
+            } else {
+                builder.append(c);
+            }
+        }
+        builder.append('"');
+    }
+
+    /**
+     * The state of an intersection and the routes going into it.
+     */
+    public static class IntersectionState {
+        private final String id;
+        /** Duration of the traffic lights, or -1 if there are none */
+        private final int lightDuration;
+        /** IDs of the intersections given green in turn by the lights */
+        private final List<String> lightOrder;
+        private final List<RouteState> routes;
+
+        private IntersectionState(Intersection intersection) {
+            id = intersection.getId();
+            List<Route> connections = intersection.getConnectionsView();
+            IntersectionLights lights = intersection.getTrafficLights();
+            lightDuration = lights == null ? -1 : lights.getDuration();
+            List<String> order = new ArrayList<>();
+            List<RouteState> routes = new ArrayList<>(connections.size());
+            for (Route route : connections) {
+                // Routes into an intersection with lights are in light order
+                if (lights != null) {
+                    order.add(route.getFrom().getId());
+                }
+                routes.add(new RouteState(route, id));
+            }
+            this.lightOrder = Collections.unmodifiableList(order);
+            this.routes = Collections.unmodifiableList(routes);
+        }
+
+        /**
+         * @return ID of the intersection
+         */
+        public String getId() {
+            return id;
+        }
+
+        /**
+         * @return routes going into the intersection
+         */
+        public List<RouteState> getRoutes() {
+            return routes;
+        }
+
+        /**
+         * Returns this intersection as JSON, for example
+         * {"id":"A","lights":{"duration":8,"order":["B","C"]},"routes":[...]}
+         * where "lights" is null if the intersection has no traffic lights.
+         *
+         * @return JSON object for this intersection
+         */
+        public String toJson() {
+            StringBuilder builder = new StringBuilder();
+            appendJson(builder);
+            return builder.toString();
+        }
+
+        private void appendJson(StringBuilder builder) {
+            builder.append("{\"id\":");
+            appendQuoted(builder, id);
+            builder.append(",\"lights\":");
+            if (lightDuration < 0) {
+                builder.append("null");
+            } else {
+                builder.append("{\"duration\":").append(lightDuration)
+                        .append(",\"order\":[");
+                for (int i = 0; i < lightOrder.size(); i++) {
+                    if (i > 0) {
+                        builder.append(',');
+                    }
+                    appendQuoted(builder, lightOrder.get(i));
+                }
+                builder.append("]}");
+            }
+            builder.append(",\"routes\":[");
+            for (int i = 0; i < routes.size(); i++) {
+                if (i > 0) {
+                    builder.append(',');
+                }
+                routes.get(i).appendJson(builder);
+            }
+            builder.append("]}");
+        }
+    }
+
+    /**
+     * The state of a route.
+     */
+    public static class RouteState {
+        private final String from, to;
+        private final int speed, congestion, sensors;
+        private final boolean speedSign;
+        /** Signal of the route's traffic light, or null if it has none */
+        private final String signal;
+
+        private RouteState(Route route, String to) {
+            this.from = route.getFrom().getId();
+            this.to = to;
+            this.speed = route.getSpeed();
+            this.congestion = route.getCongestion();
+            this.sensors = route.getSensorCount();
+            this.speedSign = route.hasSpeedSign();
+            this.signal = route.getTrafficLight() == null ? null
+                    : route.getTrafficLight().getSignal().name();
+        }
+
+        /**
+         * @return current speed limit of the route
+         */
+        public int getSpeed() {
+            return speed;
+        }
+
+        /**
+         * @return congestion of the route
+         */
+        public int getCongestion() {
+            return congestion;
+        }
+
+        /**
+         * @return signal shown to the route, or null if it has no lights
+         */
+        public String getSignal() {
+            return signal;
+        }
+
+        /**
+         * Returns this route as JSON, for example
+         * {"from":"A","to":"B","speed":60,"congestion":12,"signal":"GREEN",
+         * "speedSign":true,"sensors":2}
+         * where "signal" is null if the route has no traffic light.
+         *
+         * @return JSON object for this route
+         */
+        public String toJson() {
+            StringBuilder builder = new StringBuilder();
+            appendJson(builder);
+            return builder.toString();
+        }
+
+        private void appendJson(StringBuilder builder) {
+            builder.append("{\"from\":");
+            appendQuoted(builder, from);
+            builder.append(",\"to\":");
+            appendQuoted(builder, to);
+            builder.append(",\"speed\":").append(speed)
+                    .append(",\"congestion\":").append(congestion)
+                    .append(",\"signal\":");
+            if (signal == null) {
+                builder.append("null");
+            } else {
+                appendQuoted(builder, signal);
+            }
+            builder.append(",\"speedSign\":").append(speedSign)
+                    .append(",\"sensors\":").append(sensors).append('}');
+        }
+    }
+}
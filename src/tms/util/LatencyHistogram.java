@@ -0,0 +1,148 @@
+package tms.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts recorded values, such as durations in nanoseconds, in buckets of
+ * bounded relative error, in the style of HdrHistogram.
+ * <p>
+ * Values below 128 have a bucket each. Above that, each power of two range
+ * is split into 64 buckets, so any value reported, such as a percentile, is
+ * within 1/64 (about 1.6%) of a recorded value.
+ * <p>
+ * Values must be recorded by one thread at a time, such as the simulation
+ * thread, but can be read from any thread while they are recorded. Since
+ * there is only one writer, recording uses ordered writes rather than
+ * atomic increments, and allocates nothing, so it is cheap enough to do
+ * for every timed item on every tick.
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 7;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int HALF = SUB_BUCKETS / 2;
+
+    private final long highestTrackableValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong total = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Creates an empty histogram.
+     *
+     * @param highestTrackableValue largest value that can be told apart from
+     *                              larger values; larger values are recorded
+     *                              as this value
+     * @throws IllegalArgumentException if the highest value is less than 1
+     */
+    public LatencyHistogram(long highestTrackableValue) {
+        if (highestTrackableValue < 1) {
+            throw new IllegalArgumentException(
+                    "Highest trackable value must be >= 1");
+        }
+        this.highestTrackableValue = highestTrackableValue;
+        this.counts = new AtomicLongArray(index(highestTrackableValue) + 1);
+    }
+
+    /**
+     * Records a value. Negative values are recorded as 0. Must not be called
+     * by two threads at the same time.
+     *
+     * @param value the value to record
+     */
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, highestTrackableValue));
+        int index = index(value);
+        counts.lazySet(index, counts.get(index) + 1);
+        count.lazySet(count.get() + 1);
+        total.lazySet(total.get() + value);
+        if (value > max.get()) {
+            max.lazySet(value);
+        }
+    }
+
+    /**
+     * @return number of values recorded
+     */
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @return largest value recorded, or 0 if there are none
+     */
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @return mean of the values recorded, or 0 if there are none
+     */
+    public double getMean() {
+        long n = count.get();
+        return n == 0 ? 0 : (double) total.get() / n;
+    }
+
+    /**
+     * Returns the smallest value that the given percentage of recorded
+     * values are less than or equal to, to within the precision of the
+     * buckets.
+     *
+     * @param percentile between 0 and 100, e.g. 99 for the 99th percentile
+     * @return the value at the percentile, or 0 if there are no values
+     */
+    public long getValueAtPercentile(double percentile) {
+        long n = count.get();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * n));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueAt(i), getMax());
+            }
+        }
+        // Values recorded while counting; the largest will do
+        return getMax();
+    }
+
+    /**
+     * Forgets every recorded value. Values recorded at the same time may be
+     * partly forgotten.
+     */
+    public void reset() {
+        for (int i = 0; i < counts.length(); i++) {
+            counts.set(i, 0);
+        }
+        count.set(0);
+        total.set(0);
+        max.set(0);
+    }
+
+    /**
+     * Returns the bucket holding the given non-negative value.
+     */
+    private static int index(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        // Chosen so that (value >>> shift) is in [HALF, SUB_BUCKETS)
+        int shift = 64 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * HALF + (int) (value >>> shift);
+    }
+
+    /**
+     * Returns the largest value held by the given bucket.
+     */
+    private static long highestValueAt(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+        int shift = index / HALF - 1;
+        long subBucket = index - shift * HALF;
+        return ((subBucket + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,134 @@
+package tms.util;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+
+/**
+ * Estimates how many bytes objects take on the heap from the layout rules
+ * of the HotSpot JVM, without an instrumentation agent.
+ * <p>
+ * An object takes a header, then its instance fields, including inherited
+ * ones, rounded up to a multiple of eight bytes. An array takes a header
+ * and a length, then its elements, also rounded up. References and the
+ * class pointer in the header take four bytes when the JVM compresses
+ * them, as it does for heaps under 32 GB, and eight bytes otherwise. Gaps
+ * left when packing fields are ignored, so estimates may be slightly low.
+ */
+public final class ObjectLayout {
+    /** Bytes taken by a reference */
+    public static final int REFERENCE_BYTES;
+    /** Bytes taken by the header of an object */
+    public static final int HEADER_BYTES;
+    /** Bytes taken by the header and length of an array */
+    public static final int ARRAY_HEADER_BYTES;
+
+    private static final int ALIGNMENT = 8;
+
+    private static final ClassValue<Long> SHALLOW_SIZES =
+            new ClassValue<>() {
+                @Override
+                protected Long computeValue(Class<?> type) {
+                    long bytes = HEADER_BYTES;
+                    for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                        for (Field field : c.getDeclaredFields()) {
+                            if (!Modifier.isStatic(field.getModifiers())) {
+                                bytes += bytesOf(field.getType());
+                            }
+                        }
+                    }
+                    return align(bytes);
+                }
+            };
+
+    static {
+        boolean compressedOops = vmOption("UseCompressedOops", true);
+        boolean compressedClasses = vmOption("UseCompressedClassPointers",
+                compressedOops);
+        REFERENCE_BYTES = compressedOops ? 4 : 8;
+        // Mark word, then the class pointer
+        HEADER_BYTES = 8 + (compressedClasses ? 4 : 8);
+        ARRAY_HEADER_BYTES = (int) align(HEADER_BYTES + 4);
+    }
+
+    private ObjectLayout() {}
+
+    /**
+     * Returns the bytes taken by an object of the given class, not counting
+     * the objects it refers to.
+     *
+     * @param type class of the object
+     * @return estimated size in bytes
+     */
+    public static long shallowSize(Class<?> type) {
+        return SHALLOW_SIZES.get(type);
+    }
+
+    /**
+     * Returns the bytes taken by an array.
+     *
+     * @param componentType type of the elements, e.g. int.class
+     * @param length number of elements
+     * @return estimated size in bytes
+     */
+    public static long arraySize(Class<?> componentType, int length) {
+        return align(ARRAY_HEADER_BYTES
+                + (long) bytesOf(componentType) * length);
+    }
+
+    /**
+     * Returns the bytes taken by a string and its characters, assuming one
+     * byte per character when every character is Latin-1, as the JVM stores
+     * them by default.
+     *
+     * @param text the string
+     * @return estimated size in bytes
+     */
+    public static long stringSize(String text) {
+        boolean latin1 = true;
+        for (int i = 0; i < text.length() && latin1; i++) {
+            latin1 = text.charAt(i) < 256;
+        }
+        return shallowSize(String.class) + arraySize(byte.class,
+                latin1 ? text.length() : 2 * text.length());
+    }
+
+    /**
+     * Returns the bytes taken by a field or array element of the given type.
+     *
+     * @param type primitive or reference type
+     * @return size in bytes
+     */
+    public static int bytesOf(Class<?> type) {
+        if (type == long.class || type == double.class) {
+            return 8;
+        } else if (type == int.class || type == float.class) {
+            return 4;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == byte.class || type == boolean.class) {
+            return 1;
+        }
+        return REFERENCE_BYTES;
+    }
+
+    private static long align(long bytes) {
+        return (bytes + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+    /**
+     * Returns the value of a boolean HotSpot option, or the given default if
+     * the JVM does not have it.
+     */
+    private static boolean vmOption(String name, boolean otherwise) {
+        try {
+            return Boolean.parseBoolean(ManagementFactory.getPlatformMXBean(
+                    HotSpotDiagnosticMXBean.class).getVMOption(name)
+                    .getValue());
+        } catch (RuntimeException | LinkageError e) {
+            return otherwise;
+        }
+    }
+}
@@ -0,0 +1,231 @@
+package tms.util;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Drives a {@link TimedItem}, normally the {@link TimedItemManager}, once
+ * per period on a dedicated simulation thread, so that slow ticks do not
+ * hold up drawing and slow drawing does not hold up simulated time.
+ * <p>
+ * Ticks are scheduled at a fixed rate; if a tick overruns, the next one
+ * starts as soon as it finishes. After each tick the clock publishes an
+ * immutable {@link Snapshot} through an atomic reference. A user interface
+ * polls {@link SimulationClock#getSnapshot()} once per frame, which never
+ * blocks, and only sees the latest snapshot, so ticks it could not keep up
+ * with are coalesced into one update.
+ * <p>
+ * Changes to the simulated items made from other threads, such as adding a
+ * sensor, must be made through {@link SimulationClock#runExclusive} so that
+ * they never happen part way through a tick.
+ */
+public class SimulationClock {
+    private final TimedItem timedItem;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final AtomicReference<Snapshot> snapshot =
+            new AtomicReference<>(new Snapshot(0, 0, 0));
+    private final TickMetrics metrics = TickMetrics.getTickMetrics();
+    private volatile boolean paused;
+
+    private ScheduledExecutorService scheduler;
+    private ScheduledFuture<?> ticking;
+    /** Used by the simulation thread to measure how late each tick is */
+    private long firstTickNanos, periodNanos, scheduledTicks;
+
+    /**
+     * Creates a clock for the given item. The clock does not tick until it
+     * is started.
+     *
+     * @param timedItem item to call once per tick
+     */
+    public SimulationClock(TimedItem timedItem) {
+        this.timedItem = timedItem;
+    }
+
+    /**
+     * Starts ticking on the simulation thread, once per period. Has no
+     * effect if the clock is already running.
+     *
+     * @param period time between the start of each tick
+     * @param unit unit of the period
+     */
+    public synchronized void start(long period, TimeUnit unit) {
+        if (ticking != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "simulation");
+            // Must not keep the application running once the window closes
+            thread.setDaemon(true);
+            return thread;
+        });
+        periodNanos = unit.toNanos(period);
+        firstTickNanos = System.nanoTime() + periodNanos;
+        scheduledTicks = 0;
+        ticking = scheduler.scheduleAtFixedRate(this::scheduledTick, period,
+                period, unit);
+    }
+
+    /**
+     * Stops ticking. A tick in progress is allowed to finish.
+     */
+    public synchronized void stop() {
+        if (ticking != null) {
+            ticking.cancel(false);
+            scheduler.shutdown();
+            ticking = null;
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Returns true if the clock is ticking on the simulation thread.
+     *
+     * @return whether the clock has been started and not stopped
+     */
+    public synchronized boolean isRunning() {
+        return ticking != null;
+    }
+
+    /**
+     * Pauses or resumes the simulation. While paused, scheduled ticks do
+     * nothing.
+     *
+     * @param paused whether the simulation should be paused
+     */
+    public void setPaused(boolean paused) {
+        this.paused = paused;
+    }
+
+    /**
+     * Returns true if the simulation is paused.
+     *
+     * @return whether the simulation is paused
+     */
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Advances the simulation by one tick on the calling thread, unless it
+     * is paused, and publishes a new snapshot.
+     *
+     * @return true if the simulation was advanced
+     */
+    public boolean tick() {
+        if (paused) {
+            return false;
+        }
+        lock.lock();
+        try {
+            long start = System.nanoTime();
+            timedItem.oneSecond();
+            long end = System.nanoTime();
+            snapshot.set(new Snapshot(snapshot.get().getTicks() + 1,
+                    end - start, end));
+            if (metrics.isEnabled()) {
+                metrics.recordTick(end - start);
+            }
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Runs an action that changes the simulated items while no tick is in
+     * progress, waiting for the current tick (if any) to finish first.
+     *
+     * @param action the action to run on the calling thread
+     */
+    public void runExclusive(Runnable action) {
+        lock.lock();
+        try {
+            action.run();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Like {@link SimulationClock#runExclusive(Runnable)}, returning the
+     * result of the action.
+     *
+     * @param action the action to run on the calling thread
+     * @param <T> type of the result
+     * @return the result of the action
+     */
+    public <T> T callExclusive(Supplier<T> action) {
+        lock.lock();
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the snapshot published after the most recent tick. Never
+     * blocks.
+     *
+     * @return the latest snapshot
+     */
+    public Snapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    private void scheduledTick() {
+        long expected = firstTickNanos + scheduledTicks++ * periodNanos;
+        if (metrics.isEnabled()) {
+            metrics.recordTickLag(System.nanoTime() - expected);
+        }
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // An exception would cancel every later tick; report and carry on
+            System.err.println("Error during simulation tick: " + e);
+        }
+    }
+
+    /**
+     * The state of the clock after a tick, as seen by other threads.
+     */
+    public static final class Snapshot {
+        private final long ticks;
+        private final long tickNanos;
+        private final long finishedNanos;
+
+        Snapshot(long ticks, long tickNanos, long finishedNanos) {
+            this.ticks = ticks;
+            this.tickNanos = tickNanos;
+            this.finishedNanos = finishedNanos;
+        }
+
+        /**
+         * @return number of ticks completed since the clock was created
+         */
+        public long getTicks() {
+            return ticks;
+        }
+
+        /**
+         * @return time taken by the most recent tick, in nanoseconds
+         */
+        public long getTickNanos() {
+            return tickNanos;
+        }
+
+        /**
+         * @return value of {@link System#nanoTime()} when the most recent
+         * tick finished
+         */
+        public long getFinishedNanos() {
+            return finishedNanos;
+        }
+    }
+}
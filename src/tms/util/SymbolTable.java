@@ -0,0 +1,137 @@
+package tms.util;
+
+import java.util.Arrays;
+
+/**
+ * Gives each distinct identifier string a dense int handle: the first
+ * identifier added is 0, the next is 1, and so on. Handles are never
+ * reused or removed.
+ * <p>
+ * Each network has its own table, so that the model can compare, hash and
+ * index intersections by their handle and only deal with strings when
+ * reading or writing files and at the public API. Intersections created
+ * outside a network share one more table. Handles from different tables
+ * are unrelated.
+ * <p>
+ * Identifiers are found by open addressing with linear probing over an
+ * array of handles, so the table holds no boxed values or entry objects.
+ * It is not safe to add identifiers from more than one thread at a time.
+ */
+public class SymbolTable {
+    private static final int MIN_CAPACITY = 4;
+
+    /** Identifier of each handle */
+    private String[] names;
+    /** Handle + 1 in each slot, or 0 for an empty slot; a power of two long */
+    private int[] slots;
+    private int size;
+
+    /**
+     * Creates an empty table.
+     */
+    public SymbolTable() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * Creates an empty table with room for the given number of identifiers
+     * before it needs to grow.
+     *
+     * @param expected number of identifiers expected
+     */
+    public SymbolTable(int expected) {
+        expected = Math.max(expected, MIN_CAPACITY);
+        names = new String[expected];
+        // Keep the slots at most half full
+        slots = new int[Integer.highestOneBit(expected * 2 - 1) * 2];
+    }
+
+    /**
+     * Returns the handle of the given identifier, adding it if it is new.
+     *
+     * @param name the identifier
+     * @return the handle of the identifier
+     */
+    public int intern(String name) {
+        int slot = slot(name);
+        if (slots[slot] != 0) {
+            return slots[slot] - 1;
+        }
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+        }
+        names[size] = name;
+        slots[slot] = ++size;
+        if (size * 2 > slots.length) {
+            rehash(slots.length * 2);
+        }
+        return size - 1;
+    }
+
+    /**
+     * Returns the handle of the given identifier.
+     *
+     * @param name the identifier
+     * @return the handle of the identifier, or -1 if it has not been added
+     */
+    public int find(String name) {
+        return slots[slot(name)] - 1;
+    }
+
+    /**
+     * Returns the identifier with the given handle.
+     *
+     * @param handle a handle returned by this table
+     * @return the identifier
+     * @throws IndexOutOfBoundsException if the handle is not in this table
+     */
+    public String name(int handle) {
+        if (handle < 0 || handle >= size) {
+            throw new IndexOutOfBoundsException("No identifier with handle "
+                    + handle);
+        }
+        return names[handle];
+    }
+
+    /**
+     * @return number of identifiers, which is one more than the largest
+     * handle
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the slot holding the given identifier, or the empty slot where
+     * it would be added.
+     */
+    private int slot(String name) {
+        int mask = slots.length - 1;
+        int slot = mix(name.hashCode()) & mask;
+        while (slots[slot] != 0 && !names[slots[slot] - 1].equals(name)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rehash(int capacity) {
+        slots = new int[capacity];
+        int mask = capacity - 1;
+        for (int handle = 0; handle < size; handle++) {
+            int slot = mix(names[handle].hashCode()) & mask;
+            while (slots[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = handle + 1;
+        }
+    }
+
+    /**
+     * Spreads the bits of a string hash code, since similar identifiers such
+     * as "I1" and "I2" have similar hash codes.
+     */
+    private static int mix(int hash) {
+        hash *= 0x9E3779B9;
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,22 @@
+package tms.util;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Java Flight Recorder event for one call to
+ * {@link TimedItemManager#oneSecond()}, so that slow ticks can be lined up
+ * with garbage collection, I/O and other activity in a recording.
+ */
+@Name("tms.Tick")
+@Label("Simulation Tick")
+@Category({"TMS", "Simulation"})
+@Description("One simulated second, advancing every timed item")
+public class TickEvent extends Event {
+    @Label("Timed Items")
+    @Description("Number of timed items advanced by the tick")
+    public int timedItems;
+}
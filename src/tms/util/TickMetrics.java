@@ -0,0 +1,274 @@
+package tms.util;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures where the time of each simulated second goes: how long each tick
+ * takes, how long each type of {@link TimedItem} takes to advance, how many
+ * items are advanced per tick, how late scheduled ticks start, and how long
+ * a finished tick waits to be shown.
+ * <p>
+ * Measuring is off unless the system property "tms.metrics" is "true" or it
+ * is turned on through JMX. While off, the only cost is one volatile read
+ * per tick. The measurements are published as the MBean
+ * {@value #OBJECT_NAME}, and if the system property
+ * "tms.metrics.logSeconds" is set, a summary line is also printed that
+ * often.
+ * <p>
+ * This is a singleton class, like {@link TimedItemManager}.
+ */
+public class TickMetrics implements TickMetricsMBean {
+    /** Name the metrics are registered under with the MBean server */
+    public static final String OBJECT_NAME = "tms:type=TickMetrics";
+
+    /** Longest duration that is measured precisely: one hour */
+    private static final long HIGHEST_NANOS = TimeUnit.HOURS.toNanos(1);
+
+    private static TickMetrics metrics;
+
+    private volatile boolean enabled;
+    private final LatencyHistogram tickDurations =
+            new LatencyHistogram(HIGHEST_NANOS);
+    private final LatencyHistogram tickLags =
+            new LatencyHistogram(HIGHEST_NANOS);
+    private final LatencyHistogram displayLags =
+            new LatencyHistogram(HIGHEST_NANOS);
+    private final LatencyHistogram itemsPerTick =
+            new LatencyHistogram(Integer.MAX_VALUE);
+    private final Map<Class<?>, LatencyHistogram> itemDurations =
+            new ConcurrentHashMap<>();
+
+    private ScheduledExecutorService logger;
+
+    private TickMetrics() {
+        enabled = Boolean.getBoolean("tms.metrics");
+        try {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                    new ObjectName(OBJECT_NAME));
+        } catch (JMException e) {
+            System.err.println("Error registering tick metrics: " + e);
+        }
+        Integer logSeconds = Integer.getInteger("tms.metrics.logSeconds");
+        if (logSeconds != null && logSeconds > 0) {
+            startLogging(logSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Gets a singleton instance of the TickMetrics and makes one if
+     * required.
+     *
+     * @return the singleton instance of the TickMetrics
+     */
+    public static synchronized TickMetrics getTickMetrics() {
+        if (metrics == null) {
+            metrics = new TickMetrics();
+        }
+        return metrics;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    @Override
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * Records the time taken by a whole tick.
+     *
+     * @param nanos duration of the tick in nanoseconds
+     */
+    public void recordTick(long nanos) {
+        tickDurations.record(nanos);
+    }
+
+    /**
+     * Records how late a scheduled tick started.
+     *
+     * @param nanos time since the tick should have started, in nanoseconds
+     */
+    public void recordTickLag(long nanos) {
+        tickLags.record(nanos);
+    }
+
+    /**
+     * Records how long a finished tick waited to be shown to the user.
+     *
+     * @param nanos time since the tick finished, in nanoseconds
+     */
+    public void recordDisplayLag(long nanos) {
+        displayLags.record(nanos);
+    }
+
+    /**
+     * Records the number of timed items advanced by a tick.
+     *
+     * @param count number of items
+     */
+    public void recordItemsPerTick(int count) {
+        itemsPerTick.record(count);
+    }
+
+    /**
+     * Returns the histogram of the time taken to advance one item of the
+     * given type, in nanoseconds.
+     *
+     * @param type class of the timed item
+     * @return the histogram, created if this is the first item of the type
+     */
+    public LatencyHistogram getItemDurations(Class<?> type) {
+        return itemDurations.computeIfAbsent(type,
+                t -> new LatencyHistogram(HIGHEST_NANOS));
+    }
+
+    /**
+     * @return histogram of the time taken by each tick, in nanoseconds
+     */
+    public LatencyHistogram getTickDurations() {
+        return tickDurations;
+    }
+
+    /**
+     * @return histogram of how late scheduled ticks started, in nanoseconds
+     */
+    public LatencyHistogram getTickLags() {
+        return tickLags;
+    }
+
+    /**
+     * @return histogram of how long finished ticks waited to be shown, in
+     * nanoseconds
+     */
+    public LatencyHistogram getDisplayLags() {
+        return displayLags;
+    }
+
+    /**
+     * @return histogram of the number of items advanced per tick
+     */
+    public LatencyHistogram getItemsPerTick() {
+        return itemsPerTick;
+    }
+
+    @Override
+    public long getTickCount() {
+        return tickDurations.getCount();
+    }
+
+    @Override
+    public double getTickMeanMillis() {
+        return tickDurations.getMean() / 1e6;
+    }
+
+    @Override
+    public double getTickP99Millis() {
+        return tickDurations.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getTickMaxMillis() {
+        return tickDurations.getMax() / 1e6;
+    }
+
+    @Override
+    public double getTickLagP99Millis() {
+        return tickLags.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getDisplayLagP99Millis() {
+        return displayLags.getValueAtPercentile(99) / 1e6;
+    }
+
+    @Override
+    public double getItemsPerTickMean() {
+        return itemsPerTick.getMean();
+    }
+
+    @Override
+    public String[] getItemTypeSummaries() {
+        Map<String, LatencyHistogram> sorted = new TreeMap<>();
+        itemDurations.forEach((type, histogram) ->
+                sorted.put(type.getSimpleName(), histogram));
+        List<String> summaries = new ArrayList<>();
+        sorted.forEach((type, histogram) -> summaries.add(String.format(
+                Locale.ROOT, "%s n=%d p50=%dns p99=%dns max=%dns", type,
+                histogram.getCount(), histogram.getValueAtPercentile(50),
+                histogram.getValueAtPercentile(99), histogram.getMax())));
+        return summaries.toArray(new String[0]);
+    }
+
+    @Override
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder(String.format(Locale.ROOT,
+                "ticks=%d tick p50=%.3fms p99=%.3fms max=%.3fms"
+                        + " lag p99=%.3fms display lag p99=%.3fms"
+                        + " items/tick=%.0f",
+                getTickCount(),
+                tickDurations.getValueAtPercentile(50) / 1e6,
+                getTickP99Millis(), getTickMaxMillis(), getTickLagP99Millis(),
+                getDisplayLagP99Millis(), getItemsPerTickMean()));
+        for (String type : getItemTypeSummaries()) {
+            summary.append(" | ").append(type);
+        }
+        return summary.toString();
+    }
+
+    @Override
+    public void reset() {
+        tickDurations.reset();
+        tickLags.reset();
+        displayLags.reset();
+        itemsPerTick.reset();
+        itemDurations.clear();
+    }
+
+    /**
+     * Prints a summary of the measurements to standard output once per
+     * period, on a daemon thread, until {@link #stopLogging()} is called.
+     * Has no effect if already logging.
+     *
+     * @param period time between summaries
+     * @param unit unit of the period
+     */
+    public synchronized void startLogging(long period, TimeUnit unit) {
+        if (logger != null) {
+            return;
+        }
+        logger = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "tick-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        logger.scheduleAtFixedRate(() -> {
+            if (enabled) {
+                System.out.println("[metrics] " + getSummary());
+            }
+        }, period, period, unit);
+    }
+
+    /**
+     * Stops printing summaries.
+     */
+    public synchronized void stopLogging() {
+        if (logger != null) {
+            logger.shutdown();
+            logger = null;
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package tms.util;
+
+/**
+ * The management interface of {@link TickMetrics}, registered with the
+ * platform MBean server as {@value TickMetrics#OBJECT_NAME}. Times are in
+ * milliseconds.
+ */
+public interface TickMetricsMBean {
+    /**
+     * @return whether ticks are being measured
+     */
+    boolean isEnabled();
+
+    /**
+     * Starts or stops measuring ticks.
+     *
+     * @param enabled whether ticks should be measured
+     */
+    void setEnabled(boolean enabled);
+
+    /**
+     * @return number of ticks measured
+     */
+    long getTickCount();
+
+    /**
+     * @return mean time taken by a tick
+     */
+    double getTickMeanMillis();
+
+    /**
+     * @return 99th percentile of the time taken by a tick
+     */
+    double getTickP99Millis();
+
+    /**
+     * @return longest time taken by a tick
+     */
+    double getTickMaxMillis();
+
+    /**
+     * @return 99th percentile of how late scheduled ticks started
+     */
+    double getTickLagP99Millis();
+
+    /**
+     * @return 99th percentile of the time from the end of a tick until the
+     * user interface showed it
+     */
+    double getDisplayLagP99Millis();
+
+    /**
+     * @return mean number of timed items advanced per tick
+     */
+    double getItemsPerTickMean();
+
+    /**
+     * @return one line per type of timed item, with the time taken to
+     * advance one item of that type
+     */
+    String[] getItemTypeSummaries();
+
+    /**
+     * @return every measurement on one line, as written to the log
+     */
+    String getSummary();
+
+    /**
+     * Forgets every measurement.
+     */
+    void reset();
+}
@@ -1,7 +1,10 @@
 package tms.util;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
 
 /**
  * Manages timed items for the simulation. All timed items in the simulation
@@ -25,7 +28,11 @@ import java.util.List;
  */
 public class TimedItemManager implements TimedItem {
     private static TimedItemManager manager;
-    private List<TimedItem> timedItems;
+    /** Registered items, in order, followed by unused space */
+    private TimedItem[] timedItems;
+    /** Number of registered items */
+    private int timedItemCount;
+    private final TickMetrics metrics = TickMetrics.getTickMetrics();
 
     /**
      * Creates the timed item manager that stores all the {@link TimedItem}s
@@ -33,7 +40,7 @@ public class TimedItemManager implements TimedItem {
      * @ass1
      */
     private TimedItemManager() {
-        timedItems = new ArrayList<TimedItem>();
+        timedItems = new TimedItem[16];
     }
 
     /**
@@ -44,7 +51,64 @@ public class TimedItemManager implements TimedItem {
      * @ass1
      */
     public void registerTimedItem(TimedItem timedItem) {
-        timedItems.add(timedItem);
+        if (timedItemCount == timedItems.length) {
+            timedItems = Arrays.copyOf(timedItems, timedItemCount * 2);
+        }
+        timedItems[timedItemCount++] = timedItem;
+    }
+
+    /**
+     * Stops calling the given TimedItem on
+     * {@link TimedItemManager#oneSecond()}. Has no effect if the item is not
+     * registered.
+     * <p>
+     * Items are searched from the most recently registered, so removing
+     * items in the reverse of the order they were registered in is fast.
+     *
+     * @param timedItem the TimedItem to deregister
+     */
+    public void deregisterTimedItem(TimedItem timedItem) {
+        for (int i = timedItemCount - 1; i >= 0; i--) {
+            if (timedItems[i] == timedItem) {
+                System.arraycopy(timedItems, i + 1, timedItems, i,
+                        timedItemCount - i - 1);
+                timedItems[--timedItemCount] = null;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Stops calling each of the given TimedItems on
+     * {@link TimedItemManager#oneSecond()}, in one pass over the registered
+     * items. Items that are not registered are ignored.
+     *
+     * @param items the TimedItems to deregister
+     */
+    public void deregisterTimedItems(Collection<? extends TimedItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        Set<TimedItem> removed = Collections.newSetFromMap(
+                new IdentityHashMap<>(items.size()));
+        removed.addAll(items);
+        int kept = 0;
+        for (int i = 0; i < timedItemCount; i++) {
+            if (!removed.contains(timedItems[i])) {
+                timedItems[kept++] = timedItems[i];
+            }
+        }
+        Arrays.fill(timedItems, kept, timedItemCount, null);
+        timedItemCount = kept;
+    }
+
+    /**
+     * Returns the number of registered items.
+     *
+     * @return number of items called on each {@link #oneSecond()}
+     */
+    public int getTimedItemCount() {
+        return timedItemCount;
     }
 
     /**
@@ -62,11 +126,59 @@ public class TimedItemManager implements TimedItem {
 
     /**
      * Calls {@code oneSecond()} on each registered {@link TimedItem}.
+     * <p>
+     * If {@link TickMetrics} are enabled, each item is timed as well. Each
+     * call is recorded as a {@link TickEvent} when Flight Recorder is on.
+     * <p>
+     * Items registered by another item during this call are first called
+     * on the next call.
      * @ass1
      */
     public void oneSecond() {
-        for (TimedItem timedItem : timedItems) {
+        TickEvent event = new TickEvent();
+        event.begin();
+        TimedItem[] items = timedItems;
+        int count = timedItemCount;
+        if (metrics.isEnabled()) {
+            measuredOneSecond(items, count);
+        } else {
+            for (int i = 0; i < count; i++) {
+                items[i].oneSecond();
+            }
+        }
+        if (event.shouldCommit()) {
+            event.timedItems = count;
+            event.commit();
+        }
+    }
+
+    private void measuredOneSecond(TimedItem[] items, int count) {
+        // There are only a few types of item, so a linear search is fastest
+        Class<?>[] types = new Class<?>[8];
+        LatencyHistogram[] durations = new LatencyHistogram[8];
+        int typeCount = 0;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            TimedItem timedItem = items[i];
             timedItem.oneSecond();
+            long end = System.nanoTime();
+            Class<?> type = timedItem.getClass();
+            int t = 0;
+            while (t < typeCount && types[t] != type) {
+                t++;
+            }
+            if (t == typeCount) {
+                if (typeCount == types.length) {
+                    types = Arrays.copyOf(types, 2 * typeCount);
+                    durations = Arrays.copyOf(durations, 2 * typeCount);
+                }
+                types[t] = type;
+                durations[t] = metrics.getItemDurations(type);
+                typeCount++;
+            }
+            durations[t].record(end - start);
+            start = end;
         }
+        metrics.recordItemsPerTick(count);
     }
 }
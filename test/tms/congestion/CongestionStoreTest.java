@@ -0,0 +1,214 @@
+package tms.congestion;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tms.network.Network;
+import tms.sensors.DemoPressurePad;
+
+import java.nio.channels.FileChannel;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that ranges read back the values appended, with missing values
+ *     for gaps, short rows and values out of range.
+ *  2) Test summaries by minute and hour, and over ranges cutting blocks.
+ *  3) Test that a reopened store keeps its blocks and series, drops an
+ *     incomplete block and carries on after the last second.
+ *  4) Test that the recorder keys routes by their ends and records removed
+ *     routes as missing.
+ *  5) Test that a segment whose blocks outgrow its mapping keeps every
+ *     block, and is cut back to its blocks when closed.
+ */
+public class CongestionStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void range() throws Exception {
+        try (CongestionStore store = CongestionStore.open(
+                folder.getRoot().toPath())) {
+            assertEquals(0, store.series("A:B"));
+            assertEquals(1, store.series("B:C"));
+            assertEquals(0, store.series("A:B"));
+
+            // Seconds 50 to 69 span two minutes; 55 is not appended
+            for (int second = 50; second < 70; second++) {
+                if (second != 55) {
+                    byte[] row = {(byte) (second % 7), (byte) 10};
+                    store.append(second, row, second < 60 ? 2 : 1);
+                }
+            }
+            store.append(70, new byte[] {(byte) 120, 3}, 2);
+            store.flush();
+
+            int[] values = new int[22];
+            assertEquals(19, store.range(0, 50, 72, values));
+            assertEquals(50 % 7, values[0]);
+            assertEquals(CongestionStore.MISSING, values[5]);
+            assertEquals(69 % 7, values[19]);
+            assertEquals(CongestionStore.MISSING, values[20]);
+            assertEquals(CongestionStore.MISSING, values[21]);
+
+            assertEquals(10, store.range(1, 50, 72, values));
+            assertEquals(10, values[9]);
+            assertEquals(CongestionStore.MISSING, values[10]);
+            assertEquals(3, values[20]);
+
+            try {
+                store.append(70, new byte[2], 2);
+                fail("Seconds must increase");
+            } catch (IllegalArgumentException expected) {
+                // Expected
+            }
+        }
+    }
+
+    @Test
+    public void downsample() throws Exception {
+        try (CongestionStore store = CongestionStore.open(
+                folder.getRoot().toPath())) {
+            store.series("A:B");
+            // Two hours, congestion rising through each minute
+            for (int second = 0; second < 7200; second++) {
+                store.append(second, new byte[] {(byte) (second % 60)}, 1);
+            }
+            store.flush();
+
+            List<CongestionSummary> minutes = store.downsample(0, 30, 240,
+                    CongestionStore.Resolution.MINUTE);
+            assertEquals(4, minutes.size());
+            assertEquals(0, minutes.get(0).getStart());
+            assertEquals(0, minutes.get(0).getMin());
+            assertEquals(59, minutes.get(0).getMax());
+            assertEquals(29.5, minutes.get(0).getMean(), 1e-9);
+            assertEquals(60, minutes.get(3).getCount());
+
+            List<CongestionSummary> hours = store.downsample(0, 0, 7200,
+                    CongestionStore.Resolution.HOUR);
+            assertEquals(2, hours.size());
+            assertEquals(3600, hours.get(1).getStart());
+            assertEquals(3600, hours.get(1).getCount());
+
+            // 40 to 59, then 0 to 9
+            CongestionSummary part = store.summarise(0, 100, 130);
+            assertEquals(0, part.getMin());
+            assertEquals(59, part.getMax());
+            assertEquals(30, part.getCount());
+            assertEquals((49.5 * 20 + 4.5 * 10) / 30, part.getMean(), 1e-9);
+            assertNull(store.summarise(0, 8000, 9000));
+        }
+    }
+
+    @Test
+    public void reopen() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (CongestionStore store = CongestionStore.open(directory)) {
+            store.series("A:B");
+            for (int second = 0; second < 90; second++) {
+                store.append(second, new byte[] {(byte) 50}, 1);
+            }
+        }
+        // As if the process stopped part way through writing a block
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".seg"))
+                    .collect(Collectors.toList()).get(0);
+        }
+        long size = Files.size(segment);
+        try (FileChannel channel = FileChannel.open(segment,
+                StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(new byte[] {0x54, 0x4D, 0x53}));
+        }
+
+        try (CongestionStore store = CongestionStore.open(directory)) {
+            assertEquals(size, Files.size(segment));
+            assertEquals(89, store.getLastSecond());
+            assertEquals(0, store.findSeries("A:B"));
+            assertEquals(1, store.series("B:A"));
+            store.append(90, new byte[] {(byte) 60, (byte) 70}, 2);
+            store.flush();
+
+            int[] values = new int[2];
+            store.range(0, 89, 91, values);
+            assertArrayEquals(new int[] {50, 60}, values);
+            store.range(1, 89, 91, values);
+            assertArrayEquals(new int[] {CongestionStore.MISSING, 70},
+                    values);
+        }
+    }
+
+    @Test
+    public void recorder() throws Exception {
+        Network network = new Network();
+        network.createIntersection("A");
+        network.createIntersection("B");
+        network.connectIntersections("A", "B", 60);
+        network.connectIntersections("B", "A", 60);
+        network.addSensor("A", "B", new DemoPressurePad(new int[] {5}, 10));
+
+        try (CongestionStore store = CongestionStore.open(
+                folder.getRoot().toPath())) {
+            CongestionRecorder recorder = new CongestionRecorder(network,
+                    store);
+            recorder.record(1);
+            network.removeConnection("B", "A");
+            recorder.record(2);
+            store.flush();
+
+            int[] values = new int[2];
+            int ab = store.findSeries("A:B");
+            int ba = store.findSeries("B:A");
+            assertEquals(2, store.range(ab, 1, 3, values));
+            assertArrayEquals(new int[] {50, 50}, values);
+            assertEquals(1, store.range(ba, 1, 3, values));
+            assertArrayEquals(new int[] {0, CongestionStore.MISSING},
+                    values);
+        }
+    }
+
+    @Test
+    public void segmentOutgrowsMapping() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        byte[] row = new byte[200];
+        int[] values = new int[3600];
+        try (CongestionStore store = CongestionStore.open(directory)) {
+            for (int series = 0; series < row.length; series++) {
+                store.series("S" + series);
+            }
+            // The first block is too small to size the segment by
+            for (int second = 0; second < 3600; second++) {
+                for (int series = 0; series < row.length; series++) {
+                    row[series] = (byte) ((second + series) % 101);
+                }
+                store.append(second, row, second < 60 ? 1 : row.length);
+            }
+            store.flush();
+            assertEquals(3600, store.range(0, 0, 3600, values));
+            assertEquals(3599 % 101, values[3599]);
+            assertEquals(3540, store.range(199, 0, 3600, values));
+            assertEquals((60 + 199) % 101, values[60]);
+        }
+
+        Path segment;
+        try (Stream<Path> files = Files.list(directory)) {
+            segment = files.filter(file -> file.toString().endsWith(".seg"))
+                    .collect(Collectors.toList()).get(0);
+        }
+        long size = Files.size(segment);
+        try (CongestionStore store = CongestionStore.open(directory)) {
+            assertEquals(size, Files.size(segment));
+            assertEquals(3599, store.getLastSecond());
+            assertEquals(3540, store.range(199, 0, 3600, values));
+            assertEquals((3599 + 199) % 101, values[3599]);
+        }
+    }
+}
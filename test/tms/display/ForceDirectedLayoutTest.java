@@ -0,0 +1,132 @@
+package tms.display;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tms.network.Network;
+import tms.routing.RoutingGraph;
+import tms.util.IntersectionNotFoundException;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that connected intersections are placed closer together than
+ *     unconnected ones.
+ *  2) Test that the same seed gives the same layout.
+ *  3) Test that a saved layout loads with the same positions.
+ *  4) Test that a layout missing an intersection is not loaded, and that
+ *     loadOrCompute() replaces it.
+ */
+public class ForceDirectedLayoutTest {
+    private static final int WIDTH = 10;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Network n;
+    private RoutingGraph graph;
+
+    /**
+     * Creates a 10x10 grid of two-way routes between intersections
+     * "0_0" to "9_9".
+     */
+    @Before
+    public void setup() throws IntersectionNotFoundException {
+        n = new Network();
+        for (int r = 0; r < WIDTH; r++) {
+            for (int c = 0; c < WIDTH; c++) {
+                n.createIntersection(r + "_" + c);
+            }
+        }
+        for (int r = 0; r < WIDTH; r++) {
+            for (int c = 0; c < WIDTH; c++) {
+                if (c + 1 < WIDTH) {
+                    connect(r + "_" + c, r + "_" + (c + 1));
+                }
+                if (r + 1 < WIDTH) {
+                    connect(r + "_" + c, (r + 1) + "_" + c);
+                }
+            }
+        }
+        graph = new RoutingGraph(n);
+    }
+
+    private void connect(String a, String b)
+            throws IntersectionNotFoundException {
+        n.connectIntersections(a, b, 50);
+        n.connectIntersections(b, a, 50);
+    }
+
+    private static double distance(ForceDirectedLayout layout, int a, int b) {
+        return Math.hypot(layout.x(a) - layout.x(b), layout.y(a) - layout.y(b));
+    }
+
+    @Test
+    public void compute_connectedAreCloser() {
+        ForceDirectedLayout layout = ForceDirectedLayout.compute(graph, 1);
+        assertEquals(graph.size(), layout.size());
+
+        double connected = 0;
+        for (int edge = 0; edge < graph.edgeCount(); edge++) {
+            connected += distance(layout, graph.source(edge),
+                    graph.target(edge));
+        }
+        connected /= graph.edgeCount();
+
+        double all = 0;
+        int pairs = 0;
+        for (int a = 0; a < graph.size(); a++) {
+            for (int b = a + 1; b < graph.size(); b++) {
+                all += distance(layout, a, b);
+                pairs++;
+            }
+        }
+        all /= pairs;
+        assertTrue(connected * 3 < all);
+    }
+
+    @Test
+    public void compute_deterministic() {
+        ForceDirectedLayout first = ForceDirectedLayout.compute(graph, 7);
+        ForceDirectedLayout second = ForceDirectedLayout.compute(graph, 7);
+        for (int i = 0; i < graph.size(); i++) {
+            assertEquals(first.x(i), second.x(i), 0);
+            assertEquals(first.y(i), second.y(i), 0);
+        }
+    }
+
+    @Test
+    public void saveAndLoad() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("grid.layout");
+        ForceDirectedLayout layout = ForceDirectedLayout.compute(graph, 3);
+        layout.save(graph, file);
+
+        ForceDirectedLayout loaded = ForceDirectedLayout.load(graph, file);
+        assertNotNull(loaded);
+        for (int i = 0; i < graph.size(); i++) {
+            assertEquals(layout.x(i), loaded.x(i), 0);
+            assertEquals(layout.y(i), loaded.y(i), 0);
+        }
+        assertNull(ForceDirectedLayout.load(graph,
+                folder.getRoot().toPath().resolve("missing.layout")));
+    }
+
+    @Test
+    public void load_outOfDate() throws IOException {
+        Path file = folder.getRoot().toPath().resolve("grid.layout");
+        ForceDirectedLayout.compute(graph, 3).save(graph, file);
+
+        n.createIntersection("new");
+        RoutingGraph larger = new RoutingGraph(n);
+        assertNull(ForceDirectedLayout.load(larger, file));
+
+        ForceDirectedLayout layout =
+                ForceDirectedLayout.loadOrCompute(larger, file);
+        assertEquals(larger.size(), layout.size());
+        assertNotNull(ForceDirectedLayout.load(larger, file));
+    }
+}
@@ -0,0 +1,121 @@
+package tms.display;
+
+import org.junit.Before;
+import org.junit.Test;
+import tms.network.Network;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that a batch applies every command with one change
+ *     notification.
+ *  2) Test that failing and malformed commands are reported without
+ *     stopping the rest of the batch.
+ *  3) Test that a PAUSE command keeps the paused text up to date.
+ *  4) Test that a single instruction acts on the selected route with the
+ *     same parsing and error messages as a batch.
+ */
+public class InstructionBatchTest {
+    private Network n;
+    private MainViewModel model;
+
+    /**
+     * Creates the network A -> B -> C, C -> B with no signs.
+     */
+    @Before
+    public void setup() throws Exception {
+        n = new Network();
+        n.createIntersection("A");
+        n.createIntersection("B");
+        n.createIntersection("C");
+        n.connectIntersections("A", "B", 60);
+        n.connectIntersections("B", "C", 60);
+        n.connectIntersections("C", "B", 60);
+        model = new MainViewModel(n);
+    }
+
+    @Test
+    public void takeInstructions_appliesAll() throws Exception {
+        InstructionBatch batch = new InstructionBatch()
+                .add(ButtonOptions.ADD_SIGN,
+                        Map.of("from", "A", "to", "B", "speed", "50"))
+                .add(ButtonOptions.SET_SPEED,
+                        Map.of("from", "A", "to", "B", "speed", "40"))
+                .add(ButtonOptions.ADD_INTERSECTION, Map.of("id", "D"))
+                .add(ButtonOptions.ADD_TWO_WAY_CONN,
+                        Map.of("from", "C", "to", "D", "speed", "30"))
+                .add(ButtonOptions.ADD_LIGHT,
+                        Map.of("id", "B", "duration", "5", "order", "C,A"));
+        assertEquals(5, batch.size());
+        assertFalse(model.isChanged());
+
+        List<Optional<String>> results = model.takeInstructions(batch);
+        assertEquals(5, results.size());
+        for (Optional<String> result : results) {
+            assertTrue(result.isEmpty());
+        }
+        assertTrue(model.isChanged());
+        assertEquals("", model.errorProperty().get());
+        assertEquals(40, n.getConnection("A", "B").getSpeed());
+        assertEquals(30, n.getConnection("D", "C").getSpeed());
+        assertTrue(n.findIntersection("B").hasTrafficLights());
+    }
+
+    @Test
+    public void takeInstructions_reportsErrors() throws Exception {
+        InstructionBatch batch = new InstructionBatch()
+                .add(ButtonOptions.ADD_SIGN,
+                        Map.of("from", "A", "to", "B", "speed", "fast"))
+                .add(ButtonOptions.ADD_SIGN, Map.of("from", "A", "to", "B"))
+                .add(ButtonOptions.ADD_SIGN,
+                        Map.of("from", "A", "to", "C", "speed", "50"))
+                .add(ButtonOptions.ADD_SIGN,
+                        Map.of("from", "C", "to", "B", "speed", "50"));
+
+        List<Optional<String>> results = model.takeInstructions(batch);
+        assertEquals(Optional.of(
+                "Error adding speed sign: Speed must be a number"),
+                results.get(0));
+        assertEquals(Optional.of("Missing parameter: speed"),
+                results.get(1));
+        assertTrue(results.get(2).isPresent());
+        assertTrue(results.get(3).isEmpty());
+        assertTrue(n.getConnection("C", "B").hasSpeedSign());
+        assertFalse(n.getConnection("A", "B").hasSpeedSign());
+        assertTrue(model.errorProperty().get().startsWith(
+                "3 of 4 instructions failed. Error adding speed sign"));
+    }
+
+    @Test
+    public void takeInstructions_pause() {
+        String pausedText = model.getPausedText().get();
+        model.takeInstructions(new InstructionBatch()
+                .add(ButtonOptions.PAUSE, Map.of()));
+        assertNotEquals(pausedText, model.getPausedText().get());
+        assertEquals(model.getClock().isPaused(),
+                model.getPausedText().get().endsWith("true"));
+    }
+
+    @Test
+    public void takeInstruction_selectedRoute() throws Exception {
+        model.setSelected(n.getConnection("A", "B"), n.findIntersection("B"));
+        model.takeInstruction(ButtonOptions.ADD_SENSOR,
+                List.of(Optional.of("XX"), Optional.of("5:1,2")));
+        assertEquals("Error adding sensor: Invalid sensor type: \"XX\"",
+                model.errorProperty().get());
+        model.takeInstruction(ButtonOptions.ADD_SENSOR,
+                List.of(Optional.of("PP"), Optional.of("5: 1, 2,3")));
+        assertEquals("", model.errorProperty().get());
+        assertEquals("PP:5:1,2,3",
+                n.getConnection("A", "B").getSensors().get(0).toString());
+
+        model.takeInstruction(ButtonOptions.ADD_SIGN,
+                List.of(Optional.of("fast")));
+        assertEquals("Error adding speed sign: Speed must be a number",
+                model.errorProperty().get());
+    }
+}
@@ -30,7 +30,10 @@ import static org.junit.Assert.*;
  *     as per the rules provided in the specification.
  *  6) Test that the traffic light of a route gets added to the cycle when
  *     the route is created after the instantiation of the traffic light.
- *  7) A method to return the length of an integer in characters;
+ *  7) Test that the lights keep cycling after every route has had a turn.
+ *  8) Test that secondsUntilGreen() predicts the signals shown by
+ *     oneSecond().
+ *  9) A method to return the length of an integer in characters;
  */
 public class IntersectionLightsTest {
     IntersectionLights lights;
@@ -281,6 +284,77 @@ public class IntersectionLightsTest {
         } while (ctr != 1000);
     }
 
+    /**
+     * Test that the lights keep cycling after every route has had a turn.
+     */
+    @Test
+    public void testOneSecond_wrapsAround(){
+        int yellowTime = 2;
+        int duration = 5;
+
+        lights = new IntersectionLights(connections, yellowTime, duration);
+
+        int cycle = duration * connections.size();
+        for (int time = 0; time < cycle * 3; time++) {
+            lights.oneSecond();
+            int active = (time / duration) % connections.size();
+            if (time % duration < duration - yellowTime) {
+                assertLights(active, TrafficSignal.GREEN);
+            } else {
+                assertLights(active, TrafficSignal.YELLOW);
+            }
+        }
+    }
+
+    /**
+     * Test that secondsUntilGreen() predicts the signals shown by
+     * oneSecond().
+     */
+    @Test
+    public void testSecondsUntilGreen_matchesOneSecond(){
+        lights = new IntersectionLights(connections, 3, 7);
+        int horizon = 7 * connections.size() * 2;
+
+        for (int start = 0; start < horizon; start++) {
+            // Record which route is green for each of the next seconds
+            List<TrafficSignal[]> future = new ArrayList<>();
+            IntersectionLights copy = new IntersectionLights(connections, 3,
+                    7);
+            for (int i = 0; i < start; i++) {
+                copy.oneSecond();
+            }
+            for (int i = 0; i <= horizon; i++) {
+                TrafficSignal[] signals = new TrafficSignal[connections.size()];
+                for (int r = 0; r < signals.length; r++) {
+                    signals[r] = connections.get(r).getTrafficLight()
+                            .getSignal();
+                }
+                future.add(signals);
+                copy.oneSecond();
+            }
+
+            // The prediction must agree with the recorded signals
+            copy = new IntersectionLights(connections, 3, 7);
+            for (int i = 0; i < start; i++) {
+                copy.oneSecond();
+            }
+            for (int seconds = 0; seconds < horizon / 2; seconds++) {
+                for (int r = 0; r < connections.size(); r++) {
+                    int wait = copy.secondsUntilGreen(connections.get(r),
+                            seconds);
+                    assertEquals(TrafficSignal.GREEN,
+                            future.get(seconds + wait)[r]);
+                    for (int w = 0; w < wait; w++) {
+                        assertNotEquals(TrafficSignal.GREEN,
+                                future.get(seconds + w)[r]);
+                    }
+                }
+            }
+        }
+        assertEquals(-1, lights.secondsUntilGreen(
+                new Route("ID5", new Intersection("E"), 30), 0));
+    }
+
     /**
      * A method to return the length of an integer in characters;
      */
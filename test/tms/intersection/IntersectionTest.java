@@ -6,6 +6,9 @@ import org.junit.Test;
 import tms.route.Route;
 import tms.route.TrafficLight;
 import tms.route.TrafficSignal;
+import tms.sensors.DemoPressurePad;
+import tms.sensors.DemoSpeedCamera;
+import tms.sensors.Sensor;
 import static org.junit.Assert.*;
 import tms.util.InvalidOrderException;
 import tms.util.RouteNotFoundException;
@@ -69,6 +72,8 @@ import tms.util.TimedItemManager;
  *
  * 22) Test that the traffic light of a route gets added to the cycle when
  *     the route is created after the instantiation of the traffic light.
+ * 23) Test that the views of connections and sensors are read-only and
+ *     follow routes and sensors being added and removed.
  */
 public class IntersectionTest {
     /**
@@ -676,6 +681,49 @@ public class IntersectionTest {
         } while (ctr != 1000);
     }
 
+    /**
+     * Test that the views of connections and sensors are read-only and
+     * follow routes and sensors being added and removed.
+     * @throws Exception never
+     */
+    @Test
+    public void testViews() throws Exception {
+        Intersection A = new Intersection("A");
+        Intersection B = new Intersection("B");
+        Intersection C = new Intersection("C");
+        List<Route> connections = A.getConnectionsView();
+
+        A.addConnection(B, 50);
+        A.addConnection(C, 60);
+        assertEquals(2, connections.size());
+        assertEquals(2, A.getConnectionCount());
+        assertEquals(A.getConnections(), connections);
+        try {
+            connections.remove(0);
+            fail("Connections view is modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        Route route = A.getConnection(B);
+        List<Sensor> sensors = route.getSensorsView();
+        Sensor pad = new DemoPressurePad(new int[] {1, 2}, 5);
+        Sensor camera = new DemoSpeedCamera(new int[] {40, 50}, 60);
+        route.addSensor(pad);
+        route.addSensor(camera);
+        assertEquals(List.of(pad, camera), sensors);
+        assertEquals(2, route.getSensorCount());
+        route.removeSensor(pad);
+        assertEquals(List.of(camera), sensors);
+        try {
+            sensors.add(pad);
+            fail("Sensors view is modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+
+        A.removeConnection(B);
+        assertEquals(List.of(A.getConnection(C)), connections);
+    }
+
 
     /*
     // Used to test permutation in development. Method has now been made
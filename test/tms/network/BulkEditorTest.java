@@ -0,0 +1,140 @@
+package tms.network;
+
+import org.junit.Before;
+import org.junit.Test;
+import tms.intersection.Intersection;
+import tms.route.Route;
+import tms.util.InvalidNetworkException;
+import tms.util.RouteNotFoundException;
+
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that every kind of edit is applied, ignoring comments and empty
+ *     lines.
+ *  2) Test that an invalid line undoes every edit before it and reports the
+ *     line number.
+ *  3) Test that adding lights to an intersection that already has lights is
+ *     rejected.
+ *  4) Test that a script longer than one chunk is applied with the correct
+ *     line numbers.
+ */
+public class BulkEditorTest {
+    private Network n;
+    private BulkEditor editor;
+
+    /**
+     * Creates the network A -> B, C -> B, B -> C with no signs.
+     */
+    @Before
+    public void setup() throws Exception {
+        n = new Network();
+        n.createIntersection("A");
+        n.createIntersection("B");
+        n.createIntersection("C");
+        n.connectIntersections("A", "B", 60);
+        n.connectIntersections("C", "B", 60);
+        n.connectIntersections("B", "C", 50);
+        editor = new BulkEditor(n);
+    }
+
+    @Test
+    public void apply_allEdits() throws Exception {
+        String script = "; speed signs\n"
+                + "SIGN:A:B:80\n"
+                + "SPEED:A:B:40\r\n"
+                + "\n"
+                + "LIGHTS:B:5:C,A\n"
+                + "DURATION:B:7\n"
+                + "SENSOR:A:B:PP:10:1,2,3\n"
+                + "TWOWAY:A:B";
+
+        assertEquals(6, editor.apply(new StringReader(script)));
+
+        Route ab = n.getConnection("A", "B");
+        assertTrue(ab.hasSpeedSign());
+        assertEquals(40, ab.getSpeed());
+        assertEquals(1, ab.getSensors().size());
+        Intersection b = n.findIntersection("B");
+        assertEquals(7, b.getTrafficLights().getDuration());
+        assertEquals("C", b.getConnections().get(0).getFrom().getId());
+        // The new route copies the sign of the existing one
+        Route ba = n.getConnection("B", "A");
+        assertTrue(ba.hasSpeedSign());
+        assertEquals(40, ba.getSpeed());
+    }
+
+    @Test
+    public void apply_rollsBackOnError() throws Exception {
+        n.addSpeedSign("B", "C", 30);
+        String before = n.toString();
+        String script = "SIGN:A:B:80\n"
+                + "SIGN:B:C:70\n"
+                + "SPEED:B:C:20\n"
+                + "LIGHTS:B:5:A,C\n"
+                + "SENSOR:C:B:VC:10:4,5\n"
+                + "TWOWAY:A:B\n"
+                + "; the sensor type is already on the route\n"
+                + "SENSOR:C:B:VC:3:1\n";
+
+        try {
+            editor.apply(new StringReader(script));
+            fail();
+        } catch (InvalidNetworkException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 8:"));
+        }
+
+        assertEquals(before, n.toString());
+        assertFalse(n.getConnection("A", "B").hasSpeedSign());
+        assertEquals(30, n.getConnection("B", "C").getSpeed());
+        assertFalse(n.findIntersection("B").hasTrafficLights());
+        assertNull(n.getConnection("A", "B").getTrafficLight());
+        assertTrue(n.getConnection("C", "B").getSensors().isEmpty());
+        try {
+            n.getConnection("B", "A");
+            fail();
+        } catch (RouteNotFoundException expected) {
+        }
+    }
+
+    @Test
+    public void apply_rejectsReplacingLights() throws Exception {
+        n.addLights("B", 5, List.of("A", "C"));
+
+        try {
+            editor.apply(new StringReader("DURATION:B:9\nLIGHTS:B:6:A,C\n"));
+            fail();
+        } catch (InvalidNetworkException e) {
+            assertTrue(e.getMessage(), e.getMessage().startsWith("Line 2:"));
+        }
+        assertEquals(5, n.findIntersection("B").getTrafficLights()
+                .getDuration());
+    }
+
+    @Test
+    public void apply_acrossChunks() throws Exception {
+        n.addSpeedSign("A", "B", 60);
+        StringBuilder script = new StringBuilder();
+        int lines = 200_000;
+        for (int i = 0; i < lines; i++) {
+            script.append("SPEED:A:B:").append(i % 100).append('\n');
+        }
+
+        assertEquals(lines, editor.apply(new StringReader(
+                script.toString())));
+        assertEquals((lines - 1) % 100, n.getConnection("A", "B").getSpeed());
+
+        script.append("SPEED:A:X:1\n");
+        try {
+            editor.apply(new StringReader(script.toString()));
+            fail();
+        } catch (InvalidNetworkException e) {
+            assertTrue(e.getMessage(),
+                    e.getMessage().startsWith("Line " + (lines + 1) + ":"));
+        }
+        assertEquals((lines - 1) % 100, n.getConnection("A", "B").getSpeed());
+    }
+}
@@ -0,0 +1,100 @@
+package tms.network;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.Test;
+import tms.util.InvalidNetworkException;
+import tms.util.TimedItemManager;
+
+import java.io.StringReader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that loading a network records one event per phase, with the
+ *     number of lines handled by each.
+ *  2) Test that ticks and bulk edits, including rolled back ones, are
+ *     recorded.
+ */
+public class FlightRecorderEventTest {
+
+    /**
+     * Records the given TMS events while running the action.
+     */
+    private static List<RecordedEvent> record(ThrowingRunnable action,
+                                              String... events)
+            throws Exception {
+        Path file = Files.createTempFile("events", ".jfr");
+        try (Recording recording = new Recording()) {
+            for (String event : events) {
+                recording.enable(event);
+            }
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            List<RecordedEvent> recorded = new ArrayList<>();
+            for (RecordedEvent event : RecordingFile.readAllEvents(file)) {
+                if (event.getEventType().getName().startsWith("tms.")) {
+                    recorded.add(event);
+                }
+            }
+            return recorded;
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private interface ThrowingRunnable {
+        void run() throws Exception;
+    }
+
+    @Test
+    public void loadNetwork_recordsPhases() throws Exception {
+        List<RecordedEvent> events = record(() -> NetworkInitialiser
+                .loadNetwork("networks/demo.txt"), "tms.LoadPhase");
+
+        String[] phases = {"read", "intersections", "routes", "sensors",
+                "lights", "signs", "validation"};
+        int[] lines = {16, 4, 5, 4, 4, 5, 16};
+        assertEquals(phases.length, events.size());
+        for (int i = 0; i < phases.length; i++) {
+            assertEquals(phases[i], events.get(i).getString("phase"));
+            assertEquals(phases[i], lines[i], events.get(i).getInt("lines"));
+            assertEquals("networks/demo.txt",
+                    events.get(i).getString("source"));
+        }
+    }
+
+    @Test
+    public void tickAndBulkEdit_recorded() throws Exception {
+        Network network = new Network();
+        network.createIntersection("A");
+        network.createIntersection("B");
+        network.connectIntersections("A", "B", 60);
+        BulkEditor editor = new BulkEditor(network);
+
+        List<RecordedEvent> events = record(() -> {
+            TimedItemManager.getTimedItemManager().oneSecond();
+            editor.apply(new StringReader("SIGN:A:B:50\nSPEED:A:B:40\n"));
+            try {
+                editor.apply(new StringReader("SPEED:A:B:30\nSIGN:B:A:1\n"));
+                fail();
+            } catch (InvalidNetworkException expected) {
+            }
+        }, "tms.Tick", "tms.BulkMutation");
+
+        assertEquals(3, events.size());
+        assertEquals("tms.Tick", events.get(0).getEventType().getName());
+        assertEquals(2, events.get(1).getInt("changes"));
+        assertEquals(0, events.get(1).getInt("failed"));
+        assertEquals(1, events.get(2).getInt("changes"));
+        assertEquals(1, events.get(2).getInt("failed"));
+        assertEquals(40, network.getConnection("A", "B").getSpeed());
+    }
+}
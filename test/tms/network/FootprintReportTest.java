@@ -0,0 +1,73 @@
+package tms.network;
+
+import org.junit.Test;
+import tms.util.ObjectLayout;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that every entity of the demo network is counted by type and
+ *     the total is the sum of the types.
+ *  2) Test that a larger network has a proportionally larger footprint.
+ *  3) Test the object layout estimates for arrays and strings.
+ */
+public class FootprintReportTest {
+
+    @Test
+    public void measure_countsDemo() throws Exception {
+        FootprintReport report = FootprintReport.measure(
+                NetworkInitialiser.loadNetwork("networks/demo.txt"));
+
+        assertEquals(4, report.getEntry("Intersection").getCount());
+        assertEquals(4, report.getEntry("Intersection ID").getCount());
+        assertEquals(5, report.getEntry("Route").getCount());
+        assertEquals(2, report.getEntry("DemoPressurePad").getCount());
+        assertEquals(1, report.getEntry("DemoSpeedCamera").getCount());
+        assertEquals(1, report.getEntry("DemoVehicleCount").getCount());
+        assertEquals(1, report.getEntry("IntersectionLights").getCount());
+        assertEquals(1, report.getEntry("Network").getCount());
+        assertNull(report.getEntry("DemoSensor"));
+
+        long total = 0;
+        for (FootprintReport.Entry entry : report.getEntries()) {
+            assertTrue(entry.getType(), entry.getBytes() > 0);
+            total += entry.getBytes();
+        }
+        assertEquals(total, report.getTotalBytes());
+        assertTrue(report.toString().contains("DemoPressurePad"));
+    }
+
+    @Test
+    public void measure_scalesWithNetwork() throws Exception {
+        Network small = new Network();
+        Network large = new Network();
+        for (int i = 0; i < 1000; i++) {
+            large.createIntersection("I" + i);
+            if (i < 10) {
+                small.createIntersection("I" + i);
+            }
+        }
+
+        FootprintReport.Entry smallEntry = FootprintReport.measure(small)
+                .getEntry("Intersection");
+        FootprintReport.Entry largeEntry = FootprintReport.measure(large)
+                .getEntry("Intersection");
+        assertEquals(10, smallEntry.getCount());
+        assertEquals(1000, largeEntry.getCount());
+        assertEquals(100 * smallEntry.getBytes(), largeEntry.getBytes());
+    }
+
+    @Test
+    public void objectLayout_arraysAndStrings() {
+        long empty = ObjectLayout.arraySize(int.class, 0);
+        assertEquals(0, empty % 8);
+        assertEquals(empty + 400, ObjectLayout.arraySize(int.class, 100));
+        assertEquals(ObjectLayout.arraySize(long.class, 50),
+                ObjectLayout.arraySize(int.class, 100));
+        assertEquals(ObjectLayout.shallowSize(String.class)
+                        + ObjectLayout.arraySize(byte.class, 3),
+                ObjectLayout.stringSize("ABC"));
+        assertTrue(ObjectLayout.shallowSize(Object.class)
+                >= ObjectLayout.HEADER_BYTES);
+    }
+}
@@ -0,0 +1,67 @@
+package tms.network;
+
+import org.junit.Test;
+import tms.util.InvalidNetworkException;
+
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that the statistics count every item of the demo network and
+ *     summarise it once loading finishes.
+ *  2) Test that the asynchronous log has written a line per item by the
+ *     time loading returns.
+ *  3) Test that diagnostics are told when loading fails.
+ */
+public class LoaderDiagnosticsTest {
+    private static final String DEMO = "networks/demo.txt";
+
+    @Test
+    public void statistics_countDemo() throws Exception {
+        List<String> summaries = new ArrayList<>();
+        LoaderStatistics statistics = new LoaderStatistics(summaries::add);
+        NetworkInitialiser.loadNetwork(DEMO, statistics);
+
+        assertEquals(4, statistics.getIntersections());
+        assertEquals(5, statistics.getRoutes());
+        assertEquals(4, statistics.getSensors());
+        assertEquals(1, summaries.size());
+        assertTrue(summaries.get(0), summaries.get(0).startsWith(
+                "Loaded " + DEMO + ": 4 intersections, 5 routes, 4 sensors"));
+    }
+
+    @Test
+    public void asyncLog_writesEveryItem() throws Exception {
+        StringWriter out = new StringWriter();
+        LoaderStatistics statistics = new LoaderStatistics();
+        NetworkInitialiser.loadNetwork(DEMO,
+                new AsyncLoaderLog(out).andThen(statistics));
+
+        String[] lines = out.toString().split(System.lineSeparator());
+        int items = statistics.getIntersections() + statistics.getRoutes()
+                + statistics.getSensors() + statistics.getLights()
+                + statistics.getSpeedSigns();
+        // Plus a count of sensors per route and the end of loading
+        assertEquals(items + statistics.getRoutes() + 1, lines.length);
+        assertTrue(lines[0], lines[0].startsWith("event=intersection id="));
+        assertEquals("event=finished source=" + DEMO + " succeeded=true",
+                lines[lines.length - 1]);
+    }
+
+    @Test
+    public void finished_calledOnFailure() throws Exception {
+        List<String> summaries = new ArrayList<>();
+        try {
+            NetworkInitialiser.loadNetwork(
+                    "test/tms/network/resources/invalid/Const_NegRoute.txt",
+                    new LoaderStatistics(summaries::add));
+            fail("Loaded an invalid network");
+        } catch (InvalidNetworkException expected) {
+            assertEquals(1, summaries.size());
+            assertTrue(summaries.get(0).startsWith("Failed to load "));
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package tms.network;
+
+import org.junit.Test;
+import tms.intersection.Intersection;
+import tms.route.Route;
+import tms.sensors.Sensor;
+
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that every topology produces a valid network file of the given
+ *     size, including partly filled grids and rings.
+ *  2) Test that the same seed produces the same file and another seed
+ *     produces a different file.
+ *  3) Test that lights, signs and sensors follow their fractions and the
+ *     trace length.
+ *  4) Test that light durations span their whole range, however few
+ *     intersections have lights.
+ */
+public class NetworkGeneratorTest {
+
+    private static Network load(NetworkGenerator generator) throws Exception {
+        Path file = Files.createTempFile("generated", ".txt");
+        try {
+            generator.write(file.toString());
+            return NetworkInitialiser.loadNetwork(file.toString());
+        } finally {
+            Files.delete(file);
+        }
+    }
+
+    private static String generate(NetworkGenerator generator)
+            throws Exception {
+        StringWriter out = new StringWriter();
+        generator.write(out);
+        return out.toString();
+    }
+
+    @Test
+    public void write_validForEveryTopology() throws Exception {
+        for (NetworkGenerator.Topology topology
+                : NetworkGenerator.Topology.values()) {
+            for (int size : new int[] {1, 2, 30, 37}) {
+                Network network = load(new NetworkGenerator(topology, size,
+                        size));
+                assertEquals(topology + " " + size, size,
+                        network.getIntersections().size());
+            }
+        }
+    }
+
+    @Test
+    public void write_deterministic() throws Exception {
+        String first = generate(new NetworkGenerator(
+                NetworkGenerator.Topology.RANDOM_PLANAR, 40, 7));
+        String second = generate(new NetworkGenerator(
+                NetworkGenerator.Topology.RANDOM_PLANAR, 40, 7));
+        String other = generate(new NetworkGenerator(
+                NetworkGenerator.Topology.RANDOM_PLANAR, 40, 8));
+
+        assertEquals(first, second);
+        assertNotEquals(first, other);
+    }
+
+    @Test
+    public void write_followsFractions() throws Exception {
+        Network none = load(new NetworkGenerator(
+                NetworkGenerator.Topology.GRID, 25, 1)
+                .setLightFraction(0).setSignFraction(0)
+                .setSensorFractions(0, 0, 0));
+        for (Intersection intersection : none.getIntersections()) {
+            assertFalse(intersection.hasTrafficLights());
+            for (Route route : intersection.getConnections()) {
+                assertFalse(route.hasSpeedSign());
+                assertTrue(route.getSensors().isEmpty());
+            }
+        }
+
+        Network all = load(new NetworkGenerator(
+                NetworkGenerator.Topology.GRID, 25, 1)
+                .setEdgeFraction(1).setTwoWayFraction(1)
+                .setLightFraction(1).setSignFraction(1)
+                .setSensorFractions(1, 1, 1).setTraceLength(3));
+        for (Intersection intersection : all.getIntersections()) {
+            assertTrue(intersection.hasTrafficLights());
+            for (Route route : intersection.getConnections()) {
+                assertTrue(route.hasSpeedSign());
+                assertEquals(3, route.getSensors().size());
+                for (Sensor sensor : route.getSensors()) {
+                    assertEquals(3, sensor.toString().split(":")[2]
+                            .split(",").length);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void write_lightDurationsIndependentOfFraction() throws Exception {
+        Network network = load(new NetworkGenerator(
+                NetworkGenerator.Topology.GRID, 400, 3)
+                .setLightFraction(0.1));
+        int lit = 0, longest = 0;
+        for (Intersection intersection : network.getIntersections()) {
+            if (intersection.hasTrafficLights()) {
+                lit++;
+                longest = Math.max(longest,
+                        intersection.getTrafficLights().getDuration());
+            }
+        }
+        assertTrue(lit > 10);
+        // Durations of yellowTime + 1 to yellowTime + 32, not just the
+        // lowest tenth of them
+        assertTrue(longest > network.getYellowTime() + 16);
+    }
+}
@@ -0,0 +1,163 @@
+package tms.network;
+
+import org.junit.Test;
+
+import java.nio.CharBuffer;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that lines are split on "\n", "\r\n" and "\r", and that a line
+ *     terminator at the end of the input does not add an empty line.
+ *  2) Test that fields are split like String.split(":"), with trailing empty
+ *     fields removed.
+ *  3) Test that integers are parsed like Integer.parseInt(), and that
+ *     anything else is reported as NOT_AN_INTEGER.
+ *  4) Test that list items are split and parsed into a primitive array.
+ *  5) Test that identifier fields can be compared and checked for content.
+ */
+public class NetworkTokenizerTest {
+
+    private NetworkTokenizer tokenize(String input) {
+        return new NetworkTokenizer(CharBuffer.wrap(input));
+    }
+
+    /**
+     * Test that lines are split on "\n", "\r\n" and "\r", and that a line
+     * terminator at the end of the input does not add an empty line.
+     */
+    @Test
+    public void nextLine_splitsOnAllTerminators() {
+        NetworkTokenizer tokenizer = tokenize("A\nB\r\nC\rD\n\n");
+        String[] expected = {"A", "B", "C", "D", ""};
+
+        for (String line : expected) {
+            assertTrue(tokenizer.nextLine());
+            assertEquals(line, tokenizer.lineString());
+        }
+        assertFalse(tokenizer.nextLine());
+    }
+
+    /**
+     * Test that comment and empty lines are recognised.
+     */
+    @Test
+    public void nextLine_commentsAndEmptyLines() {
+        NetworkTokenizer tokenizer = tokenize("; comment\n\nA");
+
+        tokenizer.nextLine();
+        assertTrue(tokenizer.isComment());
+        tokenizer.nextLine();
+        assertTrue(tokenizer.isEmptyLine());
+        tokenizer.nextLine();
+        assertFalse(tokenizer.isComment());
+        assertFalse(tokenizer.isEmptyLine());
+    }
+
+    /**
+     * Test that fields are split like String.split(":"), with trailing empty
+     * fields removed.
+     */
+    @Test
+    public void fieldCount_matchesStringSplit() {
+        String[] lines = {"X:Y:60:0", "A:3:", "::", ":A", "A::B", "A"};
+
+        for (String line : lines) {
+            NetworkTokenizer tokenizer = tokenize(line);
+            tokenizer.nextLine();
+            String[] split = line.split(":");
+
+            assertEquals(line, split.length, tokenizer.fieldCount());
+            for (int i = 0; i < split.length; i++) {
+                assertEquals(split[i], tokenizer.fieldString(i));
+            }
+        }
+    }
+
+    /**
+     * Test that integers are parsed like Integer.parseInt(), and that
+     * anything else is reported as NOT_AN_INTEGER.
+     */
+    @Test
+    public void fieldInt_matchesIntegerParseInt() {
+        String[] values = {"0", "42", "-7", "+7", "007", "2147483647",
+                "-2147483648", "2147483648", "-", "+", "1a", " 1", "1.0",
+                "99999999999"};
+
+        for (String value : values) {
+            NetworkTokenizer tokenizer = tokenize(value + ":end");
+            tokenizer.nextLine();
+
+            long expected;
+            try {
+                expected = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                expected = NetworkTokenizer.NOT_AN_INTEGER;
+            }
+            assertEquals(value, expected, tokenizer.fieldInt(0));
+        }
+    }
+
+    /**
+     * Test that list items are split and parsed into a primitive array.
+     */
+    @Test
+    public void readNonNegativeList_parsesData() {
+        NetworkTokenizer tokenizer = tokenize("PP:5:5,2,4,4,1,");
+        tokenizer.nextLine();
+
+        int size = tokenizer.splitList(2);
+        int[] data = new int[size];
+
+        assertEquals(5, size);
+        assertTrue(tokenizer.readNonNegativeList(data));
+        assertArrayEquals(new int[] {5, 2, 4, 4, 1}, data);
+    }
+
+    /**
+     * Test that negative or non-integer list items are rejected.
+     */
+    @Test
+    public void readNonNegativeList_rejectsInvalidData() {
+        NetworkTokenizer tokenizer = tokenize("PP:5:5,-2,4\nPP:5:5,x");
+        int[] data = new int[3];
+
+        tokenizer.nextLine();
+        tokenizer.splitList(2);
+        assertFalse(tokenizer.readNonNegativeList(data));
+
+        tokenizer.nextLine();
+        tokenizer.splitList(2);
+        assertFalse(tokenizer.readNonNegativeList(data));
+    }
+
+    /**
+     * Test that identifier fields can be compared and checked for content.
+     */
+    @Test
+    public void fieldEquals_andHasContent() {
+        NetworkTokenizer tokenizer = tokenize("PP: \t:W");
+        tokenizer.nextLine();
+
+        assertTrue(tokenizer.fieldEquals(0, "PP"));
+        assertFalse(tokenizer.fieldEquals(0, "P"));
+        assertFalse(tokenizer.fieldHasContent(1));
+        assertTrue(tokenizer.fieldHasContent(2));
+    }
+
+    /**
+     * Test that seekLine() returns to a previously read line.
+     */
+    @Test
+    public void seekLine_returnsToEarlierLine() {
+        NetworkTokenizer tokenizer = tokenize("X:Y:60:0\nZ");
+        tokenizer.nextLine();
+        int start = tokenizer.lineStart();
+        int end = tokenizer.lineEnd();
+        tokenizer.nextLine();
+
+        tokenizer.seekLine(start, end);
+        assertEquals(4, tokenizer.fieldCount());
+        assertEquals(60, tokenizer.fieldInt(2));
+    }
+}
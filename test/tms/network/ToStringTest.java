@@ -4,12 +4,16 @@ import org.junit.Test;
 import tms.sensors.DemoPressurePad;
 import tms.sensors.DemoSpeedCamera;
 import tms.sensors.DemoVehicleCount;
+import tms.sensors.LiveVehicleCount;
 import tms.util.*;
 
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.function.Supplier;
+
+import static org.junit.Assert.assertEquals;
 
 /**
  * Test that the toString() method omits any comments (no line starting with
@@ -19,6 +23,8 @@ import java.util.List;
  * Test that the toString() method correctly outputs traffic lights
  * Test that the toString() method correctly outputs the yellow lights and
  * number of intersections.
+ * Test that the toStringLater() method gives the network as it was when
+ * called, though it has since been changed.
  */
 public class ToStringTest {
     private final String FILE_SEPARATOR = File.separator;
@@ -88,4 +94,29 @@ public class ToStringTest {
                 n.toString()
         );
     }
+
+    @Test
+    public void testToStringLater() throws Exception {
+        Network n = new Network();
+        n.createIntersection("X");
+        n.createIntersection("Y");
+        n.connectIntersections("X", "Y", 60);
+        n.connectIntersections("Y", "X", 50);
+        n.addSensor("X", "Y", new DemoPressurePad(new int[] {1, 3, 2}, 5));
+        LiveVehicleCount live = new LiveVehicleCount(20, 7);
+        n.addSensor("Y", "X", live);
+        n.addSpeedSign("X", "Y", 60);
+        n.addLights("Y", 3, List.of("X"));
+
+        String before = n.toString();
+        Supplier<String> later = n.toStringLater();
+        n.setSpeedLimit("X", "Y", 40);
+        n.changeLightDuration("Y", 5);
+        live.restoreReading(9);
+        n.createIntersection("Z");
+        n.connectIntersections("Z", "X", 30);
+
+        assertEquals(before, later.get());
+        assertEquals(n.toString(), n.toStringLater().get());
+    }
 }
@@ -0,0 +1,193 @@
+package tms.replay;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tms.network.Network;
+import tms.sensors.DemoPressurePad;
+import tms.sensors.DemoSpeedCamera;
+import tms.sensors.LiveSensor;
+import tms.sensors.LiveVehicleCount;
+import tms.util.TimedItemManager;
+
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that a restored checkpoint carries on exactly as the network it
+ *     was taken from, with its lights part way through their cycles.
+ *  2) Test that the structure is only saved again once the network is
+ *     changed, and that old structures are removed.
+ *  3) Test that checkpointing carries on from a restored checkpoint,
+ *     taking checkpoints every interval ticks without saving the structure.
+ *  4) Test that a corrupt checkpoint is not restored.
+ */
+public class SimulationCheckpointerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static Network network() throws Exception {
+        Network network = new Network();
+        for (String id : List.of("A", "B", "C")) {
+            network.createIntersection(id);
+        }
+        network.connectIntersections("A", "C", 50);
+        network.connectIntersections("B", "C", 60);
+        network.connectIntersections("C", "A", 70);
+        network.addLights("C", 5, List.of("A", "B"));
+        network.addSpeedSign("C", "A", 70);
+        network.addSensor("A", "C", new DemoPressurePad(
+                new int[] {1, 5, 9, 2}, 10));
+        network.addSensor("B", "C", new DemoSpeedCamera(
+                new int[] {50, 40, 30}, 60));
+        network.addSensor("C", "A", new LiveVehicleCount(20, 7));
+        return network;
+    }
+
+    private static void tick(int ticks) {
+        for (int i = 0; i < ticks; i++) {
+            TimedItemManager.getTimedItemManager().oneSecond();
+        }
+    }
+
+    private static String[] files(Path directory) throws IOException {
+        try (var files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted()
+                    .toArray(String[]::new);
+        }
+    }
+
+    @Test
+    public void restore() throws Exception {
+        Network network = network();
+        tick(7);
+        Path directory = folder.getRoot().toPath().resolve("checkpoints");
+        try (SimulationCheckpointer checkpointer = new SimulationCheckpointer(
+                network, directory, 10, 7)) {
+            checkpointer.checkpoint();
+        }
+        assertTrue(SimulationCheckpointer.hasCheckpoint(directory));
+        assertFalse(SimulationCheckpointer.hasCheckpoint(folder.getRoot()
+                .toPath()));
+
+        SimulationCheckpointer.Restored restored =
+                SimulationCheckpointer.restore(directory);
+        Network copy = restored.getNetwork();
+        assertEquals(7, restored.getTick());
+        assertEquals(network.toString(), copy.toString());
+        assertEquals(SimulationState.capture(network),
+                SimulationState.capture(copy));
+        assertTrue(copy.getConnection("C", "A").getSensors().get(0)
+                instanceof LiveSensor);
+
+        for (int i = 0; i < 12; i++) {
+            tick(1);
+            assertEquals(SimulationState.capture(network),
+                    SimulationState.capture(copy));
+            assertEquals(network.getConnection("B", "C").getTrafficLight()
+                            .getSignal(),
+                    copy.getConnection("B", "C").getTrafficLight()
+                            .getSignal());
+            assertEquals(network.getCongestion("A", "C"),
+                    copy.getCongestion("A", "C"));
+        }
+    }
+
+    @Test
+    public void structureSavedWhenChanged() throws Exception {
+        Network network = network();
+        Path directory = folder.getRoot().toPath();
+        try (SimulationCheckpointer checkpointer = new SimulationCheckpointer(
+                network, directory, 1, 0)) {
+            checkpointer.checkpoint();
+        }
+        assertArrayEquals(new String[] {"checkpoint.bin", "network-1.txt"},
+                files(directory));
+
+        SimulationCheckpointer checkpointer = new SimulationCheckpointer(
+                network, directory, 1, 0);
+        // A new checkpointer saves the structure once
+        tick(1);
+        checkpointer.tick();
+        checkpointer.flush();
+        assertArrayEquals(new String[] {"checkpoint.bin", "network-2.txt"},
+                files(directory));
+        tick(1);
+        checkpointer.tick();
+        checkpointer.flush();
+        assertArrayEquals(new String[] {"checkpoint.bin", "network-2.txt"},
+                files(directory));
+
+        int before = network.getModificationCount();
+        network.reduceIncomingSpeedSigns("A");
+        assertEquals(60, network.getConnection("C", "A").getSpeed());
+        assertNotEquals(before, network.getModificationCount());
+        checkpointer.checkpoint();
+        checkpointer.close();
+        assertArrayEquals(new String[] {"checkpoint.bin", "network-3.txt"},
+                files(directory));
+        assertEquals(network.toString(), Files.readString(
+                directory.resolve("network-3.txt")));
+        assertEquals(2, SimulationCheckpointer.restore(directory).getTick());
+    }
+
+    @Test
+    public void carryOn() throws Exception {
+        Network network = network();
+        Path directory = folder.getRoot().toPath();
+        try (SimulationCheckpointer checkpointer = new SimulationCheckpointer(
+                network, directory, 10, 0)) {
+            for (int i = 0; i < 3; i++) {
+                tick(1);
+                checkpointer.tick();
+            }
+            checkpointer.checkpoint();
+        }
+
+        SimulationCheckpointer.Restored restored =
+                SimulationCheckpointer.restore(directory);
+        assertEquals(3, restored.getTick());
+        try (SimulationCheckpointer checkpointer = new SimulationCheckpointer(
+                restored, 4)) {
+            assertEquals(3, checkpointer.getTicks());
+            tick(1);
+            checkpointer.tick();
+        }
+        assertArrayEquals(new String[] {"checkpoint.bin", "network-1.txt"},
+                files(directory));
+        SimulationCheckpointer.Restored later =
+                SimulationCheckpointer.restore(directory);
+        assertEquals(4, later.getTick());
+        assertEquals(SimulationState.capture(restored.getNetwork()),
+                SimulationState.capture(later.getNetwork()));
+        assertEquals(SimulationState.capture(network),
+                SimulationState.capture(later.getNetwork()));
+    }
+
+    @Test
+    public void corrupt() throws Exception {
+        Path directory = folder.getRoot().toPath();
+        try (SimulationCheckpointer checkpointer = new SimulationCheckpointer(
+                network(), directory, 10, 0)) {
+            checkpointer.checkpoint();
+        }
+        try (RandomAccessFile file = new RandomAccessFile(directory.resolve(
+                SimulationCheckpointer.CHECKPOINT_FILE).toFile(), "rw")) {
+            file.seek(file.length() - 8);
+            int value = file.read();
+            file.seek(file.length() - 8);
+            file.write(value ^ 1);
+        }
+        try {
+            SimulationCheckpointer.restore(directory);
+            fail("The checkpoint is corrupt");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().startsWith("Corrupt"));
+        }
+    }
+}
@@ -0,0 +1,275 @@
+package tms.replay;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tms.display.ButtonOptions;
+import tms.display.CommandProcessor;
+import tms.display.MainViewModel;
+import tms.network.BulkEditor;
+import tms.network.Network;
+import tms.network.NetworkInitialiser;
+import tms.sensors.DemoPressurePad;
+import tms.sensors.DemoSpeedCamera;
+import tms.sensors.LiveSensor;
+import tms.sensors.LiveSpeedCamera;
+import tms.sensors.LiveVehicleCount;
+import tms.util.TimedItemManager;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that a state restored to a network loaded from the saved
+ *     structure carries on exactly as the original, and that a state is not
+ *     restored to a network of another structure.
+ *  2) Test that a recorded run with commands, a bulk edit and live readings
+ *     replays to the same state, checking every checkpoint.
+ *  3) Test seeking forwards and backwards to the state recorded at each
+ *     tick.
+ *  4) Test that a log cut off part way through a record replays the whole
+ *     ticks before it.
+ *  5) Test that a two-way connection made in the GUI, where one direction
+ *     already exists, replays with the other direction made.
+ */
+public class SimulationReplayTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    /**
+     * A network of four intersections with lights at C, a mix of demo and
+     * live sensors, and the sensors on B:C added out of sorted order.
+     */
+    private static Network network() throws Exception {
+        Network network = new Network();
+        network.setYellowTime(1);
+        for (String id : List.of("A", "B", "C", "D")) {
+            network.createIntersection(id);
+        }
+        network.connectIntersections("A", "C", 50);
+        network.connectIntersections("B", "C", 60);
+        network.connectIntersections("D", "C", 40);
+        network.connectIntersections("C", "D", 40);
+        network.addLights("C", 4, List.of("A", "B", "D"));
+        network.addSensor("A", "C", new DemoPressurePad(new int[] {1, 5, 9},
+                10));
+        network.addSensor("B", "C", new LiveVehicleCount(20, 4));
+        network.addSensor("B", "C", new DemoPressurePad(new int[] {3, 4},
+                8));
+        network.addSensor("C", "D", new LiveSpeedCamera(60, 45));
+        network.addSensor("D", "C", new DemoSpeedCamera(
+                new int[] {50, 40, 30, 20, 10}, 60));
+        return network;
+    }
+
+    private static void tick() {
+        TimedItemManager.getTimedItemManager().oneSecond();
+    }
+
+    @Test
+    public void state() throws Exception {
+        Network original = network();
+        for (int i = 0; i < 7; i++) {
+            tick();
+        }
+        SimulationState state = SimulationState.capture(original);
+
+        Network copy = NetworkInitialiser.loadNetwork(
+                CharBuffer.wrap(original.toString()), "copy");
+        assertNotEquals(state, SimulationState.capture(copy));
+        state.restore(copy);
+        assertEquals(state, SimulationState.capture(copy));
+        assertTrue(copy.getConnection("B", "C").getSensors().get(0)
+                instanceof LiveSensor);
+        assertEquals(original.toString(), copy.toString());
+
+        for (int i = 0; i < 9; i++) {
+            tick();
+            assertEquals(SimulationState.capture(original),
+                    SimulationState.capture(copy));
+        }
+        assertEquals(original.getConnection("A", "C").getTrafficLight()
+                        .getSignal(),
+                copy.getConnection("A", "C").getTrafficLight().getSignal());
+
+        copy.createIntersection("E");
+        String before = copy.toString();
+        try {
+            state.restore(copy);
+            fail("The structure differs");
+        } catch (IllegalArgumentException expected) {
+            assertEquals(before, copy.toString());
+        }
+    }
+
+    /**
+     * Records a run of 250 ticks with a checkpoint every 50, returning the
+     * state after each tick.
+     */
+    private static List<SimulationState> record(Network network, Path log)
+            throws Exception {
+        List<SimulationState> states = new ArrayList<>();
+        LiveSensor count = (LiveSensor)
+                network.getConnection("B", "C").getSensors().get(0);
+        LiveSensor camera = (LiveSensor)
+                network.getConnection("C", "D").getSensors().get(0);
+        CommandProcessor commands = new CommandProcessor(network, null);
+        try (SimulationRecorder recorder = new SimulationRecorder(network,
+                log, 50)) {
+            commands.recordTo(recorder);
+            states.add(SimulationState.capture(network));
+            for (int t = 1; t <= 250; t++) {
+                if (t == 30) {
+                    commands.apply(ButtonOptions.ADD_INTERSECTION,
+                            Map.of("id", "E"));
+                    commands.apply(ButtonOptions.ADD_TWO_WAY_CONN,
+                            Map.of("from", "E", "to", "C", "speed", "70"));
+                } else if (t == 60) {
+                    commands.apply(ButtonOptions.ADD_SENSOR, Map.of(
+                            "from", "E", "to", "C", "type", "VC",
+                            "data", "30:1,2,3,4,5,6,7"));
+                    commands.apply(ButtonOptions.ADD_LIGHT, Map.of(
+                            "id", "C", "duration", "5"));
+                } else if (t == 90) {
+                    try {
+                        commands.apply(ButtonOptions.SET_SPEED, Map.of(
+                                "from", "A", "to", "C", "speed", "30"));
+                        fail("There is no speed sign");
+                    } catch (IllegalArgumentException expected) {
+                        // Recorded and replayed all the same
+                    }
+                    String edits = "SIGN:D:C:30\n";
+                    recorder.bulkEdit(edits);
+                    new BulkEditor(network).apply(new StringReader(edits));
+                    commands.apply(ButtonOptions.CHANGE_LIGHT_DURATION,
+                            Map.of("id", "C", "duration", "6"));
+                }
+                // Readings arrive now and then, some repeating the last
+                if (t % 3 == 0) {
+                    count.publish(t % 17);
+                }
+                if (t % 7 == 0) {
+                    camera.publish(60 - t % 5);
+                }
+                tick();
+                recorder.tick();
+                states.add(SimulationState.capture(network));
+            }
+            assertEquals(250, recorder.getTicks());
+        }
+        return states;
+    }
+
+    @Test
+    public void replay() throws Exception {
+        Network network = network();
+        tick();
+        Path log = folder.newFile("run.log").toPath();
+        List<SimulationState> states = record(network, log);
+
+        SimulationReplayer replayer = SimulationReplayer.open(log);
+        assertEquals(250, replayer.getLastTick());
+        assertEquals(6, replayer.getCheckpointCount());
+        assertEquals(states.get(0),
+                SimulationState.capture(replayer.getNetwork()));
+        assertTrue(replayer.step());
+        assertEquals(1, replayer.getTick());
+        assertEquals(states.get(1),
+                SimulationState.capture(replayer.getNetwork()));
+
+        replayer.run();
+        assertEquals(250, replayer.getTick());
+        assertFalse(replayer.step());
+        assertEquals(5, replayer.getCheckedCount());
+        assertEquals(states.get(250),
+                SimulationState.capture(replayer.getNetwork()));
+        assertEquals(network.toString(), replayer.getNetwork().toString());
+        assertEquals(30, replayer.getNetwork().getConnection("D", "C")
+                .getSpeed());
+        for (String from : List.of("A", "B", "D", "E")) {
+            assertEquals(network.getCongestion(from, "C"),
+                    replayer.getNetwork().getCongestion(from, "C"));
+        }
+    }
+
+    @Test
+    public void seek() throws Exception {
+        Path log = folder.newFile("run.log").toPath();
+        List<SimulationState> states = record(network(), log);
+
+        SimulationReplayer replayer = SimulationReplayer.open(log);
+        for (long target : new long[] {75, 120, 100, 250, 0, 50, 249, 3}) {
+            replayer.seek(target);
+            assertEquals(target, replayer.getTick());
+            assertEquals("tick " + target, states.get((int) target),
+                    SimulationState.capture(replayer.getNetwork()));
+        }
+        try {
+            replayer.seek(251);
+            fail("Past the end of the log");
+        } catch (IllegalArgumentException expected) {
+            // Expected
+        }
+
+        // Stepping on from a seek checks the later checkpoints
+        replayer.seek(120);
+        replayer.run();
+        assertEquals(3, replayer.getCheckedCount());
+    }
+
+    @Test
+    public void tornLog() throws Exception {
+        Path log = folder.newFile("run.log").toPath();
+        List<SimulationState> states = record(network(), log);
+        try (FileChannel channel = FileChannel.open(log,
+                StandardOpenOption.WRITE)) {
+            // Cuts into the checkpoint written after tick 250
+            channel.truncate(channel.size() - 3);
+        }
+
+        SimulationReplayer replayer = SimulationReplayer.open(log);
+        assertEquals(250, replayer.getLastTick());
+        assertEquals(5, replayer.getCheckpointCount());
+        replayer.run();
+        assertEquals(states.get(250),
+                SimulationState.capture(replayer.getNetwork()));
+    }
+
+    @Test
+    public void guiTwoWayConnection() throws Exception {
+        Network network = network();
+        Path log = folder.newFile("run.log").toPath();
+        MainViewModel model = new MainViewModel(network);
+        try (SimulationRecorder recorder = new SimulationRecorder(network,
+                log, 5)) {
+            model.recordSimulation(recorder);
+            model.setSelected(network.findIntersection("C"));
+            // A:C already exists, so only C:A is made
+            model.takeInstruction(ButtonOptions.ADD_TWO_WAY_CONN,
+                    List.of(Optional.of("A"), Optional.of("45")));
+            assertFalse(model.errorProperty().get().isEmpty());
+            assertEquals(45, network.getConnection("C", "A").getSpeed());
+            for (int t = 0; t < 12; t++) {
+                tick();
+                recorder.tick();
+            }
+        }
+
+        SimulationReplayer replayer = SimulationReplayer.open(log);
+        replayer.run();
+        assertEquals(12, replayer.getTick());
+        assertEquals(2, replayer.getCheckedCount());
+        assertEquals(network.toString(), replayer.getNetwork().toString());
+        assertEquals(SimulationState.capture(network),
+                SimulationState.capture(replayer.getNetwork()));
+    }
+}
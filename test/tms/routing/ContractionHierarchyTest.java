@@ -0,0 +1,159 @@
+package tms.routing;
+
+import org.junit.Test;
+import tms.intersection.Intersection;
+import tms.network.Network;
+import tms.route.Route;
+import tms.util.RouteNotFoundException;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that travel times match a plain Dijkstra search on random
+ *     networks, including unreachable destinations.
+ *  2) Test that unpacked route plans are connected and match their travel
+ *     times.
+ *  3) Test that refresh() re-customises after speeds change.
+ *  4) Test that an unreachable destination throws RouteNotFoundException.
+ */
+public class ContractionHierarchyTest {
+
+    /**
+     * Creates a random network of the given size, where each intersection
+     * has a few routes to nearby intersections, so the network has some
+     * structure and may be disconnected.
+     */
+    private static Network randomNetwork(int size, Random random)
+            throws Exception {
+        Network n = new Network();
+        for (int i = 0; i < size; i++) {
+            n.createIntersection("I" + i);
+        }
+        for (int i = 0; i < size; i++) {
+            int routes = random.nextInt(4);
+            for (int k = 0; k < routes; k++) {
+                int j = Math.floorMod(i + random.nextInt(11) - 5, size);
+                if (j != i && !hasRoute(n, i, j)) {
+                    n.connectIntersections("I" + i, "I" + j,
+                            10 + random.nextInt(100));
+                }
+            }
+        }
+        return n;
+    }
+
+    private static boolean hasRoute(Network n, int from, int to)
+            throws Exception {
+        try {
+            n.getConnection("I" + from, "I" + to);
+            return true;
+        } catch (RouteNotFoundException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Test that travel times match a plain Dijkstra search on random
+     * networks, including unreachable destinations.
+     */
+    @Test
+    public void travelTime_matchesDijkstra() throws Exception {
+        Random random = new Random(1);
+        for (int round = 0; round < 20; round++) {
+            Network n = randomNetwork(10 + random.nextInt(80), random);
+            RoutePlanner planner = new RoutePlanner(n);
+            ContractionHierarchy hierarchy =
+                    new ContractionHierarchy(planner.getGraph());
+            int size = n.getIntersections().size();
+
+            for (int from = 0; from < size; from++) {
+                for (int to = 0; to < size; to++) {
+                    assertEquals(planner.travelTime("I" + from, "I" + to),
+                            hierarchy.travelTime("I" + from, "I" + to),
+                            1e-2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Test that unpacked route plans are connected and match their travel
+     * times.
+     */
+    @Test
+    public void fastestRoute_unpacksShortcuts() throws Exception {
+        Random random = new Random(2);
+        Network n = randomNetwork(200, random);
+        RoutePlanner planner = new RoutePlanner(n);
+        ContractionHierarchy hierarchy =
+                new ContractionHierarchy(planner.getGraph());
+
+        int plans = 0;
+        for (int k = 0; k < 500; k++) {
+            String from = "I" + random.nextInt(200);
+            String to = "I" + random.nextInt(200);
+            if (Double.isInfinite(planner.travelTime(from, to))) {
+                continue;
+            }
+            RoutePlan plan = hierarchy.fastestRoute(from, to);
+            List<Intersection> intersections = plan.getIntersections();
+            List<Route> routes = plan.getRoutes();
+
+            assertEquals(from, intersections.get(0).getId());
+            assertEquals(to, intersections.get(routes.size()).getId());
+            double total = 0;
+            for (int i = 0; i < routes.size(); i++) {
+                Route route = routes.get(i);
+                assertEquals(intersections.get(i), route.getFrom());
+                assertTrue(intersections.get(i + 1).getConnections()
+                        .contains(route));
+                total += RoutingGraph.travelTime(route);
+            }
+            assertEquals(plan.getTravelTime(), total, 1e-2);
+            plans++;
+        }
+        assertTrue(plans > 0);
+    }
+
+    /**
+     * Test that refresh() re-customises after speeds change.
+     */
+    @Test
+    public void refresh_updatesSpeeds() throws Exception {
+        Network n = new Network();
+        n.createIntersection("A");
+        n.createIntersection("B");
+        n.createIntersection("C");
+        n.connectIntersections("A", "B", 30);
+        n.connectIntersections("A", "C", 100);
+        n.connectIntersections("C", "B", 100);
+
+        ContractionHierarchy hierarchy =
+                new ContractionHierarchy(new RoutingGraph(n));
+        assertEquals("A,C,B", hierarchy.fastestRoute("A", "B").toString()
+                .split(":")[0]);
+        assertFalse(hierarchy.refresh());
+
+        n.addSpeedSign("A", "C", 100);
+        n.setSpeedLimit("A", "C", 10);
+        assertTrue(hierarchy.refresh());
+        assertEquals("A,B", hierarchy.fastestRoute("A", "B").toString()
+                .split(":")[0]);
+    }
+
+    /**
+     * Test that an unreachable destination throws RouteNotFoundException.
+     */
+    @Test(expected = RouteNotFoundException.class)
+    public void fastestRoute_unreachable() throws Exception {
+        Network n = new Network();
+        n.createIntersection("A");
+        n.createIntersection("B");
+        n.connectIntersections("A", "B", 60);
+
+        new ContractionHierarchy(new RoutingGraph(n)).fastestRoute("B", "A");
+    }
+}
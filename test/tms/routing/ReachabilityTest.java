@@ -0,0 +1,139 @@
+package tms.routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import tms.network.Network;
+import tms.util.IntersectionNotFoundException;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test forward and reverse reachability.
+ *  2) Test that canReach() agrees with reachableFrom().
+ *  3) Test that isochrones match travel times from RoutePlanner.
+ *  4) Test that impactOf() combines upstream and downstream intersections.
+ *  5) Test that an unknown intersection throws
+ *     IntersectionNotFoundException.
+ */
+public class ReachabilityTest {
+    private Network n;
+    private Reachability reachability;
+
+    /**
+     * Creates the network
+     *   A -> B -> C -> D
+     *   E -> B
+     *   F (isolated)
+     * with every route at 36 km/h, i.e. 100 seconds.
+     */
+    @Before
+    public void setup() throws IntersectionNotFoundException {
+        n = new Network();
+        for (String id : new String[] {"A", "B", "C", "D", "E", "F"}) {
+            n.createIntersection(id);
+        }
+        n.connectIntersections("A", "B", 36);
+        n.connectIntersections("B", "C", 36);
+        n.connectIntersections("C", "D", 36);
+        n.connectIntersections("E", "B", 36);
+        reachability = new Reachability(new RoutingGraph(n));
+    }
+
+    private static Set<String> set(String... ids) {
+        return new HashSet<>(Arrays.asList(ids));
+    }
+
+    /**
+     * Test forward and reverse reachability.
+     */
+    @Test
+    public void reachable_forwardAndReverse() throws Exception {
+        assertEquals(set("A", "B", "C", "D"),
+                set(reachability.reachableFrom("A")));
+        assertEquals(set("C", "B", "A", "E", "D"),
+                set(reachability.reachableTo("D")));
+        assertEquals(set("F"), set(reachability.reachableFrom("F")));
+        assertEquals(set("F"), set(reachability.reachableTo("F")));
+    }
+
+    /**
+     * Test that canReach() agrees with reachableFrom().
+     */
+    @Test
+    public void canReach_agreesWithReachableFrom() throws Exception {
+        String[] ids = {"A", "B", "C", "D", "E", "F"};
+        for (String from : ids) {
+            Set<String> reachable = set(reachability.reachableFrom(from));
+            for (String to : ids) {
+                assertEquals(reachable.contains(to),
+                        reachability.canReach(from, to));
+            }
+        }
+    }
+
+    /**
+     * Test that isochrones match travel times from RoutePlanner.
+     */
+    @Test
+    public void isochrone_matchesTravelTimes() throws Exception {
+        assertEquals(set("A", "B", "C"),
+                set(reachability.isochrone("A", 250)));
+        assertEquals(set("D", "C", "B"),
+                set(reachability.reverseIsochrone("D", 200.1)));
+
+        Random random = new Random(6);
+        Network grid = new Network();
+        for (int i = 0; i < 100; i++) {
+            grid.createIntersection("I" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            grid.connectIntersections("I" + i, "I" + ((i + 1) % 100),
+                    20 + random.nextInt(80));
+            if (i % 7 == 0) {
+                grid.connectIntersections("I" + i, "I" + ((i + 50) % 100),
+                        20 + random.nextInt(80));
+            }
+        }
+        RoutePlanner planner = new RoutePlanner(grid);
+        Reachability engine = new Reachability(planner.getGraph());
+
+        for (int k = 0; k < 20; k++) {
+            String start = "I" + random.nextInt(100);
+            double seconds = random.nextInt(2000);
+            Set<String> forward = set(engine.isochrone(start, seconds));
+            Set<String> reverse = set(engine.reverseIsochrone(start, seconds));
+            for (int i = 0; i < 100; i++) {
+                String id = "I" + i;
+                assertEquals(planner.travelTime(start, id) <= seconds,
+                        forward.contains(id));
+                assertEquals(planner.travelTime(id, start) <= seconds,
+                        reverse.contains(id));
+            }
+        }
+    }
+
+    /**
+     * Test that impactOf() combines upstream and downstream intersections.
+     */
+    @Test
+    public void impactOf_upstreamAndDownstream() throws Exception {
+        assertEquals(set("A", "E", "C"), set(reachability.impactOf("B", 150)));
+        assertEquals(set("A", "E", "C", "D"),
+                set(reachability.impactOf("B", 1000)));
+        assertEquals(0, reachability.impactOf("F", 1000).length);
+    }
+
+    /**
+     * Test that an unknown intersection throws
+     * IntersectionNotFoundException.
+     */
+    @Test(expected = IntersectionNotFoundException.class)
+    public void reachableFrom_unknownIntersection() throws Exception {
+        reachability.reachableFrom("Q");
+    }
+}
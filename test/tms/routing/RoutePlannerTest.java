@@ -0,0 +1,135 @@
+package tms.routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import tms.network.Network;
+import tms.sensors.DemoPressurePad;
+import tms.util.DuplicateSensorException;
+import tms.util.IntersectionNotFoundException;
+import tms.util.RouteNotFoundException;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that the fastest route prefers faster routes over fewer routes.
+ *  2) Test that congestion reported by sensors is taken into account.
+ *  3) Test that refresh() picks up changed speed limits.
+ *  4) Test that a route plan to the origin itself is empty.
+ *  5) Test that an unreachable destination throws RouteNotFoundException.
+ *  6) Test that an unknown intersection throws
+ *     IntersectionNotFoundException.
+ */
+public class RoutePlannerTest {
+    private Network n;
+
+    /**
+     * Creates the network
+     *   A -> B (30)
+     *   A -> C (100) -> B (100)
+     *   B -> D (60)
+     * where D has no outgoing routes.
+     */
+    @Before
+    public void setup() throws IntersectionNotFoundException,
+            RouteNotFoundException {
+        n = new Network();
+        n.createIntersection("A");
+        n.createIntersection("B");
+        n.createIntersection("C");
+        n.createIntersection("D");
+
+        n.connectIntersections("A", "B", 30);
+        n.connectIntersections("A", "C", 100);
+        n.connectIntersections("C", "B", 100);
+        n.connectIntersections("B", "D", 60);
+        n.addSpeedSign("A", "C", 100);
+    }
+
+    /**
+     * Test that the fastest route prefers faster routes over fewer routes.
+     */
+    @Test
+    public void fastestRoute_prefersFasterRoutes() throws Exception {
+        RoutePlan plan = new RoutePlanner(n).fastestRoute("A", "D");
+
+        assertEquals("A,C,B,D", plan.toString().split(":")[0]);
+        assertEquals(3, plan.getRoutes().size());
+
+        double expected = RoutingGraph.travelTime(100, 0) * 2
+                + RoutingGraph.travelTime(60, 0);
+        assertEquals(expected, plan.getTravelTime(), 1e-3);
+    }
+
+    /**
+     * Test that congestion reported by sensors is taken into account.
+     */
+    @Test
+    public void fastestRoute_avoidsCongestion()
+            throws IntersectionNotFoundException, RouteNotFoundException,
+            DuplicateSensorException {
+        // Fully congested: 10 vehicles on a pad with a threshold of 1.
+        n.addSensor("C", "B", new DemoPressurePad(new int[] {10}, 1));
+
+        RoutePlan plan = new RoutePlanner(n).fastestRoute("A", "B");
+
+        assertEquals("A,B", plan.toString().split(":")[0]);
+    }
+
+    /**
+     * Test that refresh() picks up changed speed limits.
+     */
+    @Test
+    public void refresh_updatesSpeeds() throws Exception {
+        RoutePlanner planner = new RoutePlanner(n);
+        n.setSpeedLimit("A", "C", 10);
+
+        assertEquals("A,C,B", planner.fastestRoute("A", "B").toString()
+                .split(":")[0]);
+
+        planner.refresh();
+        assertEquals("A,B", planner.fastestRoute("A", "B").toString()
+                .split(":")[0]);
+    }
+
+    /**
+     * Test that a route plan to the origin itself is empty.
+     */
+    @Test
+    public void fastestRoute_sameIntersection() throws Exception {
+        RoutePlan plan = new RoutePlanner(n).fastestRoute("B", "B");
+
+        assertEquals(0, plan.getRoutes().size());
+        assertEquals(1, plan.getIntersections().size());
+        assertEquals(0, plan.getTravelTime(), 0);
+    }
+
+    /**
+     * Test that an unreachable destination throws RouteNotFoundException.
+     */
+    @Test(expected = RouteNotFoundException.class)
+    public void fastestRoute_unreachable() throws Exception {
+        new RoutePlanner(n).fastestRoute("D", "A");
+    }
+
+    /**
+     * Test that an unknown intersection throws
+     * IntersectionNotFoundException.
+     */
+    @Test(expected = IntersectionNotFoundException.class)
+    public void fastestRoute_unknownIntersection() throws Exception {
+        new RoutePlanner(n).fastestRoute("A", "Q");
+    }
+
+    /**
+     * Test that travelTime() matches the fastest route and is infinite for
+     * unreachable destinations.
+     */
+    @Test
+    public void travelTime_matchesFastestRoute() throws Exception {
+        RoutePlanner planner = new RoutePlanner(n);
+
+        assertEquals(planner.fastestRoute("A", "D").getTravelTime(),
+                planner.travelTime("A", "D"), 1e-3);
+        assertTrue(Double.isInfinite(planner.travelTime("D", "A")));
+    }
+}
@@ -0,0 +1,152 @@
+package tms.routing;
+
+import org.junit.Before;
+import org.junit.Test;
+import tms.intersection.Intersection;
+import tms.network.Network;
+import tms.util.IntersectionNotFoundException;
+import tms.util.RouteNotFoundException;
+
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that travel times match RoutePlanner when there are no lights.
+ *  2) Test that time spent waiting at a red light is included.
+ *  3) Test that the fastest route avoids a long red light.
+ *  4) Test that the departure time changes the wait at a light.
+ *  5) Test that an unreachable destination throws RouteNotFoundException.
+ */
+public class TimeDependentPlannerTest {
+    private Network n;
+
+    /**
+     * Creates the network
+     *   A -> B (60) -> D (60)
+     *   A -> C (50) -> D (50)
+     */
+    @Before
+    public void setup() throws IntersectionNotFoundException {
+        n = new Network();
+        n.createIntersection("A");
+        n.createIntersection("B");
+        n.createIntersection("C");
+        n.createIntersection("D");
+
+        n.connectIntersections("A", "B", 60);
+        n.connectIntersections("B", "D", 60);
+        n.connectIntersections("A", "C", 50);
+        n.connectIntersections("C", "D", 50);
+    }
+
+    /**
+     * Test that travel times match RoutePlanner when there are no lights.
+     */
+    @Test
+    public void travelTime_withoutLights() throws Exception {
+        Random random = new Random(5);
+        Network grid = new Network();
+        for (int i = 0; i < 100; i++) {
+            grid.createIntersection("I" + i);
+        }
+        for (int i = 0; i < 100; i++) {
+            if (i % 10 < 9) {
+                grid.connectIntersections("I" + i, "I" + (i + 1),
+                        20 + random.nextInt(80));
+            }
+            if (i >= 10) {
+                grid.connectIntersections("I" + i, "I" + (i - 10),
+                        20 + random.nextInt(80));
+            }
+        }
+        RoutePlanner planner = new RoutePlanner(grid);
+        TimeDependentPlanner timed = new TimeDependentPlanner(grid);
+
+        for (int k = 0; k < 200; k++) {
+            String from = "I" + random.nextInt(100);
+            String to = "I" + random.nextInt(100);
+            assertEquals(planner.travelTime(from, to),
+                    timed.travelTime(from, to, random.nextInt(100)), 1e-2);
+        }
+    }
+
+    /**
+     * Test that time spent waiting at a red light is included.
+     */
+    @Test
+    public void fastestRoute_waitsAtRedLight() throws Exception {
+        n.addLights("D", 100, List.of("B", "C"));
+        n.addSpeedSign("A", "C", 10);
+        TimeDependentPlanner planner = new TimeDependentPlanner(n);
+
+        // Arrives at D after 120 seconds, during C's turn, so waits until
+        // B's next turn. The signal set for time 200 is shown during the
+        // 201st second.
+        RoutePlan plan = planner.fastestRoute("A", "D");
+        assertEquals("A,B,D", plan.toString().split(":")[0]);
+        assertEquals(201, plan.getTravelTime(), 1e-3);
+
+        // Departing later arrives during B's turn
+        plan = planner.fastestRoute("A", "D", 100);
+        assertEquals("A,B,D", plan.toString().split(":")[0]);
+        assertEquals(RoutingGraph.travelTime(60, 0) * 2,
+                plan.getTravelTime(), 1e-3);
+    }
+
+    /**
+     * Test that the fastest route avoids a long red light.
+     */
+    @Test
+    public void fastestRoute_avoidsRedLight() throws Exception {
+        n.addLights("D", 300, List.of("C", "B"));
+        TimeDependentPlanner planner = new TimeDependentPlanner(n);
+
+        // Without lights B is faster, but B -> D is red for 300 seconds
+        assertEquals("A,B,D", new RoutePlanner(n).fastestRoute("A", "D")
+                .toString().split(":")[0]);
+        RoutePlan plan = planner.fastestRoute("A", "D");
+        assertEquals("A,C,D", plan.toString().split(":")[0]);
+        assertEquals(RoutingGraph.travelTime(50, 0) * 2,
+                plan.getTravelTime(), 1e-3);
+    }
+
+    /**
+     * Test that the departure time changes the wait at a light.
+     */
+    @Test
+    public void travelTime_dependsOnDeparture() throws Exception {
+        n.addLights("B", 20, List.of("A"));
+        Intersection b = n.findIntersection("B");
+        TimeDependentPlanner planner = new TimeDependentPlanner(n);
+        int yellow = b.getTrafficLights().getYellowTime();
+
+        float free = RoutingGraph.travelTime(60, 0);
+        int waits = 0;
+        for (int departure = 0; departure < 60; departure++) {
+            // A -> B is the only route into B, so it is green except when
+            // yellow at the end of each 20 second cycle. The signal during
+            // second s is the one set for time s - 1.
+            float arrival = departure + free;
+            int second = (int) arrival;
+            int position = (second - 1) % 20;
+            double expected = free;
+            if (position >= 20 - yellow) {
+                expected = second + 20 - position - departure;
+                waits++;
+            }
+            assertEquals(expected, planner.travelTime("A", "B", departure),
+                    1e-3);
+        }
+        assertEquals(3 * yellow, waits);
+    }
+
+    /**
+     * Test that an unreachable destination throws RouteNotFoundException.
+     */
+    @Test(expected = RouteNotFoundException.class)
+    public void fastestRoute_unreachable() throws Exception {
+        new TimeDependentPlanner(n).fastestRoute("D", "A");
+    }
+}
@@ -0,0 +1,120 @@
+package tms.routing;
+
+import org.junit.Test;
+import tms.network.Network;
+import tms.util.IntersectionNotFoundException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that every entry matches RoutePlanner.travelTime(), including
+ *     repeated and unreachable destinations.
+ *  2) Test that the result does not depend on the number of threads.
+ *  3) Test that an unknown intersection throws
+ *     IntersectionNotFoundException.
+ */
+public class TravelTimeMatrixTest {
+
+    /**
+     * Creates a network of 60 intersections in which I0 to I49 are randomly
+     * connected and I50 to I59 are unreachable from the rest.
+     */
+    private static Network network(Random random) throws Exception {
+        Network n = new Network();
+        for (int i = 0; i < 60; i++) {
+            n.createIntersection("I" + i);
+        }
+        for (int i = 0; i < 50; i++) {
+            n.connectIntersections("I" + i, "I" + ((i + 1) % 50),
+                    20 + random.nextInt(80));
+            // Any route into I(i) other than the ring route from I(i - 1)
+            int j = random.nextInt(60);
+            if (j != i && j != (i + 49) % 50) {
+                n.connectIntersections("I" + j, "I" + i,
+                        20 + random.nextInt(80));
+            }
+        }
+        return n;
+    }
+
+    private static List<String> ids(Random random, int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add("I" + random.nextInt(60));
+        }
+        return ids;
+    }
+
+    /**
+     * Test that every entry matches RoutePlanner.travelTime(), including
+     * repeated and unreachable destinations.
+     */
+    @Test
+    public void compute_matchesRoutePlanner() throws Exception {
+        Random random = new Random(3);
+        Network n = network(random);
+        RoutePlanner planner = new RoutePlanner(n);
+
+        List<String> origins = ids(random, 40);
+        List<String> destinations = ids(random, 30);
+        destinations.add(destinations.get(0));
+
+        float[] matrix = new TravelTimeMatrix(planner.getGraph())
+                .compute(origins, destinations);
+
+        assertEquals(origins.size() * destinations.size(), matrix.length);
+        for (int i = 0; i < origins.size(); i++) {
+            for (int j = 0; j < destinations.size(); j++) {
+                assertEquals(planner.travelTime(origins.get(i),
+                        destinations.get(j)),
+                        matrix[i * destinations.size() + j], 1e-3);
+            }
+        }
+    }
+
+    /**
+     * Test that the result does not depend on the number of threads.
+     */
+    @Test
+    public void compute_parallelMatchesSequential() throws Exception {
+        Random random = new Random(4);
+        RoutingGraph graph = new RoutingGraph(network(random));
+        int[] origins = new int[200];
+        int[] destinations = new int[50];
+        for (int i = 0; i < origins.length; i++) {
+            origins[i] = random.nextInt(graph.size());
+        }
+        for (int i = 0; i < destinations.length; i++) {
+            destinations[i] = random.nextInt(graph.size());
+        }
+
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool several = new ForkJoinPool(4);
+        try {
+            assertArrayEquals(
+                    new TravelTimeMatrix(graph, single)
+                            .compute(origins, destinations),
+                    new TravelTimeMatrix(graph, several)
+                            .compute(origins, destinations), 0);
+        } finally {
+            single.shutdown();
+            several.shutdown();
+        }
+    }
+
+    /**
+     * Test that an unknown intersection throws
+     * IntersectionNotFoundException.
+     */
+    @Test(expected = IntersectionNotFoundException.class)
+    public void compute_unknownIntersection() throws Exception {
+        Network n = network(new Random(5));
+        new TravelTimeMatrix(new RoutingGraph(n))
+                .compute(List.of("I0"), List.of("Q"));
+    }
+}
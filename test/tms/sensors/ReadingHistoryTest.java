@@ -0,0 +1,106 @@
+package tms.sensors;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that readings are kept oldest first until the window is full,
+ *     then replace the oldest.
+ *  2) Test that windows are copied into a caller's array at an offset,
+ *     including across the end of the ring.
+ *  3) Test the mean of a window.
+ *  4) Test that a sensor records its current value each second once given
+ *     a window, keeping the newest readings when the window changes.
+ */
+public class ReadingHistoryTest {
+
+    @Test
+    public void record_wrapsAround() {
+        ReadingHistory history = new ReadingHistory(3);
+        assertEquals(0, history.size());
+        history.record(1);
+        history.record(2);
+        assertEquals(2, history.size());
+        assertEquals(2, history.get(0));
+        assertEquals(1, history.get(1));
+
+        history.record(3);
+        history.record(4);
+        assertEquals(3, history.size());
+        assertEquals(3, history.getWindow());
+        assertEquals(4, history.get(0));
+        assertEquals(2, history.get(2));
+        try {
+            history.get(3);
+            fail("Only three readings are kept");
+        } catch (IndexOutOfBoundsException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void copyRecent() {
+        ReadingHistory history = new ReadingHistory(4);
+        for (int reading = 1; reading <= 6; reading++) {
+            history.record(reading);
+        }
+        int[] dest = new int[6];
+        assertEquals(4, history.copyTo(dest));
+        assertArrayEquals(new int[] {3, 4, 5, 6, 0, 0}, dest);
+
+        assertEquals(3, history.copyRecent(dest, 3, 3));
+        assertArrayEquals(new int[] {3, 4, 5, 4, 5, 6}, dest);
+        // No more readings than are kept
+        assertEquals(4, history.copyRecent(dest, 0, 10));
+
+        try {
+            history.copyRecent(dest, 4, 3);
+            fail("Three readings do not fit at index 4");
+        } catch (IndexOutOfBoundsException expected) {
+            // Expected
+        }
+    }
+
+    @Test
+    public void mean() {
+        ReadingHistory history = new ReadingHistory(5);
+        assertEquals(0, history.mean(3), 0);
+        history.record(10);
+        history.record(20);
+        history.record(60);
+        assertEquals(40, history.mean(2), 0);
+        assertEquals(30, history.mean(5), 0);
+        history.clear();
+        assertEquals(0, history.size());
+    }
+
+    @Test
+    public void sensorHistory() {
+        DemoPressurePad pad = new DemoPressurePad(new int[] {1, 2, 3}, 5);
+        assertNull(pad.getHistory());
+
+        pad.setHistoryWindow(4);
+        pad.oneSecond();
+        pad.oneSecond();
+        int[] readings = new int[4];
+        assertEquals(3, pad.getHistory().copyTo(readings));
+        assertArrayEquals(new int[] {1, 2, 3, 0}, readings);
+
+        pad.setHistoryWindow(2);
+        pad.oneSecond();
+        assertEquals(2, pad.getHistory().copyTo(readings));
+        assertArrayEquals(new int[] {3, 1}, new int[] {readings[0],
+                readings[1]});
+
+        LiveVehicleCount count = new LiveVehicleCount(10, 7);
+        count.setHistoryWindow(3);
+        count.publish(8);
+        count.oneSecond();
+        assertEquals(8, count.getHistory().get(0));
+        assertEquals(7, count.getHistory().get(1));
+
+        pad.setHistoryWindow(0);
+        assertNull(pad.getHistory());
+    }
+}
@@ -0,0 +1,137 @@
+package tms.sensors;
+
+import org.junit.After;
+import org.junit.Test;
+import tms.network.Network;
+import tms.network.NetworkInitialiser;
+import tms.route.Route;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that CSV readings are used from the next second, the last one
+ *     for a sensor winning, and that bad lines are rejected.
+ *  2) Test that binary readings are published by channel, and that unknown
+ *     channels and partial records are rejected.
+ *  3) Test that attaching a network replaces its demo sensors with live
+ *     sensors of the same type and threshold, and that another feed
+ *     attaches the live sensors as they are.
+ *  4) Test that readings sent to a listening port are published.
+ */
+public class SensorFeedTest {
+    private final SensorFeed feed = new SensorFeed();
+
+    @After
+    public void tearDown() {
+        feed.close();
+    }
+
+    @Test
+    public void ingestCsv() throws Exception {
+        LivePressurePad pad = new LivePressurePad(10, 0);
+        LiveSpeedCamera camera = new LiveSpeedCamera(60, 60);
+        feed.attach("A:B:PP", pad);
+        feed.attach("A:B:SC", camera);
+
+        String csv = "A:B:PP,3\r\nA:B:SC,30\n\nA:B:PP,5\nA:B:VC,1\n"
+                + "A:B:PP,x\n,4\nA:B:SC,15";
+        long published = feed.ingest(new ByteArrayInputStream(
+                csv.getBytes(StandardCharsets.UTF_8)), SensorFeed.Format.CSV);
+
+        assertEquals(4, published);
+        assertEquals(3, feed.getRejected());
+        // Not used until the next second
+        assertEquals(0, pad.countTraffic());
+        assertEquals(0, camera.getCongestion());
+        pad.oneSecond();
+        camera.oneSecond();
+        assertEquals(5, pad.countTraffic());
+        assertEquals(50, pad.getCongestion());
+        assertEquals(15, camera.averageSpeed());
+        assertEquals(75, camera.getCongestion());
+        assertEquals("PP:10:5", pad.toString());
+    }
+
+    @Test
+    public void ingestBinary() throws Exception {
+        LiveVehicleCount count = new LiveVehicleCount(50, 50);
+        int channel = feed.attach("X:Y:VC", count);
+        assertEquals(0, channel);
+        assertEquals(channel, feed.getChannel("X:Y:VC"));
+        assertEquals(-1, feed.getChannel("Y:X:VC"));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(channel);
+        out.writeInt(20);
+        out.writeInt(7);
+        out.writeInt(1);
+        out.writeInt(channel);
+        long published = feed.ingest(new ByteArrayInputStream(
+                bytes.toByteArray()), SensorFeed.Format.BINARY);
+
+        assertEquals(1, published);
+        assertEquals(2, feed.getRejected());
+        count.oneSecond();
+        assertEquals(20, count.countTraffic());
+        assertEquals(60, count.getCongestion());
+    }
+
+    @Test
+    public void attachNetwork() throws Exception {
+        Network network = NetworkInitialiser.loadNetwork("networks/demo.txt");
+        assertEquals(4, feed.attach(network));
+        assertEquals(4, feed.getSensorCount());
+
+        Route route = network.getConnection("Y", "Z");
+        assertEquals(2, route.getSensorCount());
+        for (Sensor sensor : route.getSensorsView()) {
+            assertTrue(sensor instanceof LiveSensor);
+        }
+        assertEquals("Y:Z:100:2" + System.lineSeparator() + "PP:8:1"
+                + System.lineSeparator() + "VC:50:42", route.toString());
+
+        feed.ingest(new ByteArrayInputStream("Y:Z:PP,4\n"
+                .getBytes(StandardCharsets.UTF_8)), SensorFeed.Format.CSV);
+        ((LiveSensor) route.getSensors().get(0)).oneSecond();
+        assertTrue(route.toString().contains("PP:8:4"));
+
+        assertEquals(0, feed.attach(network));
+        SensorFeed other = new SensorFeed();
+        assertEquals(4, other.attach(network));
+        assertEquals(1, other.ingest(new ByteArrayInputStream("Y:Z:PP,7\n"
+                .getBytes(StandardCharsets.UTF_8)), SensorFeed.Format.CSV));
+        ((LiveSensor) route.getSensors().get(0)).oneSecond();
+        assertTrue(route.toString().contains("PP:8:7"));
+    }
+
+    @Test
+    public void listen() throws Exception {
+        LivePressurePad pad = new LivePressurePad(10, 0);
+        feed.attach("A:B:PP", pad);
+        int port = feed.listen(0, SensorFeed.Format.CSV);
+
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(),
+                port)) {
+            OutputStream out = socket.getOutputStream();
+            out.write("A:B:PP,9\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (feed.getReadings() < 1
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, feed.getReadings());
+        pad.oneSecond();
+        assertEquals(9, pad.countTraffic());
+    }
+}
@@ -0,0 +1,220 @@
+package tms.server;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import tms.congestion.CongestionStore;
+import tms.network.Network;
+import tms.sensors.DemoPressurePad;
+import tms.util.IntersectionNotFoundException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that /status reports the size of the network and ticks.
+ *  2) Test querying single routes and intersections, and the estimated
+ *     footprint of the network.
+ *  3) Test that commands change the network and are reflected in the next
+ *     snapshot.
+ *  4) Test that invalid commands and unknown paths return errors.
+ *  5) Test many concurrent queries.
+ *  6) Test querying the recorded congestion of a route.
+ */
+public class HeadlessServerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Network n;
+    private HeadlessServer server;
+
+    /**
+     * Creates the network
+     *   A -> B (with a pressure pad), C -> B, B -> C
+     * with traffic lights at B, and starts a server for it.
+     */
+    @Before
+    public void setup() throws Exception {
+        n = new Network();
+        n.createIntersection("A");
+        n.createIntersection("B");
+        n.createIntersection("C");
+        n.connectIntersections("A", "B", 60);
+        n.connectIntersections("C", "B", 50);
+        n.connectIntersections("B", "C", 50);
+        n.addSensor("A", "B", new DemoPressurePad(new int[] {5, 10}, 10));
+        n.addLights("B", 4, List.of("A", "C"));
+        server = new HeadlessServer(n, 0);
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+    }
+
+    private String get(String path) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://localhost:" + server.getPort() + path)
+                .openConnection();
+        return read(connection);
+    }
+
+    private String post(String path, String form) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(
+                "http://localhost:" + server.getPort() + path)
+                .openConnection();
+        connection.setRequestMethod("POST");
+        connection.setDoOutput(true);
+        try (OutputStream out = connection.getOutputStream()) {
+            out.write(form.getBytes(StandardCharsets.UTF_8));
+        }
+        return read(connection);
+    }
+
+    /** Returns "STATUS BODY" for the response */
+    private static String read(HttpURLConnection connection)
+            throws IOException {
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream()
+                : connection.getErrorStream();
+        try (in) {
+            return status + " " + new String(in.readAllBytes(),
+                    StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void status() throws IOException {
+        assertEquals("200 {\"seconds\":0,\"paused\":false,"
+                + "\"intersections\":3,\"routes\":3}", get("/status"));
+        server.getClock().tick();
+        server.getClock().tick();
+        assertEquals(2, server.getSnapshot().getSeconds());
+        assertTrue(get("/status").startsWith("200 {\"seconds\":2,"));
+    }
+
+    @Test
+    public void queries() throws Exception {
+        assertEquals("200 {\"from\":\"A\",\"to\":\"B\",\"speed\":60,"
+                + "\"congestion\":" + n.getCongestion("A", "B")
+                + ",\"signal\":\"GREEN\",\"speedSign\":false,\"sensors\":1}",
+                get("/routes/A/B"));
+        assertEquals("200 {\"id\":\"C\",\"lights\":null,\"routes\":["
+                + "{\"from\":\"B\",\"to\":\"C\",\"speed\":50,\"congestion\":0,"
+                + "\"signal\":null,\"speedSign\":false,\"sensors\":0}]}",
+                get("/intersections/C"));
+        assertTrue(get("/intersections/B").contains(
+                "\"lights\":{\"duration\":4,\"order\":[\"A\",\"C\"]}"));
+        assertTrue(get("/routes").startsWith("200 [{"));
+        assertTrue(get("/intersections").startsWith("200 [{\"id\":\"A\""));
+        String footprint = get("/footprint");
+        assertTrue(footprint, footprint.startsWith("200 {\"totalBytes\":"));
+        assertTrue(footprint, footprint.contains(
+                "{\"type\":\"Route\",\"count\":3,"));
+    }
+
+    @Test
+    public void commands() throws Exception {
+        assertEquals(200, status(post("/commands/ADD_SIGN",
+                "from=C&to=B&speed=40")));
+        assertEquals(40, server.getSnapshot().getRoute("C", "B").getSpeed());
+        assertEquals(40, n.getConnection("C", "B").getSpeed());
+
+        assertEquals(200, status(post("/commands/ADD_INTERSECTION?id=D",
+                "")));
+        assertEquals(200, status(post("/commands/ADD_TWO_WAY_CONN",
+                "from=C&to=D&speed=30")));
+        assertNotNull(server.getSnapshot().getRoute("D", "C"));
+        assertEquals(5, server.getSnapshot().routeCount());
+
+        assertEquals(200, status(post("/commands/PAUSE", "")));
+        assertTrue(server.getSnapshot().isPaused());
+        assertFalse(server.getClock().tick());
+    }
+
+    @Test
+    public void errors() throws IOException, IntersectionNotFoundException {
+        assertEquals("400 {\"error\":\"Error adding speed sign: "
+                + "Speed must be a number\"}",
+                post("/commands/ADD_SIGN", "from=C&to=B&speed=fast"));
+        assertEquals("400 {\"error\":\"Missing parameter: id\"}",
+                post("/commands/ADD_INTERSECTION", ""));
+        assertEquals(400, status(post("/commands/ADD_CONN",
+                "from=A&to=B&speed=60")));
+        assertEquals(404, status(post("/commands/FLY", "")));
+        assertEquals(400, status(get("/commands/PAUSE")));
+        assertEquals(404, status(get("/routes/A/C")));
+        assertEquals(404, status(get("/intersections/Z")));
+        assertEquals(404, status(get("/history/A/B")));
+        assertEquals(3, n.getIntersections().size());
+    }
+
+    @Test
+    public void concurrentQueries() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(16);
+        try {
+            List<Callable<String>> requests = new ArrayList<>();
+            for (int i = 0; i < 400; i++) {
+                String path = i % 2 == 0 ? "/routes/A/B" : "/status";
+                requests.add(() -> get(path));
+            }
+            server.getClock().tick();
+            for (Future<String> response : clients.invokeAll(requests)) {
+                assertEquals(200, status(response.get()));
+            }
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private static int status(String response) {
+        return Integer.parseInt(response.substring(0, 3));
+    }
+
+    @Test
+    public void history() throws Exception {
+        server.stop();
+        server = new HeadlessServer(n, 0);
+        CongestionStore store = CongestionStore.open(
+                folder.getRoot().toPath());
+        server.recordCongestion(store);
+        server.start();
+        for (int i = 0; i < 3; i++) {
+            server.getClock().tick();
+        }
+        // Writes the minute in progress, between ticks
+        assertTrue(server.getClock().callExclusive(() -> {
+            try {
+                store.flush();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }));
+
+        String seconds = get("/history/A/B?resolution=second&from=1&to=3");
+        assertTrue(seconds, seconds.matches("200 \\{\"route\":\"A:B\","
+                + "\"from\":1,\"to\":3,\"resolution\":\"second\","
+                + "\"values\":\\[(50|100),(50|100)]}"));
+        String minutes = get("/history/A/B?from=0&to=60");
+        assertTrue(minutes, minutes.contains("\"summaries\":[{\"start\":0,"
+                + "\"min\":50,"));
+        assertEquals(404, status(get("/history/B/A")));
+        assertEquals(400, status(get("/history/A/B?resolution=day")));
+    }
+}
@@ -0,0 +1,63 @@
+package tms.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that small values are counted exactly.
+ *  2) Test that percentiles of large values are within the bucket
+ *     precision.
+ *  3) Test that values out of range are clamped, and that reset forgets
+ *     every value.
+ */
+public class LatencyHistogramTest {
+
+    @Test
+    public void record_smallValuesExact() {
+        LatencyHistogram histogram = new LatencyHistogram(1000);
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i);
+        }
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(100, histogram.getMax());
+        assertEquals(50.5, histogram.getMean(), 1e-9);
+        assertEquals(50, histogram.getValueAtPercentile(50));
+        assertEquals(99, histogram.getValueAtPercentile(99));
+        assertEquals(1, histogram.getValueAtPercentile(0));
+        assertEquals(100, histogram.getValueAtPercentile(100));
+    }
+
+    @Test
+    public void getValueAtPercentile_withinPrecision() {
+        LatencyHistogram histogram = new LatencyHistogram(1L << 40);
+        for (long i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000_003);
+        }
+
+        for (double percentile : new double[] {10, 50, 90, 99, 99.9}) {
+            double expected = Math.ceil(percentile * 100) * 1_000_003;
+            long actual = histogram.getValueAtPercentile(percentile);
+            assertTrue(percentile + ": " + actual, actual >= expected);
+            assertTrue(percentile + ": " + actual,
+                    actual <= expected * (1 + 1.0 / 64));
+        }
+        assertEquals(10_000L * 1_000_003, histogram.getMax());
+    }
+
+    @Test
+    public void record_clampsAndResets() {
+        LatencyHistogram histogram = new LatencyHistogram(500);
+        histogram.record(-5);
+        histogram.record(1_000_000);
+
+        assertEquals(0, histogram.getValueAtPercentile(50));
+        assertEquals(500, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getMax());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+}
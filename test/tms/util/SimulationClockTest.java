@@ -0,0 +1,130 @@
+package tms.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that tick() calls the timed item and publishes a snapshot.
+ *  2) Test that ticks do nothing while paused.
+ *  3) Test that a started clock ticks on the simulation thread until
+ *     stopped.
+ *  4) Test that runExclusive() waits for a tick in progress.
+ *  5) Test that an exception in one tick does not stop later ticks.
+ */
+public class SimulationClockTest {
+    private SimulationClock clock;
+
+    @After
+    public void tearDown() {
+        if (clock != null) {
+            clock.stop();
+        }
+    }
+
+    /**
+     * Waits up to five seconds for the clock to complete the given number
+     * of ticks.
+     */
+    private void awaitTicks(long ticks) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (clock.getSnapshot().getTicks() < ticks
+                && System.nanoTime() < deadline) {
+            Thread.sleep(5);
+        }
+        assertTrue(clock.getSnapshot().getTicks() >= ticks);
+    }
+
+    @Test
+    public void tick_publishesSnapshot() {
+        AtomicInteger calls = new AtomicInteger();
+        clock = new SimulationClock(calls::incrementAndGet);
+        assertEquals(0, clock.getSnapshot().getTicks());
+
+        assertTrue(clock.tick());
+        assertTrue(clock.tick());
+        assertEquals(2, calls.get());
+        assertEquals(2, clock.getSnapshot().getTicks());
+        assertTrue(clock.getSnapshot().getTickNanos() >= 0);
+    }
+
+    @Test
+    public void tick_paused() {
+        AtomicInteger calls = new AtomicInteger();
+        clock = new SimulationClock(calls::incrementAndGet);
+        clock.setPaused(true);
+        assertTrue(clock.isPaused());
+        assertFalse(clock.tick());
+        assertEquals(0, calls.get());
+        assertEquals(0, clock.getSnapshot().getTicks());
+
+        clock.setPaused(false);
+        assertTrue(clock.tick());
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void start_ticksOnSimulationThread() throws InterruptedException {
+        AtomicBoolean otherThread = new AtomicBoolean(true);
+        Thread test = Thread.currentThread();
+        clock = new SimulationClock(() -> {
+            if (Thread.currentThread() == test
+                    || !Thread.currentThread().isDaemon()) {
+                otherThread.set(false);
+            }
+        });
+        clock.start(5, TimeUnit.MILLISECONDS);
+        assertTrue(clock.isRunning());
+        awaitTicks(3);
+        assertTrue(otherThread.get());
+
+        clock.stop();
+        assertFalse(clock.isRunning());
+        Thread.sleep(20);
+        long ticks = clock.getSnapshot().getTicks();
+        Thread.sleep(50);
+        assertEquals(ticks, clock.getSnapshot().getTicks());
+    }
+
+    @Test
+    public void runExclusive_waitsForTick() throws InterruptedException {
+        CountDownLatch started = new CountDownLatch(1);
+        AtomicBoolean ticking = new AtomicBoolean();
+        clock = new SimulationClock(() -> {
+            ticking.set(true);
+            started.countDown();
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            ticking.set(false);
+        });
+
+        Thread simulation = new Thread(clock::tick);
+        simulation.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(clock.callExclusive(ticking::get));
+        simulation.join();
+    }
+
+    @Test
+    public void start_survivesException() throws InterruptedException {
+        AtomicInteger calls = new AtomicInteger();
+        clock = new SimulationClock(() -> {
+            if (calls.incrementAndGet() == 1) {
+                throw new IllegalStateException("first tick fails");
+            }
+        });
+        clock.start(5, TimeUnit.MILLISECONDS);
+        // The failed tick is not counted, but later ones are
+        awaitTicks(2);
+        assertTrue(calls.get() >= 3);
+    }
+}
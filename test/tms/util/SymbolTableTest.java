@@ -0,0 +1,79 @@
+package tms.util;
+
+import org.junit.Test;
+import tms.intersection.Intersection;
+import tms.network.Network;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that identifiers get dense handles in the order they are added,
+ *     and the same handle when added again.
+ *  2) Test that handles survive the table growing many times.
+ *  3) Test that intersections in a network share its table, that
+ *     intersections created on their own share another table, and that
+ *     intersections with different tables are still equal by ID.
+ */
+public class SymbolTableTest {
+
+    @Test
+    public void intern_denseHandles() {
+        SymbolTable symbols = new SymbolTable();
+        assertEquals(-1, symbols.find("A"));
+        assertEquals(0, symbols.intern("A"));
+        assertEquals(1, symbols.intern("B"));
+        assertEquals(0, symbols.intern("A"));
+        assertEquals(1, symbols.find("B"));
+        assertEquals("B", symbols.name(1));
+        assertEquals(2, symbols.size());
+    }
+
+    @Test
+    public void intern_grows() {
+        SymbolTable symbols = new SymbolTable(1);
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, symbols.intern("I" + i));
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertEquals(i, symbols.find("I" + i));
+            assertEquals("I" + i, symbols.name(i));
+        }
+        assertEquals(-1, symbols.find("I100000"));
+        try {
+            symbols.name(100_000);
+            fail("Found a name for an unused handle");
+        } catch (IndexOutOfBoundsException expected) {
+        }
+    }
+
+    @Test
+    public void intersections_shareNetworkTable() throws Exception {
+        Network network = new Network();
+        network.createIntersection("A");
+        network.createIntersection("B");
+        Intersection a = network.findIntersection("A");
+        Intersection b = network.findIntersection("B");
+
+        assertSame(network.getSymbols(), a.getSymbols());
+        assertSame(network.getSymbols(), b.getSymbols());
+        assertEquals(0, a.getHandle());
+        assertEquals(1, b.getHandle());
+        assertNotEquals(a, b);
+
+        Intersection otherB = new Intersection("B");
+        Intersection anotherB = new Intersection("B");
+        Intersection otherA = new Intersection("A");
+        assertNotSame(network.getSymbols(), otherB.getSymbols());
+        assertSame(otherB.getSymbols(), anotherB.getSymbols());
+        assertSame(otherB.getSymbols(), otherA.getSymbols());
+        assertEquals(otherB.getHandle(), anotherB.getHandle());
+        assertNotEquals(otherB.getHandle(), otherA.getHandle());
+        assertEquals("B", anotherB.getId());
+        assertEquals(otherB, anotherB);
+        assertNotEquals(otherA, otherB);
+
+        assertNotEquals(a, otherB);
+        assertEquals(b, otherB);
+        assertEquals(b.hashCode(), otherB.hashCode());
+    }
+}
@@ -0,0 +1,75 @@
+package tms.util;
+
+import org.junit.After;
+import org.junit.Test;
+
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.*;
+
+/**
+ *  1) Test that nothing is measured while metrics are disabled.
+ *  2) Test that ticks, items per tick and each type of timed item are
+ *     measured while metrics are enabled, and published over JMX.
+ */
+public class TickMetricsTest {
+    private final TickMetrics metrics = TickMetrics.getTickMetrics();
+
+    /** A timed item type that no other test registers */
+    private static class Counter implements TimedItem {
+        private int seconds;
+
+        @Override
+        public void oneSecond() {
+            seconds++;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        metrics.setEnabled(false);
+        metrics.reset();
+    }
+
+    @Test
+    public void disabled_measuresNothing() {
+        metrics.setEnabled(false);
+        metrics.reset();
+        SimulationClock clock = new SimulationClock(
+                TimedItemManager.getTimedItemManager());
+        clock.tick();
+
+        assertEquals(0, metrics.getTickCount());
+        assertEquals(0, metrics.getItemsPerTick().getCount());
+        assertEquals(0, metrics.getItemTypeSummaries().length);
+    }
+
+    @Test
+    public void enabled_measuresTicksAndItems() throws Exception {
+        TimedItemManager manager = TimedItemManager.getTimedItemManager();
+        Counter counter = new Counter();
+        manager.registerTimedItem(counter);
+        try {
+            metrics.reset();
+            metrics.setEnabled(true);
+            SimulationClock clock = new SimulationClock(manager);
+            clock.tick();
+            clock.tick();
+        } finally {
+            manager.deregisterTimedItem(counter);
+        }
+
+        assertEquals(2, counter.seconds);
+        assertEquals(2, metrics.getTickCount());
+        assertEquals(2, metrics.getItemsPerTick().getCount());
+        assertTrue(metrics.getItemsPerTickMean() >= 1);
+        assertEquals(2, metrics.getItemDurations(Counter.class).getCount());
+        assertTrue(metrics.getSummary().contains("Counter n=2"));
+
+        Object count = ManagementFactory.getPlatformMBeanServer()
+                .getAttribute(new ObjectName(TickMetrics.OBJECT_NAME),
+                        "TickCount");
+        assertEquals(2L, count);
+    }
+}